@@ -0,0 +1,218 @@
+package rendimiento;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import util.buscadorcamino.AEstrellaBuscadorCamino;
+import util.buscadorcamino.ARAEstrellaBuscadorCamino;
+import util.buscadorcamino.BuscadorInstrumentable;
+import util.buscadorcamino.BuscadorRuta;
+import util.buscadorcamino.BuscadorTrazable;
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.DEstrellaLiteBuscadorCamino;
+import util.buscadorcamino.LineaVision;
+import util.buscadorcamino.MapaCompilado;
+import util.buscadorcamino.MapaConBaldosas;
+import util.buscadorcamino.PuntoSaltoBuscadorCamino;
+import util.buscadorcamino.ThetaEstrellaBuscadorCamino;
+import util.buscadorcamino.TrazaBusqueda;
+import util.buscadorcamino.cache.CacheBuscadorRuta;
+import util.buscadorcamino.concurrente.Consulta;
+import util.buscadorcamino.concurrente.FabricaBuscadorRuta;
+import util.buscadorcamino.flujo.GestorCamposFlujo;
+import util.buscadorcamino.heuristicas.HeuristicaCercana;
+import util.buscadorcamino.heuristicas.HeuristicaOctil;
+import util.buscadorcamino.heuristicas.HeuristicaPuntosReferencia;
+import util.buscadorcamino.jerarquico.JerarquicoBuscadorCamino;
+import util.buscadorcamino.metricas.HistogramaLatencias;
+
+/**
+ * Banco de pruebas de los buscadores sobre un mapa y un escenario de MovingAI. Para cada
+ * buscador resuelve todas las consultas varias veces e informa de las consultas por segundo,
+ * los nanosegundos por nodo expandido y los bytes reservados por consulta, y comprueba la
+ * longitud de cada camino contra la ptima del escenario. Para los buscadores instrumentables
+ * hace adems una pasada con un HistogramaLatencias e informa de sus percentiles. Los nodos
+ * expandidos se cuentan con una traza, as que ns/expandido slo se calcula si se arranca con
+ * -Dutil.buscadorcamino.trazas=true.
+ *
+ * Argumentos: fichero .map, fichero .scen, y opcionalmente los buscadores separados por comas,
+ * el nmero de repeticiones y el nmero mximo de consultas. Termina con cdigo 1 si algn
+ * buscador ptimo da un camino de longitud distinta a la del escenario. Theta*, ARA* con plazo
+ * y el buscador jerrquico no son ptimos, y de ellos slo se cuentan los caminos distintos.
+ */
+public class BancoBuscadores {
+
+	private static final double TOLERANCIA = 1e-3;/** La diferencia relativa admitida con la longitud ptima */
+	private static final List<String> NO_OPTIMOS = Arrays.asList("theta", "ara", "jerarquico");/** Los buscadores cuyos caminos pueden ser ms largos que el ptimo */
+	private static final long PRESUPUESTO_ARA = 5000000;/** El plazo de ARA* en cada consulta, en nanosegundos */
+	private static final long BYTES_CACHE = 16 << 20;/** El presupuesto de memoria de la cach de caminos */
+	private static final int CAMPOS_FLUJO = 16;/** El nmero de campos de flujo que se conservan */
+
+	public static void main(String[] argv) throws IOException {
+		if (argv.length < 2) {
+			System.out.println("Uso: BancoBuscadores mapa.map escenario.scen [buscadores] [repeticiones] [maxConsultas]");
+			System.out.println("Buscadores: " + String.join(",", buscadores().keySet()));
+			return;
+		}
+		MapaMovingAI mapa = MapaMovingAI.cargar(argv[0]);
+		int maxConsultas = argv.length > 4 ? Integer.parseInt(argv[4]) : 0;
+		EscenarioMovingAI escenario = EscenarioMovingAI.cargar(argv[1], maxConsultas);
+		int repeticiones = argv.length > 3 ? Integer.parseInt(argv[3]) : 5;
+		LinkedHashMap<String, FabricaBuscadorRuta> todos = buscadores();
+		String[] nombres = argv.length > 2 ? argv[2].split(",") : todos.keySet().toArray(new String[0]);
+
+		List<Consulta> consultas = escenario.getConsultas();
+		System.out.println("Mapa " + mapa.getAnchoEnBaldosas() + "x" + mapa.getAlturaEnBaldosas() + ", "
+				+ consultas.size() + " consultas, " + repeticiones + " repeticiones");
+		System.out.printf("%-14s %12s %12s %14s %10s %10s%n", "buscador", "consultas/s", "ns/expandido", "bytes/consulta", "distintos", "sin camino");
+		boolean errores = false;
+		for (String nombre : nombres) {
+			FabricaBuscadorRuta fabrica = todos.get(nombre);
+			if (fabrica == null) {
+				System.out.println("Buscador desconocido: " + nombre);
+				errores = true;
+				continue;
+			}
+			BuscadorRuta buscador = fabrica.crear(mapa);
+
+			// La primera pasada calienta el cdigo, comprueba las longitudes y cuenta los nodos 
+			//expandidos por los buscadores trazables; las pasadas medidas van sin traza
+			int distintos = 0;
+			int sinCamino = 0;
+			ContadorExpandidos expandidos = new ContadorExpandidos();
+			if (buscador instanceof BuscadorTrazable) {
+				((BuscadorTrazable) buscador).setTraza(expandidos);
+			}
+			for (int i=0;i<consultas.size();i++) {
+				Consulta c = consultas.get(i);
+				Camino camino = buscador.encontrarCamino(c.getEntidad(), c.getSx(), c.getSy(), c.getTx(), c.getTy());
+				double optimo = escenario.getOptimo(i);
+				if (camino == null) {
+					if (optimo > 0) {
+						sinCamino++;
+					}
+				} else if (Math.abs(longitud(mapa, camino) - optimo) > TOLERANCIA * Math.max(1, optimo)) {
+					distintos++;
+				}
+			}
+			if (buscador instanceof BuscadorTrazable) {
+				((BuscadorTrazable) buscador).setTraza(null);
+			}
+
+			long mejor = Long.MAX_VALUE;
+			long bytes = 0;
+			for (int r=0;r<repeticiones;r++) {
+				long reservados = bytesReservados();
+				long inicio = System.nanoTime();
+				for (Consulta c : consultas) {
+					buscador.encontrarCamino(c.getEntidad(), c.getSx(), c.getSy(), c.getTx(), c.getTy());
+				}
+				long tiempo = System.nanoTime() - inicio;
+				bytes = (reservados < 0) ? -1 : bytesReservados() - reservados;
+				mejor = Math.min(mejor, tiempo);
+			}
+
+			System.out.printf("%-14s %12.1f %12s %14s %10d %10d%n", nombre,
+					consultas.size() / (mejor / 1e9),
+					expandidos.expandidos == 0 ? "-" : String.format("%.1f", (double) mejor / expandidos.expandidos),
+					bytes < 0 ? "-" : String.valueOf(bytes / Math.max(1, consultas.size())),
+					distintos, sinCamino);
+			if (buscador instanceof BuscadorInstrumentable) {
+				HistogramaLatencias latencias = new HistogramaLatencias();
+				((BuscadorInstrumentable) buscador).setOyenteBusqueda(latencias.getOyente(nombre));
+				for (Consulta c : consultas) {
+					buscador.encontrarCamino(c.getEntidad(), c.getSx(), c.getSy(), c.getTx(), c.getTy());
+				}
+				((BuscadorInstrumentable) buscador).setOyenteBusqueda(null);
+				System.out.println("    " + latencias.getHistograma(nombre));
+			}
+			if (esOptimo(nombre) && ((distintos > 0) || (sinCamino > 0))) {
+				errores = true;
+			}
+		}
+		if (errores) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Los buscadores que se pueden medir, por nombre
+	 */
+	private static LinkedHashMap<String, FabricaBuscadorRuta> buscadores() {
+		LinkedHashMap<String, FabricaBuscadorRuta> buscadores = new LinkedHashMap<String, FabricaBuscadorRuta>();
+		buscadores.put("aestrella", (m) -> new AEstrellaBuscadorCamino(m, area(m), true));
+		buscadores.put("bidireccional", (m) -> new AEstrellaBuscadorCamino(m, area(m), true, new HeuristicaCercana(), true));
+		buscadores.put("compilado", (m) -> new AEstrellaBuscadorCamino(new MapaCompilado(m), area(m), true));
+		buscadores.put("alt", (m) -> new AEstrellaBuscadorCamino(m, area(m), true,
+				new HeuristicaPuntosReferencia(m, true, 8, new HeuristicaOctil())));
+		buscadores.put("puntosalto", (m) -> new PuntoSaltoBuscadorCamino(m, area(m), true));
+		buscadores.put("theta", (m) -> new ThetaEstrellaBuscadorCamino(m, area(m), true));
+		buscadores.put("ara", (m) -> new ARAEstrellaBuscadorCamino(m, true, new HeuristicaOctil(), 3, 0.5f, PRESUPUESTO_ARA));
+		buscadores.put("dlite", (m) -> new DEstrellaLiteBuscadorCamino(m, true));
+		buscadores.put("jerarquico", (m) -> new JerarquicoBuscadorCamino(m, 16, true));
+		buscadores.put("cache", (m) -> new CacheBuscadorRuta(new AEstrellaBuscadorCamino(m, area(m), true), m, BYTES_CACHE));
+		buscadores.put("flujo", (m) -> new GestorCamposFlujo(m, true, CAMPOS_FLUJO));
+		return buscadores;
+	}
+
+	/**
+	 * Comprueba si un buscador debe dar siempre la longitud ptima
+	 */
+	private static boolean esOptimo(String nombre) {
+		return !NO_OPTIMOS.contains(nombre);
+	}
+
+	/**
+	 * El nmero de baldosas del mapa, que se usa como profundidad mxima de bsqueda
+	 */
+	private static int area(MapaConBaldosas mapa) {
+		return mapa.getAnchoEnBaldosas() * mapa.getAlturaEnBaldosas();
+	}
+
+	/**
+	 * La longitud de un camino segn los costes del mapa, recorriendo en lnea recta los
+	 * tramos entre puntos no vecinos de los caminos en cualquier ngulo
+	 */
+	private static double longitud(MapaMovingAI mapa, Camino camino) {
+		double total = 0;
+		for (int i=1;i<camino.getLength();i++) {
+			total += LineaVision.getCosto(mapa, null, camino.getX(i - 1), camino.getY(i - 1), camino.getX(i), camino.getY(i), true);
+		}
+		return total;
+	}
+
+	/**
+	 * Los bytes reservados hasta ahora por el hilo actual, o -1 si la mquina virtual no lo mide
+	 */
+	private static long bytesReservados() {
+		java.lang.management.ThreadMXBean hilos = ManagementFactory.getThreadMXBean();
+		if (hilos instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) hilos).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Una traza que slo cuenta los nodos expandidos
+	 */
+	private static class ContadorExpandidos implements TrazaBusqueda {
+
+		private long expandidos;/** El nmero de nodos expandidos, contando las reaperturas */
+
+		public void busquedaIniciada(int sx, int sy, int tx, int ty) {
+		}
+
+		public void nodoExpandido(int x, int y, float costo, float heuristica) {
+			expandidos++;
+		}
+
+		public void baldosaVisitada(int x, int y) {
+		}
+
+		public void busquedaTerminada(Camino camino) {
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package rendimiento;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import util.buscadorcamino.concurrente.ServidorCaminos;
+
+/**
+ * Genera carga contra un ServidorCaminos y mide cuntas consultas por segundo responde y
+ * con qu latencia, desde que se enva cada consulta hasta que llega su respuesta. Cada
+ * conexin tiene un hilo que enva consultas al azar, sin pasar de un nmero de consultas en
+ * vuelo, y otro que lee las respuestas.
+ *
+ * Argumentos opcionales: puerto, consultas por conexin, consultas en vuelo por conexin,
+ * conexiones, entidad (3, el avin de caminoejemplo).
+ */
+public class ClienteCarga {
+
+	public static void main(String[] argv) throws Exception {
+		int puerto = argv.length > 0 ? Integer.parseInt(argv[0]) : 7421;
+		int numConsultas = argv.length > 1 ? Integer.parseInt(argv[1]) : 20000;
+		int enVuelo = argv.length > 2 ? Integer.parseInt(argv[2]) : 256;
+		int numConexiones = argv.length > 3 ? Integer.parseInt(argv[3]) : 1;
+		int entidad = argv.length > 4 ? Integer.parseInt(argv[4]) : 3;
+
+		Conexion[] conexiones = new Conexion[numConexiones];
+		for (int c=0;c<numConexiones;c++) {
+			conexiones[c] = new Conexion(puerto, numConsultas, enVuelo, entidad, c);
+		}
+		System.out.println("Mapa " + conexiones[0].ancho + "x" + conexiones[0].altura + ", " + numConexiones
+				+ " conexiones, " + numConsultas + " consultas por conexin, " + enVuelo + " en vuelo");
+
+		long inicio = System.nanoTime();
+		for (Conexion conexion : conexiones) {
+			conexion.iniciar();
+		}
+		for (Conexion conexion : conexiones) {
+			conexion.esperar();
+		}
+		long total = System.nanoTime() - inicio;
+
+		long[] latencias = new long[numConexiones * numConsultas];
+		int encontrados = 0;
+		int fallidas = 0;
+		for (int c=0;c<numConexiones;c++) {
+			System.arraycopy(conexiones[c].latencias, 0, latencias, c * numConsultas, numConsultas);
+			encontrados += conexiones[c].encontrados;
+			fallidas += conexiones[c].fallidas;
+		}
+		Arrays.sort(latencias);
+		System.out.printf("%10.1f consultas/s  (%d caminos, %d fallidas)%n", latencias.length / (total / 1e9), encontrados, fallidas);
+		System.out.printf("latencia p50 %.3f ms  p99 %.3f ms  p999 %.3f ms  max %.3f ms%n", percentil(latencias, 0.5) / 1e6,
+				percentil(latencias, 0.99) / 1e6, percentil(latencias, 0.999) / 1e6, latencias[latencias.length - 1] / 1e6);
+	}
+
+	/**
+	 * El valor de un percentil de unas medidas ordenadas
+	 */
+	private static long percentil(long[] ordenadas, double p) {
+		return ordenadas[Math.min(ordenadas.length - 1, (int) Math.ceil(p * ordenadas.length) - 1)];
+	}
+
+	/**
+	 * Una conexin con el servidor, con el hilo que enva y el que recibe
+	 */
+	private static class Conexion {
+
+		private Socket socket;/** El socket conectado al servidor */
+		private DataInputStream entrada;/** Las respuestas del servidor */
+		private int ancho;/** El ancho del mapa en baldosas, segn el saludo */
+		private int altura;/** La altura del mapa en baldosas, segn el saludo */
+		private int numConsultas;/** Las consultas que se envan */
+		private int entidad;/** La entidad de todas las consultas */
+		private long semilla;/** La semilla de las consultas al azar */
+		private Semaphore enVuelo;/** Un permiso por cada consulta que se puede enviar sin haber recibido respuesta */
+		private AtomicLongArray envios;/** El instante en que se envi cada consulta, compartido entre los dos hilos */
+		private long[] latencias;/** La latencia de cada consulta */
+		private int encontrados;/** Las respuestas con camino */
+		private int fallidas;/** Las respuestas de consultas fallidas */
+		private Thread emisor;/** El hilo que enva */
+		private Thread receptor;/** El hilo que recibe */
+
+		/**
+		 * Conectar con el servidor y leer su saludo
+		 */
+		private Conexion(int puerto, int numConsultas, int enVuelo, int entidad, long semilla) throws IOException {
+			this.socket = new Socket("localhost", puerto);
+			this.socket.setTcpNoDelay(true);
+			this.entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+			if (entrada.readInt() != ServidorCaminos.MAGIA) {
+				throw new IOException("No es un servidor de caminos");
+			}
+			entrada.readShort();
+			entrada.readShort();
+			this.ancho = entrada.readInt();
+			this.altura = entrada.readInt();
+			this.numConsultas = numConsultas;
+			this.entidad = entidad;
+			this.semilla = semilla;
+			this.enVuelo = new Semaphore(enVuelo);
+			this.envios = new AtomicLongArray(numConsultas);
+			this.latencias = new long[numConsultas];
+		}
+
+		/**
+		 * Arrancar los hilos
+		 */
+		private void iniciar() {
+			emisor = new Thread(this::enviar, "ClienteCarga-emisor");
+			receptor = new Thread(this::recibir, "ClienteCarga-receptor");
+			receptor.start();
+			emisor.start();
+		}
+
+		/**
+		 * Esperar a que lleguen todas las respuestas y cerrar la conexin
+		 */
+		private void esperar() throws InterruptedException, IOException {
+			emisor.join();
+			receptor.join();
+			socket.close();
+		}
+
+		/**
+		 * Enviar las consultas, vaciando el bfer cuando no se pueden enviar ms sin esperar
+		 */
+		private void enviar() {
+			Random azar = new Random(semilla);
+			try {
+				DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+				for (int id=0;id<numConsultas;id++) {
+					if (!enVuelo.tryAcquire()) {
+						salida.flush();
+						enVuelo.acquire();
+					}
+					envios.set(id, System.nanoTime());
+					salida.writeInt(id);
+					salida.writeShort(entidad);
+					salida.writeShort(azar.nextInt(ancho));
+					salida.writeShort(azar.nextInt(altura));
+					salida.writeShort(azar.nextInt(ancho));
+					salida.writeShort(azar.nextInt(altura));
+				}
+				salida.flush();
+				socket.shutdownOutput();
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Recibir las respuestas y medir su latencia
+		 */
+		private void recibir() {
+			try {
+				for (int i=0;i<numConsultas;i++) {
+					int id = entrada.readInt();
+					int pasos = entrada.readInt();
+					latencias[id] = System.nanoTime() - envios.get(id);
+					enVuelo.release();
+					if (pasos > 0) {
+						encontrados++;
+						entrada.skipBytes(4 * pasos);
+					} else if (pasos == ServidorCaminos.CONSULTA_FALLIDA) {
+						fallidas++;
+					}
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package rendimiento;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import util.buscadorcamino.concurrente.Consulta;
+
+/**
+ * Un escenario ledo del formato de texto .scen de MovingAI: una lista de consultas sobre un
+ * mapa, cada una con la longitud de su camino ptimo.
+ */
+public class EscenarioMovingAI {
+
+	private List<Consulta> consultas = new ArrayList<Consulta>();/** Las consultas del escenario, en orden */
+	private List<Double> optimos = new ArrayList<Double>();/** La longitud ptima de cada consulta */
+
+	/**
+	 * Leer un escenario en formato .scen, versin 1
+	 *
+	 * @param ruta La ruta del fichero
+	 * @param maxConsultas El nmero mximo de consultas a leer, o 0 para leerlas todas
+	 * @return El escenario ledo
+	 * @throws IOException Si no se puede leer el fichero o su formato no es vlido
+	 */
+	public static EscenarioMovingAI cargar(String ruta, int maxConsultas) throws IOException {
+		EscenarioMovingAI escenario = new EscenarioMovingAI();
+		try (BufferedReader lector = new BufferedReader(new FileReader(ruta))) {
+			String linea;
+			int numero = 0;
+			while ((linea = lector.readLine()) != null) {
+				numero++;
+				linea = linea.trim();
+				if (linea.isEmpty() || linea.startsWith("version")) {
+					continue;
+				}
+				// cubo, mapa, ancho, altura, x inicio, y inicio, x destino, y destino, longitud ptima
+				String[] partes = linea.split("\\s+");
+				if (partes.length < 9) {
+					throw new IOException("Lnea " + numero + " no vlida en " + ruta);
+				}
+				int n = partes.length;
+				escenario.consultas.add(new Consulta(null,
+						Integer.parseInt(partes[n - 5]), Integer.parseInt(partes[n - 4]),
+						Integer.parseInt(partes[n - 3]), Integer.parseInt(partes[n - 2])));
+				escenario.optimos.add(Double.parseDouble(partes[n - 1]));
+				if (escenario.consultas.size() == maxConsultas) {
+					break;
+				}
+			}
+		}
+		return escenario;
+	}
+
+	/**
+	 * Obtener las consultas del escenario
+	 *
+	 * @return Las consultas, en el orden del fichero
+	 */
+	public List<Consulta> getConsultas() {
+		return consultas;
+	}
+
+	/**
+	 * Obtener la longitud ptima de una consulta
+	 *
+	 * @param indice El ndice de la consulta
+	 * @return La longitud del camino ptimo segn el escenario
+	 */
+	public double getOptimo(int indice) {
+		return optimos.get(indice);
+	}
+}
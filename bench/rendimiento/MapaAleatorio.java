@@ -0,0 +1,66 @@
+package rendimiento;
+
+import java.util.Random;
+
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * Un mapa de pruebas de rendimiento con obstculos repartidos al azar. Todos los
+ * movimientos cuestan 1 y las entidades no influyen en el bloqueo.
+ */
+public class MapaAleatorio implements MapaConBaldosas {
+
+	private int ancho;/** Ancho del mapa en baldosas */
+	private int altura;/** Altura del mapa en baldosas */
+	private boolean[] bloqueado;/** Las baldosas bloqueadas, indexadas por y*ancho+x */
+
+	/**
+	 * Crear un mapa aleatorio
+	 *
+	 * @param ancho Ancho del mapa en baldosas
+	 * @param altura Altura del mapa en baldosas
+	 * @param densidad La proporcin de baldosas bloqueadas, entre 0 y 1
+	 * @param semilla La semilla del generador, para repetir el mismo mapa
+	 */
+	public MapaAleatorio(int ancho, int altura, double densidad, long semilla) {
+		this.ancho = ancho;
+		this.altura = altura;
+		this.bloqueado = new boolean[ancho * altura];
+		Random azar = new Random(semilla);
+		for (int i=0;i<bloqueado.length;i++) {
+			bloqueado[i] = azar.nextDouble() < densidad;
+		}
+	}
+
+	/**
+	 * Buscar una baldosa libre al azar
+	 *
+	 * @param azar El generador a usar
+	 * @return El ndice y*ancho+x de una baldosa libre
+	 */
+	public int baldosaLibre(Random azar) {
+		while (true) {
+			int i = azar.nextInt(bloqueado.length);
+			if (!bloqueado[i]) {
+				return i;
+			}
+		}
+	}
+
+	public int getAnchoEnBaldosas() {
+		return ancho;
+	}
+
+	public int getAlturaEnBaldosas() {
+		return altura;
+	}
+
+	public boolean bloquea(Entidad entidad, int x, int y) {
+		return bloqueado[y * ancho + x];
+	}
+
+	public float getCosto(Entidad entidad, int sx, int sy, int tx, int ty) {
+		return 1;
+	}
+}
@@ -0,0 +1,102 @@
+package rendimiento;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * Un mapa ledo del formato de texto .map de los bancos de pruebas de MovingAI. Las baldosas
+ * '.', 'G' y 'S' son transitables y el resto bloquean. Los movimientos rectos cuestan 1 y los
+ * diagonales raz de 2, y como en los escenarios de MovingAI no se puede cortar una esquina:
+ * un movimiento diagonal junto a una baldosa bloqueada tiene coste infinito, as que ningn
+ * buscador lo toma.
+ */
+public class MapaMovingAI implements MapaConBaldosas {
+
+	private static final float DIAGONAL = (float) Math.sqrt(2);/** El coste de un movimiento diagonal */
+
+	private int ancho;/** Ancho del mapa en baldosas */
+	private int altura;/** Altura del mapa en baldosas */
+	private boolean[] bloqueado;/** Las baldosas bloqueadas, indexadas por y*ancho+x */
+
+	/**
+	 * Crear un mapa
+	 *
+	 * @param ancho Ancho del mapa en baldosas
+	 * @param altura Altura del mapa en baldosas
+	 * @param bloqueado Las baldosas bloqueadas, indexadas por y*ancho+x
+	 */
+	public MapaMovingAI(int ancho, int altura, boolean[] bloqueado) {
+		this.ancho = ancho;
+		this.altura = altura;
+		this.bloqueado = bloqueado;
+	}
+
+	/**
+	 * Leer un mapa en formato .map
+	 *
+	 * @param ruta La ruta del fichero
+	 * @return El mapa ledo
+	 * @throws IOException Si no se puede leer el fichero o su formato no es vlido
+	 */
+	public static MapaMovingAI cargar(String ruta) throws IOException {
+		try (BufferedReader lector = new BufferedReader(new FileReader(ruta))) {
+			int ancho = -1;
+			int altura = -1;
+			String linea;
+			while ((linea = lector.readLine()) != null) {
+				linea = linea.trim();
+				if (linea.equals("map")) {
+					break;
+				}
+				String[] partes = linea.split("\\s+");
+				if (partes[0].equals("height")) {
+					altura = Integer.parseInt(partes[1]);
+				} else if (partes[0].equals("width")) {
+					ancho = Integer.parseInt(partes[1]);
+				}
+			}
+			if ((linea == null) || (ancho <= 0) || (altura <= 0)) {
+				throw new IOException("Cabecera de mapa no vlida en " + ruta);
+			}
+
+			boolean[] bloqueado = new boolean[ancho * altura];
+			for (int y=0;y<altura;y++) {
+				linea = lector.readLine();
+				if ((linea == null) || (linea.length() < ancho)) {
+					throw new IOException("Fila " + y + " incompleta en " + ruta);
+				}
+				for (int x=0;x<ancho;x++) {
+					char c = linea.charAt(x);
+					bloqueado[y * ancho + x] = (c != '.') && (c != 'G') && (c != 'S');
+				}
+			}
+			return new MapaMovingAI(ancho, altura, bloqueado);
+		}
+	}
+
+	public int getAnchoEnBaldosas() {
+		return ancho;
+	}
+
+	public int getAlturaEnBaldosas() {
+		return altura;
+	}
+
+	public boolean bloquea(Entidad entidad, int x, int y) {
+		return bloqueado[y * ancho + x];
+	}
+
+	public float getCosto(Entidad entidad, int sx, int sy, int tx, int ty) {
+		if ((sx == tx) || (sy == ty)) {
+			return 1;
+		}
+		if (bloqueado[sy * ancho + tx] || bloqueado[ty * ancho + sx]) {// No se cortan esquinas
+			return Float.POSITIVE_INFINITY;
+		}
+		return DIAGONAL;
+	}
+}
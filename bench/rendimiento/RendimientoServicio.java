@@ -0,0 +1,74 @@
+package rendimiento;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import util.buscadorcamino.AEstrellaBuscadorCamino;
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.concurrente.Consulta;
+import util.buscadorcamino.concurrente.ServicioBuscadorRuta;
+
+/**
+ * Mide cuntas consultas por segundo resuelve el servicio de bsqueda por lotes
+ * segn el nmero de hilos, desde 1 hasta el nmero de procesadores.
+ *
+ * Argumentos opcionales: lado del mapa, nmero de consultas por lote, repeticiones.
+ */
+public class RendimientoServicio {
+
+	public static void main(String[] argv) {
+		int lado = argv.length > 0 ? Integer.parseInt(argv[0]) : 512;
+		int numConsultas = argv.length > 1 ? Integer.parseInt(argv[1]) : 2000;
+		int repeticiones = argv.length > 2 ? Integer.parseInt(argv[2]) : 5;
+
+		MapaAleatorio mapa = new MapaAleatorio(lado, lado, 0.2, 42);
+		Random azar = new Random(7);
+		List<Consulta> consultas = new ArrayList<Consulta>();
+		for (int i=0;i<numConsultas;i++) {
+			int inicio = mapa.baldosaLibre(azar);
+			int destino = mapa.baldosaLibre(azar);
+			consultas.add(new Consulta(null, inicio % lado, inicio / lado, destino % lado, destino / lado));
+		}
+
+		System.out.println("Mapa " + lado + "x" + lado + ", " + numConsultas + " consultas por lote");
+		double base = 0;
+		int procesadores = Runtime.getRuntime().availableProcessors();
+		for (int hilos=1;hilos<=procesadores;hilos=siguiente(hilos, procesadores)) {
+			ServicioBuscadorRuta servicio = new ServicioBuscadorRuta(mapa,
+					(m) -> new AEstrellaBuscadorCamino(m, lado * lado, true), hilos);
+			servicio.encontrarCaminos(consultas);// calentamiento
+
+			long mejor = Long.MAX_VALUE;
+			int encontrados = 0;
+			for (int r=0;r<repeticiones;r++) {
+				long inicio = System.nanoTime();
+				List<Camino> caminos = servicio.encontrarCaminos(consultas);
+				mejor = Math.min(mejor, System.nanoTime() - inicio);
+				encontrados = 0;
+				for (Camino camino : caminos) {
+					if (camino != null) {
+						encontrados++;
+					}
+				}
+			}
+			servicio.cerrar();
+
+			double porSegundo = numConsultas / (mejor / 1e9);
+			if (hilos == 1) {
+				base = porSegundo;
+			}
+			System.out.printf("%3d hilos: %10.1f consultas/s  x%.2f  (%d caminos)%n", hilos, porSegundo, porSegundo / base, encontrados);
+		}
+	}
+
+	/**
+	 * El siguiente nmero de hilos a medir: se dobla hasta llegar al nmero de procesadores
+	 */
+	private static int siguiente(int hilos, int procesadores) {
+		if (hilos == procesadores) {
+			return procesadores + 1;
+		}
+		return Math.min(hilos * 2, procesadores);
+	}
+}
@@ -0,0 +1,240 @@
+package caminoejemplo;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntBinaryOperator;
+
+import javax.imageio.ImageIO;
+
+/**
+ * El formato binario de los archivos de mapa y los conversores que los escriben. Un archivo
+ * tiene una cabecera y dos capas, el terreno y los agentes, comprimidas por filas con
+ * codificacin de longitud de racha:
+ *
+ * <pre>
+ * int   MAGIA            'MAPA'
+ * short VERSION
+ * short 0                reservado
+ * int   ancho, altura    en baldosas
+ * int   CAPAS
+ * long  capa[CAPAS]      posicin de la tabla de filas de cada capa
+ *
+ * tabla de filas:  long fila[altura]   posicin de cada fila, en orden creciente
+ * fila:            int n, int fin[n], byte valor[n]
+ * </pre>
+ *
+ * Cada racha acaba en la columna fin, exclusiva, y cubre desde el fin de la anterior; los fines
+ * crecen, as que una baldosa se encuentra con una bsqueda binaria en su fila sin descomprimir
+ * nada. Los nmeros van en orden big-endian. MapaMapeado lee estos archivos.
+ *
+ * @see MapaMapeado
+ */
+public class ArchivoMapa {
+
+	public static final int MAGIA = 0x4D415041;/** Los cuatro primeros bytes de un archivo de mapa, 'MAPA' */
+	public static final short VERSION = 1;/** La versin del formato que se escribe */
+	public static final int CAPAS = 2;/** El nmero de capas del formato */
+	public static final int TERRENO = 0;/** La capa del tipo de terreno de cada baldosa */
+	public static final int AGENTES = 1;/** La capa del agente de cada baldosa, 0 si no hay */
+	static final int TAMANO_CABECERA = 20 + 8 * CAPAS;/** Los bytes de la cabecera */
+
+	private static final int TAMANO_BALDOSA = 16;/** El lado en pxeles de las baldosas de las imgenes de mapa */
+
+	/**
+	 * Guardar un mapa en memoria
+	 *
+	 * @param mapa El mapa a guardar
+	 * @param archivo El archivo a escribir, que se sustituye si existe
+	 * @throws IOException Indica que no se ha podido escribir el archivo
+	 */
+	public static void guardar(Mapa mapa, Path archivo) throws IOException {
+		guardar(archivo, mapa.getAnchoEnBaldosas(), mapa.getAlturaEnBaldosas(), mapa::getTerreno, mapa::getAgente);
+	}
+
+	/**
+	 * Guardar un mapa dado por el valor de cada baldosa en cada capa
+	 *
+	 * @param archivo El archivo a escribir, que se sustituye si existe
+	 * @param ancho El ancho del mapa en baldosas
+	 * @param altura La altura del mapa en baldosas
+	 * @param terreno El tipo de terreno de la baldosa (x, y), entre 0 y 255
+	 * @param agentes El agente de la baldosa (x, y), 0 si no hay, entre 0 y 255
+	 * @throws IOException Indica que no se ha podido escribir el archivo
+	 */
+	public static void guardar(Path archivo, int ancho, int altura, IntBinaryOperator terreno, IntBinaryOperator agentes) throws IOException {
+		IntBinaryOperator[] capas = {terreno, agentes};
+		long[][] filas = new long[CAPAS][altura];
+		long[] tablas = new long[CAPAS];
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 16));
+			salida.writeInt(MAGIA);
+			salida.writeShort(VERSION);
+			salida.writeShort(0);
+			salida.writeInt(ancho);
+			salida.writeInt(altura);
+			salida.writeInt(CAPAS);
+			long posicion = TAMANO_CABECERA;
+			for (int c=0;c<CAPAS;c++) {
+				tablas[c] = posicion;
+				posicion += 8L * altura;
+			}
+			for (int i=0;i<CAPAS * altura + CAPAS;i++) {// Las posiciones se escriben al final, cuando se conocen
+				salida.writeLong(0);
+			}
+			int[] fines = new int[ancho];
+			int[] valores = new int[ancho];
+			for (int c=0;c<CAPAS;c++) {
+				for (int y=0;y<altura;y++) {
+					filas[c][y] = posicion;
+					posicion += escribirFila(salida, capas[c], ancho, y, fines, valores);
+				}
+			}
+			salida.flush();
+
+			ByteBuffer tabla = ByteBuffer.allocate(8 * Math.max(CAPAS, altura));
+			for (int c=0;c<CAPAS;c++) {
+				tabla.putLong(tablas[c]);
+			}
+			tabla.flip();
+			canal.write(tabla, TAMANO_CABECERA - 8 * CAPAS);
+			for (int c=0;c<CAPAS;c++) {
+				tabla.clear();
+				for (int y=0;y<altura;y++) {
+					tabla.putLong(filas[c][y]);
+				}
+				tabla.flip();
+				canal.write(tabla, tablas[c]);
+			}
+		}
+	}
+
+	/**
+	 * Convertir una imagen de mapa, hecha con baldosas de 16 pxeles como las de res/, en un
+	 * archivo de mapa. Cada baldosa se compara con el terreno solo y con cada unidad sobre cada
+	 * terreno, dibujada en su esquina como en Prueba, y se queda con el ms parecido.
+	 *
+	 * @param imagen La imagen del mapa, cuyo lado es mltiplo de 16
+	 * @param imagenes Las imgenes del terreno y las unidades, indexadas por su tipo en Mapa
+	 * @param archivo El archivo a escribir, que se sustituye si existe
+	 * @throws IOException Indica que no se ha podido escribir el archivo
+	 */
+	public static void convertirImagen(BufferedImage imagen, BufferedImage[] imagenes, Path archivo) throws IOException {
+		int ancho = imagen.getWidth() / TAMANO_BALDOSA;
+		int altura = imagen.getHeight() / TAMANO_BALDOSA;
+		int[] terrenos = {Mapa.CESPED, Mapa.AGUA, Mapa.ARBOLES};
+		int[] unidades = {0, Mapa.AVION, Mapa.BARCO, Mapa.TANQUE};
+
+		// Las baldosas de referencia: cada terreno, solo o con cada unidad encima
+		int[][] referencias = new int[terrenos.length * unidades.length][];
+		for (int t=0;t<terrenos.length;t++) {
+			for (int u=0;u<unidades.length;u++) {
+				BufferedImage baldosa = new BufferedImage(TAMANO_BALDOSA, TAMANO_BALDOSA, BufferedImage.TYPE_INT_RGB);
+				Graphics g = baldosa.getGraphics();
+				g.drawImage(imagenes[terrenos[t]], 0, 0, null);
+				if (unidades[u] != 0) {
+					g.drawImage(imagenes[unidades[u]], 0, 0, null);
+				}
+				g.dispose();
+				referencias[t * unidades.length + u] = baldosa.getRGB(0, 0, TAMANO_BALDOSA, TAMANO_BALDOSA, null, 0, TAMANO_BALDOSA);
+			}
+		}
+
+		byte[] terreno = new byte[ancho * altura];
+		byte[] agentes = new byte[ancho * altura];
+		int[] pixeles = new int[TAMANO_BALDOSA * TAMANO_BALDOSA];
+		for (int y=0;y<altura;y++) {
+			for (int x=0;x<ancho;x++) {
+				imagen.getRGB(x * TAMANO_BALDOSA, y * TAMANO_BALDOSA, TAMANO_BALDOSA, TAMANO_BALDOSA, pixeles, 0, TAMANO_BALDOSA);
+				int mejor = 0;
+				long menorDiferencia = Long.MAX_VALUE;
+				for (int r=0;r<referencias.length;r++) {
+					long diferencia = diferencia(pixeles, referencias[r], menorDiferencia);
+					if (diferencia < menorDiferencia) {
+						menorDiferencia = diferencia;
+						mejor = r;
+					}
+				}
+				terreno[y * ancho + x] = (byte) terrenos[mejor / unidades.length];
+				agentes[y * ancho + x] = (byte) unidades[mejor % unidades.length];
+			}
+		}
+		guardar(archivo, ancho, altura, (x, y) -> terreno[y * ancho + x], (x, y) -> agentes[y * ancho + x]);
+	}
+
+	/**
+	 * Convertir un mapa a archivo. Con un argumento guarda el mapa de ejemplo; con dos,
+	 * convierte una imagen de mapa usando las baldosas de res/.
+	 *
+	 * @param argv [imagen] archivo
+	 * @throws IOException Indica que no se ha podido leer o escribir algn archivo
+	 */
+	public static void main(String[] argv) throws IOException {
+		if (argv.length == 1) {
+			guardar(new Mapa(), Paths.get(argv[0]));
+		} else if (argv.length == 2) {
+			BufferedImage[] imagenes = new BufferedImage[6];
+			imagenes[Mapa.ARBOLES] = ImageIO.read(new File("res/arboles.png"));
+			imagenes[Mapa.CESPED]  = ImageIO.read(new File("res/cesped.png"));
+			imagenes[Mapa.AGUA]    = ImageIO.read(new File("res/agua.png"));
+			imagenes[Mapa.TANQUE]  = ImageIO.read(new File("res/tanque.png"));
+			imagenes[Mapa.AVION]   = ImageIO.read(new File("res/avion.png"));
+			imagenes[Mapa.BARCO]   = ImageIO.read(new File("res/barco.png"));
+			convertirImagen(ImageIO.read(new File(argv[0])), imagenes, Paths.get(argv[1]));
+		} else {
+			System.err.println("Uso: ArchivoMapa [imagen.png] salida.mapa");
+		}
+	}
+
+	/**
+	 * Escribir una fila de una capa con codificacin de longitud de racha
+	 *
+	 * @param fines Un vector de al menos ancho posiciones para las rachas de la fila
+	 * @param valores Un vector de al menos ancho posiciones para los valores de las rachas
+	 * @return El nmero de bytes escritos
+	 */
+	private static int escribirFila(DataOutputStream salida, IntBinaryOperator capa, int ancho, int y,
+									int[] fines, int[] valores) throws IOException {
+		int rachas = 0;
+		for (int x=0;x<ancho;x++) {
+			int valor = capa.applyAsInt(x, y);
+			if ((rachas > 0) && (valores[rachas - 1] == valor)) {
+				fines[rachas - 1] = x + 1;
+			} else {
+				fines[rachas] = x + 1;
+				valores[rachas++] = valor;
+			}
+		}
+		salida.writeInt(rachas);
+		for (int r=0;r<rachas;r++) {
+			salida.writeInt(fines[r]);
+		}
+		for (int r=0;r<rachas;r++) {
+			salida.writeByte(valores[r]);
+		}
+		return 4 + 5 * rachas;
+	}
+
+	/**
+	 * La suma de las diferencias de color entre dos baldosas, dejando de sumar al pasar un lmite
+	 */
+	private static long diferencia(int[] a, int[] b, long limite) {
+		long suma = 0;
+		for (int i=0;(i<a.length) && (suma < limite);i++) {
+			suma += Math.abs(((a[i] >> 16) & 0xFF) - ((b[i] >> 16) & 0xFF))
+				  + Math.abs(((a[i] >> 8) & 0xFF) - ((b[i] >> 8) & 0xFF))
+				  + Math.abs((a[i] & 0xFF) - (b[i] & 0xFF));
+		}
+		return suma;
+	}
+}
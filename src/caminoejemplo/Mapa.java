@@ -1,8 +1,12 @@
 package caminoejemplo;
 
+import java.util.ArrayList;
+
 import util.buscadorcamino.Entidad;
 import util.buscadorcamino.MapaConBaldosas;
-import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaCostoUniforme;
+import util.buscadorcamino.MapaObservable;
+import util.buscadorcamino.OyenteMapa;
 
 /**
  * El mapa de nuestro juego. Contiene la configuracion de cada baldosa en . 
@@ -10,7 +14,7 @@ import util.buscadorcamino.Entidad;
  * los mtodos relacionados con el buscador de rutas, agregando manejo especfico 
  * para los tipos de unidades y el terreno en el juego de ejemplo.
  */
-public class Mapa implements MapaConBaldosas {
+public class Mapa implements MapaCostoUniforme, MapaObservable {
 	
 	public static final int ANCHO = 30;/** Ancho del mapa en baldosas */
 	public static final int ALTURA = 30;/** Altura del mapa en baldosas */
@@ -22,7 +26,7 @@ public class Mapa implements MapaConBaldosas {
 	public static final int TANQUE = 5;
 	private int[][] terreno = new int[ANCHO][ALTURA];/** Configuracion del terreno para cada una de sus baldosas */
 	private int[][] agentes = new int[ANCHO][ALTURA];/** Los lugares donde estan los agentes */
-	private boolean[][] visitado = new boolean[ANCHO][ALTURA];/** Indica las baldosas que han sido visitadas en la busqueda de la ruta */
+	private ArrayList<OyenteMapa> oyentes = new ArrayList<>();/** Los objetos a los que se avisa cuando cambia una baldosa */
 	
 	
 	public Mapa() {/**Crea un mapa con algunas configuraciones por defecto*/
@@ -60,18 +64,6 @@ public class Mapa implements MapaConBaldosas {
 		}
 	}
 	
-	public void limpiarVisitados() {/**Limpia la matriz en la que se llenan los espacios que han sido visitados en la busca de una ruta*/
-		for (int x=0;x<getAnchoEnBaldosas();x++) {
-			for (int y=0;y<getAlturaEnBaldosas();y++) {
-				visitado[x][y] = false;
-			}
-		}
-	}
-	
-	public boolean visitado(int x, int y) {
-		return visitado[x][y];
-	}
-
 	public int getTerreno(int x, int y) {
 		return terreno[x][y];
 	}
@@ -82,21 +74,39 @@ public class Mapa implements MapaConBaldosas {
 	
 	public void setAgente(int x, int y, int unit) {
 		agentes[x][y] = unit;
+		for (int i=0;i<oyentes.size();i++) {
+			oyentes.get(i).baldosaCambiada(x, y);
+		}
+	}
+	
+	public void agregarOyente(OyenteMapa oyente) {
+		oyentes.add(oyente);
+	}
+	
+	public void eliminarOyente(OyenteMapa oyente) {
+		oyentes.remove(oyente);
 	}
 	
 	public boolean bloquea(Entidad entidad, int x, int y) {// Bloquea los movimientos dependiendo de que sea
 		if (getAgente(x,y) != 0) {
 			return true;
 		}
-		int unidad = ((UnidadEntidad) entidad).getTipo();
+		return bloqueaTerreno(entidad, x, y);
+	}
+	
+	public boolean bloqueaTerreno(Entidad entidad, int x, int y) {// Bloquea slo por el tipo de terreno, sin mirar a las dems unidades
+		return bloqueaTerreno(((UnidadEntidad) entidad).getTipo(), terreno[x][y]);
+	}
+	
+	static boolean bloqueaTerreno(int unidad, int terreno) {// Las reglas de movimiento de cada tipo de unidad, compartidas con MapaMapeado
 		if (unidad == AVION) {// Los aviones pueden moverse a donde sea
 			return false;
 		}
 		if (unidad == TANQUE) {// Los tanques solo pueden moverse en el pasto
-			return terreno[x][y] != CESPED;
+			return terreno != CESPED;
 		}	
 		if (unidad == BARCO) {// Los barcos solo pueden moverse en el agua
-			return terreno[x][y] != AGUA;
+			return terreno != AGUA;
 		}
 		return true;
 	}
@@ -104,6 +114,10 @@ public class Mapa implements MapaConBaldosas {
 	public float getCosto(Entidad entidad, int sx, int sy, int tx, int ty) {
 		return 1;
 	}
+	
+	public boolean esCostoUniforme(Entidad entidad) {// Todos los movimientos cuestan 1
+		return true;
+	}
 
 	public int getAlturaEnBaldosas() {
 		return ALTURA;
@@ -113,8 +127,30 @@ public class Mapa implements MapaConBaldosas {
 		return ANCHO;
 	}
 
-	public void buscadorRutaVisitado(int x, int y) {
-		visitado[x][y] = true;
+	/**
+	 * Obtener una vista del mapa en la que las unidades no bloquean, para el planificador
+	 * cooperativo, que evita a las unidades con sus reservas
+	 *
+	 * @return El mapa visto slo por su terreno
+	 */
+	public MapaConBaldosas getMapaTerreno() {
+		return new MapaConBaldosas() {
+			public int getAnchoEnBaldosas() {
+				return ANCHO;
+			}
+
+			public int getAlturaEnBaldosas() {
+				return ALTURA;
+			}
+
+			public boolean bloquea(Entidad entidad, int x, int y) {
+				return bloqueaTerreno(entidad, x, y);
+			}
+
+			public float getCosto(Entidad entidad, int sx, int sy, int tx, int ty) {
+				return 1;
+			}
+		};
 	}
 	
 	
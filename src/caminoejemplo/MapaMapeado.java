@@ -0,0 +1,200 @@
+package caminoejemplo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaCostoUniforme;
+
+/**
+ * Un mapa de solo lectura que lee un archivo de mapa directamente de memoria mapeada, sin
+ * copiar las capas a matrices: abrir un mapa enorme slo cuesta leer la cabecera y comprobar
+ * las tablas de filas, y las pginas de las filas se cargan cuando una bsqueda las toca.
+ * Cada consulta busca la baldosa en su fila comprimida con una bsqueda binaria.
+ *
+ * Cada fila se comprueba la primera vez que se lee, y una fila daada lanza una
+ * UncheckedIOException; verificar comprueba todas las filas de una vez.
+ *
+ * Se mueve igual que Mapa. Se puede compartir entre varios hilos, y el archivo no debe
+ * cambiar mientras est abierto. Los archivos deben ser menores de 2 GB.
+ *
+ * @see ArchivoMapa
+ */
+public class MapaMapeado implements MapaCostoUniforme {
+
+	private static final int TAMANO_FILA_MINIMO = 4 + 4 + 1;/** Los bytes de una fila de una sola racha */
+
+	private Path archivo;/** El archivo abierto, para los mensajes de error */
+	private MappedByteBuffer datos;/** El archivo mapeado en memoria */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private long[] tablas = new long[ArchivoMapa.CAPAS];/** La posicin de la tabla de filas de cada capa */
+	private boolean[][] comprobadas;/** Las filas ya comprobadas de cada capa */
+
+	/**
+	 * Abrir un archivo de mapa
+	 *
+	 * @param archivo El archivo, escrito por ArchivoMapa
+	 * @throws IOException Indica que no se ha podido leer el archivo o que no es un mapa vlido
+	 */
+	public MapaMapeado(Path archivo) throws IOException {
+		this.archivo = archivo;
+		try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+			if (canal.size() < ArchivoMapa.TAMANO_CABECERA) {
+				throw new IOException("No es un archivo de mapa: " + archivo);
+			}
+			if (canal.size() > Integer.MAX_VALUE) {
+				throw new IOException("Archivo de mapa demasiado grande: " + archivo);
+			}
+			datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+		}
+		if (datos.getInt(0) != ArchivoMapa.MAGIA) {
+			throw new IOException("No es un archivo de mapa: " + archivo);
+		}
+		short version = datos.getShort(4);
+		if ((version < 1) || (version > ArchivoMapa.VERSION)) {
+			throw new IOException("Versin de mapa no soportada: " + version);
+		}
+		ancho = datos.getInt(8);
+		altura = datos.getInt(12);
+		if ((ancho <= 0) || (altura <= 0)) {
+			throw new IOException("Tamao de mapa no vlido en " + archivo + ": " + ancho + "x" + altura);
+		}
+		if (datos.getInt(16) < ArchivoMapa.CAPAS) {
+			throw new IOException("Faltan capas en el mapa: " + archivo);
+		}
+		// Slo se leen las tablas, que son contiguas; las filas se comprueban al leerlas
+		long longitud = datos.capacity();
+		for (int c=0;c<tablas.length;c++) {
+			tablas[c] = datos.getLong(20 + 8 * c);
+			if ((tablas[c] < ArchivoMapa.TAMANO_CABECERA) || (tablas[c] + 8L * altura > longitud)) {
+				throw new IOException("Mapa daado: " + archivo + ", la tabla de filas de la capa " + c + " est fuera del archivo");
+			}
+			long anterior = ArchivoMapa.TAMANO_CABECERA - TAMANO_FILA_MINIMO;
+			for (int y=0;y<altura;y++) {
+				long fila = datos.getLong((int) (tablas[c] + 8L * y));
+				if ((fila < anterior + TAMANO_FILA_MINIMO) || (fila + TAMANO_FILA_MINIMO > longitud)) {
+					throw new IOException("Mapa daado: " + archivo + ", la fila " + y + " de la capa " + c
+							+ " est fuera del archivo o desordenada");
+				}
+				anterior = fila;
+			}
+		}
+		comprobadas = new boolean[ArchivoMapa.CAPAS][altura];
+	}
+
+	/**
+	 * Comprobar ahora todas las filas que an no se han ledo, en lugar de al leerlas. Lee
+	 * todo el archivo.
+	 *
+	 * @throws IOException Indica que alguna fila est daada
+	 */
+	public void verificar() throws IOException {
+		for (int c=0;c<ArchivoMapa.CAPAS;c++) {
+			for (int y=0;y<altura;y++) {
+				if (!comprobadas[c][y]) {
+					comprobarFila(c, y, (int) datos.getLong((int) (tablas[c] + 8L * y)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Comprobar que una fila comprimida cabe en el archivo y que sus rachas cubren la fila
+	 * entera en orden, para que la bsqueda binaria de getValor no se salga de la fila
+	 *
+	 * @param capa La capa de la fila
+	 * @param y La fila
+	 * @param fila La posicin de la fila, ya comprobada contra la longitud del archivo al abrirlo
+	 * @throws IOException Indica que la fila se sale del archivo o que sus rachas no son vlidas
+	 */
+	private void comprobarFila(int capa, int y, int fila) throws IOException {
+		int rachas = datos.getInt(fila);
+		if ((rachas < 1) || (rachas > ancho)) {
+			throw new IOException("Mapa daado: " + archivo + ", la fila " + y + " de la capa " + capa + " tiene " + rachas + " rachas");
+		}
+		if (fila + 4 + 5L * rachas > datos.capacity()) {
+			throw new IOException("Mapa daado: " + archivo + ", la fila " + y + " de la capa " + capa + " est incompleta");
+		}
+		int fin = 0;
+		for (int i=0;i<rachas;i++) {
+			int siguiente = datos.getInt(fila + 4 + 4 * i);
+			if ((siguiente <= fin) || (siguiente > ancho)) {
+				throw new IOException("Mapa daado: " + archivo + ", la fila " + y + " de la capa " + capa + " tiene rachas desordenadas");
+			}
+			fin = siguiente;
+		}
+		if (fin != ancho) {
+			throw new IOException("Mapa daado: " + archivo + ", la fila " + y + " de la capa " + capa + " no llega al final");
+		}
+		comprobadas[capa][y] = true;
+	}
+
+	/**
+	 * Obtener el valor de una baldosa en una capa
+	 *
+	 * @param capa ArchivoMapa.TERRENO o ArchivoMapa.AGENTES
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return El valor de la baldosa
+	 * @throws UncheckedIOException Indica que la fila de la baldosa est daada
+	 */
+	public int getValor(int capa, int x, int y) {
+		int fila = (int) datos.getLong((int) (tablas[capa] + 8L * y));
+		if (!comprobadas[capa][y]) {// Dos hilos pueden comprobar a la vez la misma fila, sin ms efecto
+			try {
+				comprobarFila(capa, y, fila);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		int rachas = datos.getInt(fila);
+		int fines = fila + 4;
+		int bajo = 0;
+		int alto = rachas - 1;
+		while (bajo < alto) {// La primera racha que acaba despus de x
+			int medio = (bajo + alto) >>> 1;
+			if (datos.getInt(fines + 4 * medio) <= x) {
+				bajo = medio + 1;
+			} else {
+				alto = medio;
+			}
+		}
+		return datos.get(fines + 4 * rachas + bajo) & 0xFF;
+	}
+
+	public int getTerreno(int x, int y) {
+		return getValor(ArchivoMapa.TERRENO, x, y);
+	}
+
+	public int getAgente(int x, int y) {
+		return getValor(ArchivoMapa.AGENTES, x, y);
+	}
+
+	public boolean bloquea(Entidad entidad, int x, int y) {// Como en Mapa, los agentes y el terreno bloquean
+		if (getAgente(x, y) != 0) {
+			return true;
+		}
+		return Mapa.bloqueaTerreno(((UnidadEntidad) entidad).getTipo(), getTerreno(x, y));
+	}
+
+	public float getCosto(Entidad entidad, int sx, int sy, int tx, int ty) {
+		return 1;
+	}
+
+	public boolean esCostoUniforme(Entidad entidad) {// Todos los movimientos cuestan 1
+		return true;
+	}
+
+	public int getAlturaEnBaldosas() {
+		return altura;
+	}
+
+	public int getAnchoEnBaldosas() {
+		return ancho;
+	}
+}
@@ -1,36 +1,43 @@
 package caminoejemplo;
 
-import java.awt.Color;
-import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.awt.image.BufferedImage;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
 
 import javax.imageio.ImageIO;
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import util.buscadorcamino.AEstrellaBuscadorCamino;
 import util.buscadorcamino.BuscadorRuta;
 import util.buscadorcamino.Camino;
+import util.buscadorcamino.ComponentesConexas;
+import util.buscadorcamino.concurrente.BuscadorAsincrono;
 
 public class Prueba extends JFrame {
 	
+	private static final long RETARDO_RATON = 20;/** Los milisegundos que el ratn debe quedarse en una baldosa antes de buscar hasta ella */
+	
 	private Mapa mapa= new Mapa();
 	private BuscadorRuta buscador;
+	private ComponentesConexas componentes;/** Las componentes del terreno, para descartar destinos inalcanzables sin buscar */
+	private BuscadorAsincrono buscadorRaton;/** Busca el camino hasta el ratn fuera del hilo de eventos, slo el ltimo */
+	private CompletableFuture<Camino> futuroRaton;/** El camino hasta el ratn que se est esperando, o null */
 	private Camino camino;/** La ltima ruta encontrada para ale agente actual */
 	private Image[] imagenes = new Image[6];/** La lista de imgenes que se representan en el mapa */
-	private Image buffer;/** El bfer fuera de pantalla usado para renderizar el Java 2D */
+	private RenderizadorMapa vista;/** El lienzo en el que se dibuja el mapa, slo lo que cambia */
 	private int seleccionadox = -1;/** La coordenada x de la unidad seleccionada o -1 si no se ha seleccionado ninguna */
 	private int seleccionadoy = -1;/** La coordenada y de la unidad seleccionada o -1 si no se ha seleccionado ninguna */
-	private int ultimoEncontradoX = -1;/** La coordenada x del objetivo de la ltima ruta que buscamos - Utilizado para almacenar en cach y evitar volver a buscar innecesariamente*/
-	private int ultimoEncontradoY = -1;/** La coordenada y del objetivo de la ltima ruta que buscamos - Utilizado para almacenar en cach y evitar volver a buscar innecesariamente*/
 	
 	public Prueba() {
 		super("Juego introduccion a la inteligencia artificial");
@@ -47,14 +54,30 @@ public class Prueba extends JFrame {
 			System.exit(0);
 		}
 		
-		buscador = new AEstrellaBuscadorCamino(mapa, 500, true);
+		// Un tanque no llega al otro lado del agua: las componentes del terreno lo saben sin
+		// tener que recorrer todo el csped alcanzable
+		componentes = new ComponentesConexas(mapa.getMapaTerreno(), true);
+		mapa.agregarOyente(componentes);
+		AEstrellaBuscadorCamino aEstrella = new AEstrellaBuscadorCamino(mapa, 500, true);
+		aEstrella.setComponentes(componentes);
+		buscador = aEstrella;
+		buscadorRaton = new BuscadorAsincrono(mapa, 500, true, 1, RETARDO_RATON);
+		
+		vista = new RenderizadorMapa(mapa, imagenes, 600, 600, 50);
+		add(vista);
 		
-		addMouseListener(new MouseAdapter() {
+		new Timer(16, new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				vista.renderizar();
+			}
+		}).start();
+		
+		vista.addMouseListener(new MouseAdapter() {
 			public void mousePressed(MouseEvent e) {
 				hizoClick(e.getX(), e.getY());
 			}
 		});
-		addMouseMotionListener(new MouseMotionListener() {
+		vista.addMouseMotionListener(new MouseMotionListener() {
 			public void mouseDragged(MouseEvent e) {
 			}
 
@@ -68,8 +91,8 @@ public class Prueba extends JFrame {
 			}
 		});
 		
-		setSize(600,600);
 		setResizable(false);
+		pack();
 		setVisible(true);
 	}
 	
@@ -93,26 +116,38 @@ public class Prueba extends JFrame {
 	 * Cuando se mueve el raton. En este caso queremos encontrar un camino desde 
 	 * la unidad seleccionada hasta la posicin en que el ratn esta.
 	 * 
-	 * @param x La coordenada x del cursor del ratn en la pantalla
-	 * @param y La coordenada y del cursor del ratn en la pantalla
+	 * @param x La coordenada x del cursor del ratn en el lienzo
+	 * @param y La coordenada y del cursor del ratn en el lienzo
 	 */
 	private void movioRaton(int x, int y) {
-		x -= 50;
-		y -= 50;
-		x /= 16;
-		y /= 16;
+		x = vista.getBaldosaX(x);
+		y = vista.getBaldosaY(y);
 		
 		if ((x < 0) || (y < 0) || (x >= mapa.getAnchoEnBaldosas()) || (y >= mapa.getAlturaEnBaldosas())) {
 			return;
 		}
 		
 		if (seleccionadox != -1) {
-			if ((ultimoEncontradoX != x) || (ultimoEncontradoY != y)) {
-				ultimoEncontradoX = x;
-				ultimoEncontradoY = y;
-				camino = buscador.encontrarCamino(new UnidadEntidad(mapa.getAgente(seleccionadox, seleccionadoy)), 
-									   seleccionadox, seleccionadoy, x, y);
-				repaint(0);
+			UnidadEntidad unidad = new UnidadEntidad(mapa.getAgente(seleccionadox, seleccionadoy));
+			if (!componentes.conectadas(unidad, seleccionadox, seleccionadoy, x, y)) {// No hace falta buscar
+				buscadorRaton.cancelar(this);
+				futuroRaton = null;
+				camino = null;
+				vista.setCamino(null);
+				return;
+			}
+			
+			// La bsqueda se hace en otro hilo y cancela la anterior si an no haba terminado;
+			// la misma baldosa devuelve el mismo futuro, as que no se vuelve a buscar
+			CompletableFuture<Camino> futuro = buscadorRaton.solicitar(this, unidad, seleccionadox, seleccionadoy, x, y);
+			if (futuro != futuroRaton) {
+				futuroRaton = futuro;
+				futuro.thenAcceptAsync((encontrado) -> {
+					if (futuro == futuroRaton) {// Si no, ya se ha pedido otro camino
+						camino = encontrado;
+						vista.setCamino(camino);
+					}
+				}, SwingUtilities::invokeLater);
 			}
 		}
 	}
@@ -124,26 +159,24 @@ public class Prueba extends JFrame {
 	 * De lo contrario, mover la unidad seleccionada a la nueva meta (suponiendo que haba una ruta 
 	 * de acceso encontrada)
 	 * 
-	 * @param x La coordenada x del cursor del ratn en la pantalla
-	 * @param y La coordenada y del cursor del ratn en la pantalla
+	 * @param x La coordenada x del cursor del ratn en el lienzo
+	 * @param y La coordenada y del cursor del ratn en el lienzo
 	 */
 	private void hizoClick(int x, int y) {
-		x -= 50;
-		y -= 50;
-		x /= 16;
-		y /= 16;
+		x = vista.getBaldosaX(x);
+		y = vista.getBaldosaY(y);
 		
 		if ((x < 0) || (y < 0) || (x >= mapa.getAnchoEnBaldosas()) || (y >= mapa.getAlturaEnBaldosas())) {
 			return;
 		}
 		
+		buscadorRaton.cancelar(this);
+		futuroRaton = null;
 		if (mapa.getAgente(x, y) != 0) {
 			seleccionadox = x;
 			seleccionadoy = y;
-			ultimoEncontradoX = - 1;
 		} else {
 			if (seleccionadox != -1) {
-				mapa.limpiarVisitados();
 				camino = buscador.encontrarCamino(new UnidadEntidad(mapa.getAgente(seleccionadox, seleccionadoy)), 
 						   			   seleccionadox, seleccionadoy, x, y);
 				
@@ -154,55 +187,12 @@ public class Prueba extends JFrame {
 					mapa.setAgente(x,y,unit);
 					seleccionadox = x;
 					seleccionadoy = y;
-					ultimoEncontradoX = - 1;
-				}
-			}
-		}
-		
-		repaint(0);
-	}
-	
-	/**
-	 * @see java.awt.Container#paint(java.awt.Graphics)
-	 */
-	public void paint(Graphics graphics) {	
-		if (buffer == null) {// Crear un bfer fuera de pantalla para representar el mapa
-			buffer = new BufferedImage(600, 600, BufferedImage.TYPE_INT_ARGB);			
-		}
-		Graphics g = buffer.getGraphics();
-		
-		g.clearRect(0,0,600,600);
-		g.translate(50, 50);
-		
-		// Ciclo a travs de los agentes visuales en el mapa dibujando la imagen 
-		// apropiada para el terreno y unidades donde sea apropiado
-
-		for (int x=0;x<mapa.getAnchoEnBaldosas();x++) {
-			for (int y=0;y<mapa.getAlturaEnBaldosas();y++) {
-				g.drawImage(imagenes[mapa.getTerreno(x, y)],x*16,y*16,null);
-				if (mapa.getAgente(x, y) != 0) {
-					g.drawImage(imagenes[mapa.getAgente(x, y)],x*16,y*16,null);
-				} else {
-					if (camino != null) {
-						if (camino.contains(x, y)) {
-							g.setColor(Color.blue);
-							g.fillRect((x*16)+4, (y*16)+4,7,7);
-						}
-					}	
 				}
 			}
 		}
-
-		if (seleccionadox != -1) {// Si se selecciona una unidad, dibuja una caja alrededor de ella
-			g.setColor(Color.black);
-			g.drawRect(seleccionadox*16, seleccionadoy*16, 15, 15);
-			g.drawRect((seleccionadox*16)-2, (seleccionadoy*16)-2, 19, 19);
-			g.setColor(Color.white);
-			g.drawRect((seleccionadox*16)-1, (seleccionadoy*16)-1, 17, 17);
-		}
 		
-		//Finalmente dibujar el bfer en el contexto grfico real en una accin atmica
-		graphics.drawImage(buffer, 0, 0, null);
+		vista.setCamino(camino);
+		vista.setSeleccion(seleccionadox, seleccionadoy);
 	}
 	
 	public static void main(String[] argv) {
@@ -0,0 +1,308 @@
+package caminoejemplo;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.awt.image.VolatileImage;
+
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.OyenteMapa;
+
+/**
+ * Dibuja el mapa de forma incremental con renderizado activo. El terreno se guarda en una
+ * imagen de la tarjeta grfica y la escena completa, terreno ms unidades ms camino, en otra;
+ * cuando cambia una unidad o el camino slo se vuelven a dibujar esas baldosas en la escena, y
+ * en cada fotograma la escena se copia de una vez al bfer trasero. As el coste de un
+ * fotograma no depende del tamao del mapa, slo de lo que ha cambiado.
+ *
+ * Slo se dibujan las baldosas que caben en el lienzo a partir del origen, que se puede mover
+ * para ver mapas mayores. Se registra como oyente del mapa para enterarse de los cambios, y
+ * cerrar lo da de baja. Hay que llamar a renderizar en el hilo de eventos, por ejemplo desde
+ * un javax.swing.Timer.
+ */
+public class RenderizadorMapa extends Canvas implements OyenteMapa {
+
+	private static final long serialVersionUID = 1L;/** La versin de la forma serializada */
+	private static final int TAMANO_BALDOSA = 16;/** El lado de una baldosa en pxeles */
+	private static final byte LIMPIA = 0;/** Una baldosa que no hay que volver a dibujar */
+	private static final byte ESCENA = 1;/** Una baldosa que hay que volver a dibujar en la escena */
+	private static final byte TERRENO = 2;/** Una baldosa que hay que volver a dibujar tambin en el terreno */
+
+	private Mapa mapa;/** El mapa que se dibuja */
+	private Image[] imagenes;/** Las imgenes del terreno y las unidades, por tipo */
+	private int margen;/** La distancia en pxeles del borde del lienzo al mapa */
+	private int columnas;/** El nmero de baldosas que caben a lo ancho */
+	private int filas;/** El nmero de baldosas que caben a lo alto */
+	private int origenX;/** La coordenada x de la primera baldosa visible */
+	private int origenY;/** La coordenada y de la primera baldosa visible */
+	private VolatileImage terreno;/** El terreno de las baldosas visibles */
+	private VolatileImage escena;/** El terreno, las unidades y el camino de las baldosas visibles */
+	private byte[] sucia;/** Lo que hay que volver a dibujar de cada baldosa visible */
+	private int[] sucias;/** Las baldosas visibles que hay que volver a dibujar */
+	private int numSucias;/** El nmero de baldosas que hay que volver a dibujar */
+	private boolean[] enCamino;/** Es cierto en las baldosas visibles por las que pasa el camino */
+	private Camino camino;/** El camino que se dibuja, o null */
+	private int seleccionadoX = -1;/** La coordenada x de la unidad seleccionada o -1 si no hay ninguna */
+	private int seleccionadoY = -1;/** La coordenada y de la unidad seleccionada o -1 si no hay ninguna */
+
+	/**
+	 * Crear un lienzo para un mapa
+	 *
+	 * @param mapa El mapa que se dibuja
+	 * @param imagenes Las imgenes del terreno y las unidades, indexadas por su tipo en Mapa
+	 * @param ancho El ancho del lienzo en pxeles
+	 * @param altura La altura del lienzo en pxeles
+	 * @param margen La distancia en pxeles del borde del lienzo al mapa
+	 */
+	public RenderizadorMapa(Mapa mapa, Image[] imagenes, int ancho, int altura, int margen) {
+		this.mapa = mapa;
+		this.imagenes = imagenes;
+		this.margen = margen;
+		this.columnas = Math.min(mapa.getAnchoEnBaldosas(), (ancho - 2 * margen) / TAMANO_BALDOSA);
+		this.filas = Math.min(mapa.getAlturaEnBaldosas(), (altura - 2 * margen) / TAMANO_BALDOSA);
+		this.sucia = new byte[columnas * filas];
+		this.sucias = new int[columnas * filas];
+		this.enCamino = new boolean[columnas * filas];
+		setSize(ancho, altura);
+		setIgnoreRepaint(true);
+		mapa.agregarOyente(this);
+		marcarTodo(TERRENO);
+	}
+
+	/**
+	 * Cambiar el camino que se dibuja. Slo se vuelven a dibujar las baldosas del camino
+	 * anterior y del nuevo.
+	 *
+	 * @param camino El nuevo camino, o null para no dibujar ninguno
+	 */
+	public void setCamino(Camino camino) {
+		marcarCamino(false);
+		this.camino = camino;
+		marcarCamino(true);
+	}
+
+	/**
+	 * Cambiar la unidad seleccionada, que se dibuja rodeada por una caja
+	 *
+	 * @param x La coordenada x de la unidad o -1 si no hay ninguna
+	 * @param y La coordenada y de la unidad o -1 si no hay ninguna
+	 */
+	public void setSeleccion(int x, int y) {
+		seleccionadoX = x;
+		seleccionadoY = y;
+	}
+
+	/**
+	 * Mover la parte visible del mapa. Hay que volver a dibujar todo.
+	 *
+	 * @param x La coordenada x de la primera baldosa visible
+	 * @param y La coordenada y de la primera baldosa visible
+	 */
+	public void setOrigen(int x, int y) {
+		marcarCamino(false);
+		origenX = Math.max(0, Math.min(x, mapa.getAnchoEnBaldosas() - columnas));
+		origenY = Math.max(0, Math.min(y, mapa.getAlturaEnBaldosas() - filas));
+		marcarCamino(true);
+		marcarTodo(TERRENO);
+	}
+
+	/**
+	 * Convertir una coordenada x del lienzo en la de la baldosa que hay debajo
+	 *
+	 * @param x La coordenada x en pxeles del lienzo
+	 * @return La coordenada x de la baldosa, que puede estar fuera del mapa
+	 */
+	public int getBaldosaX(int x) {
+		return Math.floorDiv(x - margen, TAMANO_BALDOSA) + origenX;
+	}
+
+	/**
+	 * Convertir una coordenada y del lienzo en la de la baldosa que hay debajo
+	 *
+	 * @param y La coordenada y en pxeles del lienzo
+	 * @return La coordenada y de la baldosa, que puede estar fuera del mapa
+	 */
+	public int getBaldosaY(int y) {
+		return Math.floorDiv(y - margen, TAMANO_BALDOSA) + origenY;
+	}
+
+	/**
+	 * Volver a dibujar la baldosa en el terreno y en la escena
+	 *
+	 * @see OyenteMapa#baldosaCambiada(int, int)
+	 */
+	public void baldosaCambiada(int x, int y) {
+		marcar(x, y, TERRENO);
+	}
+
+	/**
+	 * Dejar de escuchar los cambios del mapa. Hay que llamarlo al dejar de usarlo, porque
+	 * si no el mapa conserva el lienzo y sus imgenes
+	 */
+	public void cerrar() {
+		mapa.eliminarOyente(this);
+	}
+
+	/**
+	 * Dibujar un fotograma: actualizar las baldosas que han cambiado, copiar la escena al
+	 * bfer trasero y mostrarlo. No hace nada hasta que el lienzo est en pantalla.
+	 */
+	public void renderizar() {
+		if (!isDisplayable()) {
+			return;
+		}
+		BufferStrategy estrategia = getBufferStrategy();
+		if (estrategia == null) {
+			createBufferStrategy(2);
+			return;
+		}
+		do {
+			do {
+				prepararCapas();
+				Graphics2D g = (Graphics2D) estrategia.getDrawGraphics();
+				try {
+					g.setColor(getBackground());
+					g.fillRect(0, 0, getWidth(), getHeight());
+					g.drawImage(escena, margen, margen, null);
+					dibujarSeleccion(g);
+				} finally {
+					g.dispose();
+				}
+			} while (estrategia.contentsRestored());
+			estrategia.show();
+		} while (estrategia.contentsLost());
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+	/**
+	 * Comprobar que las imgenes de la tarjeta grfica siguen vlidas, recrearlas si se han
+	 * perdido, y dibujar en ellas las baldosas que han cambiado
+	 */
+	private void prepararCapas() {
+		GraphicsConfiguration configuracion = getGraphicsConfiguration();
+		int ancho = columnas * TAMANO_BALDOSA;
+		int altura = filas * TAMANO_BALDOSA;
+		do {
+			int estado = (terreno == null) ? VolatileImage.IMAGE_INCOMPATIBLE : terreno.validate(configuracion);
+			if (estado == VolatileImage.IMAGE_INCOMPATIBLE) {
+				terreno = createVolatileImage(ancho, altura);
+			}
+			if (estado != VolatileImage.IMAGE_OK) {
+				marcarTodo(TERRENO);
+			}
+			estado = (escena == null) ? VolatileImage.IMAGE_INCOMPATIBLE : escena.validate(configuracion);
+			if (estado == VolatileImage.IMAGE_INCOMPATIBLE) {
+				escena = createVolatileImage(ancho, altura);
+			}
+			if (estado != VolatileImage.IMAGE_OK) {
+				marcarTodo(ESCENA);
+			}
+			actualizarSucias();
+		} while (terreno.contentsLost() || escena.contentsLost());
+	}
+
+	/**
+	 * Volver a dibujar las baldosas que han cambiado
+	 */
+	private void actualizarSucias() {
+		if (numSucias == 0) {
+			return;
+		}
+		Graphics2D gt = terreno.createGraphics();
+		Graphics2D ge = escena.createGraphics();
+		try {
+			for (int i=0;i<numSucias;i++) {
+				int b = sucias[i];
+				int px = (b % columnas) * TAMANO_BALDOSA;
+				int py = (b / columnas) * TAMANO_BALDOSA;
+				int x = (b % columnas) + origenX;
+				int y = (b / columnas) + origenY;
+				if (sucia[b] == TERRENO) {
+					gt.drawImage(imagenes[mapa.getTerreno(x, y)], px, py, null);
+				}
+				ge.drawImage(terreno, px, py, px + TAMANO_BALDOSA, py + TAMANO_BALDOSA,
+						px, py, px + TAMANO_BALDOSA, py + TAMANO_BALDOSA, null);
+				if (mapa.getAgente(x, y) != 0) {
+					ge.drawImage(imagenes[mapa.getAgente(x, y)], px, py, null);
+				} else if (enCamino[b]) {
+					ge.setColor(Color.blue);
+					ge.fillRect(px + 4, py + 4, 7, 7);
+				}
+				sucia[b] = LIMPIA;
+			}
+			numSucias = 0;
+		} finally {
+			gt.dispose();
+			ge.dispose();
+		}
+	}
+
+	/**
+	 * Dibujar una caja alrededor de la unidad seleccionada, si se ve
+	 */
+	private void dibujarSeleccion(Graphics2D g) {
+		int x = seleccionadoX - origenX;
+		int y = seleccionadoY - origenY;
+		if ((seleccionadoX == -1) || (x < 0) || (y < 0) || (x >= columnas) || (y >= filas)) {
+			return;
+		}
+		int px = margen + x * TAMANO_BALDOSA;
+		int py = margen + y * TAMANO_BALDOSA;
+		g.setColor(Color.black);
+		g.drawRect(px, py, 15, 15);
+		g.drawRect(px - 2, py - 2, 19, 19);
+		g.setColor(Color.white);
+		g.drawRect(px - 1, py - 1, 17, 17);
+	}
+
+	/**
+	 * Marcar o desmarcar las baldosas visibles del camino actual, y apuntar que hay que
+	 * volver a dibujarlas
+	 */
+	private void marcarCamino(boolean valor) {
+		if (camino == null) {
+			return;
+		}
+		for (int i=0;i<camino.getLength();i++) {
+			int x = camino.getX(i) - origenX;
+			int y = camino.getY(i) - origenY;
+			if ((x >= 0) && (y >= 0) && (x < columnas) && (y < filas)) {
+				enCamino[y * columnas + x] = valor;
+				marcar(camino.getX(i), camino.getY(i), ESCENA);
+			}
+		}
+	}
+
+	/**
+	 * Apuntar que hay que volver a dibujar una baldosa, si se ve
+	 */
+	private void marcar(int x, int y, byte que) {
+		x -= origenX;
+		y -= origenY;
+		if ((x < 0) || (y < 0) || (x >= columnas) || (y >= filas)) {
+			return;
+		}
+		int b = y * columnas + x;
+		if (sucia[b] == LIMPIA) {
+			sucias[numSucias++] = b;
+		}
+		if (que > sucia[b]) {
+			sucia[b] = que;
+		}
+	}
+
+	/**
+	 * Apuntar que hay que volver a dibujar todas las baldosas visibles
+	 */
+	private void marcarTodo(byte que) {
+		for (int y=0;y<filas;y++) {
+			for (int x=0;x<columnas;x++) {
+				marcar(x + origenX, y + origenY, que);
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package caminoejemplo;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import util.buscadorcamino.AEstrellaBuscadorCamino;
+import util.buscadorcamino.ComponentesConexas;
+import util.buscadorcamino.MapaConBaldosas;
+import util.buscadorcamino.heuristicas.HeuristicaCercana;
+import util.buscadorcamino.concurrente.ServidorCaminos;
+
+/**
+ * Sirve caminos sobre un mapa por TCP, sin interfaz, para otros procesos de la misma
+ * mquina. La entidad de cada consulta es el tipo de unidad de Mapa: AVION, BARCO o TANQUE.
+ *
+ * @see ServidorCaminos
+ */
+public class ServidorMapa {
+
+	public static final int PUERTO = 7421;/** El puerto predeterminado */
+	private static final int MAX_BALDOSAS_COMPONENTES = 1 << 24;/** Los mapas ms grandes se sirven sin componentes conexas, que ocupan 4 bytes por baldosa y unidad */
+
+	/**
+	 * Cargar un mapa y servirlo hasta que se mate el proceso
+	 *
+	 * @param argv [archivo.mapa [puerto [hilos]]]; sin archivo se sirve el mapa de ejemplo
+	 * @throws IOException Indica que no se ha podido leer el mapa o abrir el puerto
+	 */
+	public static void main(String[] argv) throws IOException {
+		MapaConBaldosas mapa = (argv.length > 0) ? new MapaMapeado(Paths.get(argv[0])) : new Mapa();
+		int puerto = (argv.length > 1) ? Integer.parseInt(argv[1]) : PUERTO;
+		int hilos = (argv.length > 2) ? Integer.parseInt(argv[2]) : Runtime.getRuntime().availableProcessors();
+		int ancho = mapa.getAnchoEnBaldosas();
+		int altura = mapa.getAlturaEnBaldosas();
+
+		// Las componentes de cada unidad se calculan antes de servir, as los hilos slo las leen
+		ComponentesConexas componentes = null;
+		if ((long) ancho * altura <= MAX_BALDOSAS_COMPONENTES) {
+			componentes = new ComponentesConexas(mapa, true);
+		}
+		UnidadEntidad[] unidades = new UnidadEntidad[Mapa.TANQUE + 1];
+		for (int tipo : new int[] {Mapa.AVION, Mapa.BARCO, Mapa.TANQUE}) {
+			unidades[tipo] = new UnidadEntidad(tipo);
+			if (componentes != null) {
+				componentes.getComponente(unidades[tipo], 0, 0);
+			}
+		}
+		ComponentesConexas etiquetas = componentes;
+		int profundidad = (int) Math.min(Integer.MAX_VALUE, (long) ancho * altura);
+		ServidorCaminos servidor = new ServidorCaminos(mapa, (m) -> {
+					// Disperso: cada hilo slo guarda los nodos que toca, no uno por baldosa del mapa
+					AEstrellaBuscadorCamino buscador = new AEstrellaBuscadorCamino(m, profundidad, true, new HeuristicaCercana(), false, true);
+					buscador.setComponentes(etiquetas);
+					return buscador;
+				}, (tipo) -> {
+					if ((tipo >= unidades.length) || (unidades[tipo] == null)) {
+						throw new IllegalArgumentException("Unidad desconocida: " + tipo);
+					}
+					return unidades[tipo];
+				}, hilos);
+		servidor.iniciar(puerto);
+		System.out.println("Sirviendo un mapa de " + ancho + "x" + altura + " en el puerto " + servidor.getPuerto() + " con " + hilos + " hilos");
+	}
+}
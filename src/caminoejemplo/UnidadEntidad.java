@@ -26,4 +26,24 @@ public class UnidadEntidad implements Entidad {
 	public int getTipo() {
 		return tipo;
 	}
+	
+	/**
+	 * Dos entidades del mismo tipo se mueven igual, as que se consideran iguales
+	 * 
+	 * @see Object#equals(Object)
+	 */
+	public boolean equals(Object other) {
+		if (other instanceof UnidadEntidad) {
+			return ((UnidadEntidad) other).tipo == tipo;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @see Object#hashCode()
+	 */
+	public int hashCode() {
+		return tipo;
+	}
 }
\ No newline at end of file
@@ -1,20 +1,54 @@
 package util.buscadorcamino;
 
-import java.util.ArrayList;
-import java.util.Collections;
-
 import util.buscadorcamino.heuristicas.HeuristicaCercana;
 
-/** Una implementacin de buscador de ruta que utiliza el algoritmo basado en heursticas Aestrella para determinar una ruta. */
-public class AEstrellaBuscadorCamino implements BuscadorRuta {
+/**
+ * Una implementacin de buscador de ruta que utiliza el algoritmo basado en heursticas Aestrella para determinar una ruta.
+ *
+ * En modo bidireccional se busca a la vez desde el inicio hacia el destino y desde el destino hacia el
+ * inicio, expandiendo siempre el lado con menos nodos abiertos. Si el destino est encerrado, su lado
+ * se queda sin nodos enseguida y la bsqueda termina sin recorrer el resto del mapa.
+ *
+ * Los nodos se guardan en vectores primitivos (ver AlmacenNodos). En modo disperso slo se crean 
+ * los nodos que toca cada bsqueda, lo que conviene en mapas muy grandes con bsquedas cortas.
+ *
+ * Si el mapa es un MapaCompilado el bloqueo y los costes se leen de sus vectores en lugar de 
+ * llamar a isValidLocation y getCostoMovimiento, as que redefinir esos mtodos no tiene efecto.
+ *
+ * Con un OyenteBusqueda se informa al terminar cada bsqueda de los nodos expandidos, generados 
+ * y reabiertos, el tamao mximo de la lista abierta, la profundidad y el tiempo. Con una 
+ * TrazaBusqueda se avisa de cada nodo expandido y cada vecina considerada.
+ */
+public class AEstrellaBuscadorCamino implements BuscadorInstrumentable, BuscadorTrazable {
+	
+	private static final byte SIN_VISITAR = AlmacenNodos.SIN_VISITAR;/** Estado de un nodo que la bsqueda actual an no ha tocado */
+	private static final byte ABIERTO = AlmacenNodos.ABIERTO;/** Estado de un nodo que est en la lista abierta */
+	private static final byte CERRADO = AlmacenNodos.CERRADO;/** Estado de un nodo que ya se ha buscado, es decir, est en la lista cerrada */
+	private static final int NINGUNO = AlmacenNodos.NINGUNO;/** El ndice de un nodo que no existe */
 	
-	private ArrayList cerrado = new ArrayList();/** El conjunto de nodos que se han buscado */
-	private SortedList abierto = new SortedList();/** El conjunto de nodos que an no hemos considerado completamente buscado */
 	private MapaConBaldosas mapa;/** El mapa que se busca */
 	private int maxDistanciaBusqueda;/** La profundidad mxima de la bsqueda que estamos dispuestos a aceptar antes de renunciar */
-	private Nodo[][] nodos;/** El conjunto completo de nodos en el mapa */
+	private AlmacenNodos nodos;/** Los nodos de la bsqueda */
+	private MonticuloNodos abierto;/** El conjunto de nodos que an no hemos considerado completamente buscado */
 	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
 	private AEstrellaHeuristica heuristica;/** La heurstica que estamos aplicando para determinar qu nodos buscar primero */
+	private boolean bidireccional;/** Es cierto si se busca a la vez desde el inicio y desde el destino */
+	private AlmacenNodos nodosInversos;/** Los nodos de la bsqueda desde el destino, slo en modo bidireccional */
+	private MonticuloNodos abiertoInverso;/** Los nodos abiertos de la bsqueda desde el destino */
+	private float mejorCosto;/** El coste del mejor camino encontrado en la bsqueda bidireccional */
+	private int encuentro;/** La baldosa en la que se unen las dos bsquedas en el mejor camino encontrado, o NINGUNO */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private long[] bloqueados;/** Las baldosas bloqueadas de la entidad en curso si el mapa est compilado, o null */
+	private float[] costos;/** Los costes compilados de la entidad en curso, o null si no hay o son uniformes */
+	private float costoUniforme;/** El coste de cualquier movimiento de la entidad en curso si es uniforme */
+	private OyenteBusqueda oyente;/** El objeto al que se informa al terminar cada bsqueda, o null */
+	private TrazaBusqueda traza;/** La traza a la que se avisa de cada paso de la bsqueda, o null */
+	private ComponentesConexas componentes;/** Las componentes con las que se descartan los destinos inalcanzables, o null */
+	private MetricasBusqueda metricas;/** Las medidas que se pasan al oyente, reutilizadas en cada bsqueda */
+	private int expandidos;/** Los nodos expandidos por la bsqueda bidireccional en curso */
+	private int generados;/** Los nodos generados por la bsqueda bidireccional en curso */
+	private int reabiertos;/** Los nodos reabiertos por la bsqueda bidireccional en curso */
 	
 	/**
 	 * Crear un buscador de rutas con la heurstica predeterminada - ms cercana al destino.
@@ -37,49 +71,143 @@ public class AEstrellaBuscadorCamino implements BuscadorRuta {
 	 */
 	public AEstrellaBuscadorCamino(MapaConBaldosas mapa, int maxDistanciaBusqueda, 
 						   boolean permiteMoviDiagonal, AEstrellaHeuristica heuristica) {
+		this(mapa, maxDistanciaBusqueda, permiteMoviDiagonal, heuristica, false);
+	}
+
+	/**
+	 * Crear un buscador de rutas, opcionalmente bidireccional. En modo bidireccional la 
+	 * heurstica tambin se usa desde cada baldosa hacia el inicio, y los caminos son ptimos 
+	 * si es admisible. La profundidad mxima se aplica a la suma de las dos bsquedas.
+	 * 
+	 * @param mapa El mapa que se busca
+	 * @param maxDistanciaBusqueda La profundidad mxima que buscaremos antes de renunciar
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 * @param heuristica La heurstica utilizada para determinar el orden de bsqueda del mapa
+	 * @param bidireccional Es cierto si se busca a la vez desde el inicio y desde el destino
+	 */
+	public AEstrellaBuscadorCamino(MapaConBaldosas mapa, int maxDistanciaBusqueda, 
+						   boolean permiteMoviDiagonal, AEstrellaHeuristica heuristica, boolean bidireccional) {
+		this(mapa, maxDistanciaBusqueda, permiteMoviDiagonal, heuristica, bidireccional, false);
+	}
+
+	/**
+	 * Crear un buscador de rutas eligiendo cmo se guardan los nodos. En modo denso hay un 
+	 * nodo por baldosa, creados todos en la primera bsqueda; en modo disperso slo se crean 
+	 * los nodos que toca cada bsqueda.
+	 * 
+	 * @param mapa El mapa que se busca
+	 * @param maxDistanciaBusqueda La profundidad mxima que buscaremos antes de renunciar
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 * @param heuristica La heurstica utilizada para determinar el orden de bsqueda del mapa
+	 * @param bidireccional Es cierto si se busca a la vez desde el inicio y desde el destino
+	 * @param disperso Es cierto si slo se crean los nodos que toca cada bsqueda
+	 */
+	public AEstrellaBuscadorCamino(MapaConBaldosas mapa, int maxDistanciaBusqueda, boolean permiteMoviDiagonal, 
+						   AEstrellaHeuristica heuristica, boolean bidireccional, boolean disperso) {
 		this.heuristica = heuristica;
 		this.mapa = mapa;
 		this.maxDistanciaBusqueda = maxDistanciaBusqueda;
 		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.bidireccional = bidireccional;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
 		
-		nodos = new Nodo[mapa.getAnchoEnBaldosas()][mapa.getAlturaEnBaldosas()];
-		for (int x=0;x<mapa.getAnchoEnBaldosas();x++) {
-			for (int y=0;y<mapa.getAlturaEnBaldosas();y++) {
-				nodos[x][y] = new Nodo(x,y);
-			}
+		nodos = new AlmacenNodos(ancho, altura, disperso);
+		abierto = new MonticuloNodos(nodos);
+		if (bidireccional) {
+			nodosInversos = new AlmacenNodos(ancho, altura, disperso);
+			abiertoInverso = new MonticuloNodos(nodosInversos);
+		}
+	}
+	
+	/**
+	 * @see BuscadorInstrumentable#setOyenteBusqueda(OyenteBusqueda)
+	 */
+	public void setOyenteBusqueda(OyenteBusqueda oyente) {
+		this.oyente = oyente;
+		if ((oyente != null) && (metricas == null)) {
+			metricas = new MetricasBusqueda();
 		}
 	}
 	
+	/**
+	 * @see BuscadorTrazable#setTraza(TrazaBusqueda)
+	 */
+	public void setTraza(TrazaBusqueda traza) {
+		this.traza = traza;
+	}
+	
+	/**
+	 * @see BuscadorTrazable#getTraza()
+	 */
+	public TrazaBusqueda getTraza() {
+		return traza;
+	}
+	
+	/**
+	 * Usar unas componentes conexas para devolver null sin buscar cuando el destino est en
+	 * otra componente que el inicio
+	 * 
+	 * @param componentes Las componentes del mapa, con el mismo movimiento diagonal, o null
+	 */
+	public void setComponentes(ComponentesConexas componentes) {
+		this.componentes = componentes;
+	}
+	
 	/**
 	 * @see BuscadorRuta#encontrarCamino(Mover, int, int, int, int)
 	 */
 	public Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty) {
+		long inicioNanos = (oyente != null) ? System.nanoTime() : 0;
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaIniciada(sx, sy, tx, ty);
+		}
 		if (mapa.bloquea(entidad, tx, ty)) {// Si el destino esta bloqueado no podemos llegar
+			informar(inicioNanos, 0, 0, 0, 0, 0, false, null);
+			return null;
+		}
+		if ((componentes != null) && !componentes.conectadas(entidad, sx, sy, tx, ty)) {// Ni siquiera el terreno los une
+			informar(inicioNanos, 0, 0, 0, 0, 0, false, null);
 			return null;
 		}		
-		// Estado inicial de A *. El grupo cerrado est vaco. Slo la baldosa
-		//de inicio est en la lista abierta y ya est all
-		nodos[sx][sy].costo = 0;
-		nodos[sx][sy].profundidad = 0;
-		cerrado.clear();
+		prepararCapa(entidad);
+		if (bidireccional) {
+			return encontrarCaminoBidireccional(entidad, sx, sy, tx, ty, inicioNanos);
+		}
+		// Estado inicial de A *. Al cambiar de nmero de bsqueda todos los nodos pasan a 
+		//estar sin visitar, as que el grupo cerrado est vaco sin tener que limpiarlo. 
+		//Slo la baldosa de inicio est en la lista abierta y ya est all
+		AlmacenNodos n = nodos;
+		n.nuevaBusqueda();
+		int inicio = n.nodo(sy * ancho + sx);
+		int destino = n.nodo(ty * ancho + tx);
+		n.costo[inicio] = 0;
+		n.heuristica[inicio] = 0;
 		abierto.limpiar();
-		abierto.agregar(nodos[sx][sy]);
-		
-		nodos[tx][ty].padre = null;
+		abierto.agregar(inicio);
 		
 		// Mientras que no hemos excedido la profundidad mxima de la bsqueda
 		int maxProfundidad = 0;
+		int expandidos = 0;
+		int generados = 0;
+		int reabiertos = 0;
 		while ((maxProfundidad < maxDistanciaBusqueda) && (abierto.size() != 0)) {
 			// Extraer el primer nodo en nuestra lista abierta, se determina que es el ms 
 			//probable que sea el siguiente paso basado en nuestra heurstica
 
-			Nodo actual = getPrimeroAbierto();
-			if (actual == nodos[tx][ty]) {
+			int actual = abierto.primero();
+			if (actual == destino) {
 				break;
 			}
 			
-			eliminarAbierto(actual);
-			agregarCerrado(actual);
+			abierto.eliminar(actual);
+			n.estado[actual] = CERRADO;
+			expandidos++;
+			int ax = n.getX(actual);
+			int ay = n.getY(actual);
+			if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+				traza.nodoExpandido(ax, ay, n.costo[actual], n.heuristica[actual]);
+			}
 			
 			// Busca a travs de todos los vecinos del nodo actual evaluando
 			// Los siguientes pasos
@@ -97,48 +225,60 @@ public class AEstrellaBuscadorCamino implements BuscadorRuta {
 						}
 					}
 					// Determinar la ubicacin del vecino y evaluarlo
-					int xp = x + actual.x;
-					int yp = y + actual.y;
+					int xp = x + ax;
+					int yp = y + ay;
 					
-					if (isValidLocation(entidad,sx,sy,xp,yp)) {
+					if (esValida(entidad,sx,sy,xp,yp)) {
 						//El costo para llegar a este nodo es el costo 
 						//de la corriente ms el costo de movimiento para llegar a este nodo. 
 						//Tenga en cuenta que el valor heurstico slo se utiliza en la lista abierta ordenada
 
-						float costoSiguientePaso = actual.costo + getCostoMovimiento(entidad, actual.x, actual.y, xp, yp);
-						Nodo vecino = nodos[xp][yp];
-						mapa.buscadorRutaVisitado(xp, yp);
+						float costoSiguientePaso = n.costo[actual] + getCostoPaso(entidad, ax, ay, xp, yp);
+						int vecino = n.nodo(yp * ancho + xp);
+						if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+							traza.baldosaVisitada(xp, yp);
+						}
 						
 						//Si el nuevo coste que hemos determinado para este nodo es menor de lo que se ha asegurado 
 						//previamente, el nodo no ha determinado que podra haber habido un mejor camino para llegar
 						//a este nodo, por lo que necesita ser reevaluado
 
-						if (costoSiguientePaso < vecino.costo) {
-							if (inListaAbierto(vecino)) {
-								eliminarAbierto(vecino);
+						if (costoSiguientePaso < n.costo[vecino]) {
+							if (n.estado[vecino] == CERRADO) {
+								n.estado[vecino] = SIN_VISITAR;
+								reabiertos++;
 							}
-							if (inListaCerrado(vecino)) {
-								eliminarCerrado(vecino);
+							//Si ya estaba en la lista abierta basta con rebajar su clave en el montculo
+							if (n.estado[vecino] == ABIERTO) {
+								n.costo[vecino] = costoSiguientePaso;
+								maxProfundidad = Math.max(maxProfundidad, setPadre(n, vecino, actual));
+								abierto.disminuirClave(vecino);
 							}
 						}
 						
 						//Si el nodo no ha sido procesado y desechado, restablezca su costo a nuestro costo actual y 
 						//agrguelo como un prximo paso posible (es decir, a la lista abierta)
 
-						if (!inListaAbierto(vecino) && !(inListaCerrado(vecino))) {
-							vecino.costo = costoSiguientePaso;
-							vecino.heuristica = getCostoHeuristica(entidad, xp, yp, tx, ty);
-							maxProfundidad = Math.max(maxProfundidad, vecino.setPadre(actual));
-							agregarAbierto(vecino);
+						if (n.estado[vecino] == SIN_VISITAR) {
+							if (n.padre[vecino] == NINGUNO) {
+								generados++;
+							}
+							n.costo[vecino] = costoSiguientePaso;
+							n.heuristica[vecino] = getCostoHeuristica(entidad, xp, yp, tx, ty);
+							maxProfundidad = Math.max(maxProfundidad, setPadre(n, vecino, actual));
+							abierto.agregar(vecino);
 						}
 					}
 				}
 			}
 		}
 
+		boolean cortada = (maxProfundidad >= maxDistanciaBusqueda) && (abierto.size() != 0) && (abierto.primero() != destino);
+		
 		//Ya que nos hemos quedado sin bsqueda no haba camino. Solo devuelve null
 
-		if (nodos[tx][ty].padre == null) {
+		if (n.padre[destino] == NINGUNO) {
+			informar(inicioNanos, expandidos, generados, reabiertos, abierto.getMaximo(), maxProfundidad, cortada, null);
 			return null;
 		}
 		
@@ -146,81 +286,253 @@ public class AEstrellaBuscadorCamino implements BuscadorRuta {
 		//usar las referencias de los nodos para encontrar el camino desde la ubicacin 
 		//de destino de nuevo a la grabacin de inicio de los nodos en el camino.
 
-		Camino camino = new Camino();
-		Nodo objetivo = nodos[tx][ty];
-		while (objetivo != nodos[sx][sy]) {
-			camino.pasoPrevio(objetivo.x, objetivo.y);
-			objetivo = objetivo.padre;
+		Camino camino = new Camino(n.profundidad[destino] + 1, 0);
+		int objetivo = destino;
+		while (objetivo != inicio) {
+			camino.pasoPrevio(n.getX(objetivo), n.getY(objetivo));
+			objetivo = n.padre[objetivo];
 		}
 		camino.pasoPrevio(sx,sy);
+		informar(inicioNanos, expandidos, generados, reabiertos, abierto.getMaximo(), maxProfundidad, cortada, camino);
 		return camino;
 	}
 
 	/**
-	 * Obtener el primer elemento de la lista abierta.
-	 * 
-	 * @return El primer elemento de la lista abierta
+	 * Buscar a la vez desde el inicio y desde el destino. Cada vez que una bsqueda alcanza un 
+	 * nodo que la otra ya ha alcanzado se apunta el camino que pasa por l si es el mejor. La 
+	 * bsqueda termina cuando la menor f de cualquiera de los dos lados no es menor que ese 
+	 * camino, porque con una heurstica admisible ningn camino sin descubrir puede mejorarlo, 
+	 * o cuando un lado se queda sin nodos abiertos.
 	 */
-	protected Nodo getPrimeroAbierto() {
-		return (Nodo) abierto.primero();
+	private Camino encontrarCaminoBidireccional(Entidad entidad, int sx, int sy, int tx, int ty, long inicioNanos) {
+		if ((sx == tx) && (sy == ty)) {
+			informar(inicioNanos, 0, 0, 0, 0, 0, false, null);
+			return null;
+		}
+		nodos.nuevaBusqueda();
+		nodosInversos.nuevaBusqueda();
+		int inicio = nodos.nodo(sy * ancho + sx);
+		int destino = nodosInversos.nodo(ty * ancho + tx);
+		nodos.costo[inicio] = 0;
+		nodos.heuristica[inicio] = getCostoHeuristica(entidad, sx, sy, tx, ty);
+		nodosInversos.costo[destino] = 0;
+		nodosInversos.heuristica[destino] = getCostoHeuristica(entidad, tx, ty, sx, sy);
+		abierto.limpiar();
+		abiertoInverso.limpiar();
+		abierto.agregar(inicio);
+		abiertoInverso.agregar(destino);
+		mejorCosto = Float.MAX_VALUE;
+		encuentro = NINGUNO;
+		expandidos = 0;
+		generados = 0;
+		reabiertos = 0;
+		
+		int profundidadDirecta = 0;
+		int profundidadInversa = 0;
+		while ((profundidadDirecta + profundidadInversa < maxDistanciaBusqueda) 
+				&& (abierto.size() != 0) && (abiertoInverso.size() != 0)) {
+			int directo = abierto.primero();
+			int inverso = abiertoInverso.primero();
+			if ((nodos.costo[directo] + nodos.heuristica[directo] >= mejorCosto) 
+					|| (nodosInversos.costo[inverso] + nodosInversos.heuristica[inverso] >= mejorCosto)) {
+				break;
+			}
+			if (abierto.size() <= abiertoInverso.size()) {
+				profundidadDirecta = Math.max(profundidadDirecta, 
+						expandir(entidad, directo, false, sx, sy, tx, ty));
+			} else {
+				profundidadInversa = Math.max(profundidadInversa, 
+						expandir(entidad, inverso, true, sx, sy, sx, sy));
+			}
+		}
+		
+		boolean cortada = (profundidadDirecta + profundidadInversa >= maxDistanciaBusqueda) 
+				&& (abierto.size() != 0) && (abiertoInverso.size() != 0);
+		int maxAbiertos = abierto.getMaximo() + abiertoInverso.getMaximo();
+		if (encuentro == NINGUNO) {
+			informar(inicioNanos, expandidos, generados, reabiertos, maxAbiertos, 
+					profundidadDirecta + profundidadInversa, cortada, null);
+			return null;
+		}
+		
+		// La mitad directa se recorre hacia atrs desde el encuentro y la inversa hacia delante
+		int directo = nodos.buscar(encuentro);
+		int inverso = nodosInversos.buscar(encuentro);
+		Camino camino = new Camino(nodos.profundidad[directo] + 1, nodosInversos.profundidad[inverso]);
+		int objetivo = directo;
+		while (objetivo != inicio) {
+			camino.pasoPrevio(nodos.getX(objetivo), nodos.getY(objetivo));
+			objetivo = nodos.padre[objetivo];
+		}
+		camino.pasoPrevio(sx,sy);
+		objetivo = inverso;
+		while (objetivo != destino) {
+			objetivo = nodosInversos.padre[objetivo];
+			camino.agregarPaso(nodosInversos.getX(objetivo), nodosInversos.getY(objetivo));
+		}
+		informar(inicioNanos, expandidos, generados, reabiertos, maxAbiertos, 
+				profundidadDirecta + profundidadInversa, cortada, camino);
+		return camino;
 	}
 	
 	/**
-	 * Agregar un nodo a la lista abierta
+	 * Expandir un nodo de una de las dos bsquedas del modo bidireccional
 	 * 
-	 * @param nodo El nodo que se agregar a la lista abierta
+	 * @param entidad La entidad que se est moviendo
+	 * @param actual El nodo a expandir, el primero de su lista abierta
+	 * @param inverso Es cierto si el nodo es de la bsqueda desde el destino
+	 * @param sx La coordenada x inicial
+	 * @param sy La coordenada y inicial
+	 * @param hx La coordenada x hacia la que se calcula la heurstica
+	 * @param hy La coordenada y hacia la que se calcula la heurstica
+	 * @return La mayor profundidad alcanzada por los vecinos del nodo
 	 */
-	protected void agregarAbierto(Nodo nodo) {
-		abierto.agregar(nodo);
+	private int expandir(Entidad entidad, int actual, boolean inverso, int sx, int sy, int hx, int hy) {
+		AlmacenNodos propios = inverso ? nodosInversos : nodos;
+		AlmacenNodos otros = inverso ? nodos : nodosInversos;
+		MonticuloNodos monticulo = inverso ? abiertoInverso : abierto;
+		monticulo.eliminar(actual);
+		propios.estado[actual] = CERRADO;
+		expandidos++;
+		int ax = propios.getX(actual);
+		int ay = propios.getY(actual);
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.nodoExpandido(ax, ay, propios.costo[actual], propios.heuristica[actual]);
+		}
+		
+		int maxProfundidad = 0;
+		for (int x=-1;x<2;x++) {
+			for (int y=-1;y<2;y++) {
+				if ((x == 0) && (y == 0)) {
+					continue;
+				}	
+				if (!permiteMoviDiagonal && (x != 0) && (y != 0)) {
+					continue;
+				}
+				int xp = x + ax;
+				int yp = y + ay;
+				if (!esValida(entidad,sx,sy,xp,yp)) {
+					continue;
+				}
+				// Desde el destino se recorren los movimientos al revs, de la vecina al nodo actual
+				float costoSiguientePaso = propios.costo[actual] + (inverso 
+						? getCostoPaso(entidad, xp, yp, ax, ay) 
+						: getCostoPaso(entidad, ax, ay, xp, yp));
+				int b = yp * ancho + xp;
+				int vecino = propios.nodo(b);
+				if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+					traza.baldosaVisitada(xp, yp);
+				}
+				if (costoSiguientePaso >= propios.costo[vecino]) {
+					continue;
+				}
+				
+				propios.costo[vecino] = costoSiguientePaso;
+				maxProfundidad = Math.max(maxProfundidad, setPadre(propios, vecino, actual));
+				if (propios.estado[vecino] == ABIERTO) {
+					monticulo.disminuirClave(vecino);
+				} else {
+					if (propios.estado[vecino] == CERRADO) {
+						reabiertos++;
+					} else {
+						generados++;
+					}
+					propios.heuristica[vecino] = getCostoHeuristica(entidad, xp, yp, hx, hy);
+					monticulo.agregar(vecino);
+				}
+				
+				int otro = otros.buscar(b);
+				if ((otro != NINGUNO) && (otros.costo[otro] + costoSiguientePaso < mejorCosto)) {
+					mejorCosto = otros.costo[otro] + costoSiguientePaso;
+					encuentro = b;
+				}
+			}
+		}
+		return maxProfundidad;
 	}
 	
 	/**
-	 * Comprueba si un nodo est en la lista abierta
+	 * Informar al oyente de las medidas de la bsqueda que termina, si hay oyente, y avisar a la traza
 	 * 
-	 * @param nodo El nodo a comprobar
-	 * @return True Si el nodo dado est en la lista abierta
+	 * @param inicioNanos El momento en que empez la bsqueda, segn System.nanoTime
+	 * @param camino El camino devuelto, o null si no se encontr
 	 */
-	protected boolean inListaAbierto(Nodo nodo) {
-		return abierto.contiene(nodo);
+	private void informar(long inicioNanos, int expandidos, int generados, int reabiertos, 
+						  int maxAbiertos, int profundidad, boolean cortada, Camino camino) {
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaTerminada(camino);
+		}
+		if (oyente == null) {
+			return;
+		}
+		metricas.establecer(System.nanoTime() - inicioNanos, expandidos, generados, reabiertos, 
+				maxAbiertos, profundidad, cortada, camino != null);
+		oyente.busquedaTerminada(this, metricas);
 	}
 	
 	/**
-	 * Eliminar un nodo de la lista abierta
+	 * Establecer el padre de un nodo
 	 * 
-	 * @param nodo El nodo a eliminar de la lista abierta
+	 * @param n Los nodos de la bsqueda
+	 * @param nodo El nodo cuyo padre se establece
+	 * @param padre El nodo padre que nos lleva a este nodo
+	 * @return La profundidad que hemos alcanzado en la bsqueda
 	 */
-	protected void eliminarAbierto(Nodo nodo) {
-		abierto.eliminar(nodo);
+	private static int setPadre(AlmacenNodos n, int nodo, int padre) {
+		n.profundidad[nodo] = n.profundidad[padre] + 1;
+		n.padre[nodo] = padre;
+		
+		return n.profundidad[nodo];
 	}
-	
+
 	/**
-	 * Agregar un nodo a la lista cerrada
+	 * Tomar los vectores compilados de la entidad si el mapa es un MapaCompilado. Con ellos 
+	 * el bucle interior no llama a isValidLocation ni a getCostoMovimiento.
 	 * 
-	 * @param nodo El nodo que se agrega a la lista cerrada
+	 * @param entidad La entidad de la bsqueda que empieza
 	 */
-	protected void agregarCerrado(Nodo nodo) {
-		cerrado.add(nodo);
+	private void prepararCapa(Entidad entidad) {
+		if (mapa instanceof MapaCompilado) {
+			MapaCompilado.Capa capa = ((MapaCompilado) mapa).getCapa(entidad);
+			bloqueados = capa.getBloqueados();
+			costos = capa.getCostos();
+			costoUniforme = capa.getCostoUniforme();
+		} else {
+			bloqueados = null;
+			costos = null;
+		}
 	}
 	
 	/**
-	 * Compruebe si el nodo suministrado est en la lista cerrada
-	 * 
-	 * @param nodo El nodo a buscar
-	 * @return True Si el nodo especificado est en la lista cerrada
+	 * Comprobar si una vecina es vlida, leyendo el mapa compilado si lo hay
 	 */
-	protected boolean inListaCerrado(Nodo nodo) {
-		return cerrado.contains(nodo);
+	private boolean esValida(Entidad entidad, int sx, int sy, int x, int y) {
+		if (bloqueados == null) {
+			return isValidLocation(entidad, sx, sy, x, y);
+		}
+		if ((x < 0) || (y < 0) || (x >= ancho) || (y >= altura)) {
+			return false;
+		}
+		if ((x == sx) && (y == sy)) {
+			return true;
+		}
+		int i = y * ancho + x;
+		return (bloqueados[i >>> 6] & (1L << i)) == 0;
 	}
 	
 	/**
-	 * Eliminar un nodo de la lista cerrada
-	 * 
-	 * @param nodo El nodo a eliminar de la lista cerrada
+	 * Obtener el coste de un movimiento, leyendo el mapa compilado si lo hay
 	 */
-	protected void eliminarCerrado(Nodo node) {
-		cerrado.remove(node);
+	private float getCostoPaso(Entidad entidad, int sx, int sy, int tx, int ty) {
+		if (bloqueados == null) {
+			return getCostoMovimiento(entidad, sx, sy, tx, ty);
+		}
+		if (costos == null) {
+			return costoUniforme;
+		}
+		return costos[((sy * ancho + sx) << 3) + MapaCompilado.direccion(tx - sx, ty - sy)];
 	}
-	
+
 	/**
 	 * Compruebe si un lugar determinado es vlido para la entidad suministrado
 	 * 
@@ -269,117 +581,4 @@ public class AEstrellaBuscadorCamino implements BuscadorRuta {
 	public float getCostoHeuristica(Entidad entidad, int x, int y, int tx, int ty) {
 		return heuristica.getCosto(mapa, entidad, x, y, tx, ty);
 	}
-	
-	private class SortedList {
-		private ArrayList list = new ArrayList();
-		
-		/**
-		 * Recuperar el primer elemento de la lista
-		 *  
-		 * @return El primer elemento de la lista
-		 */
-		public Object primero() {
-			return list.get(0);
-		}
-		
-		/**
-		 * Vaciar la lista
-		 */
-		public void limpiar() {
-			list.clear();
-		}
-		
-		/**
-		 * Aadir un elemento a la lista, esto hace que necesitemos hacer nuevamente el sort
-		 * 
-		 * @param o El elemento a aadir
-		 */
-		public void agregar(Object o) {
-			list.add(o);
-			Collections.sort(list);
-		}
-		
-		/**
-		 * Elimina un elemento de la lista
-		 * 
-		 * @param o El elemento a eliminar
-		 */
-		public void eliminar(Object o) {
-			list.remove(o);
-		}
-	
-		/**
-		 * Obtener el nmero de elementos en la lista
-		 * 
-		 * @return El nmero de elemento en la lista
- 		 */
-		public int size() {
-			return list.size();
-		}
-		
-		/**
-		 * Comprueba si un elemento est en la lista
-		 * 
-		 * @param o El elemento a buscar
-		 * @return True Si el elemento est en la lista
-		 */
-		public boolean contiene(Object o) {
-			return list.contains(o);
-		}
-	}
-	
-	/**
-	 * Un solo nodo en el grfico de bsqueda
-	 */
-	private class Nodo implements Comparable {
-		
-		private int x;/** La coordenada x del nodo */		
-		private int y;/** y La coordenada y del nodo */
-		private float costo;/** El coste de la ruta para este nodo */
-		private Nodo padre;/** El padre de este nodo */
-		private float heuristica;/** El coste heurstico de este nodo */
-		private int profundidad;/**La profundidad de bsqueda de este nodo */
-		
-		/**
-		 * Crea un nuevo nodo
-		 * 
-		 * @param x La coordenada x del nodo
-		 * @param y La coordenada y del nodo
-		 */
-		public Nodo(int x, int y) {
-			this.x = x;
-			this.y = y;
-		}
-		
-		/**
-		 * Establezca el padre de este nodo
-		 * 
-		 * @param padre El nodo padre que nos lleva a este nodo
-		 * @return La profundidad que no hemos alcanzado en la bsqueda
-		 */
-		public int setPadre(Nodo padre) {
-			profundidad = padre.profundidad + 1;
-			this.padre = padre;
-			
-			return profundidad;
-		}
-		
-		/**
-		 * @see Comparable#compareTo(Object)
-		 */
-		public int compareTo(Object other) {
-			Nodo o = (Nodo) other;
-			
-			float f = heuristica + costo;
-			float of = o.heuristica + o.costo;
-			
-			if (f < of) {
-				return -1;
-			} else if (f > of) {
-				return 1;
-			} else {
-				return 0;
-			}
-		}
-	}
-}
+}
\ No newline at end of file
@@ -0,0 +1,352 @@
+package util.buscadorcamino;
+
+import java.util.Arrays;
+
+/**
+ * Un buscador de ruta con plazo (ARA*, Anytime Repairing A*). Primero busca con la heurstica
+ * multiplicada por un peso alto, lo que encuentra enseguida un camino que cuesta como mucho
+ * peso veces el ptimo, y mientras quede tiempo baja el peso y mejora el camino hasta llegar
+ * al ptimo. Cada mejora reutiliza los costes de la anterior: slo se vuelven a expandir los
+ * nodos cuyo coste ha bajado desde que se expandieron.
+ *
+ * Cuando se acaba el plazo devuelve el mejor camino encontrado hasta entonces, y getCota
+ * indica cunto puede costar como mucho respecto al ptimo. Si el plazo se acaba antes de
+ * alcanzar el destino devuelve null. La cota slo es vlida si la heurstica es admisible.
+ *
+ * Una TrazaBusqueda recibe las expansiones de todas las mejoras seguidas, con la heurstica
+ * sin peso. Un OyenteBusqueda recibe las medidas sumadas de todas las mejoras; como no hay
+ * profundidad mxima, una bsqueda se considera cortada cuando el plazo interrumpe una mejora.
+ */
+public class ARAEstrellaBuscadorCamino implements BuscadorInstrumentable, BuscadorTrazable {
+
+	private static final byte SIN_VISITAR = AlmacenNodos.SIN_VISITAR;/** Estado de un nodo que no est abierto ni cerrado en la mejora actual */
+	private static final byte ABIERTO = AlmacenNodos.ABIERTO;/** Estado de un nodo que est en la lista abierta */
+	private static final byte CERRADO = AlmacenNodos.CERRADO;/** Estado de un nodo que ya se ha expandido en la mejora actual */
+	private static final byte INCONSISTENTE = 3;/** Estado de un nodo cerrado cuyo coste ha bajado, que se expandir en la siguiente mejora */
+	private static final int NINGUNO = AlmacenNodos.NINGUNO;/** El ndice de un nodo que no existe */
+	private static final int EXPANSIONES_ENTRE_RELOJ = 64;/** El nmero de nodos que se expanden entre dos consultas del reloj */
+
+	private MapaConBaldosas mapa;/** El mapa que se busca */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private AEstrellaHeuristica heuristica;/** La heurstica sin peso, que debe ser admisible para que la cota sea vlida */
+	private float pesoInicial;/** El peso de la heurstica en la primera bsqueda */
+	private float decremento;/** Lo que baja el peso en cada mejora */
+	private long presupuestoNanos;/** El tiempo que se da a cada bsqueda sin plazo explcito */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+
+	private AlmacenNodos nodos;/** Los nodos de la bsqueda, que se conservan entre mejoras */
+	private MonticuloNodos abierto;/** Los nodos abiertos ordenados por costo + peso * heuristica */
+	private int[] inconsistentes = new int[64];/** Los nodos que hay que volver a abrir en la siguiente mejora */
+	private int numeroInconsistentes;/** El nmero de nodos inconsistentes */
+	private int[] cerrados = new int[64];/** Los nodos cerrados en la mejora actual */
+	private int numeroCerrados;/** El nmero de nodos cerrados en la mejora actual */
+	private float peso;/** El peso de la heurstica en la mejora actual */
+	private float cota;/** La cota del ltimo camino devuelto */
+	private int mejoras;/** El nmero de bsquedas completas de la ltima consulta, incluida la primera */
+	private TrazaBusqueda traza;/** La traza a la que se avisa de cada paso de la bsqueda, o null */
+	private OyenteBusqueda oyente;/** El objeto al que se informa al terminar cada bsqueda, o null */
+	private MetricasBusqueda metricas;/** Las medidas que se pasan al oyente, reutilizadas en cada bsqueda */
+	private int expandidos;/** Los nodos expandidos por todas las mejoras de la bsqueda en curso */
+	private int generados;/** Los nodos alcanzados por primera vez en la bsqueda en curso */
+	private int reabiertos;/** Los nodos ya expandidos que se volvieron inconsistentes al bajar su coste */
+	private int maxProfundidad;/** La mayor profundidad de un nodo expandido en la bsqueda en curso */
+
+	/**
+	 * Crear un buscador con plazo
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 * @param heuristica La heurstica, que debe ser admisible para que la cota sea vlida
+	 * @param pesoInicial El peso de la heurstica en la primera bsqueda, mayor o igual que 1
+	 * @param decremento Lo que baja el peso en cada mejora, mayor que 0
+	 * @param presupuestoNanos El tiempo que se da a las bsquedas hechas con
+	 * encontrarCamino(Entidad, int, int, int, int)
+	 */
+	public ARAEstrellaBuscadorCamino(MapaConBaldosas mapa, boolean permiteMoviDiagonal, AEstrellaHeuristica heuristica,
+							 float pesoInicial, float decremento, long presupuestoNanos) {
+		if ((pesoInicial < 1) || !(decremento > 0)) {
+			throw new IllegalArgumentException("El peso inicial debe ser al menos 1 y el decremento positivo");
+		}
+		this.mapa = mapa;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.heuristica = heuristica;
+		this.pesoInicial = pesoInicial;
+		this.decremento = decremento;
+		this.presupuestoNanos = presupuestoNanos;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+		this.nodos = new AlmacenNodos(ancho, altura, false);
+		this.abierto = new MonticuloNodos(nodos);
+	}
+
+	/**
+	 * @see BuscadorInstrumentable#setOyenteBusqueda(OyenteBusqueda)
+	 */
+	public void setOyenteBusqueda(OyenteBusqueda oyente) {
+		this.oyente = oyente;
+		if ((oyente != null) && (metricas == null)) {
+			metricas = new MetricasBusqueda();
+		}
+	}
+
+	/**
+	 * @see BuscadorTrazable#setTraza(TrazaBusqueda)
+	 */
+	public void setTraza(TrazaBusqueda traza) {
+		this.traza = traza;
+	}
+
+	/**
+	 * @see BuscadorTrazable#getTraza()
+	 */
+	public TrazaBusqueda getTraza() {
+		return traza;
+	}
+
+	/**
+	 * Buscar un camino con el presupuesto de tiempo del constructor
+	 *
+	 * @see BuscadorRuta#encontrarCamino(Entidad, int, int, int, int)
+	 */
+	public Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty) {
+		return encontrarCamino(entidad, sx, sy, tx, ty, System.nanoTime() + presupuestoNanos);
+	}
+
+	/**
+	 * Buscar un camino mejorndolo hasta que sea ptimo o se acabe el plazo
+	 *
+	 * @param entidad La entidad que se va a mover
+	 * @param sx La coordenada x de la ubicacin de inicio
+	 * @param sy La coordenada y de la ubicacin de inicio
+	 * @param tx La coordenada x de la ubicacin de destino
+	 * @param ty La coordenada y de la ubicacin de destino
+	 * @param limite El instante, segn System.nanoTime, en el que hay que devolver el camino
+	 * @return El mejor camino encontrado antes del plazo, o null si no hay camino o no dio tiempo
+	 * a alcanzar el destino
+	 */
+	public Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty, long limite) {
+		long inicioNanos = (oyente != null) ? System.nanoTime() : 0;
+		cota = Float.POSITIVE_INFINITY;
+		mejoras = 0;
+		expandidos = 0;
+		generados = 0;
+		reabiertos = 0;
+		maxProfundidad = 0;
+		abierto.limpiar();
+		boolean cortada = false;
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaIniciada(sx, sy, tx, ty);
+		}
+		if (mapa.bloquea(entidad, tx, ty) || ((sx == tx) && (sy == ty))) {
+			return terminar(inicioNanos, false, null);
+		}
+		nodos.nuevaBusqueda();
+		int inicio = nodos.nodo(sy * ancho + sx);
+		int destino = nodos.nodo(ty * ancho + tx);
+		nodos.costo[inicio] = 0;
+		nodos.heuristica[inicio] = heuristica.getCosto(mapa, entidad, sx, sy, tx, ty);
+		nodos.heuristica[destino] = heuristica.getCosto(mapa, entidad, tx, ty, tx, ty);
+		numeroInconsistentes = 0;
+		numeroCerrados = 0;
+		peso = pesoInicial;
+		abierto.setPeso(peso);
+		abierto.agregar(inicio);
+
+		while (true) {
+			if (!mejorarCamino(entidad, sx, sy, tx, ty, destino, limite)) {
+				cortada = true;
+				break;
+			}
+			if (nodos.padre[destino] == NINGUNO) {// La bsqueda termin sin llegar, no hay camino
+				break;
+			}
+			mejoras++;
+			cota = Math.max(1, Math.min(peso, nodos.costo[destino] / menorCostoPendiente()));
+			if ((cota <= 1) || (System.nanoTime() >= limite)) {
+				break;
+			}
+
+			// La siguiente mejora parte de la lista abierta ms los nodos inconsistentes, sin
+			//nodos cerrados, y con las claves recalculadas para el nuevo peso
+			peso = Math.max(1, Math.min(peso - decremento, cota));
+			for (int i=0;i<numeroCerrados;i++) {
+				if (nodos.estado[cerrados[i]] == CERRADO) {
+					nodos.estado[cerrados[i]] = SIN_VISITAR;
+				}
+			}
+			numeroCerrados = 0;
+			for (int i=0;i<numeroInconsistentes;i++) {
+				abierto.agregar(inconsistentes[i]);
+			}
+			numeroInconsistentes = 0;
+			abierto.setPeso(peso);
+		}
+
+		if (nodos.padre[destino] == NINGUNO) {
+			cota = Float.POSITIVE_INFINITY;
+			return terminar(inicioNanos, cortada, null);
+		}
+		// Si el plazo cort una mejora el camino slo puede haber bajado de coste, as que la
+		//cota de la ltima mejora completa sigue valiendo
+
+		Camino camino = new Camino(nodos.profundidad[destino] + 1, 0);
+		int objetivo = destino;
+		while (objetivo != inicio) {
+			camino.pasoPrevio(nodos.getX(objetivo), nodos.getY(objetivo));
+			objetivo = nodos.padre[objetivo];
+		}
+		camino.pasoPrevio(sx, sy);
+		return terminar(inicioNanos, cortada, camino);
+	}
+
+	/**
+	 * Avisar a la traza, si la hay, de que termina la bsqueda, e informar al oyente, si lo
+	 * hay, de sus medidas
+	 *
+	 * @param inicioNanos El momento en que empez la bsqueda, segn System.nanoTime
+	 * @param cortada Es cierto si el plazo interrumpi una mejora
+	 * @param camino El camino que se devuelve, o null
+	 * @return El mismo camino
+	 */
+	private Camino terminar(long inicioNanos, boolean cortada, Camino camino) {
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaTerminada(camino);
+		}
+		if (oyente != null) {
+			metricas.establecer(System.nanoTime() - inicioNanos, expandidos, generados, reabiertos,
+					abierto.getMaximo(), maxProfundidad, cortada, camino != null);
+			oyente.busquedaTerminada(this, metricas);
+		}
+		return camino;
+	}
+
+	/**
+	 * Obtener la cota del ltimo camino devuelto
+	 *
+	 * @return El factor por el que el coste del camino puede superar como mucho al del ptimo,
+	 * 1 si es ptimo, o infinito si no se devolvi camino o el plazo se acab antes de terminar
+	 * la primera bsqueda
+	 */
+	public float getCota() {
+		return cota;
+	}
+
+	/**
+	 * Obtener el nmero de bsquedas completas de la ltima consulta
+	 *
+	 * @return El nmero de bsquedas terminadas antes del plazo, incluida la primera
+	 */
+	public int getMejoras() {
+		return mejoras;
+	}
+
+	/**
+	 * Expandir nodos con el peso actual hasta que ningn nodo abierto pueda mejorar el
+	 * camino al destino
+	 *
+	 * @return False Si se acab el plazo antes de terminar
+	 */
+	private boolean mejorarCamino(Entidad entidad, int sx, int sy, int tx, int ty, int destino, long limite) {
+		AlmacenNodos n = nodos;
+		int expansiones = 0;
+		while ((abierto.size() != 0) && (abierto.clave(destino) > abierto.clave(abierto.primero()))) {
+			if ((++expansiones % EXPANSIONES_ENTRE_RELOJ == 0) && (System.nanoTime() >= limite)) {
+				return false;
+			}
+			int actual = abierto.primero();
+			abierto.eliminar(actual);
+			n.estado[actual] = CERRADO;
+			agregarCerrado(actual);
+			expandidos++;
+			if (n.profundidad[actual] > maxProfundidad) {
+				maxProfundidad = n.profundidad[actual];
+			}
+			int ax = n.getX(actual);
+			int ay = n.getY(actual);
+			if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+				traza.nodoExpandido(ax, ay, n.costo[actual], n.heuristica[actual]);
+			}
+
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					if ((x == 0) && (y == 0)) {
+						continue;
+					}
+					if (!permiteMoviDiagonal && (x != 0) && (y != 0)) {
+						continue;
+					}
+					int xp = ax + x;
+					int yp = ay + y;
+					if ((xp < 0) || (yp < 0) || (xp >= ancho) || (yp >= altura)
+							|| (((xp != sx) || (yp != sy)) && mapa.bloquea(entidad, xp, yp))) {
+						continue;
+					}
+					float costoSiguientePaso = n.costo[actual] + mapa.getCosto(entidad, ax, ay, xp, yp);
+					int vecino = n.nodo(yp * ancho + xp);
+					if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+						traza.baldosaVisitada(xp, yp);
+					}
+					if (!(costoSiguientePaso < n.costo[vecino])) {
+						continue;
+					}
+					if (n.costo[vecino] == Float.MAX_VALUE) {// La primera vez que se alcanza
+						n.heuristica[vecino] = heuristica.getCosto(mapa, entidad, xp, yp, tx, ty);
+						generados++;
+					}
+					n.costo[vecino] = costoSiguientePaso;
+					n.padre[vecino] = actual;
+					n.profundidad[vecino] = n.profundidad[actual] + 1;
+
+					// Un nodo ya expandido en esta mejora no se vuelve a abrir hasta la siguiente
+					if (n.estado[vecino] == ABIERTO) {
+						abierto.disminuirClave(vecino);
+					} else if (n.estado[vecino] == CERRADO) {
+						n.estado[vecino] = INCONSISTENTE;
+						agregarInconsistente(vecino);
+						reabiertos++;
+					} else if (n.estado[vecino] == SIN_VISITAR) {
+						abierto.agregar(vecino);
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Obtener el menor coste sin peso, costo + heuristica, de los nodos abiertos e
+	 * inconsistentes, que con una heurstica admisible no supera el coste ptimo
+	 */
+	private float menorCostoPendiente() {
+		float menor = Float.MAX_VALUE;
+		for (int i=0;i<abierto.size();i++) {
+			int nodo = abierto.get(i);
+			menor = Math.min(menor, nodos.costo[nodo] + nodos.heuristica[nodo]);
+		}
+		for (int i=0;i<numeroInconsistentes;i++) {
+			menor = Math.min(menor, nodos.costo[inconsistentes[i]] + nodos.heuristica[inconsistentes[i]]);
+		}
+		return menor;
+	}
+
+	/**
+	 * Aadir un nodo a la lista de inconsistentes
+	 */
+	private void agregarInconsistente(int nodo) {
+		if (numeroInconsistentes == inconsistentes.length) {
+			inconsistentes = Arrays.copyOf(inconsistentes, numeroInconsistentes * 2);
+		}
+		inconsistentes[numeroInconsistentes++] = nodo;
+	}
+
+	/**
+	 * Aadir un nodo a la lista de cerrados de la mejora actual
+	 */
+	private void agregarCerrado(int nodo) {
+		if (numeroCerrados == cerrados.length) {
+			cerrados = Arrays.copyOf(cerrados, numeroCerrados * 2);
+		}
+		cerrados[numeroCerrados++] = nodo;
+	}
+}
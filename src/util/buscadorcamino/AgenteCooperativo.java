@@ -0,0 +1,139 @@
+package util.buscadorcamino;
+
+/**
+ * Una entidad que planifica su camino con un PlanificadorCooperativo. Guarda su posicin, su
+ * destino, el plan de la ventana actual y la bsqueda inversa hasta su destino, que se
+ * conserva de una ventana a otra mientras el destino no cambie.
+ *
+ * @see PlanificadorCooperativo
+ */
+public class AgenteCooperativo {
+
+	private int id;/** El identificador del agente en la tabla de reservas */
+	private Entidad entidad;/** La entidad que se mueve */
+	private int x;/** La coordenada x actual */
+	private int y;/** La coordenada y actual */
+	private int tx;/** La coordenada x del destino */
+	private int ty;/** La coordenada y del destino */
+	private DistanciaReanudable distancia;/** La distancia real hasta el destino, calculada bajo demanda */
+	private Camino plan;/** Las posiciones de la ventana actual, una por instante empezando por la actual, o null */
+	private int paso;/** La posicin del plan en la que est el agente */
+
+	/**
+	 * Crear un agente, desde PlanificadorCooperativo#crearAgente
+	 */
+	AgenteCooperativo(int id, Entidad entidad, int x, int y, DistanciaReanudable distancia) {
+		this.id = id;
+		this.entidad = entidad;
+		this.x = x;
+		this.y = y;
+		this.tx = x;
+		this.ty = y;
+		this.distancia = distancia;
+	}
+
+	/**
+	 * Cambiar el destino del agente. El plan actual se conserva hasta la siguiente
+	 * planificacin.
+	 *
+	 * @param tx La coordenada x del destino
+	 * @param ty La coordenada y del destino
+	 */
+	public void setDestino(int tx, int ty) {
+		this.tx = tx;
+		this.ty = ty;
+	}
+
+	/**
+	 * Colocar el agente en otra posicin, por ejemplo si el juego lo ha movido por otra razn.
+	 * El plan se descarta.
+	 *
+	 * @param x La nueva coordenada x
+	 * @param y La nueva coordenada y
+	 */
+	public void setPosicion(int x, int y) {
+		this.x = x;
+		this.y = y;
+		plan = null;
+	}
+
+	/**
+	 * Mover el agente un instante segn su plan. Si el plan se ha agotado se queda quieto.
+	 *
+	 * @return True Si el agente ha cambiado de baldosa
+	 */
+	public boolean avanzar() {
+		if ((plan == null) || (paso + 1 >= plan.getLength())) {
+			return false;
+		}
+		paso++;
+		boolean movido = (plan.getX(paso) != x) || (plan.getY(paso) != y);
+		x = plan.getX(paso);
+		y = plan.getY(paso);
+		return movido;
+	}
+
+	/**
+	 * Comprobar si el agente est en su destino
+	 *
+	 * @return True Si la posicin actual es el destino
+	 */
+	public boolean haLlegado() {
+		return (x == tx) && (y == ty);
+	}
+
+	/**
+	 * Obtener el plan de la ventana actual
+	 *
+	 * @return Las posiciones del agente en cada instante de la ventana, empezando por la de
+	 * cuando se planific; dos pasos iguales seguidos significan esperar. Null si no hay plan.
+	 */
+	public Camino getPlan() {
+		return plan;
+	}
+
+	/**
+	 * Obtener los instantes del plan que quedan por recorrer
+	 *
+	 * @return El nmero de veces que an se puede llamar a avanzar siguiendo el plan
+	 */
+	public int getPasosRestantes() {
+		return (plan == null) ? 0 : plan.getLength() - 1 - paso;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getDestinoX() {
+		return tx;
+	}
+
+	public int getDestinoY() {
+		return ty;
+	}
+
+	public Entidad getEntidad() {
+		return entidad;
+	}
+
+	int getId() {
+		return id;
+	}
+
+	DistanciaReanudable getDistancia() {
+		return distancia;
+	}
+
+	/**
+	 * Establecer un nuevo plan que empieza en la posicin actual
+	 */
+	void setPlan(Camino plan) {
+		this.plan = plan;
+		this.paso = 0;
+	}
+}
@@ -0,0 +1,211 @@
+package util.buscadorcamino;
+
+import java.util.Arrays;
+
+/**
+ * Los datos de los nodos de una bsqueda guardados como estructura de vectores: el coste, la
+ * heurstica, el padre, la profundidad, el estado y la posicin en la lista abierta de cada
+ * nodo estn en vectores primitivos paralelos, y un nodo es un ndice en ellos.
+ *
+ * En modo denso hay un nodo por baldosa y el ndice del nodo es y*ancho+x; los vectores se
+ * crean en la primera bsqueda. En modo disperso slo se crean los nodos que la bsqueda toca,
+ * numerados en orden, y una tabla hash abierta de enteros traduce cada baldosa a su nodo, as
+ * que la memoria depende del esfuerzo de bsqueda y no del tamao del mapa.
+ *
+ * En los dos modos los nodos de bsquedas anteriores se olvidan sin recorrerlos, marcndolos
+ * con el nmero de bsqueda.
+ */
+class AlmacenNodos {
+
+	static final byte SIN_VISITAR = 0;/** Estado de un nodo que la bsqueda actual an no ha tocado */
+	static final byte ABIERTO = 1;/** Estado de un nodo que est en la lista abierta */
+	static final byte CERRADO = 2;/** Estado de un nodo que ya se ha buscado, es decir, est en la lista cerrada */
+	static final int NINGUNO = -1;/** El ndice de un nodo que no existe */
+
+	float[] costo;/** El coste de la ruta hasta cada nodo */
+	float[] heuristica;/** El coste heurstico de cada nodo */
+	int[] padre;/** El nodo padre de cada nodo, o NINGUNO */
+	int[] profundidad;/** La profundidad de bsqueda de cada nodo */
+	int[] indiceAbierto;/** La posicin de cada nodo en el montculo abierto, o -1 */
+	byte[] estado;/** Si cada nodo est sin visitar, abierto o cerrado */
+
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int baldosas;/** El nmero de baldosas del mapa */
+	private boolean disperso;/** Es cierto si slo se crean los nodos tocados */
+	private int busquedaActual;/** El nmero de la bsqueda en curso */
+
+	private int[] busqueda;/** En modo denso, la bsqueda que toc cada nodo por ltima vez */
+
+	private int[] baldosa;/** En modo disperso, la baldosa de cada nodo */
+	private int tamano;/** En modo disperso, el nmero de nodos de la bsqueda actual */
+	private int[] claves;/** En modo disperso, las baldosas de la tabla hash */
+	private int[] valores;/** En modo disperso, el nodo de cada baldosa de la tabla hash */
+	private int[] marcas;/** En modo disperso, la bsqueda a la que pertenece cada entrada de la tabla */
+
+	/**
+	 * Crear un almacn de nodos
+	 *
+	 * @param ancho El ancho del mapa en baldosas
+	 * @param altura La altura del mapa en baldosas
+	 * @param disperso Es cierto si slo se crean los nodos que la bsqueda toca
+	 */
+	AlmacenNodos(int ancho, int altura, boolean disperso) {
+		this.ancho = ancho;
+		this.baldosas = ancho * altura;
+		this.disperso = disperso;
+		if (disperso) {
+			reservar(256);
+			baldosa = new int[256];
+			claves = new int[512];
+			valores = new int[512];
+			marcas = new int[512];
+		}
+	}
+
+	/**
+	 * Comenzar una nueva bsqueda, en la que todos los nodos estn sin visitar
+	 */
+	void nuevaBusqueda() {
+		if (!disperso && (busqueda == null)) {
+			reservar(baldosas);
+			busqueda = new int[baldosas];
+		}
+		busquedaActual++;
+		if (busquedaActual == 0) {// Si el contador da la vuelta hay que borrar las marcas antiguas una vez
+			Arrays.fill(disperso ? marcas : busqueda, 0);
+			busquedaActual = 1;
+		}
+		tamano = 0;
+	}
+
+	/**
+	 * Obtener el nodo de una baldosa en la bsqueda actual, crendolo sin visitar si an no
+	 * existe. En modo disperso los vectores pueden cambiar, as que hay que volver a leerlos.
+	 *
+	 * @param b La baldosa, y*ancho+x
+	 * @return El nodo de la baldosa
+	 */
+	int nodo(int b) {
+		if (!disperso) {
+			if (busqueda[b] != busquedaActual) {
+				busqueda[b] = busquedaActual;
+				iniciar(b);
+			}
+			return b;
+		}
+		int mascara = claves.length - 1;
+		int i = mezclar(b) & mascara;
+		while (marcas[i] == busquedaActual) {
+			if (claves[i] == b) {
+				return valores[i];
+			}
+			i = (i + 1) & mascara;
+		}
+		if (tamano == costo.length) {
+			reservar(tamano * 2);
+			baldosa = Arrays.copyOf(baldosa, tamano * 2);
+		}
+		int n = tamano++;
+		baldosa[n] = b;
+		iniciar(n);
+		marcas[i] = busquedaActual;
+		claves[i] = b;
+		valores[i] = n;
+		if (tamano * 2 > claves.length) {
+			ampliarTabla();
+		}
+		return n;
+	}
+
+	/**
+	 * Buscar el nodo de una baldosa sin crearlo
+	 *
+	 * @param b La baldosa, y*ancho+x
+	 * @return El nodo de la baldosa, o NINGUNO si la bsqueda actual no la ha tocado
+	 */
+	int buscar(int b) {
+		if (!disperso) {
+			return busqueda[b] == busquedaActual ? b : NINGUNO;
+		}
+		int mascara = claves.length - 1;
+		for (int i=mezclar(b) & mascara;marcas[i] == busquedaActual;i=(i + 1) & mascara) {
+			if (claves[i] == b) {
+				return valores[i];
+			}
+		}
+		return NINGUNO;
+	}
+
+	/**
+	 * Obtener la coordenada x de la baldosa de un nodo
+	 */
+	int getX(int n) {
+		return (disperso ? baldosa[n] : n) % ancho;
+	}
+
+	/**
+	 * Obtener la coordenada y de la baldosa de un nodo
+	 */
+	int getY(int n) {
+		return (disperso ? baldosa[n] : n) / ancho;
+	}
+
+	/**
+	 * Poner un nodo sin visitar
+	 */
+	private void iniciar(int n) {
+		estado[n] = SIN_VISITAR;
+		costo[n] = Float.MAX_VALUE;
+		padre[n] = NINGUNO;
+		profundidad[n] = 0;
+		indiceAbierto[n] = -1;
+	}
+
+	/**
+	 * Crear o ampliar los vectores de nodos
+	 */
+	private void reservar(int capacidad) {
+		if (costo == null) {
+			costo = new float[capacidad];
+			heuristica = new float[capacidad];
+			padre = new int[capacidad];
+			profundidad = new int[capacidad];
+			indiceAbierto = new int[capacidad];
+			estado = new byte[capacidad];
+		} else {
+			costo = Arrays.copyOf(costo, capacidad);
+			heuristica = Arrays.copyOf(heuristica, capacidad);
+			padre = Arrays.copyOf(padre, capacidad);
+			profundidad = Arrays.copyOf(profundidad, capacidad);
+			indiceAbierto = Arrays.copyOf(indiceAbierto, capacidad);
+			estado = Arrays.copyOf(estado, capacidad);
+		}
+	}
+
+	/**
+	 * Doblar la tabla hash y volver a colocar los nodos de la bsqueda actual
+	 */
+	private void ampliarTabla() {
+		claves = new int[claves.length * 2];
+		valores = new int[claves.length];
+		marcas = new int[claves.length];
+		int mascara = claves.length - 1;
+		for (int n=0;n<tamano;n++) {
+			int i = mezclar(baldosa[n]) & mascara;
+			while (marcas[i] == busquedaActual) {
+				i = (i + 1) & mascara;
+			}
+			marcas[i] = busquedaActual;
+			claves[i] = baldosa[n];
+			valores[i] = n;
+		}
+	}
+
+	/**
+	 * Mezclar los bits de una baldosa para repartirla por la tabla hash
+	 */
+	private static int mezclar(int b) {
+		int h = b * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,17 @@
+package util.buscadorcamino;
+
+/**
+ * Un buscador que puede informar de las medidas de cada bsqueda a un oyente. Sin oyente
+ * el buscador no mide el tiempo ni construye las medidas, as que no cuesta nada.
+ *
+ * @see OyenteBusqueda
+ */
+public interface BuscadorInstrumentable extends BuscadorRuta {
+
+	/**
+	 * Establecer el objeto al que se informa al terminar cada bsqueda
+	 *
+	 * @param oyente El oyente, o null para dejar de informar
+	 */
+	public void setOyenteBusqueda(OyenteBusqueda oyente);
+}
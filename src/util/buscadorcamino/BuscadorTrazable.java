@@ -0,0 +1,47 @@
+package util.buscadorcamino;
+
+/**
+ * Un buscador que puede avisar a una traza de cada paso de sus bsquedas, si las trazas se
+ * han activado al arrancar. Con las trazas activadas pero sin traza el buscador no hace nada
+ * ms que comprobar que no la tiene.
+ *
+ * @see TrazaBusqueda
+ */
+public interface BuscadorTrazable extends BuscadorRuta {
+
+	/**
+	 * Establecer la traza a la que se avisa en todas las bsquedas siguientes
+	 *
+	 * @param traza La traza, o null para dejar de trazar
+	 */
+	public void setTraza(TrazaBusqueda traza);
+
+	/**
+	 * Obtener la traza a la que se avisa en las bsquedas
+	 *
+	 * @return La traza establecida con setTraza, o null si no hay ninguna
+	 */
+	public TrazaBusqueda getTraza();
+
+	/**
+	 * Buscar un camino avisando a una traza slo en esta bsqueda
+	 *
+	 * @param entidad La entidad que se va a mover
+	 * @param sx La coordenada x de la ubicacin de inicio
+	 * @param sy La coordenada y de la ubicacin de inicio
+	 * @param tx La coordenada x de la ubicacin de destino
+	 * @param ty La coordenada y de la ubicacin de destino
+	 * @param traza La traza de esta bsqueda; despus el buscador vuelve a la traza que tena
+	 * @return El camino encontrado, o null
+	 * @see BuscadorRuta#encontrarCamino(Entidad, int, int, int, int)
+	 */
+	public default Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty, TrazaBusqueda traza) {
+		TrazaBusqueda anterior = getTraza();
+		setTraza(traza);
+		try {
+			return encontrarCamino(entidad, sx, sy, tx, ty);
+		} finally {
+			setTraza(anterior);
+		}
+	}
+}
@@ -0,0 +1,358 @@
+package util.buscadorcamino;
+
+import util.buscadorcamino.heuristicas.HeuristicaCercana;
+
+/**
+ * Una bsqueda Aestrella que se puede avanzar por partes, por ejemplo unas cuantas expansiones
+ * en cada fotograma, en lugar de resolverla de una vez en el hilo que la pide. Se empieza con
+ * iniciar, se avanza con avanzar o avanzarHasta, y getEstado indica si sigue en curso, si ha
+ * encontrado un camino o si ha fallado. Da los mismos caminos que AEstrellaBuscadorCamino.
+ *
+ * Los nodos se guardan en modo disperso, as que cada bsqueda ocupa memoria segn los nodos
+ * que toca y no segn el tamao del mapa, y puede haber muchas a la vez. Al terminar se puede
+ * volver a iniciar para reutilizar su espacio de trabajo.
+ *
+ * Si el mapa cambia mientras la bsqueda est en curso el camino puede pasar por baldosas que
+ * ya no son transitables, as que hay que comprobarlo al seguirlo.
+ *
+ * @see PlanificadorBusquedas
+ */
+public class BusquedaReanudable {
+
+	private static final byte SIN_VISITAR = AlmacenNodos.SIN_VISITAR;/** Estado de un nodo que la bsqueda actual an no ha tocado */
+	private static final byte ABIERTO = AlmacenNodos.ABIERTO;/** Estado de un nodo que est en la lista abierta */
+	private static final byte CERRADO = AlmacenNodos.CERRADO;/** Estado de un nodo que ya se ha buscado */
+	private static final int NINGUNO = AlmacenNodos.NINGUNO;/** El ndice de un nodo que no existe */
+	private static final int EXPANSIONES_ENTRE_RELOJ = 32;/** El nmero de nodos que se expanden entre dos consultas del reloj */
+
+	/**
+	 * El estado de una bsqueda
+	 */
+	public enum Estado {
+		EN_CURSO,/** La bsqueda an no ha terminado */
+		ENCONTRADO,/** La bsqueda ha terminado con un camino */
+		FALLIDO/** La bsqueda ha terminado sin camino */
+	}
+
+	private MapaConBaldosas mapa;/** El mapa que se busca */
+	private int maxDistanciaBusqueda;/** La profundidad mxima de la bsqueda que estamos dispuestos a aceptar antes de renunciar */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private AEstrellaHeuristica heuristica;/** La heurstica que estamos aplicando para determinar qu nodos buscar primero */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private AlmacenNodos nodos;/** Los nodos de la bsqueda */
+	private MonticuloNodos abierto;/** El conjunto de nodos que an no hemos considerado completamente buscado */
+
+	private Estado estado = Estado.FALLIDO;/** El estado de la bsqueda, FALLIDO hasta que se inicia */
+	private Entidad entidad;/** La entidad de la bsqueda en curso */
+	private int sx;/** La coordenada x de inicio de la bsqueda en curso */
+	private int sy;/** La coordenada y de inicio de la bsqueda en curso */
+	private int tx;/** La coordenada x de destino de la bsqueda en curso */
+	private int ty;/** La coordenada y de destino de la bsqueda en curso */
+	private int inicio;/** El nodo de inicio */
+	private int destino;/** El nodo de destino */
+	private int maxProfundidad;/** La mayor profundidad alcanzada hasta ahora */
+	private int expansiones;/** El nmero de nodos expandidos desde que se inici */
+	private Camino camino;/** El camino encontrado, o null */
+	private ComponentesConexas componentes;/** Las componentes con las que se descartan los destinos inalcanzables, o null */
+	private TrazaBusqueda traza;/** La traza a la que se avisa de cada paso de la bsqueda, o null */
+
+	/**
+	 * Crear una bsqueda con la heurstica predeterminada - ms cercana al destino.
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param maxDistanciaBusqueda La profundidad mxima que buscaremos antes de renunciar
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 */
+	public BusquedaReanudable(MapaConBaldosas mapa, int maxDistanciaBusqueda, boolean permiteMoviDiagonal) {
+		this(mapa, maxDistanciaBusqueda, permiteMoviDiagonal, new HeuristicaCercana());
+	}
+
+	/**
+	 * Crear una bsqueda
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param maxDistanciaBusqueda La profundidad mxima que buscaremos antes de renunciar
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 * @param heuristica La heurstica utilizada para determinar el orden de bsqueda del mapa
+	 */
+	public BusquedaReanudable(MapaConBaldosas mapa, int maxDistanciaBusqueda,
+							  boolean permiteMoviDiagonal, AEstrellaHeuristica heuristica) {
+		this.mapa = mapa;
+		this.maxDistanciaBusqueda = maxDistanciaBusqueda;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.heuristica = heuristica;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.nodos = new AlmacenNodos(ancho, mapa.getAlturaEnBaldosas(), true);
+		this.abierto = new MonticuloNodos(nodos);
+	}
+
+	/**
+	 * Usar unas componentes conexas para que las bsquedas cuyo destino est en otra
+	 * componente que el inicio fallen al iniciarse, sin expandir ningn nodo
+	 *
+	 * @param componentes Las componentes del mapa, con el mismo movimiento diagonal, o null
+	 */
+	public void setComponentes(ComponentesConexas componentes) {
+		this.componentes = componentes;
+	}
+
+	/**
+	 * Establecer la traza a la que se avisa en todas las bsquedas siguientes, desde que se
+	 * inician hasta que terminan
+	 *
+	 * @param traza La traza, o null para dejar de trazar
+	 * @see BuscadorTrazable#setTraza(TrazaBusqueda)
+	 */
+	public void setTraza(TrazaBusqueda traza) {
+		this.traza = traza;
+	}
+
+	/**
+	 * Obtener la traza a la que se avisa en las bsquedas
+	 *
+	 * @return La traza establecida con setTraza, o null si no hay ninguna
+	 * @see BuscadorTrazable#getTraza()
+	 */
+	public TrazaBusqueda getTraza() {
+		return traza;
+	}
+
+	/**
+	 * Empezar una bsqueda nueva, abandonando la anterior si no haba terminado. No expande
+	 * ningn nodo; si el destino est bloqueado, o en otra componente, la bsqueda queda ya
+	 * fallida.
+	 *
+	 * @param entidad La entidad que se va a mover
+	 * @param sx La coordenada x de la ubicacin de inicio
+	 * @param sy La coordenada y de la ubicacin de inicio
+	 * @param tx La coordenada x de la ubicacin de destino
+	 * @param ty La coordenada y de la ubicacin de destino
+	 */
+	public void iniciar(Entidad entidad, int sx, int sy, int tx, int ty) {
+		this.entidad = entidad;
+		this.sx = sx;
+		this.sy = sy;
+		this.tx = tx;
+		this.ty = ty;
+		camino = null;
+		maxProfundidad = 0;
+		expansiones = 0;
+		abierto.limpiar();
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaIniciada(sx, sy, tx, ty);
+		}
+		if (mapa.bloquea(entidad, tx, ty)) {// Si el destino esta bloqueado no podemos llegar
+			fallar();
+			return;
+		}
+		if ((componentes != null) && !componentes.conectadas(entidad, sx, sy, tx, ty)) {// Ni siquiera el terreno los une
+			fallar();
+			return;
+		}
+		nodos.nuevaBusqueda();
+		inicio = nodos.nodo(sy * ancho + sx);
+		destino = nodos.nodo(ty * ancho + tx);
+		nodos.costo[inicio] = 0;
+		nodos.heuristica[inicio] = 0;
+		abierto.agregar(inicio);
+		estado = Estado.EN_CURSO;
+	}
+
+	/**
+	 * Avanzar la bsqueda un nmero mximo de expansiones
+	 *
+	 * @param maxExpansiones El nmero mximo de nodos a expandir
+	 * @return El nmero de nodos expandidos, menor que el mximo slo si la bsqueda ha terminado
+	 */
+	public int avanzar(int maxExpansiones) {
+		int hechas = 0;
+		while ((estado == Estado.EN_CURSO) && (hechas < maxExpansiones)) {
+			if (expandir()) {
+				hechas++;
+			}
+		}
+		return hechas;
+	}
+
+	/**
+	 * Avanzar la bsqueda hasta que termine o llegue el plazo. El reloj se consulta cada pocas
+	 * expansiones, as que puede pasarse un poco del plazo.
+	 *
+	 * @param limiteNanos El instante, segn System.nanoTime, en el que hay que parar
+	 * @return El nmero de nodos expandidos
+	 */
+	public int avanzarHasta(long limiteNanos) {
+		int hechas = 0;
+		while ((estado == Estado.EN_CURSO) && (System.nanoTime() < limiteNanos)) {
+			hechas += avanzar(EXPANSIONES_ENTRE_RELOJ);
+		}
+		return hechas;
+	}
+
+	/**
+	 * Obtener el estado de la bsqueda
+	 *
+	 * @return EN_CURSO mientras no ha terminado, ENCONTRADO si hay camino y FALLIDO si no
+	 */
+	public Estado getEstado() {
+		return estado;
+	}
+
+	/**
+	 * Obtener el camino encontrado
+	 *
+	 * @return El camino de principio a fin, o null si la bsqueda no lo ha encontrado (an)
+	 */
+	public Camino getCamino() {
+		return camino;
+	}
+
+	/**
+	 * Obtener el nmero de nodos expandidos desde que se inici la bsqueda
+	 *
+	 * @return El nmero de expansiones
+	 */
+	public int getExpansiones() {
+		return expansiones;
+	}
+
+	/**
+	 * Obtener la entidad de la bsqueda
+	 *
+	 * @return La entidad con la que se inici la bsqueda
+	 */
+	public Entidad getEntidad() {
+		return entidad;
+	}
+
+	/**
+	 * Obtener la coordenada x del destino de la bsqueda
+	 *
+	 * @return La coordenada x del destino
+	 */
+	public int getDestinoX() {
+		return tx;
+	}
+
+	/**
+	 * Obtener la coordenada y del destino de la bsqueda
+	 *
+	 * @return La coordenada y del destino
+	 */
+	public int getDestinoY() {
+		return ty;
+	}
+
+	/**
+	 * Expandir el primer nodo abierto, o terminar la bsqueda si no queda nada por hacer
+	 *
+	 * @return True Si se expandi un nodo
+	 */
+	private boolean expandir() {
+		// Mismo bucle que AEstrellaBuscadorCamino, una vuelta cada vez
+		AlmacenNodos n = nodos;
+		if ((maxProfundidad >= maxDistanciaBusqueda) || (abierto.size() == 0) || (abierto.primero() == destino)) {
+			terminar();
+			return false;
+		}
+		int actual = abierto.primero();
+		abierto.eliminar(actual);
+		n.estado[actual] = CERRADO;
+		expansiones++;
+		int ax = n.getX(actual);
+		int ay = n.getY(actual);
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.nodoExpandido(ax, ay, n.costo[actual], n.heuristica[actual]);
+		}
+
+		for (int x=-1;x<2;x++) {
+			for (int y=-1;y<2;y++) {
+				if ((x == 0) && (y == 0)) {
+					continue;
+				}
+				if (!permiteMoviDiagonal && (x != 0) && (y != 0)) {
+					continue;
+				}
+				int xp = x + ax;
+				int yp = y + ay;
+				if (!esValida(xp, yp)) {
+					continue;
+				}
+				float costoSiguientePaso = n.costo[actual] + mapa.getCosto(entidad, ax, ay, xp, yp);
+				int vecino = n.nodo(yp * ancho + xp);
+				if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+					traza.baldosaVisitada(xp, yp);
+				}
+
+				if (costoSiguientePaso < n.costo[vecino]) {
+					if (n.estado[vecino] == CERRADO) {
+						n.estado[vecino] = SIN_VISITAR;
+					}
+					if (n.estado[vecino] == ABIERTO) {
+						n.costo[vecino] = costoSiguientePaso;
+						setPadre(vecino, actual);
+						abierto.disminuirClave(vecino);
+					}
+				}
+				if (n.estado[vecino] == SIN_VISITAR) {
+					n.costo[vecino] = costoSiguientePaso;
+					n.heuristica[vecino] = heuristica.getCosto(mapa, entidad, xp, yp, tx, ty);
+					setPadre(vecino, actual);
+					abierto.agregar(vecino);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Terminar la bsqueda, construyendo el camino si se lleg al destino
+	 */
+	private void terminar() {
+		if (nodos.padre[destino] == NINGUNO) {
+			fallar();
+			return;
+		}
+		Camino c = new Camino(nodos.profundidad[destino] + 1, 0);
+		int objetivo = destino;
+		while (objetivo != inicio) {
+			c.pasoPrevio(nodos.getX(objetivo), nodos.getY(objetivo));
+			objetivo = nodos.padre[objetivo];
+		}
+		c.pasoPrevio(sx, sy);
+		camino = c;
+		estado = Estado.ENCONTRADO;
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaTerminada(camino);
+		}
+	}
+
+	/**
+	 * Terminar la bsqueda sin camino
+	 */
+	private void fallar() {
+		estado = Estado.FALLIDO;
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaTerminada(null);
+		}
+	}
+
+	/**
+	 * Establecer el padre de un nodo y actualizar la profundidad mxima
+	 */
+	private void setPadre(int nodo, int padre) {
+		nodos.profundidad[nodo] = nodos.profundidad[padre] + 1;
+		nodos.padre[nodo] = padre;
+		maxProfundidad = Math.max(maxProfundidad, nodos.profundidad[nodo]);
+	}
+
+	/**
+	 * Comprobar si la entidad puede pasar por una baldosa. La de inicio siempre es vlida.
+	 */
+	private boolean esValida(int x, int y) {
+		if ((x < 0) || (y < 0) || (x >= ancho) || (y >= mapa.getAlturaEnBaldosas())) {
+			return false;
+		}
+		return ((x == sx) && (y == sy)) || !mapa.bloquea(entidad, x, y);
+	}
+}
@@ -1,18 +1,44 @@
 package util.buscadorcamino;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 /**
  * Un camino determinado por algn algoritmo de bsqueda de camino. 
  * Una serie de pasos desde la ubicacin de inicio hasta la ubicacin de destino. 
  * Esto incluye un paso para la ubicacin inicial.
+ * 
+ * Los pasos se guardan empaquetados en un vector de enteros, con la y en los 16 bits altos y 
+ * la x en los bajos, as que las coordenadas deben ser menores que 65536. El vector se llena 
+ * desde el final cuando se aaden pasos previos, de modo que tanto agregarPaso como pasoPrevio 
+ * son O(1) y no crean objetos si se da la capacidad al crear el camino.
  */
 public class Camino {
 	
-	private ArrayList<Paso> pasos = new ArrayList<>();/** La lista de pasos que construyen este camino */
+	private static final int MIN_INDICE = 16;/** El nmero de pasos a partir del cual contains usa un ndice */
+	
+	private int[] pasos;/** Los pasos empaquetados, los vlidos van de primero a ultimo - 1 */
+	private int primero;/** La posicin del primer paso en el vector */
+	private int ultimo;/** La posicin siguiente al ltimo paso en el vector */
+	private int[] indice;/** Una tabla hash abierta de las posiciones de los pasos para contains, creada al necesitarla */
 	
 	public Camino() {
-		
+		this(8, 8);
+	}
+	
+	/**
+	 * Crear un camino con sitio para un nmero de pasos sin tener que crecer. Como el camino 
+	 * puede construirse en los dos sentidos se indica cuntos pasos se aadirn con pasoPrevio 
+	 * y cuntos con agregarPaso.
+	 * 
+	 * @param previos El nmero de pasos que se espera aadir con pasoPrevio
+	 * @param siguientes El nmero de pasos que se espera aadir con agregarPaso
+	 */
+	public Camino(int previos, int siguientes) {
+		pasos = new int[Math.max(previos + siguientes, 1)];
+		primero = previos;
+		ultimo = previos;
 	}
 
 	/**
@@ -21,7 +47,7 @@ public class Camino {
 	 * @return El nmero de pasos en esta ruta
 	 */
 	public int getLength() {
-		return pasos.size();
+		return ultimo - primero;
 	}
 	
 	/**
@@ -31,7 +57,21 @@ public class Camino {
 	 * @return La informacin del paso, la posicin en el mapa.
 	 */
 	public Paso getPaso(int indice) {
-		return (Paso) pasos.get(indice);
+		int paso = getPasoEmpaquetado(indice);
+		return new Paso(xDePaso(paso), yDePaso(paso));
+	}
+	
+	/**
+	 * Obtener el paso en un ndice dado de la ruta sin crear ningn objeto
+	 * 
+	 * @param indice El ndice del paso a recuperar. >= 0 and < getLength();
+	 * @return El paso empaquetado, que se lee con xDePaso e yDePaso
+	 */
+	public int getPasoEmpaquetado(int indice) {
+		if ((indice < 0) || (indice >= getLength())) {
+			throw new IndexOutOfBoundsException("Index: "+indice+", Size: "+getLength());
+		}
+		return pasos[primero + indice];
 	}
 	
 	/**
@@ -41,7 +81,7 @@ public class Camino {
 	 * @return La coordenada x en el paso
 	 */
 	public int getX(int indice) {
-		return getPaso(indice).x;
+		return xDePaso(getPasoEmpaquetado(indice));
 	}
 
 	/**
@@ -51,7 +91,29 @@ public class Camino {
 	 * @return La coordenada y en el paso
 	 */
 	public int getY(int indice) {
-		return getPaso(indice).y;
+		return yDePaso(getPasoEmpaquetado(indice));
+	}
+	
+	/**
+	 * Recorrer los pasos empaquetados desde el inicio hasta el destino sin crear un objeto por paso
+	 * 
+	 * @return Un iterador de los pasos empaquetados
+	 */
+	public PrimitiveIterator.OfInt iterador() {
+		return new PrimitiveIterator.OfInt() {
+			private int siguiente = primero;/** La posicin del siguiente paso en el vector */
+			
+			public boolean hasNext() {
+				return siguiente < ultimo;
+			}
+			
+			public int nextInt() {
+				if (siguiente >= ultimo) {
+					throw new NoSuchElementException();
+				}
+				return pasos[siguiente++];
+			}
+		};
 	}
 	
 	/**
@@ -61,7 +123,11 @@ public class Camino {
 	 * @param y La coordenada y del nuevo paso
 	 */
 	public void agregarPaso(int x, int y) {
-		pasos.add(new Paso(x,y));
+		if (ultimo == pasos.length) {
+			crecer(false);
+		}
+		pasos[ultimo++] = empaquetar(x, y);
+		indice = null;
 	}
 
 	/**
@@ -71,18 +137,116 @@ public class Camino {
 	 * @param y La coordenada y del nuevo paso
 	 */
 	public void pasoPrevio(int x, int y) {
-		pasos.add(0, new Paso(x, y));
+		if (primero == 0) {
+			crecer(true);
+		}
+		pasos[--primero] = empaquetar(x, y);
+		indice = null;
 	}
 	
 	/**
-	 * Compruebe si esta ruta contiene el paso dado
+	 * Compruebe si esta ruta contiene el paso dado. En los caminos largos la primera 
+	 * llamada crea un ndice de los pasos, as que las siguientes son O(1).
 	 * 
 	 * @param x La coordenada x del paso para comprobar
 	 * @param y La coordenada y del paso para comprobar
 	 * @return True Si la ruta contiene el paso dado
 	 */
 	public boolean contains(int x, int y) {
-		return pasos.contains(new Paso(x,y));
+		int paso = empaquetar(x, y);
+		if (getLength() < MIN_INDICE) {
+			for (int i=primero;i<ultimo;i++) {
+				if (pasos[i] == paso) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (indice == null) {
+			crearIndice();
+		}
+		int mascara = indice.length - 1;
+		for (int i=mezclar(paso) & mascara;indice[i] != -1;i=(i + 1) & mascara) {
+			if (pasos[indice[i]] == paso) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Empaquetar las coordenadas de un paso en un entero
+	 * 
+	 * @param x La coordenada x del paso
+	 * @param y La coordenada y del paso
+	 * @return El paso empaquetado
+	 */
+	public static int empaquetar(int x, int y) {
+		return (y << 16) | (x & 0xFFFF);
+	}
+	
+	/**
+	 * Obtener la coordenada x de un paso empaquetado
+	 * 
+	 * @param paso El paso empaquetado
+	 * @return La coordenada x del paso
+	 */
+	public static int xDePaso(int paso) {
+		return paso & 0xFFFF;
+	}
+	
+	/**
+	 * Obtener la coordenada y de un paso empaquetado
+	 * 
+	 * @param paso El paso empaquetado
+	 * @return La coordenada y del paso
+	 */
+	public static int yDePaso(int paso) {
+		return paso >>> 16;
+	}
+	
+	/**
+	 * Ampliar el vector de pasos dejando el hueco nuevo delante o detrs. El hueco que ya 
+	 * haba al otro lado se conserva.
+	 * 
+	 * @param delante Es cierto si el hueco se necesita delante del primer paso
+	 */
+	private void crecer(boolean delante) {
+		int longitud = getLength();
+		int[] nuevos = new int[Math.max(pasos.length * 2, 16)];
+		int nuevoPrimero = delante ? primero + nuevos.length - pasos.length : primero;
+		System.arraycopy(pasos, primero, nuevos, nuevoPrimero, longitud);
+		pasos = nuevos;
+		primero = nuevoPrimero;
+		ultimo = nuevoPrimero + longitud;
+	}
+	
+	/**
+	 * Crear la tabla hash de los pasos, con al menos el doble de huecos que pasos. Guarda la
+	 * posicin de cada paso y no el paso, porque cualquier entero es un paso empaquetado vlido 
+	 * (el -1 es el paso (65535, 65535)) mientras que una posicin nunca es -1. Las posiciones 
+	 * no cambian hasta que se modifica el camino, y entonces se descarta la tabla.
+	 */
+	private void crearIndice() {
+		int huecos = Integer.highestOneBit(getLength()) << 2;
+		indice = new int[huecos];
+		Arrays.fill(indice, -1);
+		int mascara = huecos - 1;
+		for (int j=primero;j<ultimo;j++) {
+			int i = mezclar(pasos[j]) & mascara;
+			while ((indice[i] != -1) && (pasos[indice[i]] != pasos[j])) {
+				i = (i + 1) & mascara;
+			}
+			indice[i] = j;
+		}
+	}
+	
+	/**
+	 * Mezclar los bits de un paso empaquetado para repartirlo por la tabla hash
+	 */
+	private static int mezclar(int paso) {
+		int h = paso * 0x9E3779B9;
+		return h ^ (h >>> 16);
 	}
 	
 	/**
@@ -127,7 +291,7 @@ public class Camino {
 		 * @see Object#hashCode()
 		 */
 		public int hashCode() {
-			return x*y;
+			return empaquetar(x, y);
 		}
 
 		/**
@@ -0,0 +1,427 @@
+package util.buscadorcamino;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Las componentes conexas del terreno transitable de cada tipo de entidad, para descartar en
+ * tiempo constante las bsquedas cuyo destino no se puede alcanzar desde el inicio, que de otro
+ * modo recorren toda la zona alcanzable antes de rendirse. Dos entidades iguales segn equals
+ * comparten las etiquetas, que se calculan la primera vez que se pide una entidad.
+ *
+ * Las etiquetas se mantienen al da baldosa a baldosa. Cuando una baldosa pasa a ser
+ * transitable se une a las componentes de sus vecinas con una estructura de unin y bsqueda.
+ * Cuando pasa a bloquear, se buscan a la vez desde cada grupo de vecinas que pueda haber
+ * quedado separado, y slo se vuelven a etiquetar las partes que se han separado, que son las
+ * que terminan antes. Si el mapa es un MapaObservable las componentes se registran en l, y
+ * cerrar las da de baja; si no, hay que avisarles con baldosaCambiada.
+ *
+ * Las conexiones siguen lo que diga bloquea, as que conviene pasar un mapa que slo bloquee
+ * por el terreno: una baldosa ocupada por otra unidad no separa el mapa por mucho tiempo, y
+ * como el terreno bloquea menos que el mapa completo, dos baldosas en componentes distintas
+ * del terreno tampoco estn unidas en el mapa completo. No es seguro para varios hilos.
+ */
+public class ComponentesConexas implements OyenteMapa {
+
+	public static final int NINGUNA = -1;/** La componente de una baldosa que bloquea */
+
+	private static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};/** El avance en x de cada vecina, en orden alrededor de la baldosa y con las rectas en las posiciones pares */
+	private static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};/** El avance en y de cada vecina, en orden alrededor de la baldosa y con las rectas en las posiciones pares */
+
+	private MapaConBaldosas mapa;/** El mapa que se etiqueta */
+	private boolean permiteMoviDiagonal;/** Es cierto si las baldosas en diagonal estn conectadas */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private HashMap<Entidad, Etiquetas> etiquetas = new HashMap<>();/** Las etiquetas de cada tipo de entidad */
+
+	/**
+	 * Crear las componentes de un mapa
+	 *
+	 * @param mapa El mapa que se etiqueta, preferiblemente slo con el terreno
+	 * @param permiteMoviDiagonal Es cierto si los buscadores que las consultan permiten el
+	 * movimiento diagonal
+	 */
+	public ComponentesConexas(MapaConBaldosas mapa, boolean permiteMoviDiagonal) {
+		this.mapa = mapa;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).agregarOyente(this);
+		}
+	}
+
+	/**
+	 * Comprobar si una entidad puede llegar de una baldosa a otra. La baldosa de inicio puede
+	 * bloquear, como en los buscadores, y entonces vale cualquiera de sus vecinas.
+	 *
+	 * @param entidad La entidad que se va a mover
+	 * @param sx La coordenada x de la ubicacin de inicio
+	 * @param sy La coordenada y de la ubicacin de inicio
+	 * @param tx La coordenada x de la ubicacin de destino
+	 * @param ty La coordenada y de la ubicacin de destino
+	 * @return False Si seguro que no hay camino; true si puede haberlo
+	 */
+	public boolean conectadas(Entidad entidad, int sx, int sy, int tx, int ty) {
+		Etiquetas e = getEtiquetas(entidad);
+		int destino = e.getComponente(ty * ancho + tx);
+		if (destino == NINGUNA) {
+			return false;
+		}
+		int inicio = e.getComponente(sy * ancho + sx);
+		if (inicio != NINGUNA) {
+			return inicio == destino;
+		}
+		for (int d=0;d<DX.length;d+=permiteMoviDiagonal ? 1 : 2) {
+			int x = sx + DX[d];
+			int y = sy + DY[d];
+			if ((x >= 0) && (y >= 0) && (x < ancho) && (y < altura) && (e.getComponente(y * ancho + x) == destino)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Obtener la componente de una baldosa para una entidad
+	 *
+	 * @param entidad La entidad que se va a mover
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return Un nmero igual para todas las baldosas de la misma componente, o NINGUNA si la
+	 * baldosa bloquea. Puede cambiar cuando cambia el mapa.
+	 */
+	public int getComponente(Entidad entidad, int x, int y) {
+		return getEtiquetas(entidad).getComponente(y * ancho + x);
+	}
+
+	/**
+	 * Actualizar la baldosa en las etiquetas de todas las entidades
+	 *
+	 * @see OyenteMapa#baldosaCambiada(int, int)
+	 */
+	public void baldosaCambiada(int x, int y) {
+		for (Etiquetas e : etiquetas.values()) {
+			e.actualizar(x, y);
+		}
+	}
+
+	/**
+	 * Dejar de escuchar los cambios del mapa. Hay que llamarlo al dejar de usarlo, porque
+	 * si no el mapa conserva las etiquetas
+	 */
+	public void cerrar() {
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).eliminarOyente(this);
+		}
+	}
+
+	/**
+	 * Obtener las etiquetas de una entidad, calculndolas si es la primera vez
+	 */
+	private Etiquetas getEtiquetas(Entidad entidad) {
+		Etiquetas e = etiquetas.get(entidad);
+		if (e == null) {
+			e = new Etiquetas(entidad);
+			etiquetas.put(entidad, e);
+		}
+		return e;
+	}
+
+	/**
+	 * Las etiquetas de un tipo de entidad. Cada baldosa guarda un identificador, y los
+	 * identificadores unidos apuntan a un representante comn, que es la componente.
+	 */
+	private class Etiquetas {
+
+		private Entidad entidad;/** La entidad de las etiquetas */
+		private int[] etiqueta;/** El identificador de cada baldosa, o NINGUNA si bloquea */
+		private int[] padre = new int[64];/** El padre de cada identificador en la unin, l mismo si es representante */
+		private int identificadores;/** El nmero de identificadores creados */
+		private int[] marca;/** La generacin en que cada baldosa se visit al buscar separaciones */
+		private int[] frente;/** La bsqueda que visit cada baldosa en la generacin actual */
+		private int generacion;/** La generacin de la bsqueda de separaciones en curso */
+
+		/**
+		 * Etiquetar todo el mapa para una entidad
+		 */
+		private Etiquetas(Entidad entidad) {
+			this.entidad = entidad;
+			this.etiqueta = new int[ancho * altura];
+			this.marca = new int[ancho * altura];
+			this.frente = new int[ancho * altura];
+			etiquetarTodo();
+		}
+
+		/**
+		 * Obtener la componente de una baldosa
+		 */
+		private int getComponente(int baldosa) {
+			int id = etiqueta[baldosa];
+			return (id == NINGUNA) ? NINGUNA : raiz(id);
+		}
+
+		/**
+		 * Volver a calcular las etiquetas de todo el mapa con identificadores nuevos
+		 */
+		private void etiquetarTodo() {
+			Arrays.fill(etiqueta, NINGUNA);
+			identificadores = 0;
+			int[] cola = new int[ancho * altura];
+			for (int b=0;b<etiqueta.length;b++) {
+				if ((etiqueta[b] != NINGUNA) || mapa.bloquea(entidad, b % ancho, b / ancho)) {
+					continue;
+				}
+				int id = nuevoIdentificador();
+				etiqueta[b] = id;
+				int fin = 0;
+				cola[fin++] = b;
+				for (int i=0;i<fin;i++) {
+					int x = cola[i] % ancho;
+					int y = cola[i] / ancho;
+					for (int d=0;d<DX.length;d+=permiteMoviDiagonal ? 1 : 2) {
+						int nx = x + DX[d];
+						int ny = y + DY[d];
+						if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+							continue;
+						}
+						int vecina = ny * ancho + nx;
+						if ((etiqueta[vecina] == NINGUNA) && !mapa.bloquea(entidad, nx, ny)) {
+							etiqueta[vecina] = id;
+							cola[fin++] = vecina;
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Actualizar las etiquetas tras cambiar una baldosa
+		 */
+		private void actualizar(int x, int y) {
+			int b = y * ancho + x;
+			boolean bloquea = mapa.bloquea(entidad, x, y);
+			if (bloquea == (etiqueta[b] == NINGUNA)) {// No ha cambiado para esta entidad
+				return;
+			}
+			if (!bloquea) {
+				abrir(x, y);
+			} else {
+				cerrar(x, y);
+			}
+			if (identificadores > 2 * etiqueta.length) {// Demasiados identificadores muertos
+				etiquetarTodo();
+			}
+		}
+
+		/**
+		 * Una baldosa ha pasado a ser transitable: se une a las componentes de sus vecinas
+		 */
+		private void abrir(int x, int y) {
+			int id = NINGUNA;
+			for (int d=0;d<DX.length;d+=permiteMoviDiagonal ? 1 : 2) {
+				int nx = x + DX[d];
+				int ny = y + DY[d];
+				if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+					continue;
+				}
+				int vecina = getComponente(ny * ancho + nx);
+				if (vecina == NINGUNA) {
+					continue;
+				}
+				if (id == NINGUNA) {
+					id = vecina;
+				} else if (vecina != id) {
+					padre[vecina] = id;
+				}
+			}
+			etiqueta[y * ancho + x] = (id == NINGUNA) ? nuevoIdentificador() : id;
+		}
+
+		/**
+		 * Una baldosa ha pasado a bloquear: su componente puede haberse partido. Se busca a la
+		 * vez desde cada grupo de vecinas, un nodo por turno; las bsquedas que se tocan estn
+		 * en la misma parte. Cuando slo queda una parte sin terminar, las dems se han
+		 * separado y reciben un identificador nuevo; la que no termina conserva el antiguo.
+		 */
+		private void cerrar(int x, int y) {
+			etiqueta[y * ancho + x] = NINGUNA;
+
+			// Las vecinas seguidas alrededor de la baldosa estn unidas entre s sin pasar por ella
+			int paso = permiteMoviDiagonal ? 1 : 2;
+			int[] semillas = new int[DX.length];
+			int grupos = 0;
+			boolean anterior = false;
+			int primerGrupo = -1;
+			for (int d=0;d<DX.length;d+=paso) {
+				int nx = x + DX[d];
+				int ny = y + DY[d];
+				boolean transitable = (nx >= 0) && (ny >= 0) && (nx < ancho) && (ny < altura) && (etiqueta[ny * ancho + nx] != NINGUNA);
+				if (transitable && !(anterior && permiteMoviDiagonal)) {
+					semillas[grupos++] = ny * ancho + nx;
+					if (d == 0) {
+						primerGrupo = 0;
+					}
+				}
+				anterior = transitable;
+			}
+			if ((grupos > 1) && (primerGrupo == 0) && anterior && permiteMoviDiagonal) {// El ltimo grupo da la vuelta y se une al primero
+				grupos--;
+			}
+			if (grupos < 2) {
+				return;
+			}
+
+			generacion++;
+			if (generacion == 0) {
+				Arrays.fill(marca, 0);
+				generacion = 1;
+			}
+			int[][] colas = new int[grupos][];
+			int[] inicios = new int[grupos];
+			int[] fines = new int[grupos];
+			int[] unidos = new int[grupos];
+			for (int g=0;g<grupos;g++) {
+				colas[g] = new int[16];
+				colas[g][fines[g]++] = semillas[g];
+				marca[semillas[g]] = generacion;
+				frente[semillas[g]] = g;
+				unidos[g] = g;
+			}
+
+			while (true) {
+				// Contar las partes que siguen buscando
+				int partes = 0;
+				int vivas = 0;
+				for (int g=0;g<grupos;g++) {
+					if (unidos[g] == g) {
+						partes++;
+						if (parteViva(g, unidos, inicios, fines)) {
+							vivas++;
+						}
+					}
+				}
+				if (partes == 1) {// Todo sigue unido
+					return;
+				}
+				if (vivas <= 1) {
+					break;
+				}
+				for (int g=0;g<grupos;g++) {
+					if (inicios[g] == fines[g]) {
+						continue;
+					}
+					int actual = colas[g][inicios[g]++];
+					int ax = actual % ancho;
+					int ay = actual / ancho;
+					for (int d=0;d<DX.length;d+=paso) {
+						int nx = ax + DX[d];
+						int ny = ay + DY[d];
+						if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+							continue;
+						}
+						int vecina = ny * ancho + nx;
+						if (etiqueta[vecina] == NINGUNA) {
+							continue;
+						}
+						if (marca[vecina] == generacion) {
+							int a = parte(frente[vecina], unidos);
+							int c = parte(g, unidos);
+							if (a != c) {
+								unidos[Math.max(a, c)] = Math.min(a, c);
+							}
+							continue;
+						}
+						marca[vecina] = generacion;
+						frente[vecina] = g;
+						if (fines[g] == colas[g].length) {
+							colas[g] = Arrays.copyOf(colas[g], colas[g].length * 2);
+						}
+						colas[g][fines[g]++] = vecina;
+					}
+				}
+			}
+
+			// Se queda con el identificador antiguo la parte que sigue viva, o la mayor
+			int conserva = -1;
+			int mayor = -1;
+			for (int g=0;g<grupos;g++) {
+				if (unidos[g] != g) {
+					continue;
+				}
+				int tamano = 0;
+				for (int h=0;h<grupos;h++) {
+					if (parte(h, unidos) == g) {
+						tamano += fines[h];
+					}
+				}
+				if (parteViva(g, unidos, inicios, fines)) {
+					tamano = Integer.MAX_VALUE;
+				}
+				if (tamano > mayor) {
+					mayor = tamano;
+					conserva = g;
+				}
+			}
+			int[] nuevos = new int[grupos];
+			for (int g=0;g<grupos;g++) {
+				if ((unidos[g] == g) && (g != conserva)) {
+					nuevos[g] = nuevoIdentificador();
+				}
+			}
+			for (int h=0;h<grupos;h++) {
+				int g = parte(h, unidos);
+				if (g == conserva) {
+					continue;
+				}
+				for (int i=0;i<fines[h];i++) {
+					etiqueta[colas[h][i]] = nuevos[g];
+				}
+			}
+		}
+
+		/**
+		 * Comprobar si alguna bsqueda de una parte tiene an nodos por expandir
+		 */
+		private boolean parteViva(int g, int[] unidos, int[] inicios, int[] fines) {
+			for (int h=0;h<unidos.length;h++) {
+				if ((parte(h, unidos) == g) && (inicios[h] < fines[h])) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * La parte a la que pertenece una bsqueda
+		 */
+		private int parte(int g, int[] unidos) {
+			while (unidos[g] != g) {
+				g = unidos[g];
+			}
+			return g;
+		}
+
+		/**
+		 * Crear un identificador que es su propio representante
+		 */
+		private int nuevoIdentificador() {
+			if (identificadores == padre.length) {
+				padre = Arrays.copyOf(padre, padre.length * 2);
+			}
+			padre[identificadores] = identificadores;
+			return identificadores++;
+		}
+
+		/**
+		 * El representante de un identificador, acortando el camino por el medio
+		 */
+		private int raiz(int id) {
+			while (padre[id] != id) {
+				padre[id] = padre[padre[id]];
+				id = padre[id];
+			}
+			return id;
+		}
+	}
+}
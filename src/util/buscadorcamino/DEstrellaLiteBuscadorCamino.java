@@ -0,0 +1,572 @@
+package util.buscadorcamino;
+
+import java.util.Arrays;
+
+import util.buscadorcamino.heuristicas.HeuristicaCercana;
+
+/**
+ * Un buscador de rutas incremental basado en D* Lite. Busca hacia atrs desde el destino y
+ * mantiene su rbol de bsqueda entre llamadas, as que cuando una unidad vuelve a pedir un
+ * camino hacia el mismo destino, despus de moverse o de que cambien algunas baldosas, slo
+ * se repara la parte del rbol afectada por los cambios en lugar de buscar desde cero.
+ *
+ * Cada buscador recuerda un nico rbol, el del ltimo destino y tipo de entidad; al cambiar
+ * de destino o de entidad se empieza de nuevo. Lo normal es tener un buscador por unidad, y
+ * llamar a cerrar cuando la unidad desaparece para que el mapa no retenga su rbol.
+ *
+ * Las baldosas que cambian se le comunican con baldosasCambiadas, o solas si el mapa es un
+ * MapaObservable. Igual que en AEstrellaBuscadorCamino la baldosa de inicio nunca se
+ * considera bloqueada, y los caminos son ptimos si la heurstica es consistente.
+ *
+ * Una TrazaBusqueda recibe en cada llamada slo las baldosas que se expanden para reparar el
+ * rbol, con su distancia al destino y la heurstica hasta el inicio. Un OyenteBusqueda recibe
+ * tambin slo el trabajo de reparacin de cada llamada: cuenta como reabiertas las baldosas
+ * que vuelven al montculo despus de haber tenido distancia, y como profundidad el nmero de
+ * pasos del camino, porque no hay profundidad mxima.
+ */
+public class DEstrellaLiteBuscadorCamino implements BuscadorInstrumentable, BuscadorTrazable, OyenteMapa {
+
+	private static final float INFINITO = Float.POSITIVE_INFINITY;/** La distancia de una baldosa desde la que no se llega */
+
+	private MapaConBaldosas mapa;/** El mapa que se busca */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private AEstrellaHeuristica heuristica;/** La heurstica entre el inicio y cada baldosa */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+
+	private float[] g;/** La distancia calculada de cada baldosa al destino, indexada por y*ancho+x */
+	private float[] rhs;/** La distancia de cada baldosa al destino segn sus vecinas */
+	private int[] busqueda;/** El rbol al que pertenecen los valores de cada baldosa */
+	private int[] indiceAbierto;/** La posicin de cada baldosa en el montculo, o -1 */
+	private int busquedaActual;/** El nmero del rbol en curso */
+
+	private int[] abierto = new int[64];/** El montculo de baldosas inconsistentes */
+	private float[] clave1 = new float[64];/** La primera parte de la clave de cada baldosa del montculo */
+	private float[] clave2 = new float[64];/** La segunda parte de la clave de cada baldosa del montculo */
+	private int tamanoAbierto;/** El nmero de baldosas en el montculo */
+
+	private boolean hayArbol;/** Es cierto si hay un rbol que se puede reparar */
+	private Entidad entidad;/** La entidad del rbol en curso */
+	private int sx;/** La coordenada x del inicio del rbol en curso */
+	private int sy;/** La coordenada y del inicio del rbol en curso */
+	private int tx;/** La coordenada x del destino del rbol en curso */
+	private int ty;/** La coordenada y del destino del rbol en curso */
+	private float km;/** Lo que se ha movido el inicio desde que se cre el rbol, segn la heurstica */
+	private int[] cambios = new int[16];/** Las baldosas que han cambiado desde la ltima bsqueda */
+	private int numCambios;/** El nmero de baldosas que han cambiado */
+	private TrazaBusqueda traza;/** La traza a la que se avisa de cada paso de la bsqueda, o null */
+	private OyenteBusqueda oyente;/** El objeto al que se informa al terminar cada bsqueda, o null */
+	private MetricasBusqueda metricas;/** Las medidas que se pasan al oyente, reutilizadas en cada bsqueda */
+	private int expandidos;/** Las baldosas expandidas en la llamada en curso */
+	private int generados;/** Las baldosas sin distancia que entraron en el montculo en la llamada en curso */
+	private int reabiertos;/** Las baldosas con distancia que volvieron al montculo en la llamada en curso */
+	private int maxAbiertos;/** El mayor tamao del montculo en la llamada en curso */
+
+	/**
+	 * Crear un buscador de rutas incremental que utiliza la heurstica por defecto
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 */
+	public DEstrellaLiteBuscadorCamino(MapaConBaldosas mapa, boolean permiteMoviDiagonal) {
+		this(mapa, permiteMoviDiagonal, new HeuristicaCercana());
+	}
+
+	/**
+	 * Crear un buscador de rutas incremental
+	 *
+	 * @param mapa El mapa que se busca. Si es un MapaObservable el buscador se registra para
+	 * conocer sus cambios; si no, hay que avisarle con baldosasCambiadas
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 * @param heuristica La heurstica utilizada para estimar la distancia al inicio
+	 */
+	public DEstrellaLiteBuscadorCamino(MapaConBaldosas mapa, boolean permiteMoviDiagonal, AEstrellaHeuristica heuristica) {
+		this.mapa = mapa;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.heuristica = heuristica;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+
+		int baldosas = ancho * altura;
+		g = new float[baldosas];
+		rhs = new float[baldosas];
+		busqueda = new int[baldosas];
+		indiceAbierto = new int[baldosas];
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).agregarOyente(this);
+		}
+	}
+
+	/**
+	 * @see BuscadorInstrumentable#setOyenteBusqueda(OyenteBusqueda)
+	 */
+	public void setOyenteBusqueda(OyenteBusqueda oyente) {
+		this.oyente = oyente;
+		if ((oyente != null) && (metricas == null)) {
+			metricas = new MetricasBusqueda();
+		}
+	}
+
+	/**
+	 * @see BuscadorTrazable#setTraza(TrazaBusqueda)
+	 */
+	public void setTraza(TrazaBusqueda traza) {
+		this.traza = traza;
+	}
+
+	/**
+	 * @see BuscadorTrazable#getTraza()
+	 */
+	public TrazaBusqueda getTraza() {
+		return traza;
+	}
+
+	/**
+	 * @see BuscadorRuta#encontrarCamino(Entidad, int, int, int, int)
+	 */
+	public Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty) {
+		long inicioNanos = (oyente != null) ? System.nanoTime() : 0;
+		expandidos = 0;
+		generados = 0;
+		reabiertos = 0;
+		maxAbiertos = tamanoAbierto;
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaIniciada(sx, sy, tx, ty);
+		}
+		if (mapa.bloquea(entidad, tx, ty) || ((sx == tx) && (sy == ty))) {
+			return terminar(inicioNanos, null);
+		}
+
+		if (!hayArbol || (tx != this.tx) || (ty != this.ty)
+				|| ((entidad == null) ? (this.entidad != null) : !entidad.equals(this.entidad))) {
+			nuevoArbol(entidad, sx, sy, tx, ty);
+		} else {
+			if ((sx != this.sx) || (sy != this.sy)) {
+				// Las claves del montculo siguen siendo cotas inferiores si se suma lo que se movi el inicio
+				km += heuristica.getCosto(mapa, entidad, this.sx, this.sy, sx, sy);
+				int anterior = this.sy * ancho + this.sx;
+				this.sx = sx;
+				this.sy = sy;
+				// La baldosa de inicio no bloquea, as que el inicio anterior y el nuevo cambian
+				actualizarAlrededor(anterior);
+				actualizarAlrededor(sy * ancho + sx);
+			}
+			for (int i=0;i<numCambios;i++) {
+				actualizarAlrededor(cambios[i]);
+			}
+		}
+		numCambios = 0;
+
+		calcularCaminoMasCorto();
+		return terminar(inicioNanos, construirCamino());
+	}
+
+	/**
+	 * Avisar a la traza, si la hay, de que termina la bsqueda, e informar al oyente, si lo
+	 * hay, de sus medidas
+	 *
+	 * @param inicioNanos El momento en que empez la bsqueda, segn System.nanoTime
+	 * @param camino El camino que se devuelve, o null
+	 * @return El mismo camino
+	 */
+	private Camino terminar(long inicioNanos, Camino camino) {
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaTerminada(camino);
+		}
+		if (oyente != null) {
+			metricas.establecer(System.nanoTime() - inicioNanos, expandidos, generados, reabiertos, maxAbiertos,
+					(camino == null) ? 0 : camino.getLength() - 1, false, camino != null);
+			oyente.busquedaTerminada(this, metricas);
+		}
+		return camino;
+	}
+
+	/**
+	 * Comunicar al buscador las baldosas que han cambiado. Se repararn en la siguiente bsqueda.
+	 *
+	 * @param xs Las coordenadas x de las baldosas que cambiaron
+	 * @param ys Las coordenadas y de las baldosas que cambiaron
+	 * @param cantidad El nmero de baldosas que cambiaron
+	 */
+	public void baldosasCambiadas(int[] xs, int[] ys, int cantidad) {
+		for (int i=0;i<cantidad;i++) {
+			baldosaCambiada(xs[i], ys[i]);
+		}
+	}
+
+	/**
+	 * @see OyenteMapa#baldosaCambiada(int, int)
+	 */
+	public void baldosaCambiada(int x, int y) {
+		if (!hayArbol) {
+			return;
+		}
+		if (numCambios == cambios.length) {
+			cambios = Arrays.copyOf(cambios, numCambios * 2);
+		}
+		cambios[numCambios++] = y * ancho + x;
+	}
+
+	/**
+	 * Dejar de escuchar los cambios del mapa. Hay que llamarlo al dejar de usarlo, porque
+	 * si no el mapa conserva el buscador y su rbol
+	 */
+	public void cerrar() {
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).eliminarOyente(this);
+		}
+	}
+
+	/**
+	 * Empezar un rbol nuevo desde el destino
+	 */
+	private void nuevoArbol(Entidad entidad, int sx, int sy, int tx, int ty) {
+		this.entidad = entidad;
+		this.sx = sx;
+		this.sy = sy;
+		this.tx = tx;
+		this.ty = ty;
+		hayArbol = true;
+		km = 0;
+
+		for (int i=0;i<tamanoAbierto;i++) {
+			indiceAbierto[abierto[i]] = -1;
+		}
+		tamanoAbierto = 0;
+		busquedaActual++;
+		if (busquedaActual == 0) {// El contador ha dado la vuelta, as que se olvidan las marcas viejas
+			Arrays.fill(busqueda, 0);
+			busquedaActual = 1;
+		}
+
+		int destino = ty * ancho + tx;
+		tocar(destino);
+		rhs[destino] = 0;
+		agregar(destino);
+	}
+
+	/**
+	 * Expandir baldosas hasta que la distancia del inicio sea correcta
+	 */
+	private void calcularCaminoMasCorto() {
+		int inicio = sy * ancho + sx;
+		tocar(inicio);
+		while (tamanoAbierto > 0) {
+			float k1 = clave1[0];
+			float k2 = clave2[0];
+			float m = Math.min(g[inicio], rhs[inicio]);
+			float i1 = m + km;
+			if (!(menor(k1, k2, i1, m) || (rhs[inicio] != g[inicio]))) {
+				break;
+			}
+
+			int actual = abierto[0];
+			float minimo = Math.min(g[actual], rhs[actual]);
+			float n1 = minimo + heuristicaInicio(actual) + km;
+			if (menor(k1, k2, n1, minimo)) {// La clave se calcul con un inicio anterior
+				recolocar(actual);
+				continue;
+			}
+			eliminar(actual);
+			expandidos++;
+			if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+				traza.nodoExpandido(actual % ancho, actual / ancho, minimo, heuristicaInicio(actual));
+			}
+			if (g[actual] > rhs[actual]) {
+				g[actual] = rhs[actual];
+				actualizarPredecesores(actual);
+			} else {
+				g[actual] = INFINITO;
+				actualizarPredecesores(actual);
+				actualizar(actual);
+			}
+		}
+	}
+
+	/**
+	 * Volver a calcular las baldosas desde las que se puede llegar a una baldosa
+	 */
+	private void actualizarPredecesores(int baldosa) {
+		int x = baldosa % ancho;
+		int y = baldosa / ancho;
+		for (int dx=-1;dx<2;dx++) {
+			for (int dy=-1;dy<2;dy++) {
+				if ((dx == 0) && (dy == 0)) {
+					continue;
+				}
+				if (!permiteMoviDiagonal && (dx != 0) && (dy != 0)) {
+					continue;
+				}
+				int nx = x + dx;
+				int ny = y + dy;
+				if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+					continue;
+				}
+				if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+					traza.baldosaVisitada(nx, ny);
+				}
+				actualizar(ny * ancho + nx);
+			}
+		}
+	}
+
+	/**
+	 * Volver a calcular una baldosa cambiada y sus vecinas, porque han cambiado todos los
+	 * movimientos que entran o salen de ella
+	 */
+	private void actualizarAlrededor(int baldosa) {
+		actualizar(baldosa);
+		actualizarPredecesores(baldosa);
+	}
+
+	/**
+	 * Volver a calcular la distancia de una baldosa segn sus vecinas y colocarla en el
+	 * montculo si ha quedado inconsistente
+	 */
+	private void actualizar(int baldosa) {
+		tocar(baldosa);
+		if (baldosa != ty * ancho + tx) {
+			int x = baldosa % ancho;
+			int y = baldosa / ancho;
+			float mejor = INFINITO;
+			for (int dx=-1;dx<2;dx++) {
+				for (int dy=-1;dy<2;dy++) {
+					if ((dx == 0) && (dy == 0)) {
+						continue;
+					}
+					if (!permiteMoviDiagonal && (dx != 0) && (dy != 0)) {
+						continue;
+					}
+					int nx = x + dx;
+					int ny = y + dy;
+					if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+						continue;
+					}
+					int vecina = ny * ancho + nx;
+					if ((busqueda[vecina] != busquedaActual) || (g[vecina] == INFINITO) || bloqueada(nx, ny)) {
+						continue;
+					}
+					float d = g[vecina] + mapa.getCosto(entidad, x, y, nx, ny);
+					if (d < mejor) {
+						mejor = d;
+					}
+				}
+			}
+			rhs[baldosa] = mejor;
+		}
+		if (g[baldosa] != rhs[baldosa]) {
+			if (indiceAbierto[baldosa] == -1) {
+				agregar(baldosa);
+			} else {
+				recolocar(baldosa);
+			}
+		} else if (indiceAbierto[baldosa] != -1) {
+			eliminar(baldosa);
+		}
+	}
+
+	/**
+	 * Seguir el rbol desde el inicio hasta el destino, eligiendo en cada paso la vecina ms cercana
+	 */
+	private Camino construirCamino() {
+		int inicio = sy * ancho + sx;
+		if (g[inicio] == INFINITO) {
+			return null;
+		}
+		Camino camino = new Camino();
+		int x = sx;
+		int y = sy;
+		camino.agregarPaso(x, y);
+		for (int pasos=0;(x != tx) || (y != ty);pasos++) {
+			if (pasos == ancho * altura) {// Nunca debera pasar con un rbol consistente
+				return null;
+			}
+			int mejorX = -1;
+			int mejorY = -1;
+			float mejor = INFINITO;
+			for (int dx=-1;dx<2;dx++) {
+				for (int dy=-1;dy<2;dy++) {
+					if ((dx == 0) && (dy == 0)) {
+						continue;
+					}
+					if (!permiteMoviDiagonal && (dx != 0) && (dy != 0)) {
+						continue;
+					}
+					int nx = x + dx;
+					int ny = y + dy;
+					if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+						continue;
+					}
+					int vecina = ny * ancho + nx;
+					if ((busqueda[vecina] != busquedaActual) || bloqueada(nx, ny)) {
+						continue;
+					}
+					float d = g[vecina] + mapa.getCosto(entidad, x, y, nx, ny);
+					if (d < mejor) {
+						mejor = d;
+						mejorX = nx;
+						mejorY = ny;
+					}
+				}
+			}
+			if (mejorX == -1) {
+				return null;
+			}
+			x = mejorX;
+			y = mejorY;
+			camino.agregarPaso(x, y);
+		}
+		return camino;
+	}
+
+	/**
+	 * Comprobar si una baldosa bloquea a la entidad, sin contar la baldosa de inicio
+	 */
+	private boolean bloqueada(int x, int y) {
+		return ((x != sx) || (y != sy)) && mapa.bloquea(entidad, x, y);
+	}
+
+	/**
+	 * Obtener la heurstica entre el inicio actual y una baldosa
+	 */
+	private float heuristicaInicio(int baldosa) {
+		return heuristica.getCosto(mapa, entidad, baldosa % ancho, baldosa / ancho, sx, sy);
+	}
+
+	/**
+	 * Dar valores iniciales a una baldosa que el rbol actual an no ha tocado
+	 */
+	private void tocar(int baldosa) {
+		if (busqueda[baldosa] != busquedaActual) {
+			busqueda[baldosa] = busquedaActual;
+			g[baldosa] = INFINITO;
+			rhs[baldosa] = INFINITO;
+			indiceAbierto[baldosa] = -1;
+		}
+	}
+
+	/**
+	 * Comprobar si una clave es menor que otra
+	 */
+	private static boolean menor(float a1, float a2, float b1, float b2) {
+		return (a1 < b1) || ((a1 == b1) && (a2 < b2));
+	}
+
+	/**
+	 * Aadir una baldosa al montculo con su clave actual
+	 */
+	private void agregar(int baldosa) {
+		if (tamanoAbierto == abierto.length) {
+			abierto = Arrays.copyOf(abierto, tamanoAbierto * 2);
+			clave1 = Arrays.copyOf(clave1, tamanoAbierto * 2);
+			clave2 = Arrays.copyOf(clave2, tamanoAbierto * 2);
+		}
+		int i = tamanoAbierto++;
+		if (tamanoAbierto > maxAbiertos) {
+			maxAbiertos = tamanoAbierto;
+		}
+		if (g[baldosa] == INFINITO) {
+			generados++;
+		} else {
+			reabiertos++;
+		}
+		colocar(i, baldosa);
+		calcularClave(i);
+		subir(i);
+	}
+
+	/**
+	 * Volver a calcular la clave de una baldosa del montculo y recolocarla
+	 */
+	private void recolocar(int baldosa) {
+		int i = indiceAbierto[baldosa];
+		calcularClave(i);
+		subir(i);
+		bajar(indiceAbierto[baldosa]);
+	}
+
+	/**
+	 * Quitar una baldosa del montculo
+	 */
+	private void eliminar(int baldosa) {
+		int i = indiceAbierto[baldosa];
+		indiceAbierto[baldosa] = -1;
+		tamanoAbierto--;
+		if (i == tamanoAbierto) {
+			return;
+		}
+		int ultima = abierto[tamanoAbierto];
+		colocar(i, ultima);
+		clave1[i] = clave1[tamanoAbierto];
+		clave2[i] = clave2[tamanoAbierto];
+		subir(i);
+		bajar(indiceAbierto[ultima]);
+	}
+
+	/**
+	 * Calcular la clave de la baldosa en una posicin del montculo
+	 */
+	private void calcularClave(int i) {
+		int baldosa = abierto[i];
+		float minimo = Math.min(g[baldosa], rhs[baldosa]);
+		clave1[i] = minimo + heuristicaInicio(baldosa) + km;
+		clave2[i] = minimo;
+	}
+
+	/**
+	 * Subir una posicin del montculo mientras su clave sea menor que la de su padre
+	 */
+	private void subir(int i) {
+		while (i > 0) {
+			int p = (i - 1) >> 1;
+			if (!menor(clave1[i], clave2[i], clave1[p], clave2[p])) {
+				break;
+			}
+			intercambiar(i, p);
+			i = p;
+		}
+	}
+
+	/**
+	 * Bajar una posicin del montculo mientras su clave sea mayor que la de algn hijo
+	 */
+	private void bajar(int i) {
+		while (true) {
+			int h = (i << 1) + 1;
+			if (h >= tamanoAbierto) {
+				break;
+			}
+			if ((h + 1 < tamanoAbierto) && menor(clave1[h + 1], clave2[h + 1], clave1[h], clave2[h])) {
+				h++;
+			}
+			if (!menor(clave1[h], clave2[h], clave1[i], clave2[i])) {
+				break;
+			}
+			intercambiar(i, h);
+			i = h;
+		}
+	}
+
+	/**
+	 * Intercambiar dos posiciones del montculo
+	 */
+	private void intercambiar(int i, int j) {
+		int baldosa = abierto[i];
+		float k1 = clave1[i];
+		float k2 = clave2[i];
+		colocar(i, abierto[j]);
+		clave1[i] = clave1[j];
+		clave2[i] = clave2[j];
+		colocar(j, baldosa);
+		clave1[j] = k1;
+		clave2[j] = k2;
+	}
+
+	/**
+	 * Poner una baldosa en una posicin del montculo
+	 */
+	private void colocar(int i, int baldosa) {
+		abierto[i] = baldosa;
+		indiceAbierto[baldosa] = i;
+	}
+}
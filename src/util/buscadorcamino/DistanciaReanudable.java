@@ -0,0 +1,136 @@
+package util.buscadorcamino;
+
+/**
+ * La distancia real hasta un destino calculada bajo demanda con una bsqueda inversa que se
+ * reanuda en cada consulta (Reverse Resumable A*). La bsqueda parte del destino, ordenada por
+ * la heurstica hacia el origen de la entidad, y slo avanza hasta cerrar la baldosa que se
+ * pregunta; las baldosas ya cerradas se responden sin buscar. Los nodos se conservan mientras
+ * no cambien el destino ni el mapa, as que las consultas de ventanas sucesivas apenas cuestan.
+ *
+ * Las distancias son exactas si la heurstica es consistente. No tiene en cuenta a las dems
+ * entidades, slo el terreno.
+ */
+class DistanciaReanudable {
+
+	private MapaConBaldosas mapa;/** El mapa que se busca */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private AEstrellaHeuristica heuristica;/** La heurstica, que debe ser consistente */
+	private Entidad entidad;/** La entidad que se mueve */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private AlmacenNodos nodos;/** Los nodos de la bsqueda inversa */
+	private MonticuloNodos abierto;/** Los nodos abiertos de la bsqueda inversa */
+	private int tx = -1;/** La coordenada x del destino */
+	private int ty = -1;/** La coordenada y del destino */
+	private int ox;/** La coordenada x del origen hacia el que se orienta la bsqueda */
+	private int oy;/** La coordenada y del origen hacia el que se orienta la bsqueda */
+	private int version;/** La versin del mapa con la que se calcularon las distancias */
+
+	/**
+	 * Crear una distancia sin destino
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param permiteMoviDiagonal Es cierto si permitimos el movimiento diagonal
+	 * @param heuristica La heurstica, que debe ser consistente
+	 * @param entidad La entidad que se mueve
+	 */
+	DistanciaReanudable(MapaConBaldosas mapa, boolean permiteMoviDiagonal, AEstrellaHeuristica heuristica, Entidad entidad) {
+		this.mapa = mapa;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.heuristica = heuristica;
+		this.entidad = entidad;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+		this.nodos = new AlmacenNodos(ancho, altura, true);
+		this.abierto = new MonticuloNodos(nodos);
+	}
+
+	/**
+	 * Cambiar el destino, olvidando las distancias calculadas si es otro o si el mapa ha
+	 * cambiado desde que se calcularon
+	 *
+	 * @param tx La coordenada x del destino
+	 * @param ty La coordenada y del destino
+	 * @param ox La coordenada x del origen de la entidad, hacia el que se orienta la bsqueda
+	 * @param oy La coordenada y del origen de la entidad
+	 * @param version La versin actual del mapa, que cambia cada vez que cambia una baldosa
+	 */
+	void setDestino(int tx, int ty, int ox, int oy, int version) {
+		if ((tx == this.tx) && (ty == this.ty) && (version == this.version)) {
+			return;
+		}
+		this.version = version;
+		this.tx = tx;
+		this.ty = ty;
+		this.ox = ox;
+		this.oy = oy;
+		nodos.nuevaBusqueda();
+		abierto.limpiar();
+		if (!mapa.bloquea(entidad, tx, ty)) {
+			int destino = nodos.nodo(ty * ancho + tx);
+			nodos.costo[destino] = 0;
+			nodos.heuristica[destino] = heuristica.getCosto(mapa, entidad, tx, ty, ox, oy);
+			abierto.agregar(destino);
+		}
+	}
+
+	/**
+	 * Obtener el coste del camino ms corto desde una baldosa hasta el destino
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return El coste, o infinito si no se puede llegar al destino
+	 */
+	float distancia(int x, int y) {
+		int b = y * ancho + x;
+		int n = nodos.buscar(b);
+		if ((n != AlmacenNodos.NINGUNO) && (nodos.estado[n] == AlmacenNodos.CERRADO)) {
+			return nodos.costo[n];
+		}
+		while (abierto.size() != 0) {
+			int actual = abierto.primero();
+			abierto.eliminar(actual);
+			nodos.estado[actual] = AlmacenNodos.CERRADO;
+			int ax = nodos.getX(actual);
+			int ay = nodos.getY(actual);
+			expandir(actual, ax, ay);
+			if ((ax == x) && (ay == y)) {
+				return nodos.costo[actual];
+			}
+		}
+		return Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Abrir las baldosas desde las que se puede llegar a un nodo en un paso
+	 */
+	private void expandir(int actual, int ax, int ay) {
+		AlmacenNodos n = nodos;
+		for (int dx=-1;dx<2;dx++) {
+			for (int dy=-1;dy<2;dy++) {
+				if (((dx == 0) && (dy == 0)) || (!permiteMoviDiagonal && (dx != 0) && (dy != 0))) {
+					continue;
+				}
+				int px = ax + dx;
+				int py = ay + dy;
+				if ((px < 0) || (py < 0) || (px >= ancho) || (py >= altura) || mapa.bloquea(entidad, px, py)) {
+					continue;
+				}
+				// El movimiento va de la vecina al nodo actual
+				float costo = n.costo[actual] + mapa.getCosto(entidad, px, py, ax, ay);
+				int previo = n.nodo(py * ancho + px);
+				if (!(costo < n.costo[previo]) || (n.estado[previo] == AlmacenNodos.CERRADO)) {
+					continue;
+				}
+				n.costo[previo] = costo;
+				n.padre[previo] = actual;
+				if (n.estado[previo] == AlmacenNodos.ABIERTO) {
+					abierto.disminuirClave(previo);
+				} else {
+					n.heuristica[previo] = heuristica.getCosto(mapa, entidad, px, py, ox, oy);
+					abierto.agregar(previo);
+				}
+			}
+		}
+	}
+}
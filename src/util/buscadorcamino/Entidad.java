@@ -9,6 +9,10 @@ package util.buscadorcamino;
  * Por ejemplo, una entidad podra representar un tanque o un avin en un mapa de juego.
  *  Pasar alrededor de esta entidad nos permite determinar si el terreno rugoso en un 
  *  mapa debe afectar el costo de la unidad para moverse a travs de la baldosa.
+ *  
+ *  Los buscadores que precalculan datos por tipo de entidad los guardan usando la entidad 
+ *  como clave, as que dos entidades que se mueven igual deben ser iguales segn equals 
+ *  y hashCode.
  */
 public interface Entidad {
 
@@ -0,0 +1,131 @@
+package util.buscadorcamino;
+
+/**
+ * Comprobaciones de lnea de visin sobre un mapa de baldosas y la compresin de caminos que
+ * se apoya en ellas. Una lnea recorre las baldosas de la recta entre dos puntos con el
+ * algoritmo de Bresenham, dando pasos en diagonal si se permite y si no slo pasos rectos, y es
+ * visible si ninguna baldosa despus de la primera bloquea. Su coste es la suma de getCosto de
+ * sus pasos, as que se mide igual que un camino de baldosa en baldosa.
+ *
+ * @see ThetaEstrellaBuscadorCamino
+ */
+public class LineaVision {
+
+	/**
+	 * Obtener el coste de ir en lnea recta de una baldosa a otra
+	 *
+	 * @param mapa El mapa que se recorre
+	 * @param entidad La entidad que se mueve
+	 * @param x0 La coordenada x de salida, que no se comprueba
+	 * @param y0 La coordenada y de salida
+	 * @param x1 La coordenada x de llegada
+	 * @param y1 La coordenada y de llegada
+	 * @param permiteMoviDiagonal Es cierto si la lnea puede dar pasos en diagonal
+	 * @return La suma del coste de los pasos de la lnea, o infinito si alguna baldosa bloquea
+	 */
+	public static float getCosto(MapaConBaldosas mapa, Entidad entidad, int x0, int y0, int x1, int y1, boolean permiteMoviDiagonal) {
+		int dx = Math.abs(x1 - x0);
+		int dy = Math.abs(y1 - y0);
+		int px = (x1 > x0) ? 1 : -1;
+		int py = (y1 > y0) ? 1 : -1;
+		int x = x0;
+		int y = y0;
+		float costo = 0;
+		if (permiteMoviDiagonal) {
+			// Bresenham: un paso por columna o fila del eje mayor, en diagonal cuando el error lo pide
+			int error = dx - dy;
+			while ((x != x1) || (y != y1)) {
+				int nx = x;
+				int ny = y;
+				int doble = 2 * error;
+				if (doble > -dy) {
+					error -= dy;
+					nx += px;
+				}
+				if (doble < dx) {
+					error += dx;
+					ny += py;
+				}
+				if (mapa.bloquea(entidad, nx, ny)) {
+					return Float.POSITIVE_INFINITY;
+				}
+				costo += mapa.getCosto(entidad, x, y, nx, ny);
+				x = nx;
+				y = ny;
+			}
+		} else {
+			// Slo pasos rectos: se avanza en el eje cuyo siguiente cruce con la recta llega antes
+			int ix = 0;
+			int iy = 0;
+			while ((ix < dx) || (iy < dy)) {
+				int nx = x;
+				int ny = y;
+				if ((iy == dy) || ((ix < dx) && ((long) (1 + 2 * ix) * dy <= (long) (1 + 2 * iy) * dx))) {
+					nx += px;
+					ix++;
+				} else {
+					ny += py;
+					iy++;
+				}
+				if (mapa.bloquea(entidad, nx, ny)) {
+					return Float.POSITIVE_INFINITY;
+				}
+				costo += mapa.getCosto(entidad, x, y, nx, ny);
+				x = nx;
+				y = ny;
+			}
+		}
+		return costo;
+	}
+
+	/**
+	 * Comprobar si se puede ir en lnea recta de una baldosa a otra
+	 *
+	 * @see #getCosto(MapaConBaldosas, Entidad, int, int, int, int, boolean)
+	 * @return True Si ninguna baldosa de la lnea despus de la primera bloquea
+	 */
+	public static boolean hayVision(MapaConBaldosas mapa, Entidad entidad, int x0, int y0, int x1, int y1, boolean permiteMoviDiagonal) {
+		return getCosto(mapa, entidad, x0, y0, x1, y1, permiteMoviDiagonal) < Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Comprimir un camino de baldosa en baldosa en el menor nmero de puntos de paso que se
+	 * ven entre s. Desde cada punto se avanza por el camino mientras el siguiente paso se vea
+	 * en lnea recta y la lnea no cueste ms que el tramo de camino que sustituye.
+	 *
+	 * @param mapa El mapa del camino
+	 * @param entidad La entidad que se mueve
+	 * @param camino El camino a comprimir, que no se modifica
+	 * @param permiteMoviDiagonal Es cierto si las lneas pueden dar pasos en diagonal
+	 * @return Un camino con el mismo inicio y el mismo final, en el que cada punto se ve desde
+	 * el anterior, o el mismo camino si tiene menos de tres pasos
+	 */
+	public static Camino comprimir(MapaConBaldosas mapa, Entidad entidad, Camino camino, boolean permiteMoviDiagonal) {
+		int n = camino.getLength();
+		if (n < 3) {
+			return camino;
+		}
+		Camino comprimido = new Camino(0, n);
+		comprimido.agregarPaso(camino.getX(0), camino.getY(0));
+		int ancla = 0;
+		while (ancla < n - 1) {
+			int ax = camino.getX(ancla);
+			int ay = camino.getY(ancla);
+			int siguiente = ancla + 1;
+			float tramo = mapa.getCosto(entidad, ax, ay, camino.getX(siguiente), camino.getY(siguiente));
+			while (siguiente + 1 < n) {
+				int x = camino.getX(siguiente + 1);
+				int y = camino.getY(siguiente + 1);
+				float costoTramo = tramo + mapa.getCosto(entidad, camino.getX(siguiente), camino.getY(siguiente), x, y);
+				if (getCosto(mapa, entidad, ax, ay, x, y, permiteMoviDiagonal) > costoTramo * (1 + 1e-6f)) {
+					break;
+				}
+				tramo = costoTramo;
+				siguiente++;
+			}
+			comprimido.agregarPaso(camino.getX(siguiente), camino.getY(siguiente));
+			ancla = siguiente;
+		}
+		return comprimido;
+	}
+}
@@ -0,0 +1,245 @@
+package util.buscadorcamino;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Una versin compilada de un mapa. Para cada tipo de entidad guarda en vectores planos qu
+ * baldosas la bloquean, como un conjunto de bits, y cunto cuesta cada movimiento, de modo que
+ * los buscadores pueden leerlos directamente en lugar de llamar a bloquea y getCosto por cada
+ * vecino. Las capas de cada entidad se compilan la primera vez que se piden.
+ *
+ * Las capas se mantienen al da baldosa a baldosa: si el mapa original es un MapaObservable
+ * el mapa compilado se registra en l, y cerrar lo da de baja; si no, hay que avisarle con
+ * baldosaCambiada. Sus propios oyentes se avisan despus de actualizar las capas.
+ *
+ * No es seguro para varios hilos.
+ */
+public class MapaCompilado implements MapaCostoUniforme, MapaObservable, OyenteMapa {
+
+	private static final int[] DX = {-1, -1, -1, 0, 0, 1, 1, 1};/** El avance en x de cada direccin de movimiento */
+	private static final int[] DY = {-1, 0, 1, -1, 1, -1, 0, 1};/** El avance en y de cada direccin de movimiento */
+
+	private MapaConBaldosas mapa;/** El mapa original */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private HashMap<Entidad, Capa> capas = new HashMap<>();/** Las capas compiladas de cada tipo de entidad */
+	private ArrayList<OyenteMapa> oyentes = new ArrayList<>();/** Los objetos a los que se avisa cuando cambia una baldosa */
+
+	/**
+	 * Crear un mapa compilado
+	 *
+	 * @param mapa El mapa original
+	 */
+	public MapaCompilado(MapaConBaldosas mapa) {
+		this.mapa = mapa;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).agregarOyente(this);
+		}
+	}
+
+	/**
+	 * Obtener la capa compilada de una entidad, compilndola si es la primera vez
+	 *
+	 * @param entidad La entidad que se va a mover
+	 * @return La capa con el bloqueo y los costes de la entidad
+	 */
+	public Capa getCapa(Entidad entidad) {
+		Capa capa = capas.get(entidad);
+		if (capa == null) {
+			capa = new Capa(entidad);
+			capas.put(entidad, capa);
+		}
+		return capa;
+	}
+
+	/**
+	 * Obtener el ndice de la direccin de un movimiento en el vector de costes
+	 *
+	 * @param dx El avance en x, entre -1 y 1
+	 * @param dy El avance en y, entre -1 y 1, sin ser los dos 0
+	 * @return El ndice de la direccin, entre 0 y 7
+	 */
+	public static int direccion(int dx, int dy) {
+		int d = (dx + 1) * 3 + (dy + 1);
+		return d < 4 ? d : d - 1;
+	}
+
+	/**
+	 * Actualizar la baldosa en todas las capas y avisar a los oyentes
+	 *
+	 * @see OyenteMapa#baldosaCambiada(int, int)
+	 */
+	public void baldosaCambiada(int x, int y) {
+		for (Capa capa : capas.values()) {
+			capa.actualizar(x, y);
+		}
+		for (int i=0;i<oyentes.size();i++) {
+			oyentes.get(i).baldosaCambiada(x, y);
+		}
+	}
+
+	/**
+	 * Dejar de escuchar los cambios del mapa. Hay que llamarlo al dejar de usarlo, porque
+	 * si no el mapa conserva las capas compiladas
+	 */
+	public void cerrar() {
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).eliminarOyente(this);
+		}
+	}
+
+	public void agregarOyente(OyenteMapa oyente) {
+		oyentes.add(oyente);
+	}
+
+	public void eliminarOyente(OyenteMapa oyente) {
+		oyentes.remove(oyente);
+	}
+
+	public int getAnchoEnBaldosas() {
+		return ancho;
+	}
+
+	public int getAlturaEnBaldosas() {
+		return altura;
+	}
+
+	public boolean bloquea(Entidad entidad, int x, int y) {
+		return getCapa(entidad).bloquea(y * ancho + x);
+	}
+
+	public float getCosto(Entidad entidad, int sx, int sy, int tx, int ty) {
+		Capa capa = getCapa(entidad);
+		if (capa.costos == null) {
+			return capa.costoUniforme;
+		}
+		return capa.costos[((sy * ancho + sx) << 3) + direccion(tx - sx, ty - sy)];
+	}
+
+	/**
+	 * El coste es uniforme slo si el mapa original as lo indica
+	 *
+	 * @see MapaCostoUniforme#esCostoUniforme(Entidad)
+	 */
+	public boolean esCostoUniforme(Entidad entidad) {
+		return getCapa(entidad).costos == null;
+	}
+
+	/**
+	 * Los datos compilados de un tipo de entidad. Las baldosas se indexan por y*ancho+x.
+	 */
+	public class Capa {
+
+		private Entidad entidad;/** La entidad de la capa */
+		private long[] bloqueados;/** Un bit por baldosa, a 1 si la baldosa bloquea a la entidad */
+		private float[] costos;/** El coste de los 8 movimientos de cada baldosa, en la posicin baldosa*8+direccion, o null si es uniforme */
+		private float costoUniforme;/** El coste de cualquier movimiento cuando es uniforme */
+
+		/**
+		 * Compilar la capa de una entidad
+		 *
+		 * @param entidad La entidad de la capa
+		 */
+		private Capa(Entidad entidad) {
+			this.entidad = entidad;
+			bloqueados = new long[(ancho * altura + 63) >>> 6];
+			for (int y=0;y<altura;y++) {
+				for (int x=0;x<ancho;x++) {
+					if (mapa.bloquea(entidad, x, y)) {
+						int i = y * ancho + x;
+						bloqueados[i >>> 6] |= 1L << i;
+					}
+				}
+			}
+			if ((mapa instanceof MapaCostoUniforme) && ((MapaCostoUniforme) mapa).esCostoUniforme(entidad)) {
+				costoUniforme = (ancho * altura > 1) ? mapa.getCosto(entidad, 0, 0, ancho > 1 ? 1 : 0, ancho > 1 ? 0 : 1) : 1;
+			} else {
+				costos = new float[(ancho * altura) << 3];
+				for (int y=0;y<altura;y++) {
+					for (int x=0;x<ancho;x++) {
+						compilarCostos(x, y);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Volver a compilar una baldosa: su bit de bloqueo, sus movimientos y los de sus
+		 * vecinas hacia ella
+		 */
+		private void actualizar(int x, int y) {
+			int i = y * ancho + x;
+			if (mapa.bloquea(entidad, x, y)) {
+				bloqueados[i >>> 6] |= 1L << i;
+			} else {
+				bloqueados[i >>> 6] &= ~(1L << i);
+			}
+			if (costos == null) {
+				return;
+			}
+			compilarCostos(x, y);
+			for (int d=0;d<DX.length;d++) {
+				int nx = x + DX[d];
+				int ny = y + DY[d];
+				if ((nx >= 0) && (ny >= 0) && (nx < ancho) && (ny < altura)) {
+					costos[((ny * ancho + nx) << 3) + direccion(-DX[d], -DY[d])] = mapa.getCosto(entidad, nx, ny, x, y);
+				}
+			}
+		}
+
+		/**
+		 * Compilar los costes de los movimientos que salen de una baldosa
+		 */
+		private void compilarCostos(int x, int y) {
+			int base = (y * ancho + x) << 3;
+			for (int d=0;d<DX.length;d++) {
+				int nx = x + DX[d];
+				int ny = y + DY[d];
+				if ((nx >= 0) && (ny >= 0) && (nx < ancho) && (ny < altura)) {
+					costos[base + direccion(DX[d], DY[d])] = mapa.getCosto(entidad, x, y, nx, ny);
+				}
+			}
+		}
+
+		/**
+		 * Comprobar si una baldosa bloquea a la entidad
+		 *
+		 * @param baldosa El ndice de la baldosa
+		 * @return True Si la baldosa bloquea a la entidad
+		 */
+		public boolean bloquea(int baldosa) {
+			return (bloqueados[baldosa >>> 6] & (1L << baldosa)) != 0;
+		}
+
+		/**
+		 * Obtener el conjunto de bits de las baldosas bloqueadas, que se actualiza en su sitio
+		 *
+		 * @return Un bit por baldosa, el bit i de la palabra i/64, a 1 si la baldosa bloquea
+		 */
+		public long[] getBloqueados() {
+			return bloqueados;
+		}
+
+		/**
+		 * Obtener los costes compilados de los movimientos, que se actualizan en su sitio
+		 *
+		 * @return El coste de moverse de cada baldosa en cada direccin, en la posicin
+		 * baldosa*8+direccion(dx, dy), o null si el coste es uniforme
+		 */
+		public float[] getCostos() {
+			return costos;
+		}
+
+		/**
+		 * Obtener el coste de cualquier movimiento cuando el coste es uniforme
+		 *
+		 * @return El coste uniforme, sin sentido si getCostos no es null
+		 */
+		public float getCostoUniforme() {
+			return costoUniforme;
+		}
+	}
+}
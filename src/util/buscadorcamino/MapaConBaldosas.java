@@ -9,15 +9,6 @@ public interface MapaConBaldosas {
 	public int getAnchoEnBaldosas();
 	public int getAlturaEnBaldosas();
 	
-	/**
-	 *La notificacin de que el buscador de camino visit una baldosa dada.
-	 * Esto se utiliza para depurar nuevas heursticas.
-	 * 
-	 * @param x La coordenada x de la baldosa que fue visitada
-	 * @param y La coordenada y de la baldosa que fue visitada
-	 */
-	public void buscadorRutaVisitado(int x, int y);
-	
 	/**
 	 * Compruebe si la ubicacin dada est bloqueada, es decir, bloquea el movimiento de la entidad suministrada.
 	 * 
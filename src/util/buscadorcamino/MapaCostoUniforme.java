@@ -0,0 +1,19 @@
+package util.buscadorcamino;
+
+/**
+ * Un mapa que puede indicar si todos los movimientos de una entidad cuestan lo mismo.
+ * Los buscadores que slo son correctos con coste uniforme, como la bsqueda por
+ * puntos de salto, lo consultan antes de buscar.
+ */
+public interface MapaCostoUniforme extends MapaConBaldosas {
+
+	/**
+	 * Comprueba si todos los movimientos de la entidad dada cuestan lo mismo, es decir,
+	 * si getCosto devuelve el mismo valor para cualquier par de baldosas vecinas,
+	 * incluidos los movimientos en diagonal.
+	 *
+	 * @param entidad La entidad que se va a mover
+	 * @return True Si el coste de movimiento es el mismo en todo el mapa para la entidad
+	 */
+	public boolean esCostoUniforme(Entidad entidad);
+}
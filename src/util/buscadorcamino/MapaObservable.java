@@ -0,0 +1,23 @@
+package util.buscadorcamino;
+
+/**
+ * Un mapa que avisa a sus oyentes cada vez que cambia una de sus baldosas. Los buscadores
+ * que guardan datos precalculados del mapa se registran aqu para poder actualizarlos
+ * por partes en lugar de volver a calcularlo todo.
+ */
+public interface MapaObservable extends MapaConBaldosas {
+
+	/**
+	 * Registrar un oyente que ser avisado de cada baldosa que cambie
+	 * 
+	 * @param oyente El oyente a registrar
+	 */
+	public void agregarOyente(OyenteMapa oyente);
+	
+	/**
+	 * Dejar de avisar a un oyente
+	 * 
+	 * @param oyente El oyente a eliminar
+	 */
+	public void eliminarOyente(OyenteMapa oyente);
+}
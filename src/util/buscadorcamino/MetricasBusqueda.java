@@ -0,0 +1,126 @@
+package util.buscadorcamino;
+
+/**
+ * Las medidas de una bsqueda terminada: cuntos nodos expandi y gener, cuntos tuvo que
+ * reabrir, el tamao mximo de la lista abierta, la profundidad alcanzada, cunto tard y si
+ * se cort por la profundidad mxima.
+ *
+ * Cada buscador reutiliza el mismo objeto en todas sus bsquedas, as que slo es vlido
+ * durante la llamada al oyente; hay que copiar los valores que se quieran guardar.
+ *
+ * @see OyenteBusqueda
+ */
+public class MetricasBusqueda {
+
+	private long nanos;/** El tiempo de reloj que tard la bsqueda, en nanosegundos */
+	private int expandidos;/** El nmero de nodos sacados de la lista abierta y expandidos */
+	private int generados;/** El nmero de nodos aadidos a la lista abierta por primera vez */
+	private int reabiertos;/** El nmero de nodos cerrados que se volvieron a abrir al encontrar un camino mejor */
+	private int maxAbiertos;/** El tamao mximo de la lista abierta */
+	private int profundidad;/** La profundidad mxima alcanzada */
+	private boolean cortada;/** Es cierto si la bsqueda se detuvo por la profundidad mxima */
+	private boolean encontrado;/** Es cierto si la bsqueda devolvi un camino */
+
+	/**
+	 * Guardar las medidas de una bsqueda
+	 *
+	 * @param nanos El tiempo de reloj que tard la bsqueda, en nanosegundos
+	 * @param expandidos El nmero de nodos expandidos
+	 * @param generados El nmero de nodos aadidos a la lista abierta por primera vez
+	 * @param reabiertos El nmero de nodos cerrados que se volvieron a abrir
+	 * @param maxAbiertos El tamao mximo de la lista abierta
+	 * @param profundidad La profundidad mxima alcanzada
+	 * @param cortada Es cierto si la bsqueda se detuvo por la profundidad mxima
+	 * @param encontrado Es cierto si la bsqueda devolvi un camino
+	 */
+	public void establecer(long nanos, int expandidos, int generados, int reabiertos,
+						   int maxAbiertos, int profundidad, boolean cortada, boolean encontrado) {
+		this.nanos = nanos;
+		this.expandidos = expandidos;
+		this.generados = generados;
+		this.reabiertos = reabiertos;
+		this.maxAbiertos = maxAbiertos;
+		this.profundidad = profundidad;
+		this.cortada = cortada;
+		this.encontrado = encontrado;
+	}
+
+	/**
+	 * Obtener el tiempo de la bsqueda
+	 *
+	 * @return El tiempo de reloj que tard la bsqueda, en nanosegundos
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * Obtener el nmero de nodos expandidos
+	 *
+	 * @return El nmero de nodos sacados de la lista abierta y expandidos
+	 */
+	public int getExpandidos() {
+		return expandidos;
+	}
+
+	/**
+	 * Obtener el nmero de nodos generados
+	 *
+	 * @return El nmero de nodos aadidos a la lista abierta por primera vez
+	 */
+	public int getGenerados() {
+		return generados;
+	}
+
+	/**
+	 * Obtener el nmero de nodos reabiertos
+	 *
+	 * @return El nmero de nodos cerrados que se volvieron a abrir al encontrar un camino mejor
+	 */
+	public int getReabiertos() {
+		return reabiertos;
+	}
+
+	/**
+	 * Obtener el tamao mximo de la lista abierta
+	 *
+	 * @return El mayor nmero de nodos que hubo a la vez en la lista abierta
+	 */
+	public int getMaxAbiertos() {
+		return maxAbiertos;
+	}
+
+	/**
+	 * Obtener la profundidad alcanzada
+	 *
+	 * @return La profundidad mxima alcanzada, en las mismas unidades que la profundidad
+	 * mxima del buscador
+	 */
+	public int getProfundidad() {
+		return profundidad;
+	}
+
+	/**
+	 * Comprobar si la bsqueda se cort
+	 *
+	 * @return True Si la bsqueda se detuvo por la profundidad mxima con nodos an abiertos
+	 */
+	public boolean isCortada() {
+		return cortada;
+	}
+
+	/**
+	 * Comprobar si la bsqueda encontr un camino
+	 *
+	 * @return True Si la bsqueda devolvi un camino
+	 */
+	public boolean isEncontrado() {
+		return encontrado;
+	}
+
+	public String toString() {
+		return "expandidos=" + expandidos + " generados=" + generados + " reabiertos=" + reabiertos
+				+ " maxAbiertos=" + maxAbiertos + " profundidad=" + profundidad + " nanos=" + nanos
+				+ (cortada ? " cortada" : "") + (encontrado ? "" : " sin camino");
+	}
+}
@@ -0,0 +1,206 @@
+package util.buscadorcamino;
+
+/**
+ * Montculo binario mnimo indexado de nodos ordenado por f = costo + peso * heuristica, con 
+ * peso 1 salvo que se cambie. Cada nodo guarda su posicin en el montculo, de modo que 
+ * agregar, eliminar o rebajar la clave de un nodo es O(log n).
+ *
+ * Lo comparten los buscadores que guardan sus nodos en un AlmacenNodos.
+ */
+class MonticuloNodos {
+
+	private AlmacenNodos nodos;/** Los nodos cuyos costes ordenan el montculo */
+	private int[] elementos = new int[64];/** Los nodos del montculo, la raz est en la posicin 0 */
+	private int tamano;/** El nmero de nodos en el montculo */
+	private int maximo;/** El mayor nmero de nodos que ha habido a la vez desde que se vaci */
+	private float peso = 1;/** El peso de la heurstica en la clave */
+	
+	/**
+	 * Crear un montculo vaco
+	 * 
+	 * @param nodos Los nodos cuyos costes ordenan el montculo
+	 */
+	MonticuloNodos(AlmacenNodos nodos) {
+		this.nodos = nodos;
+	}
+	
+	/**
+	 * Recuperar el primer elemento de la lista
+	 *  
+	 * @return El primer elemento de la lista
+	 */
+	int primero() {
+		return elementos[0];
+	}
+	
+	/**
+	 * Vaciar la lista. Los nodos que quedaron dentro se reinician cuando la 
+	 * siguiente bsqueda los vuelve a tocar.
+	 */
+	void limpiar() {
+		tamano = 0;
+		maximo = 0;
+	}
+	
+	/**
+	 * Aadir un elemento a la lista, se sube hasta su lugar en el montculo
+	 * 
+	 * @param nodo El elemento a aadir
+	 */
+	void agregar(int nodo) {
+		if (tamano == elementos.length) {
+			int[] nuevos = new int[tamano * 2];
+			System.arraycopy(elementos, 0, nuevos, 0, tamano);
+			elementos = nuevos;
+		}
+		nodos.estado[nodo] = AlmacenNodos.ABIERTO;
+		colocar(nodo, tamano);
+		tamano++;
+		if (tamano > maximo) {
+			maximo = tamano;
+		}
+		subir(tamano - 1);
+	}
+	
+	/**
+	 * Elimina un elemento de la lista
+	 * 
+	 * @param nodo El elemento a eliminar
+	 */
+	void eliminar(int nodo) {
+		int indice = nodos.indiceAbierto[nodo];
+		if (indice < 0) {
+			return;
+		}
+		tamano--;
+		int ultimo = elementos[tamano];
+		nodos.indiceAbierto[nodo] = -1;
+		nodos.estado[nodo] = AlmacenNodos.SIN_VISITAR;
+		if (indice < tamano) {
+			colocar(ultimo, indice);
+			subir(indice);
+			bajar(nodos.indiceAbierto[ultimo]);
+		}
+	}
+	
+	/**
+	 * Reubica un elemento cuya clave acaba de disminuir
+	 * 
+	 * @param nodo El elemento cuyo coste se ha rebajado
+	 */
+	void disminuirClave(int nodo) {
+		subir(nodos.indiceAbierto[nodo]);
+	}
+
+	/**
+	 * Cambiar el peso de la heurstica y reordenar todo el montculo con las claves nuevas, 
+	 * en O(n)
+	 * 
+	 * @param peso El nuevo peso de la heurstica
+	 */
+	void setPeso(float peso) {
+		this.peso = peso;
+		for (int i=(tamano >> 1) - 1;i>=0;i--) {
+			bajar(i);
+		}
+	}
+	
+	/**
+	 * Obtener la clave con la que se ordena un nodo
+	 * 
+	 * @param nodo El nodo
+	 * @return costo + peso * heuristica
+	 */
+	float clave(int nodo) {
+		return nodos.costo[nodo] + peso * nodos.heuristica[nodo];
+	}
+	
+	/**
+	 * Obtener el elemento de una posicin del montculo, para recorrerlos todos
+	 * 
+	 * @param indice La posicin, entre 0 y size() - 1
+	 * @return El elemento de esa posicin
+	 */
+	int get(int indice) {
+		return elementos[indice];
+	}
+	
+	/**
+	 * Obtener el nmero de elementos en la lista
+	 * 
+	 * @return El nmero de elemento en la lista
+ 		 */
+	int size() {
+		return tamano;
+	}
+	
+	/**
+	 * Obtener el mayor nmero de elementos que ha habido a la vez en la lista
+	 * 
+	 * @return El tamao mximo desde la ltima vez que se vaci
+	 */
+	int getMaximo() {
+		return maximo;
+	}
+	
+	/**
+	 * Comparar dos nodos por f y, a igual f, prefiriendo el ms cercano al destino
+	 */
+	private boolean menor(int a, int b) {
+		float fa = nodos.costo[a] + peso * nodos.heuristica[a];
+		float fb = nodos.costo[b] + peso * nodos.heuristica[b];
+		return (fa < fb) || ((fa == fb) && (nodos.heuristica[a] < nodos.heuristica[b]));
+	}
+	
+	/**
+	 * Sube el elemento de la posicin dada mientras sea menor que su padre
+	 * 
+	 * @param indice La posicin del elemento a subir
+	 */
+	private void subir(int indice) {
+		int nodo = elementos[indice];
+		while (indice > 0) {
+			int indicePadre = (indice - 1) >> 1;
+			int padre = elementos[indicePadre];
+			if (!menor(nodo, padre)) {
+				break;
+			}
+			colocar(padre, indice);
+			indice = indicePadre;
+		}
+		colocar(nodo, indice);
+	}
+	
+	/**
+	 * Baja el elemento de la posicin dada mientras sea mayor que alguno de sus hijos
+	 * 
+	 * @param indice La posicin del elemento a bajar
+	 */
+	private void bajar(int indice) {
+		int nodo = elementos[indice];
+		int mitad = tamano >> 1;
+		while (indice < mitad) {
+			int hijo = (indice << 1) + 1;
+			if ((hijo + 1 < tamano) && menor(elementos[hijo + 1], elementos[hijo])) {
+				hijo++;
+			}
+			if (!menor(elementos[hijo], nodo)) {
+				break;
+			}
+			colocar(elementos[hijo], indice);
+			indice = hijo;
+		}
+		colocar(nodo, indice);
+	}
+	
+	/**
+	 * Guarda un elemento en una posicin del montculo y le recuerda su posicin
+	 * 
+	 * @param nodo El elemento a guardar
+	 * @param indice La posicin en la que se guarda
+	 */
+	private void colocar(int nodo, int indice) {
+		elementos[indice] = nodo;
+		nodos.indiceAbierto[nodo] = indice;
+	}
+}
@@ -0,0 +1,19 @@
+package util.buscadorcamino;
+
+/**
+ * Un objeto que quiere recibir las medidas de cada bsqueda de un buscador, por ejemplo
+ * para registrarlas o acumular histogramas de latencia.
+ *
+ * @see BuscadorInstrumentable
+ */
+public interface OyenteBusqueda {
+
+	/**
+	 * La notificacin de que ha terminado una bsqueda. Se llama en el hilo que busc, antes
+	 * de devolver el camino, as que debe ser rpida.
+	 *
+	 * @param buscador El buscador que hizo la bsqueda
+	 * @param metricas Las medidas de la bsqueda, vlidas slo durante esta llamada
+	 */
+	public void busquedaTerminada(BuscadorRuta buscador, MetricasBusqueda metricas);
+}
@@ -0,0 +1,19 @@
+package util.buscadorcamino;
+
+/**
+ * Un objeto que quiere saber cundo cambia una baldosa de un mapa, por ejemplo para
+ * reconstruir slo la parte de sus datos precalculados que depende de esa baldosa.
+ * 
+ * @see MapaObservable
+ */
+public interface OyenteMapa {
+
+	/**
+	 * La notificacin de que ha cambiado el terreno o el agente de una baldosa, as que
+	 * puede haber cambiado si bloquea a una entidad o cunto cuesta atravesarla.
+	 * 
+	 * @param x La coordenada x de la baldosa que cambi
+	 * @param y La coordenada y de la baldosa que cambi
+	 */
+	public void baldosaCambiada(int x, int y);
+}
@@ -0,0 +1,98 @@
+package util.buscadorcamino;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Reparte un presupuesto de expansiones por fotograma entre todas las bsquedas en curso, de
+ * modo que el tiempo de bsqueda de cada fotograma est acotado sea cual sea el nmero de
+ * unidades que piden camino. Cada bsqueda recibe una parte igual del presupuesto; lo que no
+ * gastan las que terminan se reparte entre las dems, y el orden rota en cada fotograma para
+ * que todas avancen aunque el presupuesto sea menor que el nmero de bsquedas.
+ *
+ * Al terminar una bsqueda se llama a su funcin de aviso, en el hilo que avanza el
+ * planificador, y se quita del planificador. No es seguro para varios hilos.
+ */
+public class PlanificadorBusquedas {
+
+	private ArrayList<BusquedaReanudable> busquedas = new ArrayList<>();/** Las bsquedas en curso */
+	private ArrayList<Consumer<BusquedaReanudable>> avisos = new ArrayList<>();/** La funcin a la que se avisa al terminar cada bsqueda */
+	private int siguiente;/** La posicin de la bsqueda que empieza el siguiente fotograma */
+
+	/**
+	 * Aadir una bsqueda ya iniciada
+	 *
+	 * @param busqueda La bsqueda, iniciada con BusquedaReanudable#iniciar
+	 * @param alTerminar La funcin a la que se avisa cuando termine, o null
+	 */
+	public void agregar(BusquedaReanudable busqueda, Consumer<BusquedaReanudable> alTerminar) {
+		busquedas.add(busqueda);
+		avisos.add(alTerminar);
+	}
+
+	/**
+	 * Quitar una bsqueda sin avisar, por ejemplo porque la unidad ya no necesita el camino
+	 *
+	 * @param busqueda La bsqueda a quitar
+	 * @return True Si la bsqueda estaba en el planificador
+	 */
+	public boolean cancelar(BusquedaReanudable busqueda) {
+		int i = busquedas.indexOf(busqueda);
+		if (i < 0) {
+			return false;
+		}
+		quitar(i);
+		return true;
+	}
+
+	/**
+	 * Avanzar las bsquedas con el presupuesto de un fotograma
+	 *
+	 * @param presupuesto El nmero mximo de nodos a expandir entre todas las bsquedas
+	 * @return El nmero de nodos expandidos
+	 */
+	public int avanzar(int presupuesto) {
+		int restante = presupuesto;
+		while ((restante > 0) && !busquedas.isEmpty()) {
+			int parte = Math.max(1, restante / busquedas.size());
+			int vueltas = busquedas.size();
+			for (int v=0;(v<vueltas) && (restante > 0) && !busquedas.isEmpty();v++) {
+				if (siguiente >= busquedas.size()) {
+					siguiente = 0;
+				}
+				BusquedaReanudable busqueda = busquedas.get(siguiente);
+				restante -= busqueda.avanzar(Math.min(parte, restante));
+				if (busqueda.getEstado() != BusquedaReanudable.Estado.EN_CURSO) {
+					Consumer<BusquedaReanudable> aviso = avisos.get(siguiente);
+					quitar(siguiente);
+					if (aviso != null) {
+						aviso.accept(busqueda);
+					}
+				} else {
+					siguiente++;
+				}
+			}
+		}
+		return presupuesto - restante;
+	}
+
+	/**
+	 * Obtener el nmero de bsquedas en curso
+	 *
+	 * @return El nmero de bsquedas que an no han terminado
+	 */
+	public int size() {
+		return busquedas.size();
+	}
+
+	/**
+	 * Quitar la bsqueda de una posicin sin cambiar el orden de las dems
+	 */
+	private void quitar(int i) {
+		busquedas.remove(i);
+		avisos.remove(i);
+		if (siguiente > i) {
+			siguiente--;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package util.buscadorcamino;
+
+import java.util.List;
+
+/**
+ * Un planificador de caminos para varias entidades a la vez que evita que choquen entre s
+ * (Windowed Hierarchical Cooperative A*). Las entidades se planifican de una en una: cada una
+ * busca en espacio y tiempo sus prximas posiciones durante una ventana de unos pocos
+ * instantes evitando las celdas (x, y, t) que han reservado las anteriores, y despus reserva
+ * las suyas. Al final de la ventana el resto del camino se estima con la distancia real hasta
+ * el destino sobre el terreno, calculada con una bsqueda inversa que cada entidad conserva
+ * entre ventanas, as que replanificar en cada ventana cuesta poco aunque el destino est lejos.
+ *
+ * El mapa que se pasa slo debe bloquear por el terreno, no por las entidades que se
+ * planifican, que se evitan con las reservas. Esperar cuesta lo mismo que un paso recto,
+ * salvo en el destino, donde es gratis. El orden de prioridad rota en cada planificacin para
+ * que ninguna entidad tenga que apartarse siempre. Como las de menor prioridad an no han
+ * reservado cuando planifican las anteriores, una entidad encerrada puede quedarse en una
+ * celda que otra pensaba atravesar; basta con replanificar antes de que acabe la ventana,
+ * normalmente a la mitad.
+ *
+ * La heurstica que se usa para la distancia real debe ser consistente. Las distancias reales
+ * se vuelven a calcular cuando cambia el mapa: si es un MapaObservable el planificador se
+ * registra para conocer sus cambios y cerrar lo da de baja; si no, hay que avisarle con
+ * baldosaCambiada. No es seguro para varios hilos.
+ */
+public class PlanificadorCooperativo implements OyenteMapa {
+
+	private static final float COSTO_ESPERA = 1;/** El coste de quedarse quieto un instante fuera del destino */
+
+	private MapaConBaldosas mapa;/** El mapa del terreno */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private AEstrellaHeuristica heuristica;/** La heurstica consistente de las bsquedas inversas */
+	private int ventana;/** El nmero de instantes que se planifican cada vez */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private TablaReservas reservas;/** Las celdas reservadas en la planificacin actual */
+	private AlmacenNodos nodos;/** Los nodos de la bsqueda en espacio y tiempo, con clave t * baldosas + baldosa */
+	private MonticuloNodos abierto;/** Los nodos abiertos de la bsqueda en espacio y tiempo */
+	private int siguienteId;/** El identificador del prximo agente */
+	private int rotacion;/** La posicin del agente que se planifica primero la prxima vez */
+	private int versionMapa;/** Cuenta los cambios del mapa, para rehacer las distancias calculadas antes */
+
+	/**
+	 * Crear un planificador
+	 *
+	 * @param mapa El mapa del terreno, sin contar las entidades que se planifican. Si es un
+	 * MapaObservable el planificador se registra para conocer sus cambios
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 * @param ventana El nmero de instantes que se planifican cada vez, normalmente entre 8 y 32
+	 * @param heuristica Una heurstica consistente, como HeuristicaOctil o HeuristicaManhattan
+	 */
+	public PlanificadorCooperativo(MapaConBaldosas mapa, boolean permiteMoviDiagonal, int ventana, AEstrellaHeuristica heuristica) {
+		this.mapa = mapa;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.ventana = ventana;
+		this.heuristica = heuristica;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+		if ((ventana < 1) || ((long) ancho * altura * (ventana + 1) > Integer.MAX_VALUE)) {
+			throw new IllegalArgumentException("Ventana no vlida para un mapa de " + ancho + "x" + altura + ": " + ventana);
+		}
+		this.reservas = new TablaReservas(ancho, altura);
+		this.nodos = new AlmacenNodos(ancho, altura, true);
+		this.abierto = new MonticuloNodos(nodos);
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).agregarOyente(this);
+		}
+	}
+
+	/**
+	 * @see OyenteMapa#baldosaCambiada(int, int)
+	 */
+	public void baldosaCambiada(int x, int y) {
+		versionMapa++;
+	}
+
+	/**
+	 * Dejar de escuchar los cambios del mapa, para que el mapa no retenga el planificador
+	 * cuando ya no se usa
+	 */
+	public void cerrar() {
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).eliminarOyente(this);
+		}
+	}
+
+	/**
+	 * Crear un agente en una posicin, sin destino
+	 *
+	 * @param entidad La entidad que se mueve
+	 * @param x La coordenada x inicial
+	 * @param y La coordenada y inicial
+	 * @return El agente, cuyo destino es su posicin hasta que se cambie
+	 */
+	public AgenteCooperativo crearAgente(Entidad entidad, int x, int y) {
+		return new AgenteCooperativo(siguienteId++, entidad,
+				x, y, new DistanciaReanudable(mapa, permiteMoviDiagonal, heuristica, entidad));
+	}
+
+	/**
+	 * Planificar la prxima ventana de todos los agentes a partir de sus posiciones actuales.
+	 * Cada plan evita las celdas que reservaron los agentes planificados antes, pero los planes
+	 * no siempre son compatibles: un agente que no encuentra plan se queda quieto aunque otro
+	 * pensara atravesar su baldosa, y despus de la ventana no hay reservas. Hay que volver a
+	 * planificar antes de que acabe la ventana, normalmente a la mitad.
+	 *
+	 * @param agentes Los agentes a planificar, creados por este planificador
+	 * @return El nmero de agentes que no encontraron un plan y se quedan quietos
+	 */
+	public int planificar(List<AgenteCooperativo> agentes) {
+		reservas.limpiar();
+		for (int i=0;i<agentes.size();i++) {
+			AgenteCooperativo a = agentes.get(i);
+			reservas.reservar(a.getX(), a.getY(), 0, a.getId());
+		}
+
+		int sinPlan = 0;
+		int n = agentes.size();
+		for (int k=0;k<n;k++) {
+			if (!planificar(agentes.get((k + rotacion) % n))) {
+				sinPlan++;
+			}
+		}
+		rotacion = (n == 0) ? 0 : (rotacion + 1) % n;
+		return sinPlan;
+	}
+
+	/**
+	 * Obtener la tabla de reservas de la ltima planificacin
+	 *
+	 * @return Las celdas reservadas por los planes actuales
+	 */
+	public TablaReservas getReservas() {
+		return reservas;
+	}
+
+	/**
+	 * Buscar en espacio y tiempo la ventana de un agente y reservarla
+	 *
+	 * @return False Si no encontr un plan y se queda quieto
+	 */
+	private boolean planificar(AgenteCooperativo agente) {
+		DistanciaReanudable distancia = agente.getDistancia();
+		distancia.setDestino(agente.getDestinoX(), agente.getDestinoY(), agente.getX(), agente.getY(), versionMapa);
+		Entidad entidad = agente.getEntidad();
+		int id = agente.getId();
+		int tx = agente.getDestinoX();
+		int ty = agente.getDestinoY();
+
+		AlmacenNodos n = nodos;
+		n.nuevaBusqueda();
+		abierto.limpiar();
+		float h = distancia.distancia(agente.getX(), agente.getY());
+		if (h == Float.POSITIVE_INFINITY) {
+			return esperar(agente);
+		}
+		int inicio = n.nodo(clave(agente.getX(), agente.getY(), 0));
+		n.costo[inicio] = 0;
+		n.heuristica[inicio] = h;
+		abierto.agregar(inicio);
+
+		int fin = AlmacenNodos.NINGUNO;
+		while (abierto.size() != 0) {
+			int actual = abierto.primero();
+			abierto.eliminar(actual);
+			n.estado[actual] = AlmacenNodos.CERRADO;
+			int x = n.getX(actual);
+			int y = n.getY(actual) % altura;
+			int t = n.getY(actual) / altura;
+			if (t == ventana) {
+				fin = actual;
+				break;
+			}
+
+			// Los vecinos son las baldosas de alrededor y la misma, que es esperar
+			for (int dx=-1;dx<2;dx++) {
+				for (int dy=-1;dy<2;dy++) {
+					if (!permiteMoviDiagonal && (dx != 0) && (dy != 0)) {
+						continue;
+					}
+					int nx = x + dx;
+					int ny = y + dy;
+					boolean espera = (dx == 0) && (dy == 0);
+					if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+						continue;
+					}
+					if ((!espera && mapa.bloquea(entidad, nx, ny)) || !reservas.puedeMoverse(x, y, nx, ny, t, id)) {
+						continue;
+					}
+					float paso = espera ? (((x == tx) && (y == ty)) ? 0 : COSTO_ESPERA) : mapa.getCosto(entidad, x, y, nx, ny);
+					float resto = distancia.distancia(nx, ny);
+					if (!(paso < Float.POSITIVE_INFINITY) || (resto == Float.POSITIVE_INFINITY)) {
+						continue;
+					}
+					float costo = n.costo[actual] + paso;
+					int vecino = n.nodo(clave(nx, ny, t + 1));
+					if (costo < n.costo[vecino]) {
+						if (n.estado[vecino] == AlmacenNodos.CERRADO) {
+							n.estado[vecino] = AlmacenNodos.SIN_VISITAR;
+						}
+						if (n.estado[vecino] == AlmacenNodos.ABIERTO) {
+							n.costo[vecino] = costo;
+							n.padre[vecino] = actual;
+							abierto.disminuirClave(vecino);
+						}
+					}
+					if (n.estado[vecino] == AlmacenNodos.SIN_VISITAR) {
+						n.costo[vecino] = costo;
+						n.heuristica[vecino] = resto;
+						n.padre[vecino] = actual;
+						abierto.agregar(vecino);
+					}
+				}
+			}
+		}
+		if (fin == AlmacenNodos.NINGUNO) {
+			return esperar(agente);
+		}
+
+		Camino plan = new Camino(ventana + 1, 0);
+		for (int nodo=fin;nodo!=AlmacenNodos.NINGUNO;nodo=n.padre[nodo]) {
+			plan.pasoPrevio(n.getX(nodo), n.getY(nodo) % altura);
+		}
+		for (int t=1;t<plan.getLength();t++) {
+			reservas.reservar(plan.getX(t), plan.getY(t), t, id);
+		}
+		agente.setPlan(plan);
+		return true;
+	}
+
+	/**
+	 * Dejar quieto a un agente durante la ventana, reservando su baldosa donde nadie lo ha hecho
+	 *
+	 * @return Siempre false, el agente no tiene plan
+	 */
+	private boolean esperar(AgenteCooperativo agente) {
+		Camino plan = new Camino(ventana + 1, 0);
+		for (int t=0;t<=ventana;t++) {
+			plan.agregarPaso(agente.getX(), agente.getY());
+			reservas.reservar(agente.getX(), agente.getY(), t, agente.getId());
+		}
+		agente.setPlan(plan);
+		return false;
+	}
+
+	/**
+	 * La clave de una celda en espacio y tiempo
+	 */
+	private int clave(int x, int y, int t) {
+		return (t * altura + y) * ancho + x;
+	}
+}
@@ -0,0 +1,542 @@
+package util.buscadorcamino;
+
+import java.util.Arrays;
+
+/**
+ * Una implementacin de buscador de ruta que utiliza la bsqueda por puntos de salto (Jump Point
+ * Search). En un mapa de coste uniforme muchos caminos son simtricos, as que en lugar de aadir
+ * cada vecino a la lista abierta se avanza en lnea recta o en diagonal hasta encontrar una baldosa
+ * con un vecino forzado por un obstculo, y slo esas baldosas (los puntos de salto) se expanden.
+ *
+ * Slo es correcta cuando todos los movimientos cuestan lo mismo. Si el mapa no implementa
+ * MapaCostoUniforme, o indica que el coste de la entidad no es uniforme, la bsqueda se delega
+ * en un AEstrellaBuscadorCamino normal, que informa a su vez al OyenteBusqueda y a la
+ * TrazaBusqueda si los hay. La traza recibe los puntos de salto expandidos y alcanzados.
+ */
+public class PuntoSaltoBuscadorCamino implements BuscadorInstrumentable, BuscadorTrazable {
+
+	private static final byte SIN_VISITAR = 0;/** Estado de un nodo que la bsqueda actual an no ha tocado */
+	private static final byte ABIERTO = 1;/** Estado de un nodo que est en la lista abierta */
+	private static final byte CERRADO = 2;/** Estado de un nodo que ya se ha expandido */
+	private static final int NINGUNO = -1;/** Valor de un ndice de nodo que no existe */
+
+	private MapaConBaldosas mapa;/** El mapa que se busca */
+	private int maxDistanciaBusqueda;/** La profundidad mxima de la bsqueda que estamos dispuestos a aceptar antes de renunciar */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private AEstrellaBuscadorCamino alternativo;/** El buscador que se usa cuando el coste no es uniforme, creado al necesitarlo */
+
+	private int[] costo;/** El nmero de pasos desde el inicio hasta cada nodo, indexado por y*ancho+x */
+	private int[] heuristica;/** La estimacin de pasos hasta el destino de cada nodo */
+	private int[] padre;/** El punto de salto desde el que se lleg a cada nodo */
+	private int[] busqueda;/** El nmero de la bsqueda que toc cada nodo por ltima vez */
+	private byte[] estado;/** Si cada nodo est sin visitar, abierto o cerrado en la bsqueda marcada */
+	private int[] indiceAbierto;/** La posicin de cada nodo en el montculo abierto */
+	private int[] abierto = new int[64];/** El montculo binario de nodos abiertos ordenado por costo + heuristica */
+	private int tamanoAbierto;/** El nmero de nodos en el montculo abierto */
+	private int busquedaActual;/** El nmero de la bsqueda en curso */
+
+	private Entidad entidad;/** La entidad de la bsqueda en curso */
+	private int sx;/** La coordenada x de inicio de la bsqueda en curso */
+	private int sy;/** La coordenada y de inicio de la bsqueda en curso */
+	private int tx;/** La coordenada x de destino de la bsqueda en curso */
+	private int ty;/** La coordenada y de destino de la bsqueda en curso */
+	private int saltoX;/** La coordenada x del ltimo punto de salto encontrado */
+	private int saltoY;/** La coordenada y del ltimo punto de salto encontrado */
+	private long[] bloqueados;/** Las baldosas bloqueadas de la entidad en curso si el mapa est compilado, o null */
+	private OyenteBusqueda oyente;/** El objeto al que se informa al terminar cada bsqueda, o null */
+	private TrazaBusqueda traza;/** La traza a la que se avisa de cada paso de la bsqueda, o null */
+	private ComponentesConexas componentes;/** Las componentes con las que se descartan los destinos inalcanzables, o null */
+	private MetricasBusqueda metricas;/** Las medidas que se pasan al oyente, reutilizadas en cada bsqueda */
+
+	/**
+	 * Crear un buscador de rutas por puntos de salto
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param maxDistanciaBusqueda La profundidad mxima que buscaremos antes de renunciar
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 */
+	public PuntoSaltoBuscadorCamino(MapaConBaldosas mapa, int maxDistanciaBusqueda, boolean permiteMoviDiagonal) {
+		this.mapa = mapa;
+		this.maxDistanciaBusqueda = maxDistanciaBusqueda;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+
+		int baldosas = ancho * altura;
+		costo = new int[baldosas];
+		heuristica = new int[baldosas];
+		padre = new int[baldosas];
+		busqueda = new int[baldosas];
+		estado = new byte[baldosas];
+		indiceAbierto = new int[baldosas];
+	}
+
+	/**
+	 * @see BuscadorInstrumentable#setOyenteBusqueda(OyenteBusqueda)
+	 */
+	public void setOyenteBusqueda(OyenteBusqueda oyente) {
+		this.oyente = oyente;
+		if ((oyente != null) && (metricas == null)) {
+			metricas = new MetricasBusqueda();
+		}
+		if (alternativo != null) {
+			alternativo.setOyenteBusqueda(oyente);
+		}
+	}
+
+	/**
+	 * @see BuscadorTrazable#setTraza(TrazaBusqueda)
+	 */
+	public void setTraza(TrazaBusqueda traza) {
+		this.traza = traza;
+		if (alternativo != null) {
+			alternativo.setTraza(traza);
+		}
+	}
+
+	/**
+	 * @see BuscadorTrazable#getTraza()
+	 */
+	public TrazaBusqueda getTraza() {
+		return traza;
+	}
+
+	/**
+	 * Usar unas componentes conexas para devolver null sin buscar cuando el destino est en
+	 * otra componente que el inicio
+	 *
+	 * @param componentes Las componentes del mapa, con el mismo movimiento diagonal, o null
+	 */
+	public void setComponentes(ComponentesConexas componentes) {
+		this.componentes = componentes;
+		if (alternativo != null) {
+			alternativo.setComponentes(componentes);
+		}
+	}
+
+	/**
+	 * @see BuscadorRuta#encontrarCamino(Entidad, int, int, int, int)
+	 */
+	public Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty) {
+		if (!(mapa instanceof MapaCostoUniforme) || !((MapaCostoUniforme) mapa).esCostoUniforme(entidad)) {
+			if (alternativo == null) {
+				alternativo = new AEstrellaBuscadorCamino(mapa, maxDistanciaBusqueda, permiteMoviDiagonal);
+				alternativo.setOyenteBusqueda(oyente);
+				alternativo.setTraza(traza);
+				alternativo.setComponentes(componentes);
+			}
+			return alternativo.encontrarCamino(entidad, sx, sy, tx, ty);
+		}
+		long inicioNanos = (oyente != null) ? System.nanoTime() : 0;
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaIniciada(sx, sy, tx, ty);
+		}
+		if (mapa.bloquea(entidad, tx, ty)) {// Si el destino esta bloqueado no podemos llegar
+			informar(inicioNanos, 0, 0, 0, 0, false, null);
+			return null;
+		}
+		if ((componentes != null) && !componentes.conectadas(entidad, sx, sy, tx, ty)) {// Ni siquiera el terreno los une
+			informar(inicioNanos, 0, 0, 0, 0, false, null);
+			return null;
+		}
+		this.entidad = entidad;
+		this.sx = sx;
+		this.sy = sy;
+		this.tx = tx;
+		this.ty = ty;
+		this.bloqueados = (mapa instanceof MapaCompilado) ? ((MapaCompilado) mapa).getCapa(entidad).getBloqueados() : null;
+
+		nuevaBusqueda();
+		int inicio = getNodo(sx, sy);
+		int destino = getNodo(tx, ty);
+		costo[inicio] = 0;
+		tamanoAbierto = 0;
+		agregarAbierto(inicio);
+
+		int maxProfundidad = 0;
+		int expandidos = 0;
+		int generados = 0;
+		int maxAbiertos = 1;
+		while ((maxProfundidad < maxDistanciaBusqueda) && (tamanoAbierto != 0)) {
+			int actual = abierto[0];
+			if (actual == destino) {
+				break;
+			}
+			eliminarPrimeroAbierto();
+			estado[actual] = CERRADO;
+			expandidos++;
+
+			int x = actual % ancho;
+			int y = actual / ancho;
+			if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+				traza.nodoExpandido(x, y, costo[actual], heuristica[actual]);
+			}
+			int dx = 0;
+			int dy = 0;
+			if (padre[actual] != NINGUNO) {
+				dx = Integer.signum(x - padre[actual] % ancho);
+				dy = Integer.signum(y - padre[actual] / ancho);
+			}
+
+			// Slo se siguen las direcciones que no se pueden alcanzar igual de bien sin pasar
+			// por este nodo: las naturales segn la direccin de llegada y las forzadas por obstculos
+			for (int ddx=-1;ddx<2;ddx++) {
+				for (int ddy=-1;ddy<2;ddy++) {
+					if ((ddx == 0) && (ddy == 0)) {
+						continue;
+					}
+					if (!permiteMoviDiagonal && (ddx != 0) && (ddy != 0)) {
+						continue;
+					}
+					if (!hayQueSeguir(x, y, dx, dy, ddx, ddy)) {
+						continue;
+					}
+					if (!saltar(x, y, ddx, ddy)) {
+						continue;
+					}
+
+					int salto = getNodo(saltoX, saltoY);
+					if (estado[salto] == CERRADO) {
+						continue;
+					}
+					if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+						traza.baldosaVisitada(saltoX, saltoY);
+					}
+					int costoSalto = costo[actual] + Math.max(Math.abs(saltoX - x), Math.abs(saltoY - y));
+					if (costoSalto < costo[salto]) {
+						costo[salto] = costoSalto;
+						padre[salto] = actual;
+						maxProfundidad = Math.max(maxProfundidad, costoSalto);
+						if (estado[salto] == ABIERTO) {
+							subir(indiceAbierto[salto]);
+						} else {
+							heuristica[salto] = getCostoHeuristica(saltoX, saltoY);
+							agregarAbierto(salto);
+							generados++;
+							maxAbiertos = Math.max(maxAbiertos, tamanoAbierto);
+						}
+					}
+				}
+			}
+		}
+
+		boolean cortada = (maxProfundidad >= maxDistanciaBusqueda) && (tamanoAbierto != 0) && (abierto[0] != destino);
+
+		//Ya que nos hemos quedado sin bsqueda no haba camino. Solo devuelve null
+
+		if (padre[destino] == NINGUNO) {
+			informar(inicioNanos, expandidos, generados, maxAbiertos, maxProfundidad, cortada, null);
+			return null;
+		}
+
+		//Recorrer los puntos de salto desde el destino hasta el inicio, aadiendo
+		//tambin las baldosas intermedias de cada salto
+
+		Camino camino = new Camino(costo[destino] + 1, 0);
+		int nodo = destino;
+		while (nodo != inicio) {
+			int anterior = padre[nodo];
+			int x = nodo % ancho;
+			int y = nodo / ancho;
+			int px = anterior % ancho;
+			int py = anterior / ancho;
+			int dx = Integer.signum(px - x);
+			int dy = Integer.signum(py - y);
+			while ((x != px) || (y != py)) {
+				camino.pasoPrevio(x, y);
+				x += dx;
+				y += dy;
+			}
+			nodo = anterior;
+		}
+		camino.pasoPrevio(sx, sy);
+		informar(inicioNanos, expandidos, generados, maxAbiertos, maxProfundidad, cortada, camino);
+		return camino;
+	}
+
+	/**
+	 * Informar al oyente de las medidas de la bsqueda que termina, si hay oyente, y avisar a 
+	 * la traza. Los puntos de salto nunca se reabren, porque el coste es uniforme.
+	 *
+	 * @param inicioNanos El momento en que empez la bsqueda, segn System.nanoTime
+	 * @param camino El camino devuelto, o null si no se encontr
+	 */
+	private void informar(long inicioNanos, int expandidos, int generados, int maxAbiertos, 
+						  int profundidad, boolean cortada, Camino camino) {
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaTerminada(camino);
+		}
+		if (oyente == null) {
+			return;
+		}
+		metricas.establecer(System.nanoTime() - inicioNanos, expandidos, generados, 0, 
+				maxAbiertos, profundidad, cortada, camino != null);
+		oyente.busquedaTerminada(this, metricas);
+	}
+
+	/**
+	 * Comprueba si hay que seguir una direccin desde un nodo, segn la direccin por la que
+	 * se lleg a l. Las dems direcciones llevan a baldosas a las que se llega igual de bien
+	 * sin pasar por este nodo.
+	 *
+	 * @param x La coordenada x del nodo
+	 * @param y La coordenada y del nodo
+	 * @param dx La direccin x de llegada al nodo, 0 para el nodo inicial
+	 * @param dy La direccin y de llegada al nodo, 0 para el nodo inicial
+	 * @param ddx La direccin x que se comprueba
+	 * @param ddy La direccin y que se comprueba
+	 * @return True Si hay que saltar en la direccin dada
+	 */
+	private boolean hayQueSeguir(int x, int y, int dx, int dy, int ddx, int ddy) {
+		if ((dx == 0) && (dy == 0)) {// Desde el inicio se siguen todas las direcciones
+			return true;
+		}
+		if (!permiteMoviDiagonal) {
+			if (dx != 0) {// En horizontal se sigue recto y se abren las dos verticales
+				return ddx == dx || ddx == 0;
+			}
+			return ddy == dy || ddy == 0;
+		}
+		if ((dx != 0) && (dy != 0)) {
+			// En diagonal se siguen la diagonal y sus dos componentes
+			if (((ddx == dx) && (ddy == dy)) || ((ddx == dx) && (ddy == 0)) || ((ddx == 0) && (ddy == dy))) {
+				return true;
+			}
+			// Y las diagonales forzadas por un obstculo a un lado
+			if ((ddx == -dx) && (ddy == dy)) {
+				return !libre(x - dx, y);
+			}
+			if ((ddx == dx) && (ddy == -dy)) {
+				return !libre(x, y - dy);
+			}
+			return false;
+		}
+		if (dx != 0) {// En horizontal se sigue recto y las diagonales forzadas
+			if ((ddx == dx) && (ddy == 0)) {
+				return true;
+			}
+			if ((ddx == dx) && (ddy != 0)) {
+				return !libre(x, y + ddy);
+			}
+			return false;
+		}
+		if ((ddy == dy) && (ddx == 0)) {// En vertical igual que en horizontal
+			return true;
+		}
+		if ((ddy == dy) && (ddx != 0)) {
+			return !libre(x + ddx, y);
+		}
+		return false;
+	}
+
+	/**
+	 * Avanzar desde un nodo en una direccin hasta encontrar el siguiente punto de salto: el
+	 * destino, una baldosa con un vecino forzado o, en diagonal, una baldosa desde la que
+	 * un salto recto encuentra un punto de salto. Si se encuentra, queda en saltoX y saltoY.
+	 *
+	 * @param x La coordenada x del nodo de partida
+	 * @param y La coordenada y del nodo de partida
+	 * @param dx La direccin x del salto
+	 * @param dy La direccin y del salto
+	 * @return True Si se encontr un punto de salto, false si se lleg a un obstculo
+	 */
+	private boolean saltar(int x, int y, int dx, int dy) {
+		while (true) {
+			x += dx;
+			y += dy;
+			if (!libre(x, y)) {
+				return false;
+			}
+			if ((x == tx) && (y == ty)) {
+				break;
+			}
+			if ((dx != 0) && (dy != 0)) {
+				if ((!libre(x - dx, y) && libre(x - dx, y + dy)) || (!libre(x, y - dy) && libre(x + dx, y - dy))) {
+					break;
+				}
+				if (saltar(x, y, dx, 0) || saltar(x, y, 0, dy)) {
+					break;
+				}
+			} else if (permiteMoviDiagonal) {
+				if (dx != 0) {
+					if ((!libre(x, y + 1) && libre(x + dx, y + 1)) || (!libre(x, y - 1) && libre(x + dx, y - 1))) {
+						break;
+					}
+				} else {
+					if ((!libre(x + 1, y) && libre(x + 1, y + dy)) || (!libre(x - 1, y) && libre(x - 1, y + dy))) {
+						break;
+					}
+				}
+			} else {
+				if (dx != 0) {
+					if ((libre(x, y - 1) && !libre(x - dx, y - 1)) || (libre(x, y + 1) && !libre(x - dx, y + 1))) {
+						break;
+					}
+				} else {
+					if ((libre(x - 1, y) && !libre(x - 1, y - dy)) || (libre(x + 1, y) && !libre(x + 1, y - dy))) {
+						break;
+					}
+					// Sin diagonales, en vertical tambin hay que mirar si se abre un camino horizontal
+					if (saltar(x, y, 1, 0) || saltar(x, y, -1, 0)) {
+						break;
+					}
+				}
+			}
+		}
+		saltoX = x;
+		saltoY = y;
+		return true;
+	}
+
+	/**
+	 * Compruebe si la entidad de la bsqueda en curso puede pisar una baldosa. La baldosa
+	 * de inicio siempre se puede pisar, igual que en AEstrellaBuscadorCamino.
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return True Si la baldosa est dentro del mapa y no est bloqueada
+	 */
+	private boolean libre(int x, int y) {
+		if ((x < 0) || (y < 0) || (x >= ancho) || (y >= altura)) {
+			return false;
+		}
+		if ((x == sx) && (y == sy)) {
+			return true;
+		}
+		if (bloqueados != null) {
+			int i = y * ancho + x;
+			return (bloqueados[i >>> 6] & (1L << i)) == 0;
+		}
+		return !mapa.bloquea(entidad, x, y);
+	}
+
+	/**
+	 * Obtener el nmero mnimo de pasos hasta el destino, que con coste uniforme es una
+	 * estimacin que nunca se pasa
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return El nmero de pasos sin obstculos hasta el destino
+	 */
+	private int getCostoHeuristica(int x, int y) {
+		int dx = Math.abs(tx - x);
+		int dy = Math.abs(ty - y);
+		if (permiteMoviDiagonal) {
+			return Math.max(dx, dy);
+		}
+		return dx + dy;
+	}
+
+	/**
+	 * Comenzar una nueva bsqueda. Basta con cambiar el nmero de bsqueda para que
+	 * todos los nodos del mapa vuelvan a estar sin visitar.
+	 */
+	private void nuevaBusqueda() {
+		busquedaActual++;
+		if (busquedaActual == 0) {// Si el contador da la vuelta hay que borrar las marcas antiguas una vez
+			Arrays.fill(busqueda, 0);
+			busquedaActual = 1;
+		}
+	}
+
+	/**
+	 * Obtener el ndice del nodo de una baldosa para la bsqueda actual, reinicindolo si
+	 * se qued marcado por una bsqueda anterior
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return El ndice del nodo, y*ancho+x
+	 */
+	private int getNodo(int x, int y) {
+		int nodo = y * ancho + x;
+		if (busqueda[nodo] != busquedaActual) {
+			busqueda[nodo] = busquedaActual;
+			estado[nodo] = SIN_VISITAR;
+			costo[nodo] = Integer.MAX_VALUE;
+			padre[nodo] = NINGUNO;
+		}
+		return nodo;
+	}
+
+	/**
+	 * Agregar un nodo al montculo abierto
+	 *
+	 * @param nodo El nodo a agregar
+	 */
+	private void agregarAbierto(int nodo) {
+		if (tamanoAbierto == abierto.length) {
+			int[] nuevos = new int[tamanoAbierto * 2];
+			System.arraycopy(abierto, 0, nuevos, 0, tamanoAbierto);
+			abierto = nuevos;
+		}
+		estado[nodo] = ABIERTO;
+		abierto[tamanoAbierto] = nodo;
+		indiceAbierto[nodo] = tamanoAbierto;
+		tamanoAbierto++;
+		subir(tamanoAbierto - 1);
+	}
+
+	/**
+	 * Quitar la raz del montculo abierto
+	 */
+	private void eliminarPrimeroAbierto() {
+		tamanoAbierto--;
+		if (tamanoAbierto > 0) {
+			abierto[0] = abierto[tamanoAbierto];
+			indiceAbierto[abierto[0]] = 0;
+			bajar(0);
+		}
+	}
+
+	/**
+	 * Comprueba si un nodo va antes que otro en el montculo: menor costo + heuristica,
+	 * y a igualdad el ms cercano al destino
+	 */
+	private boolean menor(int a, int b) {
+		int fa = costo[a] + heuristica[a];
+		int fb = costo[b] + heuristica[b];
+		return (fa < fb) || ((fa == fb) && (heuristica[a] < heuristica[b]));
+	}
+
+	/**
+	 * Sube el nodo de la posicin dada mientras vaya antes que su padre en el montculo
+	 */
+	private void subir(int indice) {
+		int nodo = abierto[indice];
+		while (indice > 0) {
+			int indicePadre = (indice - 1) >> 1;
+			if (!menor(nodo, abierto[indicePadre])) {
+				break;
+			}
+			abierto[indice] = abierto[indicePadre];
+			indiceAbierto[abierto[indice]] = indice;
+			indice = indicePadre;
+		}
+		abierto[indice] = nodo;
+		indiceAbierto[nodo] = indice;
+	}
+
+	/**
+	 * Baja el nodo de la posicin dada mientras alguno de sus hijos vaya antes que l
+	 */
+	private void bajar(int indice) {
+		int nodo = abierto[indice];
+		int mitad = tamanoAbierto >> 1;
+		while (indice < mitad) {
+			int hijo = (indice << 1) + 1;
+			if ((hijo + 1 < tamanoAbierto) && menor(abierto[hijo + 1], abierto[hijo])) {
+				hijo++;
+			}
+			if (!menor(abierto[hijo], nodo)) {
+				break;
+			}
+			abierto[indice] = abierto[hijo];
+			indiceAbierto[abierto[indice]] = indice;
+			indice = hijo;
+		}
+		abierto[indice] = nodo;
+		indiceAbierto[nodo] = indice;
+	}
+}
@@ -0,0 +1,168 @@
+package util.buscadorcamino;
+
+import java.util.Arrays;
+
+/**
+ * Una tabla de reservas en espacio y tiempo: qu entidad ocupar cada baldosa en cada instante
+ * de la ventana de planificacin. Es una tabla hash abierta de claves long, (t, baldosa), que
+ * slo ocupa memoria por las reservas hechas; limpiarla cuesta lo mismo sea cual sea su tamao.
+ *
+ * @see PlanificadorCooperativo
+ */
+public class TablaReservas {
+
+	public static final int LIBRE = -1;/** El valor de una celda que nadie ha reservado */
+
+	private int baldosas;/** El nmero de baldosas del mapa */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private long[] claves = new long[1024];/** Las celdas reservadas, t * baldosas + baldosa */
+	private int[] agentes = new int[1024];/** La entidad que ha reservado cada celda */
+	private int[] marcas = new int[1024];/** La generacin de cada entrada, las de otras generaciones estn vacas */
+	private int generacion = 1;/** La generacin actual de la tabla */
+	private int tamano;/** El nmero de reservas de la generacin actual */
+
+	/**
+	 * Crear una tabla vaca
+	 *
+	 * @param ancho El ancho del mapa en baldosas
+	 * @param altura La altura del mapa en baldosas
+	 */
+	public TablaReservas(int ancho, int altura) {
+		this.ancho = ancho;
+		this.baldosas = ancho * altura;
+	}
+
+	/**
+	 * Quitar todas las reservas
+	 */
+	public void limpiar() {
+		generacion++;
+		if (generacion == 0) {// Si el contador da la vuelta hay que borrar las marcas antiguas una vez
+			Arrays.fill(marcas, 0);
+			generacion = 1;
+		}
+		tamano = 0;
+	}
+
+	/**
+	 * Reservar una baldosa en un instante para una entidad
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @param t El instante
+	 * @param agente El identificador de la entidad, no negativo
+	 * @return False Si otra entidad ya la haba reservado, en cuyo caso no se cambia
+	 */
+	public boolean reservar(int x, int y, int t, int agente) {
+		long clave = clave(x, y, t);
+		int mascara = claves.length - 1;
+		int i = mezclar(clave) & mascara;
+		while (marcas[i] == generacion) {
+			if (claves[i] == clave) {
+				return agentes[i] == agente;
+			}
+			i = (i + 1) & mascara;
+		}
+		marcas[i] = generacion;
+		claves[i] = clave;
+		agentes[i] = agente;
+		tamano++;
+		if (tamano * 2 > claves.length) {
+			ampliar();
+		}
+		return true;
+	}
+
+	/**
+	 * Obtener la entidad que ha reservado una baldosa en un instante
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @param t El instante
+	 * @return El identificador de la entidad, o LIBRE
+	 */
+	public int getReserva(int x, int y, int t) {
+		long clave = clave(x, y, t);
+		int mascara = claves.length - 1;
+		for (int i=mezclar(clave) & mascara;marcas[i] == generacion;i=(i + 1) & mascara) {
+			if (claves[i] == clave) {
+				return agentes[i];
+			}
+		}
+		return LIBRE;
+	}
+
+	/**
+	 * Comprobar si una entidad puede moverse de una baldosa a otra entre los instantes t y t+1:
+	 * la de llegada no est reservada por otra en t+1, y no se cruza con otra entidad que haga
+	 * el movimiento contrario
+	 *
+	 * @param x La coordenada x de salida
+	 * @param y La coordenada y de salida
+	 * @param nx La coordenada x de llegada
+	 * @param ny La coordenada y de llegada
+	 * @param t El instante de salida
+	 * @param agente El identificador de la entidad que se mueve
+	 * @return True Si el movimiento no choca con ninguna reserva
+	 */
+	public boolean puedeMoverse(int x, int y, int nx, int ny, int t, int agente) {
+		int ocupante = getReserva(nx, ny, t + 1);
+		if ((ocupante != LIBRE) && (ocupante != agente)) {
+			return false;
+		}
+		if ((x == nx) && (y == ny)) {
+			return true;
+		}
+		int otro = getReserva(nx, ny, t);
+		return (otro == LIBRE) || (otro == agente) || (getReserva(x, y, t + 1) != otro);
+	}
+
+	/**
+	 * Obtener el nmero de reservas
+	 *
+	 * @return El nmero de celdas reservadas
+	 */
+	public int size() {
+		return tamano;
+	}
+
+	/**
+	 * La clave de una celda
+	 */
+	private long clave(int x, int y, int t) {
+		return (long) t * baldosas + y * ancho + x;
+	}
+
+	/**
+	 * Doblar la tabla y volver a colocar las reservas actuales
+	 */
+	private void ampliar() {
+		long[] viejasClaves = claves;
+		int[] viejosAgentes = agentes;
+		int[] viejasMarcas = marcas;
+		claves = new long[viejasClaves.length * 2];
+		agentes = new int[claves.length];
+		marcas = new int[claves.length];
+		int mascara = claves.length - 1;
+		for (int j=0;j<viejasClaves.length;j++) {
+			if (viejasMarcas[j] != generacion) {
+				continue;
+			}
+			int i = mezclar(viejasClaves[j]) & mascara;
+			while (marcas[i] == generacion) {
+				i = (i + 1) & mascara;
+			}
+			marcas[i] = generacion;
+			claves[i] = viejasClaves[j];
+			agentes[i] = viejosAgentes[j];
+		}
+	}
+
+	/**
+	 * Mezclar los bits de una clave para repartirla por la tabla
+	 */
+	private static int mezclar(long clave) {
+		int h = (int) (clave ^ (clave >>> 32)) * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
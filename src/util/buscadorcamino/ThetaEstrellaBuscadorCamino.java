@@ -0,0 +1,254 @@
+package util.buscadorcamino;
+
+import util.buscadorcamino.heuristicas.HeuristicaCercana;
+
+/**
+ * Un buscador de caminos en cualquier ngulo (Theta*). Es un A* en el que, al abrir una
+ * vecina, se comprueba si se ve en lnea recta desde el padre del nodo actual; si se ve, y la
+ * lnea no cuesta ms que pasar por el nodo actual, la vecina cuelga directamente del padre.
+ * Los caminos resultantes slo tienen los puntos de paso donde hay que girar, as que son
+ * mucho ms cortos que los de AEstrellaBuscadorCamino y no zigzaguean.
+ *
+ * Dos puntos seguidos del camino no son vecinos: hay que recorrer la lnea entre ellos, que
+ * se ve segn LineaVision. El coste de una lnea es el de sus pasos de baldosa en baldosa, as
+ * que los caminos se miden igual que los de A*; no siempre son ptimos, pero casi. La
+ * profundidad mxima se cuenta en pasos de baldosa, no en puntos del camino.
+ *
+ * @see LineaVision
+ */
+public class ThetaEstrellaBuscadorCamino implements BuscadorInstrumentable, BuscadorTrazable {
+
+	private static final byte SIN_VISITAR = AlmacenNodos.SIN_VISITAR;/** Estado de un nodo que la bsqueda actual an no ha tocado */
+	private static final byte ABIERTO = AlmacenNodos.ABIERTO;/** Estado de un nodo que est en la lista abierta */
+	private static final byte CERRADO = AlmacenNodos.CERRADO;/** Estado de un nodo que ya se ha expandido */
+	private static final int NINGUNO = AlmacenNodos.NINGUNO;/** El ndice de un nodo que no existe */
+
+	private MapaConBaldosas mapa;/** El mapa que se busca */
+	private int maxDistanciaBusqueda;/** La profundidad mxima de la bsqueda que estamos dispuestos a aceptar antes de renunciar */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private AEstrellaHeuristica heuristica;/** La heurstica que estamos aplicando para determinar qu nodos buscar primero */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private AlmacenNodos nodos;/** Los nodos de la bsqueda */
+	private MonticuloNodos abierto;/** El conjunto de nodos que an no hemos considerado completamente buscado */
+	private OyenteBusqueda oyente;/** El objeto al que se informa al terminar cada bsqueda, o null */
+	private MetricasBusqueda metricas;/** Las medidas que se pasan al oyente, reutilizadas en cada bsqueda */
+	private TrazaBusqueda traza;/** La traza a la que se avisa de cada paso de la bsqueda, o null */
+	private ComponentesConexas componentes;/** Las componentes con las que se descartan los destinos inalcanzables, o null */
+
+	/**
+	 * Crear un buscador con la heurstica predeterminada - ms cercana al destino.
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param maxDistanciaBusqueda La profundidad mxima que buscaremos antes de renunciar
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda y las lneas pueden ir en diagonal
+	 */
+	public ThetaEstrellaBuscadorCamino(MapaConBaldosas mapa, int maxDistanciaBusqueda, boolean permiteMoviDiagonal) {
+		this(mapa, maxDistanciaBusqueda, permiteMoviDiagonal, new HeuristicaCercana());
+	}
+
+	/**
+	 * Crear un buscador
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param maxDistanciaBusqueda La profundidad mxima que buscaremos antes de renunciar
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda y las lneas pueden ir en diagonal
+	 * @param heuristica La heurstica utilizada para determinar el orden de bsqueda del mapa
+	 */
+	public ThetaEstrellaBuscadorCamino(MapaConBaldosas mapa, int maxDistanciaBusqueda,
+									   boolean permiteMoviDiagonal, AEstrellaHeuristica heuristica) {
+		this.mapa = mapa;
+		this.maxDistanciaBusqueda = maxDistanciaBusqueda;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.heuristica = heuristica;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+		this.nodos = new AlmacenNodos(ancho, altura, false);
+		this.abierto = new MonticuloNodos(nodos);
+	}
+
+	/**
+	 * @see BuscadorInstrumentable#setOyenteBusqueda(OyenteBusqueda)
+	 */
+	public void setOyenteBusqueda(OyenteBusqueda oyente) {
+		this.oyente = oyente;
+		if ((oyente != null) && (metricas == null)) {
+			metricas = new MetricasBusqueda();
+		}
+	}
+
+	/**
+	 * @see BuscadorTrazable#setTraza(TrazaBusqueda)
+	 */
+	public void setTraza(TrazaBusqueda traza) {
+		this.traza = traza;
+	}
+
+	/**
+	 * @see BuscadorTrazable#getTraza()
+	 */
+	public TrazaBusqueda getTraza() {
+		return traza;
+	}
+
+	/**
+	 * Usar unas componentes conexas para devolver null sin buscar cuando el destino est en
+	 * otra componente que el inicio
+	 *
+	 * @param componentes Las componentes del mapa, con el mismo movimiento diagonal, o null
+	 */
+	public void setComponentes(ComponentesConexas componentes) {
+		this.componentes = componentes;
+	}
+
+	/**
+	 * Buscar un camino de puntos de paso que se ven entre s
+	 *
+	 * @see BuscadorRuta#encontrarCamino(Entidad, int, int, int, int)
+	 */
+	public Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty) {
+		long inicioNanos = (oyente != null) ? System.nanoTime() : 0;
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaIniciada(sx, sy, tx, ty);
+		}
+		if (mapa.bloquea(entidad, tx, ty)) {// Si el destino esta bloqueado no podemos llegar
+			informar(inicioNanos, 0, 0, 0, 0, 0, false, null);
+			return null;
+		}
+		if ((componentes != null) && !componentes.conectadas(entidad, sx, sy, tx, ty)) {// Ni siquiera el terreno los une
+			informar(inicioNanos, 0, 0, 0, 0, 0, false, null);
+			return null;
+		}
+		AlmacenNodos n = nodos;
+		n.nuevaBusqueda();
+		int inicio = n.nodo(sy * ancho + sx);
+		int destino = n.nodo(ty * ancho + tx);
+		n.costo[inicio] = 0;
+		n.heuristica[inicio] = 0;
+		abierto.limpiar();
+		abierto.agregar(inicio);
+
+		int maxProfundidad = 0;
+		int expandidos = 0;
+		int generados = 0;
+		int reabiertos = 0;
+		while ((maxProfundidad < maxDistanciaBusqueda) && (abierto.size() != 0)) {
+			int actual = abierto.primero();
+			if (actual == destino) {
+				break;
+			}
+			abierto.eliminar(actual);
+			n.estado[actual] = CERRADO;
+			expandidos++;
+			int ax = n.getX(actual);
+			int ay = n.getY(actual);
+			int abuelo = n.padre[actual];
+			if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+				traza.nodoExpandido(ax, ay, n.costo[actual], n.heuristica[actual]);
+			}
+
+			for (int x=-1;x<2;x++) {
+				for (int y=-1;y<2;y++) {
+					if (((x == 0) && (y == 0)) || (!permiteMoviDiagonal && (x != 0) && (y != 0))) {
+						continue;
+					}
+					int xp = ax + x;
+					int yp = ay + y;
+					if ((xp < 0) || (yp < 0) || (xp >= ancho) || (yp >= altura)) {
+						continue;
+					}
+					if (((xp != sx) || (yp != sy)) && mapa.bloquea(entidad, xp, yp)) {
+						continue;
+					}
+
+					// Por el nodo actual, o en lnea recta desde su padre si se ve y no cuesta ms
+					float costo = n.costo[actual] + mapa.getCosto(entidad, ax, ay, xp, yp);
+					int padre = actual;
+					int profundidad = n.profundidad[actual] + 1;
+					if (abuelo != NINGUNO) {
+						int gx = n.getX(abuelo);
+						int gy = n.getY(abuelo);
+						float linea = n.costo[abuelo] + LineaVision.getCosto(mapa, entidad, gx, gy, xp, yp, permiteMoviDiagonal);
+						if (linea <= costo * (1 + 1e-6f)) {
+							costo = linea;
+							padre = abuelo;
+							profundidad = n.profundidad[abuelo] + pasos(gx, gy, xp, yp);
+						}
+					}
+					int vecino = n.nodo(yp * ancho + xp);
+					if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+						traza.baldosaVisitada(xp, yp);
+					}
+
+					if (costo < n.costo[vecino]) {
+						if (n.estado[vecino] == CERRADO) {
+							n.estado[vecino] = SIN_VISITAR;
+							reabiertos++;
+						}
+						if (n.estado[vecino] == ABIERTO) {
+							n.costo[vecino] = costo;
+							n.padre[vecino] = padre;
+							n.profundidad[vecino] = profundidad;
+							abierto.disminuirClave(vecino);
+						}
+					}
+					if (n.estado[vecino] == SIN_VISITAR) {
+						if (n.padre[vecino] == NINGUNO) {
+							generados++;
+						}
+						n.costo[vecino] = costo;
+						n.heuristica[vecino] = heuristica.getCosto(mapa, entidad, xp, yp, tx, ty);
+						n.padre[vecino] = padre;
+						n.profundidad[vecino] = profundidad;
+						abierto.agregar(vecino);
+					}
+					maxProfundidad = Math.max(maxProfundidad, n.profundidad[vecino]);
+				}
+			}
+		}
+
+		boolean cortada = (maxProfundidad >= maxDistanciaBusqueda) && (abierto.size() != 0) && (abierto.primero() != destino);
+		if (n.padre[destino] == NINGUNO) {
+			informar(inicioNanos, expandidos, generados, reabiertos, abierto.getMaximo(), maxProfundidad, cortada, null);
+			return null;
+		}
+
+		int puntos = 1;
+		for (int nodo=destino;nodo!=inicio;nodo=n.padre[nodo]) {
+			puntos++;
+		}
+		Camino camino = new Camino(puntos, 0);
+		for (int nodo=destino;nodo!=inicio;nodo=n.padre[nodo]) {
+			camino.pasoPrevio(n.getX(nodo), n.getY(nodo));
+		}
+		camino.pasoPrevio(sx, sy);
+		informar(inicioNanos, expandidos, generados, reabiertos, abierto.getMaximo(), maxProfundidad, cortada, camino);
+		return camino;
+	}
+
+	/**
+	 * El nmero de pasos de baldosa en baldosa de una lnea
+	 */
+	private int pasos(int x0, int y0, int x1, int y1) {
+		int dx = Math.abs(x1 - x0);
+		int dy = Math.abs(y1 - y0);
+		return permiteMoviDiagonal ? Math.max(dx, dy) : dx + dy;
+	}
+
+	/**
+	 * Informar al oyente, si lo hay, de cmo ha ido la bsqueda que acaba de terminar, y
+	 * avisar a la traza
+	 */
+	private void informar(long inicioNanos, int expandidos, int generados, int reabiertos,
+						  int maxAbiertos, int profundidad, boolean cortada, Camino camino) {
+		if (TrazaBusqueda.ACTIVAS && (traza != null)) {
+			traza.busquedaTerminada(camino);
+		}
+		if (oyente == null) {
+			return;
+		}
+		metricas.establecer(System.nanoTime() - inicioNanos, expandidos, generados, reabiertos,
+				maxAbiertos, profundidad, cortada, camino != null);
+		oyente.busquedaTerminada(this, metricas);
+	}
+}
@@ -0,0 +1,83 @@
+package util.buscadorcamino;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Una traza que escribe el orden de expansin de cada bsqueda en un archivo de texto, para
+ * analizar heursticas fuera del juego. El archivo es CSV con una fila por nodo expandido, y
+ * antes y despus de cada bsqueda una lnea de comentario con sus extremos y su resultado:
+ *
+ * <pre>
+ * busqueda,orden,x,y,costo,heuristica
+ * # busqueda 1 desde 3,4 hasta 20,7
+ * 1,0,3,4,0.0,17.0
+ * 1,1,4,4,1.0,16.0
+ * ...
+ * # busqueda 1 terminada con un camino de 18 pasos tras 25 expansiones
+ * </pre>
+ *
+ * Las baldosas visitadas sin expandir no se escriben. Hay que cerrar la traza para que se
+ * escriba todo; los errores de escritura se lanzan como UncheckedIOException desde el buscador.
+ */
+public class TrazaArchivo implements TrazaBusqueda, Closeable {
+
+	private BufferedWriter salida;/** El archivo de la traza */
+	private int busqueda;/** El nmero de la bsqueda en curso, desde 1 */
+	private int orden;/** El nmero de nodos expandidos en la bsqueda en curso */
+
+	/**
+	 * Crear una traza que escribe en un archivo
+	 *
+	 * @param archivo El archivo a escribir, que se sustituye si existe
+	 * @throws IOException Indica que no se ha podido crear el archivo
+	 */
+	public TrazaArchivo(Path archivo) throws IOException {
+		salida = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8);
+		escribir("busqueda,orden,x,y,costo,heuristica");
+	}
+
+	public void busquedaIniciada(int sx, int sy, int tx, int ty) {
+		busqueda++;
+		orden = 0;
+		escribir("# busqueda " + busqueda + " desde " + sx + "," + sy + " hasta " + tx + "," + ty);
+	}
+
+	public void nodoExpandido(int x, int y, float costo, float heuristica) {
+		escribir(busqueda + "," + orden++ + "," + x + "," + y + "," + costo + "," + heuristica);
+	}
+
+	public void baldosaVisitada(int x, int y) {
+	}
+
+	public void busquedaTerminada(Camino camino) {
+		escribir("# busqueda " + busqueda + " terminada " + ((camino == null) ? "sin camino"
+				: "con un camino de " + camino.getLength() + " pasos") + " tras " + orden + " expansiones");
+	}
+
+	/**
+	 * Escribir lo que quede en el bfer y cerrar el archivo
+	 *
+	 * @throws IOException Indica que no se ha podido escribir el archivo
+	 */
+	public void close() throws IOException {
+		salida.close();
+	}
+
+	/**
+	 * Escribir una lnea del archivo
+	 */
+	private void escribir(String linea) {
+		try {
+			salida.write(linea);
+			salida.newLine();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
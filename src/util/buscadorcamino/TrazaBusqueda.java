@@ -0,0 +1,56 @@
+package util.buscadorcamino;
+
+/**
+ * Un objeto que sigue una bsqueda paso a paso, para depurar y analizar heursticas: qu
+ * nodos se expanden y en qu orden, y qu baldosas se miran. Los buscadores slo avisan a la
+ * traza que se les da con BuscadorTrazable.setTraza, y la llaman en el hilo que busca.
+ *
+ * Las trazas son opcionales y estn desactivadas si no se arranca con
+ * -Dutil.buscadorcamino.trazas=true. Cada aviso est guardado por ACTIVAS, que es una
+ * constante para la JVM, as que sin esa opcin el compilador JIT elimina las llamadas y las
+ * comprobaciones de la traza, y los buscadores no avisan aunque se les d una traza.
+ *
+ * @see BuscadorTrazable
+ * @see TrazaVisitados
+ * @see TrazaArchivo
+ */
+public interface TrazaBusqueda {
+
+	public static final boolean ACTIVAS = "true".equals(System.getProperty("util.buscadorcamino.trazas"));/** Es cierto si las trazas se han activado al arrancar; si no, ningn buscador avisa */
+
+	/**
+	 * La notificacin de que empieza una bsqueda
+	 *
+	 * @param sx La coordenada x de la ubicacin de inicio
+	 * @param sy La coordenada y de la ubicacin de inicio
+	 * @param tx La coordenada x de la ubicacin de destino
+	 * @param ty La coordenada y de la ubicacin de destino
+	 */
+	public void busquedaIniciada(int sx, int sy, int tx, int ty);
+
+	/**
+	 * La notificacin de que se ha expandido un nodo, en el orden en que se expanden
+	 *
+	 * @param x La coordenada x del nodo
+	 * @param y La coordenada y del nodo
+	 * @param costo El coste con el que se ha alcanzado el nodo
+	 * @param heuristica La estimacin del coste que queda desde el nodo
+	 */
+	public void nodoExpandido(int x, int y, float costo, float heuristica);
+
+	/**
+	 * La notificacin de que la bsqueda ha mirado una baldosa, al considerar un nodo vecino
+	 * o un salto
+	 *
+	 * @param x La coordenada x de la baldosa que fue visitada
+	 * @param y La coordenada y de la baldosa que fue visitada
+	 */
+	public void baldosaVisitada(int x, int y);
+
+	/**
+	 * La notificacin de que ha terminado la bsqueda
+	 *
+	 * @param camino El camino encontrado, o null
+	 */
+	public void busquedaTerminada(Camino camino);
+}
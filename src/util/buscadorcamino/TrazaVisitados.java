@@ -0,0 +1,101 @@
+package util.buscadorcamino;
+
+import java.util.Arrays;
+
+/**
+ * Una traza que recuerda qu baldosas ha visitado y cules ha expandido la ltima bsqueda,
+ * por ejemplo para dibujarlas. Cada baldosa guarda el nmero de la bsqueda que la visit por
+ * ltima vez, as que empezar una bsqueda slo cambia de nmero y nunca hay que borrar todo
+ * el mapa; slo se borra cuando el nmero da la vuelta.
+ */
+public class TrazaVisitados implements TrazaBusqueda {
+
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int[] visitada;/** La ltima bsqueda que visit cada baldosa, indexada por y*ancho+x */
+	private int[] expandida;/** La ltima bsqueda que expandi cada baldosa */
+	private int busqueda;/** El nmero de la bsqueda en curso o de la ltima */
+	private int visitadas;/** El nmero de baldosas distintas visitadas por la ltima bsqueda */
+	private int expandidas;/** El nmero de baldosas distintas expandidas por la ltima bsqueda */
+
+	/**
+	 * Crear una traza para un mapa
+	 *
+	 * @param ancho El ancho del mapa en baldosas
+	 * @param altura La altura del mapa en baldosas
+	 */
+	public TrazaVisitados(int ancho, int altura) {
+		this.ancho = ancho;
+		this.visitada = new int[ancho * altura];
+		this.expandida = new int[ancho * altura];
+	}
+
+	public void busquedaIniciada(int sx, int sy, int tx, int ty) {
+		busqueda++;
+		if (busqueda == 0) {// El contador ha dado la vuelta, as que se olvidan las marcas viejas
+			Arrays.fill(visitada, 0);
+			Arrays.fill(expandida, 0);
+			busqueda = 1;
+		}
+		visitadas = 0;
+		expandidas = 0;
+	}
+
+	public void nodoExpandido(int x, int y, float costo, float heuristica) {
+		int b = y * ancho + x;
+		if (expandida[b] != busqueda) {
+			expandida[b] = busqueda;
+			expandidas++;
+		}
+	}
+
+	public void baldosaVisitada(int x, int y) {
+		int b = y * ancho + x;
+		if (visitada[b] != busqueda) {
+			visitada[b] = busqueda;
+			visitadas++;
+		}
+	}
+
+	public void busquedaTerminada(Camino camino) {
+	}
+
+	/**
+	 * Comprobar si la ltima bsqueda visit una baldosa
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return True Si la ltima bsqueda mir la baldosa
+	 */
+	public boolean visitada(int x, int y) {
+		return (busqueda != 0) && (visitada[y * ancho + x] == busqueda);
+	}
+
+	/**
+	 * Comprobar si la ltima bsqueda expandi una baldosa
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return True Si la ltima bsqueda expandi la baldosa
+	 */
+	public boolean expandida(int x, int y) {
+		return (busqueda != 0) && (expandida[y * ancho + x] == busqueda);
+	}
+
+	/**
+	 * Obtener el nmero de baldosas distintas que visit la ltima bsqueda
+	 *
+	 * @return El nmero de baldosas visitadas
+	 */
+	public int getVisitadas() {
+		return visitadas;
+	}
+
+	/**
+	 * Obtener el nmero de baldosas distintas que expandi la ltima bsqueda
+	 *
+	 * @return El nmero de baldosas expandidas
+	 */
+	public int getExpandidas() {
+		return expandidas;
+	}
+}
@@ -0,0 +1,523 @@
+package util.buscadorcamino.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import util.buscadorcamino.BuscadorInstrumentable;
+import util.buscadorcamino.BuscadorRuta;
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+import util.buscadorcamino.MapaObservable;
+import util.buscadorcamino.MetricasBusqueda;
+import util.buscadorcamino.OyenteBusqueda;
+import util.buscadorcamino.OyenteMapa;
+
+/**
+ * Una cach de caminos alrededor de cualquier BuscadorRuta. Guarda los ltimos caminos
+ * encontrados por (tipo de entidad, inicio, destino) y desaloja los menos usados cuando se
+ * supera un presupuesto de memoria. Tambin guarda las consultas sin camino.
+ *
+ * Como cualquier tramo de un camino ptimo es tambin ptimo, una consulta cuyo inicio y
+ * destino aparecen en ese orden dentro de un camino guardado se puede responder con ese
+ * tramo sin buscar. Esto slo da caminos ptimos si el buscador envuelto los da.
+ *
+ * Cada cambio de baldosa avanza la versin del mapa. Con un tamao de regin 0 cualquier
+ * cambio invalida toda la cach. Con un tamao de regin mayor el mapa se divide en regiones
+ * de ese lado y un camino slo deja de valer si cambi alguna regin de su rectngulo,
+ * ampliado en una regin por cada lado. Esto es ms barato, pero no detecta un atajo que se
+ * abra lejos del camino. Las consultas sin camino siempre dependen de todo el mapa. Si el mapa
+ * es un MapaObservable la cach se registra en l, y cerrar la da de baja.
+ *
+ * Un OyenteBusqueda recibe las medidas de cada consulta con su tiempo total. Un acierto no
+ * expande ningn nodo; en un fallo se informa de los nodos del buscador envuelto si es
+ * BuscadorInstrumentable, porque la cach se pone como su oyente mientras tenga uno.
+ *
+ * No es segura para varios hilos.
+ */
+public class CacheBuscadorRuta implements BuscadorInstrumentable, OyenteMapa {
+
+	private static final int BYTES_ENTRADA = 96;/** La memoria aproximada de una entrada sin contar sus pasos */
+	private static final int BYTES_PASO = 40;/** La memoria aproximada de cada paso de un camino, incluido su ndice de tramos */
+
+	private BuscadorRuta buscador;/** El buscador al que se pasan las consultas que no estn en la cach */
+	private MapaConBaldosas mapa;/** El mapa en el que busca el buscador */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private long maxBytes;/** El presupuesto de memoria de la cach */
+	private boolean usarTramos;/** Es cierto si se responden consultas con tramos de caminos guardados */
+	private int tamanoRegion;/** El lado de cada regin del mapa en baldosas, o 0 para invalidar todo con cada cambio */
+	private int regionesAncho;/** El nmero de regiones a lo ancho del mapa */
+	private int regionesAltura;/** El nmero de regiones a lo alto del mapa */
+
+	private LinkedHashMap<Clave, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);/** Las entradas en orden de uso, la menos usada primero */
+	private HashMap<Entidad, HashMap<Integer, ArrayList<Entrada>>> tramos = new HashMap<>();/** Por entidad, las entradas que pasan por cada baldosa */
+	private long bytes;/** La memoria aproximada usada por las entradas */
+	private int version;/** La versin del mapa, que avanza con cada cambio */
+	private int[] versionRegion;/** La versin del ltimo cambio en cada regin */
+
+	private long aciertos;/** Las consultas respondidas con un camino guardado completo */
+	private long aciertosTramo;/** Las consultas respondidas con un tramo de un camino guardado */
+	private long fallos;/** Las consultas que hubo que pasar al buscador */
+	private long desalojos;/** Las entradas quitadas para respetar el presupuesto de memoria */
+	private long invalidaciones;/** Las entradas quitadas porque el mapa cambi */
+
+	private OyenteBusqueda oyente;/** El objeto al que se informa al terminar cada consulta, o null */
+	private MetricasBusqueda metricas;/** Las medidas que se pasan al oyente, reutilizadas en cada consulta */
+	private MetricasBusqueda interiores;/** Las medidas de la ltima bsqueda del buscador envuelto */
+	private boolean hayInteriores;/** Es cierto si el buscador envuelto ha informado de la consulta en curso */
+
+	/**
+	 * Crear una cach que invalida todo con cada cambio del mapa
+	 *
+	 * @param buscador El buscador al que se pasan las consultas que no estn en la cach
+	 * @param mapa El mapa en el que busca el buscador
+	 * @param maxBytes El presupuesto de memoria de la cach
+	 */
+	public CacheBuscadorRuta(BuscadorRuta buscador, MapaConBaldosas mapa, long maxBytes) {
+		this(buscador, mapa, maxBytes, true, 0);
+	}
+
+	/**
+	 * Crear una cach
+	 *
+	 * @param buscador El buscador al que se pasan las consultas que no estn en la cach
+	 * @param mapa El mapa en el que busca el buscador. Si es un MapaObservable la cach se
+	 * registra para conocer sus cambios; si no, hay que avisarle con baldosaCambiada o invalidar
+	 * @param maxBytes El presupuesto de memoria de la cach
+	 * @param usarTramos Es cierto si se responden consultas con tramos de caminos guardados
+	 * @param tamanoRegion El lado de cada regin del mapa en baldosas, o 0 para invalidar todo con cada cambio
+	 */
+	public CacheBuscadorRuta(BuscadorRuta buscador, MapaConBaldosas mapa, long maxBytes,
+							 boolean usarTramos, int tamanoRegion) {
+		this.buscador = buscador;
+		this.mapa = mapa;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.maxBytes = maxBytes;
+		this.usarTramos = usarTramos;
+		this.tamanoRegion = tamanoRegion;
+		if (tamanoRegion > 0) {
+			regionesAncho = (mapa.getAnchoEnBaldosas() + tamanoRegion - 1) / tamanoRegion;
+			regionesAltura = (mapa.getAlturaEnBaldosas() + tamanoRegion - 1) / tamanoRegion;
+		} else {
+			regionesAncho = 1;
+			regionesAltura = 1;
+		}
+		versionRegion = new int[regionesAncho * regionesAltura];
+
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).agregarOyente(this);
+		}
+	}
+
+	/**
+	 * Establecer el objeto al que se informa al terminar cada consulta. Si el buscador envuelto
+	 * es BuscadorInstrumentable, la cach pasa a ser su oyente, o se le quita si es null.
+	 *
+	 * @see BuscadorInstrumentable#setOyenteBusqueda(OyenteBusqueda)
+	 */
+	public void setOyenteBusqueda(OyenteBusqueda oyente) {
+		this.oyente = oyente;
+		if ((oyente != null) && (metricas == null)) {
+			metricas = new MetricasBusqueda();
+			interiores = new MetricasBusqueda();
+		}
+		if (buscador instanceof BuscadorInstrumentable) {
+			((BuscadorInstrumentable) buscador).setOyenteBusqueda((oyente == null) ? null : (b, m) -> {
+				interiores.establecer(m.getNanos(), m.getExpandidos(), m.getGenerados(), m.getReabiertos(),
+						m.getMaxAbiertos(), m.getProfundidad(), m.isCortada(), m.isEncontrado());
+				hayInteriores = true;
+			});
+		}
+	}
+
+	/**
+	 * Devolver el camino guardado si sigue siendo vlido, o buscarlo y guardarlo
+	 *
+	 * @see BuscadorRuta#encontrarCamino(Entidad, int, int, int, int)
+	 */
+	public Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty) {
+		long inicioNanos = (oyente != null) ? System.nanoTime() : 0;
+		hayInteriores = false;
+		Camino camino = buscar(entidad, sx, sy, tx, ty);
+		if (oyente != null) {
+			if (hayInteriores) {
+				metricas.establecer(System.nanoTime() - inicioNanos, interiores.getExpandidos(), interiores.getGenerados(),
+						interiores.getReabiertos(), interiores.getMaxAbiertos(), interiores.getProfundidad(),
+						interiores.isCortada(), camino != null);
+			} else {
+				metricas.establecer(System.nanoTime() - inicioNanos, 0, 0, 0, 0,
+						(camino == null) ? 0 : camino.getLength() - 1, false, camino != null);
+			}
+			oyente.busquedaTerminada(this, metricas);
+		}
+		return camino;
+	}
+
+	/**
+	 * Responder una consulta desde la cach o con el buscador envuelto
+	 */
+	private Camino buscar(Entidad entidad, int sx, int sy, int tx, int ty) {
+		int inicio = sy * ancho + sx;
+		int destino = ty * ancho + tx;
+		Clave clave = new Clave(entidad, inicio, destino);
+		Entrada entrada = entradas.get(clave);
+		if (entrada != null) {
+			if (esValida(entrada)) {
+				aciertos++;
+				return entrada.crearCamino(0, entrada.getLongitud());
+			}
+			eliminar(entrada);
+			invalidaciones++;
+		}
+		if (usarTramos) {
+			Camino tramo = buscarTramo(entidad, inicio, destino);
+			if (tramo != null) {
+				aciertosTramo++;
+				return tramo;
+			}
+		}
+
+		fallos++;
+		Camino camino = buscador.encontrarCamino(entidad, sx, sy, tx, ty);
+		guardar(clave, camino);
+		return camino;
+	}
+
+	/**
+	 * Buscar un camino guardado que pase por el inicio y despus por el destino
+	 *
+	 * @return El tramo del camino entre las dos baldosas, o null si no hay ninguno
+	 */
+	private Camino buscarTramo(Entidad entidad, int inicio, int destino) {
+		HashMap<Integer, ArrayList<Entrada>> indice = tramos.get(entidad);
+		if (indice == null) {
+			return null;
+		}
+		ArrayList<Entrada> candidatas = indice.get(inicio);
+		if (candidatas == null) {
+			return null;
+		}
+		for (int i=0;i<candidatas.size();i++) {
+			Entrada candidata = candidatas.get(i);
+			int[] baldosas = candidata.baldosas;
+			int desde = -1;
+			for (int p=0;p<baldosas.length;p++) {
+				if ((desde == -1) && (baldosas[p] == inicio)) {
+					desde = p;
+				} else if ((desde != -1) && (baldosas[p] == destino)) {
+					if (!esValida(candidata)) {
+						break;
+					}
+					entradas.get(candidata.clave);// Cuenta como un uso para el orden LRU
+					return candidata.crearCamino(desde, p + 1);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Guardar el resultado de una bsqueda y desalojar las entradas menos usadas si se
+	 * supera el presupuesto
+	 */
+	private void guardar(Clave clave, Camino camino) {
+		Entrada entrada = new Entrada(clave, camino);
+		if (entrada.bytes > maxBytes) {
+			return;
+		}
+		entradas.put(clave, entrada);
+		bytes += entrada.bytes;
+		if (usarTramos && (entrada.baldosas != null)) {
+			HashMap<Integer, ArrayList<Entrada>> indice = tramos.get(clave.entidad);
+			if (indice == null) {
+				indice = new HashMap<>();
+				tramos.put(clave.entidad, indice);
+			}
+			for (int p=0;p<entrada.baldosas.length;p++) {
+				ArrayList<Entrada> lista = indice.get(entrada.baldosas[p]);
+				if (lista == null) {
+					lista = new ArrayList<>(2);
+					indice.put(entrada.baldosas[p], lista);
+				}
+				lista.add(entrada);
+			}
+		}
+
+		Iterator<Entrada> i = entradas.values().iterator();
+		while ((bytes > maxBytes) && i.hasNext()) {
+			Entrada vieja = i.next();
+			i.remove();
+			quitarDelIndice(vieja);
+			desalojos++;
+		}
+	}
+
+	/**
+	 * Quitar una entrada de la cach
+	 */
+	private void eliminar(Entrada entrada) {
+		entradas.remove(entrada.clave);
+		quitarDelIndice(entrada);
+	}
+
+	/**
+	 * Quitar una entrada que ya no est en la cach del ndice de tramos y del recuento de memoria
+	 */
+	private void quitarDelIndice(Entrada entrada) {
+		bytes -= entrada.bytes;
+		if (!usarTramos || (entrada.baldosas == null)) {
+			return;
+		}
+		HashMap<Integer, ArrayList<Entrada>> indice = tramos.get(entrada.clave.entidad);
+		for (int p=0;p<entrada.baldosas.length;p++) {
+			ArrayList<Entrada> lista = indice.get(entrada.baldosas[p]);
+			if (lista != null) {
+				lista.remove(entrada);
+				if (lista.isEmpty()) {
+					indice.remove(entrada.baldosas[p]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Comprueba si ha cambiado alguna regin de la que depende una entrada desde que se guard
+	 */
+	private boolean esValida(Entrada entrada) {
+		for (int ry=entrada.regionY0;ry<=entrada.regionY1;ry++) {
+			for (int rx=entrada.regionX0;rx<=entrada.regionX1;rx++) {
+				if (versionRegion[ry * regionesAncho + rx] > entrada.version) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Anotar que ha cambiado una baldosa. Las entradas que dependen de su regin se
+	 * descartan la prxima vez que se consulten.
+	 *
+	 * @see OyenteMapa#baldosaCambiada(int, int)
+	 */
+	public void baldosaCambiada(int x, int y) {
+		version++;
+		if (tamanoRegion > 0) {
+			versionRegion[(y / tamanoRegion) * regionesAncho + (x / tamanoRegion)] = version;
+		} else {
+			versionRegion[0] = version;
+		}
+	}
+
+	/**
+	 * Dejar de escuchar los cambios del mapa. Hay que llamarlo al dejar de usarlo, porque
+	 * si no el mapa conserva los caminos guardados
+	 */
+	public void cerrar() {
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).eliminarOyente(this);
+		}
+	}
+
+	/**
+	 * Vaciar la cach por completo, por ejemplo tras cambiar un mapa que no es observable
+	 */
+	public void invalidar() {
+		entradas.clear();
+		tramos.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Obtener el nmero de consultas respondidas con un camino guardado completo
+	 *
+	 * @return El nmero de aciertos
+	 */
+	public long getAciertos() {
+		return aciertos;
+	}
+
+	/**
+	 * Obtener el nmero de consultas respondidas con un tramo de un camino guardado
+	 *
+	 * @return El nmero de aciertos por tramo
+	 */
+	public long getAciertosTramo() {
+		return aciertosTramo;
+	}
+
+	/**
+	 * Obtener el nmero de consultas que hubo que pasar al buscador
+	 *
+	 * @return El nmero de fallos
+	 */
+	public long getFallos() {
+		return fallos;
+	}
+
+	/**
+	 * Obtener el nmero de entradas quitadas para respetar el presupuesto de memoria
+	 *
+	 * @return El nmero de desalojos
+	 */
+	public long getDesalojos() {
+		return desalojos;
+	}
+
+	/**
+	 * Obtener el nmero de entradas descartadas porque el mapa cambi
+	 *
+	 * @return El nmero de invalidaciones
+	 */
+	public long getInvalidaciones() {
+		return invalidaciones;
+	}
+
+	/**
+	 * Obtener la memoria aproximada usada por las entradas guardadas
+	 *
+	 * @return Los bytes usados
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Obtener el nmero de entradas guardadas
+	 *
+	 * @return El nmero de entradas
+	 */
+	public int size() {
+		return entradas.size();
+	}
+
+	/**
+	 * Poner a cero los contadores de aciertos, fallos, desalojos e invalidaciones
+	 */
+	public void reiniciarContadores() {
+		aciertos = 0;
+		aciertosTramo = 0;
+		fallos = 0;
+		desalojos = 0;
+		invalidaciones = 0;
+	}
+
+	/**
+	 * La clave de una consulta: el tipo de entidad y las baldosas de inicio y destino
+	 */
+	private static class Clave {
+
+		private Entidad entidad;/** La entidad que se mueve */
+		private int inicio;/** La baldosa de inicio, y*ancho+x */
+		private int destino;/** La baldosa de destino, y*ancho+x */
+
+		public Clave(Entidad entidad, int inicio, int destino) {
+			this.entidad = entidad;
+			this.inicio = inicio;
+			this.destino = destino;
+		}
+
+		/**
+		 * @see Object#hashCode()
+		 */
+		public int hashCode() {
+			return ((entidad == null ? 0 : entidad.hashCode()) * 31 + inicio) * 31 + destino;
+		}
+
+		/**
+		 * @see Object#equals(Object)
+		 */
+		public boolean equals(Object other) {
+			if (other instanceof Clave) {
+				Clave o = (Clave) other;
+
+				return (o.inicio == inicio) && (o.destino == destino)
+						&& ((entidad == null) ? (o.entidad == null) : entidad.equals(o.entidad));
+			}
+
+			return false;
+		}
+	}
+
+	/**
+	 * Un camino guardado, o la constancia de que no haba camino
+	 */
+	private class Entrada {
+
+		private Clave clave;/** La consulta que produjo el camino */
+		private int[] baldosas;/** Las baldosas del camino, y*ancho+x, o null si no haba camino */
+		private int version;/** La versin del mapa cuando se guard */
+		private int regionX0;/** La primera columna de regiones de las que depende */
+		private int regionY0;/** La primera fila de regiones de las que depende */
+		private int regionX1;/** La ltima columna de regiones de las que depende */
+		private int regionY1;/** La ltima fila de regiones de las que depende */
+		private long bytes;/** La memoria aproximada de la entrada */
+
+		/**
+		 * Crear una entrada para el resultado de una bsqueda
+		 *
+		 * @param clave La consulta
+		 * @param camino El camino encontrado, o null
+		 */
+		public Entrada(Clave clave, Camino camino) {
+			this.clave = clave;
+			this.version = CacheBuscadorRuta.this.version;
+			bytes = BYTES_ENTRADA;
+			if ((camino == null) || (tamanoRegion == 0)) {// Depende de todo el mapa
+				regionX1 = regionesAncho - 1;
+				regionY1 = regionesAltura - 1;
+			}
+			if (camino == null) {
+				return;
+			}
+
+			baldosas = new int[camino.getLength()];
+			int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = 0, maxY = 0;
+			for (int i=0;i<baldosas.length;i++) {
+				int x = camino.getX(i);
+				int y = camino.getY(i);
+				baldosas[i] = y * ancho + x;
+				minX = Math.min(minX, x);
+				minY = Math.min(minY, y);
+				maxX = Math.max(maxX, x);
+				maxY = Math.max(maxY, y);
+			}
+			bytes += (long) BYTES_PASO * baldosas.length;
+			if (tamanoRegion > 0) {
+				regionX0 = Math.max(0, minX / tamanoRegion - 1);
+				regionY0 = Math.max(0, minY / tamanoRegion - 1);
+				regionX1 = Math.min(regionesAncho - 1, maxX / tamanoRegion + 1);
+				regionY1 = Math.min(regionesAltura - 1, maxY / tamanoRegion + 1);
+			}
+		}
+
+		/**
+		 * Obtener el nmero de pasos del camino guardado
+		 *
+		 * @return El nmero de pasos, 0 si no haba camino
+		 */
+		public int getLongitud() {
+			return baldosas == null ? 0 : baldosas.length;
+		}
+
+		/**
+		 * Crear un Camino nuevo con un tramo de la entrada
+		 *
+		 * @param desde El primer paso del tramo
+		 * @param hasta El paso siguiente al ltimo del tramo
+		 * @return El tramo, o null si la entrada no tiene camino
+		 */
+		public Camino crearCamino(int desde, int hasta) {
+			if (baldosas == null) {
+				return null;
+			}
+			Camino camino = new Camino(0, hasta - desde);
+			for (int i=desde;i<hasta;i++) {
+				camino.agregarPaso(baldosas[i] % ancho, baldosas[i] / ancho);
+			}
+			return camino;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package util.buscadorcamino.concurrente;
+
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import util.buscadorcamino.BusquedaReanudable;
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * Un buscador de caminos asncrono para quien pide caminos muy seguidos, como una interfaz
+ * que busca hasta el ratn, y slo quiere el ltimo. Las bsquedas se resuelven en hilos
+ * propios y cada peticin devuelve un CompletableFuture con el camino, o null si no lo hay.
+ *
+ * Las peticiones de un mismo solicitante se agrupan: cada peticin nueva cancela la anterior
+ * del mismo solicitante, tanto si an espera como si ya se est buscando, y una peticin igual
+ * a la ltima que an no ha terminado devuelve el mismo futuro. El buscador slo recuerda las
+ * peticiones sin terminar, as que no crece con cada solicitante que ha pedido alguna vez.
+ * Antes de empezar a buscar se espera un retardo, que se reinicia con cada peticin nueva, de
+ * modo que una rfaga de peticiones slo lanza la ltima.
+ * Las bsquedas son BusquedaReanudable que avanzan por tramos y miran entre tramo y tramo si su
+ * futuro se ha completado o cancelado; as una peticin nueva, o cancelar el futuro a mano,
+ * detiene la bsqueda en curso en poco tiempo.
+ *
+ * Los futuros se completan en los hilos del buscador; para usar el camino en la interfaz hay
+ * que pasarlo a su hilo, por ejemplo con thenAcceptAsync(..., SwingUtilities::invokeLater).
+ * El mapa puede cambiar mientras se busca, as que un camino asncrono puede estar
+ * desactualizado; sirve para mostrarlo, no para mover la unidad sin comprobarlo.
+ */
+public class BuscadorAsincrono {
+
+	/** El nmero de nodos que se expanden entre dos comprobaciones de cancelacin */
+	private static final int EXPANSIONES_POR_TRAMO = 1024;
+
+	private ScheduledThreadPoolExecutor hilos;/** Los hilos que esperan el retardo y buscan */
+	/** La bsqueda de cada hilo, creada la primera vez que ese hilo busca */
+	private ThreadLocal<BusquedaReanudable> busquedas;
+	private long retardoMilis;/** El tiempo que espera cada peticin antes de buscar, por si llega otra */
+	/** La ltima peticin sin terminar de cada solicitante, protegida por this */
+	private HashMap<Object, Peticion> ultimas = new HashMap<>();
+
+	/**
+	 * Crear un buscador asncrono con A* y la heurstica predeterminada
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param maxDistanciaBusqueda La profundidad mxima que buscaremos antes de renunciar
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 * @param hilos El nmero de hilos que buscan
+	 * @param retardoMilis El tiempo que espera cada peticin antes de buscar, o 0
+	 */
+	public BuscadorAsincrono(MapaConBaldosas mapa, int maxDistanciaBusqueda, boolean permiteMoviDiagonal,
+							 int hilos, long retardoMilis) {
+		this(() -> new BusquedaReanudable(new MapaSoloLectura(mapa), maxDistanciaBusqueda, permiteMoviDiagonal),
+				hilos, retardoMilis);
+	}
+
+	/**
+	 * Crear un buscador asncrono
+	 *
+	 * @param fabrica Crea la bsqueda de cada hilo, que slo usar ese hilo
+	 * @param hilos El nmero de hilos que buscan
+	 * @param retardoMilis El tiempo que espera cada peticin antes de buscar, o 0
+	 */
+	public BuscadorAsincrono(Supplier<BusquedaReanudable> fabrica, int hilos, long retardoMilis) {
+		this.retardoMilis = retardoMilis;
+		this.busquedas = ThreadLocal.withInitial(fabrica);
+		this.hilos = new ScheduledThreadPoolExecutor(hilos, (tarea) -> {
+			Thread hilo = new Thread(tarea, "BuscadorAsincrono");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		this.hilos.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * Pedir un camino en nombre de un solicitante, cancelando su peticin anterior
+	 *
+	 * @param solicitante Quien pide el camino, por ejemplo la unidad o la vista; se compara con equals
+	 * @param consulta La entidad que se mueve y las ubicaciones de inicio y destino
+	 * @return El futuro del camino, que se completa con null si no hay camino y se cancela si
+	 * llega otra peticin del mismo solicitante antes de terminar
+	 * @throws RejectedExecutionException Indica que el buscador ya se ha cerrado
+	 */
+	public synchronized CompletableFuture<Camino> solicitar(Object solicitante, Consulta consulta) {
+		Peticion anterior = ultimas.get(solicitante);
+		if ((anterior != null) && anterior.consulta.equals(consulta) && !anterior.futuro.isDone()) {
+			return anterior.futuro;
+		}
+		if (anterior != null) {
+			anterior.cancelar();
+		}
+		Peticion peticion = new Peticion(consulta);
+		// Se programa antes de recordarla, para que una peticin rechazada no quede sin tarea
+		peticion.tarea = hilos.schedule(() -> buscar(peticion), retardoMilis, TimeUnit.MILLISECONDS);
+		ultimas.put(solicitante, peticion);
+		// Al terminar, por la razn que sea, se olvida si sigue siendo la ltima del solicitante
+		peticion.futuro.whenComplete((camino, error) -> olvidar(solicitante, peticion));
+		return peticion.futuro;
+	}
+
+	/**
+	 * Pedir un camino en nombre de un solicitante, cancelando su peticin anterior
+	 *
+	 * @param solicitante Quien pide el camino; se compara con equals
+	 * @param entidad La entidad que se va a mover
+	 * @param sx La coordenada x de la ubicacin de inicio
+	 * @param sy La coordenada y de la ubicacin de inicio
+	 * @param tx La coordenada x de la ubicacin de destino
+	 * @param ty La coordenada y de la ubicacin de destino
+	 * @return El futuro del camino
+	 * @see #solicitar(Object, Consulta)
+	 */
+	public CompletableFuture<Camino> solicitar(Object solicitante, Entidad entidad,
+											  int sx, int sy, int tx, int ty) {
+		return solicitar(solicitante, new Consulta(entidad, sx, sy, tx, ty));
+	}
+
+	/**
+	 * Cancelar la peticin sin terminar de un solicitante, por ejemplo porque el mapa ha
+	 * cambiado y una peticin igual debe volver a buscarse
+	 *
+	 * @param solicitante Quien pidi el camino
+	 */
+	public synchronized void cancelar(Object solicitante) {
+		Peticion anterior = ultimas.remove(solicitante);
+		if (anterior != null) {
+			anterior.cancelar();
+		}
+	}
+
+	/**
+	 * Olvidar una peticin terminada si sigue siendo la ltima de su solicitante
+	 */
+	private synchronized void olvidar(Object solicitante, Peticion peticion) {
+		ultimas.remove(solicitante, peticion);
+	}
+
+	/**
+	 * Detener los hilos del buscador. Las peticiones pendientes no se completan.
+	 */
+	public void cerrar() {
+		hilos.shutdownNow();
+	}
+
+	/**
+	 * Resolver una peticin en el hilo actual, por tramos, hasta terminar o ser cancelada
+	 */
+	private void buscar(Peticion peticion) {
+		CompletableFuture<Camino> futuro = peticion.futuro;
+		if (futuro.isDone()) {
+			return;
+		}
+		try {
+			BusquedaReanudable busqueda = busquedas.get();
+			Consulta c = peticion.consulta;
+			busqueda.iniciar(c.getEntidad(), c.getSx(), c.getSy(), c.getTx(), c.getTy());
+			while (busqueda.getEstado() == BusquedaReanudable.Estado.EN_CURSO) {
+				if (futuro.isDone()) {// Otra peticin la ha sustituido
+					return;
+				}
+				busqueda.avanzar(EXPANSIONES_POR_TRAMO);
+			}
+			futuro.complete(busqueda.getCamino());
+		} catch (Throwable e) {// Tambin los Error, para que quien espera el futuro no espere siempre
+			futuro.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Una peticin con su futuro y la tarea que la resolver
+	 */
+	private static class Peticion {
+
+		private Consulta consulta;/** El camino que se pidi */
+		/** El futuro que se completa con el camino */
+		private CompletableFuture<Camino> futuro = new CompletableFuture<>();
+		private ScheduledFuture<?> tarea;/** La tarea que espera el retardo y busca */
+
+		/**
+		 * Crear una peticin
+		 *
+		 * @param consulta El camino que se pidi
+		 */
+		private Peticion(Consulta consulta) {
+			this.consulta = consulta;
+		}
+
+		/**
+		 * Cancelar el futuro, lo que detiene la bsqueda en el siguiente tramo, y quitar la
+		 * tarea si an no ha empezado
+		 */
+		private void cancelar() {
+			futuro.cancel(false);
+			tarea.cancel(false);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package util.buscadorcamino.concurrente;
+
+import java.util.Objects;
+
+import util.buscadorcamino.Entidad;
+
+/**
+ * Una peticin de bsqueda de camino: la entidad que se mueve y las ubicaciones de
+ * inicio y destino.
+ */
+public class Consulta {
+
+	private Entidad entidad;/** La entidad que se mover a lo largo del camino */
+	private int sx;/** La coordenada x de la ubicacin de inicio */
+	private int sy;/** La coordenada y de la ubicacin de inicio */
+	private int tx;/** La coordenada x de la ubicacin de destino */
+	private int ty;/** La coordenada y de la ubicacin de destino */
+
+	/**
+	 * Crear una nueva consulta
+	 *
+	 * @param entidad La entidad que se mover a lo largo del camino
+	 * @param sx La coordenada x de la ubicacin de inicio
+	 * @param sy La coordenada y de la ubicacin de inicio
+	 * @param tx La coordenada x de la ubicacin de destino
+	 * @param ty La coordenada y de la ubicacin de destino
+	 */
+	public Consulta(Entidad entidad, int sx, int sy, int tx, int ty) {
+		this.entidad = entidad;
+		this.sx = sx;
+		this.sy = sy;
+		this.tx = tx;
+		this.ty = ty;
+	}
+
+	public Entidad getEntidad() {
+		return entidad;
+	}
+
+	public int getSx() {
+		return sx;
+	}
+
+	public int getSy() {
+		return sy;
+	}
+
+	public int getTx() {
+		return tx;
+	}
+
+	public int getTy() {
+		return ty;
+	}
+
+	/**
+	 * Dos consultas son iguales si piden el mismo camino para entidades iguales
+	 *
+	 * @see Object#equals(Object)
+	 */
+	public boolean equals(Object other) {
+		if (other instanceof Consulta) {
+			Consulta o = (Consulta) other;
+			return (o.sx == sx) && (o.sy == sy) && (o.tx == tx) && (o.ty == ty) && Objects.equals(o.entidad, entidad);
+		}
+
+		return false;
+	}
+
+	/**
+	 * @see Object#hashCode()
+	 */
+	public int hashCode() {
+		return Objects.hash(entidad, sx, sy, tx, ty);
+	}
+}
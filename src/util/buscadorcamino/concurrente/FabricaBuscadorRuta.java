@@ -0,0 +1,19 @@
+package util.buscadorcamino.concurrente;
+
+import util.buscadorcamino.BuscadorRuta;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * Crea los buscadores de ruta que usa cada hilo. Cada buscador guarda su propio
+ * espacio de trabajo de bsqueda, as que nunca se comparte entre hilos.
+ */
+public interface FabricaBuscadorRuta {
+
+	/**
+	 * Crear un nuevo buscador de ruta sobre el mapa dado
+	 *
+	 * @param mapa La vista de solo lectura del mapa compartido
+	 * @return Un buscador que slo usar el hilo que lo pidi
+	 */
+	public BuscadorRuta crear(MapaConBaldosas mapa);
+}
@@ -0,0 +1,54 @@
+package util.buscadorcamino.concurrente;
+
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+import util.buscadorcamino.MapaCostoUniforme;
+
+/**
+ * Una vista de solo lectura de un mapa que se puede compartir entre varios hilos de bsqueda.
+ * Las consultas de bloqueo y coste se pasan al mapa original, y la vista no deja ver nada
+ * ms, as que los buscadores no pueden tratarlo como un MapaCompilado ni registrarse como
+ * oyentes suyos. El mapa original no debe modificarse mientras haya bsquedas en curso.
+ */
+public class MapaSoloLectura implements MapaCostoUniforme {
+
+	private MapaConBaldosas mapa;/** El mapa al que se pasan las consultas */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+
+	/**
+	 * Crear una vista de solo lectura
+	 *
+	 * @param mapa El mapa compartido por todas las bsquedas
+	 */
+	public MapaSoloLectura(MapaConBaldosas mapa) {
+		this.mapa = mapa;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+	}
+
+	public int getAnchoEnBaldosas() {
+		return ancho;
+	}
+
+	public int getAlturaEnBaldosas() {
+		return altura;
+	}
+
+	public boolean bloquea(Entidad entidad, int x, int y) {
+		return mapa.bloquea(entidad, x, y);
+	}
+
+	public float getCosto(Entidad entidad, int sx, int sy, int tx, int ty) {
+		return mapa.getCosto(entidad, sx, sy, tx, ty);
+	}
+
+	/**
+	 * El coste es uniforme slo si el mapa original as lo indica
+	 *
+	 * @see MapaCostoUniforme#esCostoUniforme(Entidad)
+	 */
+	public boolean esCostoUniforme(Entidad entidad) {
+		return (mapa instanceof MapaCostoUniforme) && ((MapaCostoUniforme) mapa).esCostoUniforme(entidad);
+	}
+}
@@ -0,0 +1,143 @@
+package util.buscadorcamino.concurrente;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import util.buscadorcamino.AEstrellaBuscadorCamino;
+import util.buscadorcamino.BuscadorRuta;
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * Un servicio de bsqueda de caminos que se puede usar desde varios hilos a la vez.
+ * Todos los hilos comparten una vista de solo lectura del mapa, y cada hilo guarda su
+ * propio buscador (con su espacio de trabajo) que reutiliza en todas sus bsquedas.
+ * Las consultas por lotes se reparten entre los hilos de un ForkJoinPool.
+ */
+public class ServicioBuscadorRuta implements BuscadorRuta {
+
+	private static final int CONSULTAS_POR_TAREA = 8;/** El nmero de consultas por debajo del cual un lote ya no se divide */
+
+	private MapaSoloLectura mapa;/** La vista del mapa compartida por todos los hilos */
+	private FabricaBuscadorRuta fabrica;/** La fbrica que crea el buscador de cada hilo */
+	private ForkJoinPool hilos;/** Los hilos que resuelven las consultas por lotes */
+	private ThreadLocal<BuscadorRuta> buscadores;/** El buscador de cada hilo, creado la primera vez que ese hilo busca */
+
+	/**
+	 * Crear un servicio que usa AEstrella con la heurstica predeterminada y un hilo por procesador
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param maxDistanciaBusqueda La profundidad mxima que buscaremos antes de renunciar
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 */
+	public ServicioBuscadorRuta(MapaConBaldosas mapa, final int maxDistanciaBusqueda, final boolean permiteMoviDiagonal) {
+		this(mapa, new FabricaBuscadorRuta() {
+			public BuscadorRuta crear(MapaConBaldosas mapa) {
+				return new AEstrellaBuscadorCamino(mapa, maxDistanciaBusqueda, permiteMoviDiagonal);
+			}
+		}, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Crear un servicio
+	 *
+	 * @param mapa El mapa que se busca. No debe modificarse mientras haya bsquedas en curso
+	 * @param fabrica La fbrica que crea el buscador de cada hilo
+	 * @param paralelismo El nmero de hilos que resuelven las consultas por lotes
+	 */
+	public ServicioBuscadorRuta(MapaConBaldosas mapa, FabricaBuscadorRuta fabrica, int paralelismo) {
+		this.mapa = new MapaSoloLectura(mapa);
+		this.fabrica = fabrica;
+		this.hilos = new ForkJoinPool(paralelismo);
+		this.buscadores = new ThreadLocal<BuscadorRuta>() {
+			protected BuscadorRuta initialValue() {
+				return fabrica.crear(ServicioBuscadorRuta.this.mapa);
+			}
+		};
+	}
+
+	/**
+	 * Buscar un camino en el hilo que llama, con el buscador propio de ese hilo
+	 *
+	 * @see BuscadorRuta#encontrarCamino(Entidad, int, int, int, int)
+	 */
+	public Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty) {
+		return buscadores.get().encontrarCamino(entidad, sx, sy, tx, ty);
+	}
+
+	/**
+	 * Resolver un lote de consultas en paralelo. El hilo que llama espera a que
+	 * terminen todas.
+	 *
+	 * @param consultas Las consultas a resolver
+	 * @return Los caminos encontrados, en el mismo orden que las consultas. Una
+	 * posicin es null si no se encontr camino para esa consulta
+	 */
+	public List<Camino> encontrarCaminos(List<Consulta> consultas) {
+		Consulta[] entrada = consultas.toArray(new Consulta[consultas.size()]);
+		Camino[] caminos = new Camino[entrada.length];
+		hilos.invoke(new TareaLote(entrada, caminos, 0, entrada.length));
+		return Arrays.asList(caminos);
+	}
+
+	/**
+	 * Obtener el nmero de hilos que resuelven las consultas por lotes
+	 *
+	 * @return El nmero de hilos del servicio
+	 */
+	public int getParalelismo() {
+		return hilos.getParallelism();
+	}
+
+	/**
+	 * Detener los hilos del servicio. Las bsquedas en el hilo que llama siguen funcionando.
+	 */
+	public void cerrar() {
+		hilos.shutdown();
+	}
+
+	/**
+	 * Una parte de un lote de consultas. Se divide por la mitad hasta que es lo
+	 * bastante pequea para resolverse en un solo hilo.
+	 */
+	private class TareaLote extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;/** La versin de la forma serializada */
+
+		private Consulta[] consultas;/** Todas las consultas del lote */
+		private Camino[] caminos;/** Los resultados de todo el lote */
+		private int desde;/** La primera consulta de esta parte */
+		private int hasta;/** La posicin siguiente a la ltima consulta de esta parte */
+
+		/**
+		 * Crear una parte de un lote
+		 *
+		 * @param consultas Todas las consultas del lote
+		 * @param caminos Los resultados de todo el lote
+		 * @param desde La primera consulta de esta parte
+		 * @param hasta La posicin siguiente a la ltima consulta de esta parte
+		 */
+		public TareaLote(Consulta[] consultas, Camino[] caminos, int desde, int hasta) {
+			this.consultas = consultas;
+			this.caminos = caminos;
+			this.desde = desde;
+			this.hasta = hasta;
+		}
+
+		protected void compute() {
+			if (hasta - desde <= CONSULTAS_POR_TAREA) {
+				BuscadorRuta buscador = buscadores.get();
+				for (int i=desde;i<hasta;i++) {
+					Consulta c = consultas[i];
+					caminos[i] = buscador.encontrarCamino(c.getEntidad(), c.getSx(), c.getSy(), c.getTx(), c.getTy());
+				}
+				return;
+			}
+			int mitad = (desde + hasta) >>> 1;
+			invokeAll(new TareaLote(consultas, caminos, desde, mitad), new TareaLote(consultas, caminos, mitad, hasta));
+		}
+	}
+}
@@ -0,0 +1,340 @@
+package util.buscadorcamino.concurrente;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.IntFunction;
+
+import util.buscadorcamino.BuscadorRuta;
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * Un servidor de consultas de camino por TCP, sin interfaz, para que otros procesos de la
+ * misma mquina pidan caminos sobre un mapa cargado una sola vez. Las consultas se resuelven
+ * en paralelo en un grupo de hilos, cada uno con su buscador reutilizado, por orden de llegada.
+ *
+ * El protocolo es binario, con nmeros big-endian. Al conectar, el servidor enva un saludo,
+ * y a partir de ah el cliente puede enviar tantas consultas seguidas como quiera sin esperar
+ * las respuestas. Cada respuesta se enva en cuanto su bsqueda termina, as que llegan en
+ * cualquier orden; el cliente las empareja por su identificador.
+ *
+ * <pre>
+ * saludo:     int MAGIA, short VERSION, short 0, int ancho, int altura
+ * consulta:   int id, short entidad, short sx, short sy, short tx, short ty
+ * respuesta:  int id, int n, n veces (short x, short y)
+ * </pre>
+ *
+ * Los shorts son sin signo. La entidad se traduce a una Entidad con la funcin que recibe el
+ * servidor. n es el nmero de pasos del camino, SIN_CAMINO si no lo hay o CONSULTA_FALLIDA si
+ * la consulta se sale del mapa, la entidad no existe o la bsqueda falla.
+ *
+ * Cada conexin tiene un hilo que lee y otro que escribe. El que escribe enva juntas las
+ * respuestas que se acumulan mientras escribe, y slo vaca el bfer cuando no queda ninguna.
+ * Si una conexin tiene demasiadas consultas sin responder, se deja de leer de ella hasta que
+ * salgan respuestas.
+ */
+public class ServidorCaminos {
+
+	public static final int MAGIA = 0x43414D49;/** Los cuatro primeros bytes del saludo, 'CAMI' */
+	public static final short VERSION = 1;/** La versin del protocolo */
+	public static final int SIN_CAMINO = -1;/** El nmero de pasos de la respuesta cuando no hay camino */
+	public static final int CONSULTA_FALLIDA = -2;/** El nmero de pasos de la respuesta cuando la consulta no es vlida */
+	public static final int MAX_LADO = 0xFFFF;/** El lado mximo del mapa en baldosas, que cabe en un short sin signo */
+
+	private static final int MAX_PENDIENTES = 4096;/** Las consultas de una conexin sin responder antes de dejar de leer */
+
+	private MapaSoloLectura mapa;/** La vista del mapa compartida por todos los hilos */
+	private ExecutorService hilos;/** Los hilos que buscan, que atienden las consultas de todas las conexiones en orden de llegada */
+	private ThreadLocal<BuscadorRuta> buscadores;/** El buscador de cada hilo, creado la primera vez que ese hilo busca */
+	private IntFunction<Entidad> entidades;/** Traduce la entidad de cada consulta */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private ServerSocket socket;/** El socket que acepta conexiones, o null si el servidor no se ha iniciado */
+	private Set<Conexion> conexiones = ConcurrentHashMap.newKeySet();/** Las conexiones abiertas */
+
+	/**
+	 * Crear un servidor
+	 *
+	 * @param mapa El mapa que se busca. No debe modificarse mientras el servidor est en marcha
+	 * @param fabrica La fbrica que crea el buscador de cada hilo
+	 * @param entidades Traduce la entidad de cada consulta; puede lanzar una excepcin si no existe
+	 * @param hilos El nmero de hilos que buscan
+	 */
+	public ServidorCaminos(MapaConBaldosas mapa, FabricaBuscadorRuta fabrica, IntFunction<Entidad> entidades, int hilos) {
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+		if ((ancho > MAX_LADO) || (altura > MAX_LADO)) {
+			throw new IllegalArgumentException("Mapa demasiado grande para el protocolo: " + ancho + "x" + altura);
+		}
+		this.mapa = new MapaSoloLectura(mapa);
+		this.buscadores = ThreadLocal.withInitial(() -> fabrica.crear(this.mapa));
+		this.hilos = Executors.newFixedThreadPool(hilos, (tarea) -> {
+			Thread hilo = new Thread(tarea, "ServidorCaminos-busqueda");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		this.entidades = entidades;
+	}
+
+	/**
+	 * Empezar a aceptar conexiones en la interfaz local. Vuelve enseguida; las conexiones se
+	 * atienden en hilos propios.
+	 *
+	 * @param puerto El puerto TCP, o 0 para uno libre cualquiera
+	 * @throws IOException Indica que no se ha podido abrir el puerto
+	 */
+	public void iniciar(int puerto) throws IOException {
+		socket = new ServerSocket(puerto, 50, InetAddress.getLoopbackAddress());
+		Thread aceptador = new Thread(this::aceptar, "ServidorCaminos");
+		aceptador.start();
+	}
+
+	/**
+	 * Obtener el puerto en el que escucha el servidor
+	 *
+	 * @return El puerto TCP
+	 */
+	public int getPuerto() {
+		return socket.getLocalPort();
+	}
+
+	/**
+	 * Dejar de aceptar conexiones, cerrar las abiertas y detener los hilos que buscan
+	 */
+	public void cerrar() {
+		try {
+			socket.close();
+		} catch (IOException e) {// Ya no se va a usar
+		}
+		for (Conexion conexion : conexiones) {
+			conexion.cerrar();
+		}
+		hilos.shutdown();
+	}
+
+	/**
+	 * Aceptar conexiones hasta que se cierre el socket
+	 */
+	private void aceptar() {
+		while (!socket.isClosed()) {
+			Socket cliente;
+			try {
+				cliente = socket.accept();
+			} catch (IOException e) {// Se ha cerrado el socket, o la conexin se cort antes de aceptarla
+				continue;
+			}
+			try {
+				cliente.setTcpNoDelay(true);
+			} catch (IOException e) {// La conexin ya no sirve: se descarta sin atenderla
+				try {
+					cliente.close();
+				} catch (IOException e2) {// Ya no se va a usar
+				}
+				continue;
+			}
+			Conexion conexion = new Conexion(cliente);
+			conexiones.add(conexion);
+			conexion.iniciar();
+		}
+	}
+
+	/**
+	 * Una conexin con un cliente, con el hilo que lee sus consultas y el que escribe las respuestas
+	 */
+	private class Conexion {
+
+		private Socket socket;/** El socket del cliente */
+		private LinkedBlockingQueue<Respuesta> respuestas = new LinkedBlockingQueue<>();/** Las respuestas listas para enviar */
+		private Semaphore pendientes = new Semaphore(MAX_PENDIENTES);/** Un permiso por cada consulta que se puede leer sin haber respondido */
+
+		/**
+		 * Crear una conexin
+		 *
+		 * @param socket El socket del cliente
+		 */
+		private Conexion(Socket socket) {
+			this.socket = socket;
+		}
+
+		/**
+		 * Arrancar los hilos de la conexin
+		 */
+		private void iniciar() {
+			new Thread(this::leer, "ServidorCaminos-lectura").start();
+			new Thread(this::escribir, "ServidorCaminos-escritura").start();
+		}
+
+		/**
+		 * Cerrar el socket, lo que termina los dos hilos
+		 */
+		private void cerrar() {
+			try {
+				socket.close();
+			} catch (IOException e) {// Ya no se va a usar
+			}
+		}
+
+		/**
+		 * Leer consultas y lanzarlas hasta que el cliente cierre la conexin; despus esperar
+		 * a que salgan todas las respuestas y terminar el hilo que escribe
+		 */
+		private void leer() {
+			try {
+				DataInputStream entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+				while (true) {
+					int id;
+					try {
+						id = entrada.readInt();
+					} catch (EOFException e) {// El cliente no enviar ms consultas
+						break;
+					}
+					int entidad = entrada.readUnsignedShort();
+					int sx = entrada.readUnsignedShort();
+					int sy = entrada.readUnsignedShort();
+					int tx = entrada.readUnsignedShort();
+					int ty = entrada.readUnsignedShort();
+					pendientes.acquire();
+					lanzar(id, entidad, sx, sy, tx, ty);
+				}
+			} catch (IOException e) {// La conexin se ha cortado; el hilo que escribe descarta lo que quede
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			pendientes.acquireUninterruptibly(MAX_PENDIENTES);
+			respuestas.add(Respuesta.FIN);
+		}
+
+		/**
+		 * Resolver una consulta en los hilos que buscan y encolar su respuesta al terminar
+		 */
+		private void lanzar(int id, int entidad, int sx, int sy, int tx, int ty) {
+			if ((sx >= ancho) || (sy >= altura) || (tx >= ancho) || (ty >= altura)) {
+				respuestas.add(new Respuesta(id, null, true));
+				return;
+			}
+			try {
+				hilos.execute(() -> {
+					// Toda consulta aceptada recibe una respuesta, aunque la bsqueda lance un Error,
+					// porque cada respuesta devuelve el permiso que el hilo que lee espera al cerrar
+					Respuesta respuesta = new Respuesta(id, null, true);
+					try {
+						respuesta = new Respuesta(id, buscadores.get().encontrarCamino(entidades.apply(entidad), sx, sy, tx, ty), false);
+					} catch (RuntimeException e) {// La consulta falla, pero el hilo sigue atendiendo otras
+					} finally {
+						respuestas.add(respuesta);
+					}
+				});
+			} catch (RejectedExecutionException e) {// El servidor se est cerrando
+				respuestas.add(new Respuesta(id, null, true));
+			}
+		}
+
+		/**
+		 * Enviar las respuestas segn llegan hasta recibir FIN, y cerrar la conexin
+		 */
+		private void escribir() {
+			DataOutputStream salida = null;
+			try {
+				salida = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+				salida.writeInt(MAGIA);
+				salida.writeShort(VERSION);
+				salida.writeShort(0);
+				salida.writeInt(ancho);
+				salida.writeInt(altura);
+				salida.flush();
+			} catch (IOException e) {
+				salida = null;
+			}
+			try {
+				while (true) {
+					Respuesta respuesta = respuestas.take();
+					while ((respuesta != null) && (respuesta != Respuesta.FIN)) {
+						if (salida != null) {
+							try {
+								respuesta.escribir(salida);
+							} catch (IOException e) {// Se siguen sacando respuestas para liberar al hilo que lee
+								salida = null;
+								cerrar();
+							}
+						}
+						pendientes.release();
+						respuesta = respuestas.poll();
+					}
+					if (salida != null) {// No queda ninguna respuesta lista: se enva lo acumulado
+						try {
+							salida.flush();
+						} catch (IOException e) {
+							salida = null;
+							cerrar();
+						}
+					}
+					if (respuesta == Respuesta.FIN) {
+						break;
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			cerrar();
+			conexiones.remove(this);
+		}
+	}
+
+	/**
+	 * La respuesta a una consulta, lista para enviar
+	 */
+	private static class Respuesta {
+
+		private static final Respuesta FIN = new Respuesta(0, null, false);/** Marca el final de las respuestas de una conexin */
+
+		private int id;/** El identificador de la consulta */
+		private Camino camino;/** El camino encontrado, o null */
+		private boolean fallida;/** Es cierto si la consulta no era vlida o la bsqueda fall */
+
+		/**
+		 * Crear una respuesta
+		 *
+		 * @param id El identificador de la consulta
+		 * @param camino El camino encontrado, o null
+		 * @param fallida Es cierto si la consulta no era vlida o la bsqueda fall
+		 */
+		private Respuesta(int id, Camino camino, boolean fallida) {
+			this.id = id;
+			this.camino = camino;
+			this.fallida = fallida;
+		}
+
+		/**
+		 * Escribir la respuesta en el formato del protocolo
+		 */
+		private void escribir(DataOutputStream salida) throws IOException {
+			salida.writeInt(id);
+			if (fallida) {
+				salida.writeInt(CONSULTA_FALLIDA);
+			} else if (camino == null) {
+				salida.writeInt(SIN_CAMINO);
+			} else {
+				salida.writeInt(camino.getLength());
+				for (int i=0;i<camino.getLength();i++) {
+					salida.writeShort(camino.getX(i));
+					salida.writeShort(camino.getY(i));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,495 @@
+package util.buscadorcamino.flujo;
+
+import java.util.Arrays;
+
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+import util.buscadorcamino.MapaCostoUniforme;
+
+/**
+ * Un campo de flujo hacia un destino para un tipo de entidad. Guarda, para cada baldosa, la
+ * distancia hasta el destino y la direccin del siguiente paso, calculadas con un nico
+ * Dijkstra inverso desde el destino (o un recorrido en anchura si el coste es uniforme).
+ * Cualquier unidad puede leer su siguiente paso en O(1) sin buscar.
+ *
+ * Cuando cambian baldosas del mapa el campo no se recalcula entero: se anotan los cambios y
+ * en la siguiente lectura se repara slo la zona afectada.
+ */
+public class CampoFlujo {
+
+	private static final int[] DX = {0, 1, 1, 0, -1, -1, -1, 0, 1};/** El avance en x de cada direccin, la 0 es ninguna */
+	private static final int[] DY = {0, 0, 1, 1, 1, 0, -1, -1, -1};/** El avance en y de cada direccin, la 0 es ninguna */
+	private static final byte NINGUNA = 0;/** La direccin de una baldosa desde la que no se llega al destino */
+
+	private MapaConBaldosas mapa;/** El mapa del campo */
+	private Entidad entidad;/** La entidad para la que se calcula */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private int tx;/** La coordenada x del destino */
+	private int ty;/** La coordenada y del destino */
+
+	private float[] distancia;/** La distancia de cada baldosa al destino, indexada por y*ancho+x */
+	private byte[] direccion;/** La direccin del siguiente paso desde cada baldosa */
+
+	private int[] cola = new int[64];/** Las baldosas pendientes, como cola o como montculo */
+	private float[] claves = new float[64];/** Las distancias de las baldosas del montculo */
+	private int tamano;/** El nmero de baldosas pendientes */
+	private int[] cambios = new int[16];/** Las baldosas que han cambiado desde la ltima reparacin */
+	private int numCambios;/** El nmero de baldosas que han cambiado */
+	private int[] marca;/** La reparacin que marc cada baldosa como afectada */
+	private int reparacion;/** El nmero de la reparacin en curso */
+	private int expandidas;/** Las baldosas expandidas desde que se reiniciaron las medidas */
+	private int generadas;/** Las baldosas aadidas a la cola o al montculo desde que se reiniciaron las medidas */
+	private int maxPendientes;/** El mayor nmero de baldosas pendientes desde que se reiniciaron las medidas */
+
+	/**
+	 * Calcular un campo de flujo
+	 *
+	 * @param mapa El mapa del campo
+	 * @param entidad La entidad que se mover
+	 * @param tx La coordenada x del destino
+	 * @param ty La coordenada y del destino
+	 * @param permiteMoviDiagonal Es cierto si permitimos el movimiento diagonal
+	 */
+	public CampoFlujo(MapaConBaldosas mapa, Entidad entidad, int tx, int ty, boolean permiteMoviDiagonal) {
+		this.mapa = mapa;
+		this.entidad = entidad;
+		this.tx = tx;
+		this.ty = ty;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+		this.distancia = new float[ancho * altura];
+		this.direccion = new byte[ancho * altura];
+		this.marca = new int[ancho * altura];
+		construir();
+	}
+
+	/**
+	 * Calcular el campo entero desde el destino
+	 */
+	private void construir() {
+		Arrays.fill(distancia, Float.MAX_VALUE);
+		Arrays.fill(direccion, NINGUNA);
+		if (mapa.bloquea(entidad, tx, ty)) {
+			return;
+		}
+		int destino = ty * ancho + tx;
+		distancia[destino] = 0;
+		if ((mapa instanceof MapaCostoUniforme) && ((MapaCostoUniforme) mapa).esCostoUniforme(entidad)) {
+			construirEnAnchura(destino);
+			return;
+		}
+		tamano = 0;
+		agregar(destino, 0);
+		propagar();
+	}
+
+	/**
+	 * Calcular el campo con un recorrido en anchura, vlido cuando todos los pasos cuestan lo mismo
+	 *
+	 * @param destino La baldosa de destino
+	 */
+	private void construirEnAnchura(int destino) {
+		int[] pendientes = new int[ancho * altura];
+		int primero = 0;
+		int ultimo = 0;
+		pendientes[ultimo++] = destino;
+		float costoPaso = -1;
+		while (primero < ultimo) {
+			if (ultimo - primero > maxPendientes) {
+				maxPendientes = ultimo - primero;
+			}
+			int actual = pendientes[primero++];
+			expandidas++;
+			int x = actual % ancho;
+			int y = actual / ancho;
+			for (int d=1;d<DX.length;d++) {
+				if (!permiteMoviDiagonal && (DX[d] != 0) && (DY[d] != 0)) {
+					continue;
+				}
+				int nx = x + DX[d];
+				int ny = y + DY[d];
+				if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+					continue;
+				}
+				int vecina = ny * ancho + nx;
+				if ((distancia[vecina] != Float.MAX_VALUE) || mapa.bloquea(entidad, nx, ny)) {
+					continue;
+				}
+				if (costoPaso < 0) {
+					costoPaso = mapa.getCosto(entidad, nx, ny, x, y);
+				}
+				distancia[vecina] = distancia[actual] + costoPaso;
+				direccion[vecina] = opuesta(d);
+				pendientes[ultimo++] = vecina;
+				generadas++;
+			}
+		}
+	}
+
+	/**
+	 * Dijkstra inverso desde las baldosas del montculo: cada baldosa extrada intenta
+	 * mejorar la distancia de las vecinas que pueden moverse hasta ella
+	 */
+	private void propagar() {
+		while (tamano > 0) {
+			float d = claves[0];
+			int actual = quitarPrimero();
+			if (d > distancia[actual]) {// Una copia antigua de una baldosa que ya mejor
+				continue;
+			}
+			expandidas++;
+			int x = actual % ancho;
+			int y = actual / ancho;
+			for (int dir=1;dir<DX.length;dir++) {
+				if (!permiteMoviDiagonal && (DX[dir] != 0) && (DY[dir] != 0)) {
+					continue;
+				}
+				int nx = x + DX[dir];
+				int ny = y + DY[dir];
+				if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+					continue;
+				}
+				if (mapa.bloquea(entidad, nx, ny)) {
+					continue;
+				}
+				int vecina = ny * ancho + nx;
+				float nueva = d + mapa.getCosto(entidad, nx, ny, x, y);
+				if (nueva < distancia[vecina]) {
+					distancia[vecina] = nueva;
+					direccion[vecina] = opuesta(dir);
+					agregar(vecina, nueva);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Anotar que ha cambiado una baldosa. El campo se repara en la siguiente lectura.
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 */
+	void baldosaCambiada(int x, int y) {
+		if (numCambios == cambios.length) {
+			cambios = Arrays.copyOf(cambios, numCambios * 2);
+		}
+		cambios[numCambios++] = y * ancho + x;
+	}
+
+	/**
+	 * Reparar el campo tras los cambios anotados. Las baldosas cambiadas y todas las que
+	 * llegaban al destino a travs de ellas pierden su distancia; despus se recalculan desde
+	 * las vecinas que siguen siendo vlidas, y cualquier mejora se propaga tambin fuera de
+	 * esa zona. As se cubren tanto las baldosas que se bloquean como las que se liberan.
+	 */
+	private void reparar() {
+		reparacion++;
+		int destino = ty * ancho + tx;
+		if (mapa.bloquea(entidad, tx, ty)) {// El destino ha quedado bloqueado
+			numCambios = 0;
+			Arrays.fill(distancia, Float.MAX_VALUE);
+			Arrays.fill(direccion, NINGUNA);
+			return;
+		}
+
+		// Las baldosas cambiadas y las que dependan de ellas, recorridas hacia atrs
+		int[] afectadas = new int[Math.max(16, numCambios)];
+		int numAfectadas = 0;
+		for (int i=0;i<numCambios;i++) {
+			int c = cambios[i];
+			if (marca[c] != reparacion) {
+				marca[c] = reparacion;
+				if (numAfectadas == afectadas.length) {
+					afectadas = Arrays.copyOf(afectadas, numAfectadas * 2);
+				}
+				afectadas[numAfectadas++] = c;
+			}
+		}
+		numCambios = 0;
+		for (int i=0;i<numAfectadas;i++) {
+			int actual = afectadas[i];
+			int x = actual % ancho;
+			int y = actual / ancho;
+			for (int dir=1;dir<DX.length;dir++) {
+				int nx = x + DX[dir];
+				int ny = y + DY[dir];
+				if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+					continue;
+				}
+				int vecina = ny * ancho + nx;
+				if ((marca[vecina] != reparacion) && (direccion[vecina] == opuesta(dir))) {
+					marca[vecina] = reparacion;
+					if (numAfectadas == afectadas.length) {
+						afectadas = Arrays.copyOf(afectadas, numAfectadas * 2);
+					}
+					afectadas[numAfectadas++] = vecina;
+				}
+			}
+		}
+		for (int i=0;i<numAfectadas;i++) {
+			distancia[afectadas[i]] = Float.MAX_VALUE;
+			direccion[afectadas[i]] = NINGUNA;
+		}
+
+		// Recalcular la zona afectada desde sus bordes vlidos
+		tamano = 0;
+		if (marca[destino] == reparacion) {
+			distancia[destino] = 0;
+			agregar(destino, 0);
+		}
+		for (int i=0;i<numAfectadas;i++) {
+			int actual = afectadas[i];
+			int x = actual % ancho;
+			int y = actual / ancho;
+			if ((actual == destino) || mapa.bloquea(entidad, x, y)) {
+				continue;
+			}
+			for (int dir=1;dir<DX.length;dir++) {
+				if (!permiteMoviDiagonal && (DX[dir] != 0) && (DY[dir] != 0)) {
+					continue;
+				}
+				int nx = x + DX[dir];
+				int ny = y + DY[dir];
+				if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+					continue;
+				}
+				int vecina = ny * ancho + nx;
+				if ((marca[vecina] == reparacion) || (distancia[vecina] == Float.MAX_VALUE)) {
+					continue;
+				}
+				float nueva = distancia[vecina] + mapa.getCosto(entidad, x, y, nx, ny);
+				if (nueva < distancia[actual]) {
+					distancia[actual] = nueva;
+					direccion[actual] = (byte) dir;
+				}
+			}
+			if (distancia[actual] != Float.MAX_VALUE) {
+				agregar(actual, distancia[actual]);
+			}
+		}
+		propagar();
+	}
+
+	/**
+	 * Obtener la distancia desde una baldosa hasta el destino
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return La distancia, o Float.MAX_VALUE si no se puede llegar desde ella
+	 */
+	public float getDistancia(int x, int y) {
+		if (numCambios > 0) {
+			reparar();
+		}
+		return distancia[y * ancho + x];
+	}
+
+	/**
+	 * Obtener la direccin del siguiente paso desde una baldosa. Si la baldosa est bloqueada,
+	 * por ejemplo porque la propia unidad est en ella, se elige la mejor vecina.
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return La direccin, de 1 a 8, o 0 si no se puede llegar al destino
+	 */
+	public int getDireccion(int x, int y) {
+		if (numCambios > 0) {
+			reparar();
+		}
+		int baldosa = y * ancho + x;
+		if ((direccion[baldosa] != NINGUNA) || (distancia[baldosa] == 0)) {
+			return direccion[baldosa];
+		}
+		int mejor = NINGUNA;
+		float mejorDistancia = Float.MAX_VALUE;
+		for (int dir=1;dir<DX.length;dir++) {
+			if (!permiteMoviDiagonal && (DX[dir] != 0) && (DY[dir] != 0)) {
+				continue;
+			}
+			int nx = x + DX[dir];
+			int ny = y + DY[dir];
+			if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+				continue;
+			}
+			float d = distancia[ny * ancho + nx];
+			if (d == Float.MAX_VALUE) {
+				continue;
+			}
+			d += mapa.getCosto(entidad, x, y, nx, ny);
+			if (d < mejorDistancia) {
+				mejorDistancia = d;
+				mejor = dir;
+			}
+		}
+		return mejor;
+	}
+
+	/**
+	 * Obtener la coordenada x del siguiente paso desde una baldosa
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return La coordenada x del siguiente paso, igual a x si no hay paso
+	 */
+	public int getSiguienteX(int x, int y) {
+		return x + DX[getDireccion(x, y)];
+	}
+
+	/**
+	 * Obtener la coordenada y del siguiente paso desde una baldosa
+	 *
+	 * @param x La coordenada x de la baldosa
+	 * @param y La coordenada y de la baldosa
+	 * @return La coordenada y del siguiente paso, igual a y si no hay paso
+	 */
+	public int getSiguienteY(int x, int y) {
+		return y + DY[getDireccion(x, y)];
+	}
+
+	/**
+	 * Seguir el campo desde una baldosa hasta el destino
+	 *
+	 * @param sx La coordenada x de la ubicacin de inicio
+	 * @param sy La coordenada y de la ubicacin de inicio
+	 * @return El camino hasta el destino, o null si no se puede llegar
+	 */
+	public Camino getCamino(int sx, int sy) {
+		if ((sx == tx) && (sy == ty)) {
+			return null;
+		}
+		int dir = getDireccion(sx, sy);
+		if (dir == NINGUNA) {
+			return null;
+		}
+		Camino camino = new Camino();
+		camino.agregarPaso(sx, sy);
+		int x = sx + DX[dir];
+		int y = sy + DY[dir];
+		camino.agregarPaso(x, y);
+		while ((x != tx) || (y != ty)) {
+			dir = direccion[y * ancho + x];
+			x += DX[dir];
+			y += DY[dir];
+			camino.agregarPaso(x, y);
+		}
+		return camino;
+	}
+
+	/**
+	 * Obtener la coordenada x del destino del campo
+	 *
+	 * @return La coordenada x del destino
+	 */
+	public int getDestinoX() {
+		return tx;
+	}
+
+	/**
+	 * Obtener la coordenada y del destino del campo
+	 *
+	 * @return La coordenada y del destino
+	 */
+	public int getDestinoY() {
+		return ty;
+	}
+
+	/**
+	 * Poner a cero las medidas del trabajo hecho por el campo
+	 */
+	void reiniciarMedidas() {
+		expandidas = 0;
+		generadas = 0;
+		maxPendientes = 0;
+	}
+
+	/**
+	 * Obtener las baldosas expandidas al calcular o reparar el campo
+	 *
+	 * @return Las baldosas expandidas desde que se cre el campo o se reiniciaron las medidas
+	 */
+	int getExpandidas() {
+		return expandidas;
+	}
+
+	/**
+	 * Obtener las baldosas aadidas a la cola o al montculo al calcular o reparar el campo
+	 *
+	 * @return Las baldosas aadidas desde que se cre el campo o se reiniciaron las medidas
+	 */
+	int getGeneradas() {
+		return generadas;
+	}
+
+	/**
+	 * Obtener el mayor nmero de baldosas pendientes al calcular o reparar el campo
+	 *
+	 * @return El mximo desde que se cre el campo o se reiniciaron las medidas
+	 */
+	int getMaxPendientes() {
+		return maxPendientes;
+	}
+
+	/**
+	 * Obtener la direccin contraria a una dada
+	 */
+	private static byte opuesta(int dir) {
+		return (byte) (((dir + 3) & 7) + 1);
+	}
+
+	/**
+	 * Aadir una baldosa al montculo
+	 */
+	private void agregar(int baldosa, float clave) {
+		if (tamano == claves.length) {
+			claves = Arrays.copyOf(claves, tamano * 2);
+			cola = Arrays.copyOf(cola, tamano * 2);
+		}
+		int i = tamano++;
+		generadas++;
+		if (tamano > maxPendientes) {
+			maxPendientes = tamano;
+		}
+		while (i > 0) {
+			int p = (i - 1) >> 1;
+			if (claves[p] <= clave) {
+				break;
+			}
+			claves[i] = claves[p];
+			cola[i] = cola[p];
+			i = p;
+		}
+		claves[i] = clave;
+		cola[i] = baldosa;
+	}
+
+	/**
+	 * Quitar la baldosa de menor distancia del montculo
+	 */
+	private int quitarPrimero() {
+		int primera = cola[0];
+		tamano--;
+		float clave = claves[tamano];
+		int baldosa = cola[tamano];
+		int i = 0;
+		int mitad = tamano >> 1;
+		while (i < mitad) {
+			int h = (i << 1) + 1;
+			if ((h + 1 < tamano) && (claves[h + 1] < claves[h])) {
+				h++;
+			}
+			if (clave <= claves[h]) {
+				break;
+			}
+			claves[i] = claves[h];
+			cola[i] = cola[h];
+			i = h;
+		}
+		claves[i] = clave;
+		cola[i] = baldosa;
+		return primera;
+	}
+}
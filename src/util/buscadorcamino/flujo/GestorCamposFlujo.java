@@ -0,0 +1,182 @@
+package util.buscadorcamino.flujo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import util.buscadorcamino.BuscadorInstrumentable;
+import util.buscadorcamino.BuscadorRuta;
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+import util.buscadorcamino.MapaObservable;
+import util.buscadorcamino.MetricasBusqueda;
+import util.buscadorcamino.OyenteBusqueda;
+import util.buscadorcamino.OyenteMapa;
+
+/**
+ * Guarda los campos de flujo de los destinos ms usados, uno por cada (destino, tipo de
+ * entidad). Cuando muchas unidades van al mismo sitio basta con calcular un campo y cada
+ * unidad lee de l su siguiente paso, en lugar de buscar un camino por unidad.
+ *
+ * Tambin sirve como BuscadorRuta: cada camino se obtiene siguiendo el campo de su destino.
+ * Si el mapa es un MapaObservable los campos se reparan solos cuando cambia una baldosa, hasta
+ * que se llama a cerrar.
+ *
+ * Un OyenteBusqueda recibe las medidas de cada camino: las baldosas que se expandieron para
+ * calcular o reparar su campo, ninguna si el campo ya estaba al da, y como profundidad el
+ * nmero de pasos del camino.
+ *
+ * No es seguro para varios hilos.
+ */
+public class GestorCamposFlujo implements BuscadorInstrumentable, OyenteMapa {
+
+	private MapaConBaldosas mapa;/** El mapa de los campos */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private int maxCampos;/** El nmero mximo de campos guardados */
+	private LinkedHashMap<Clave, CampoFlujo> campos = new LinkedHashMap<>(16, 0.75f, true);/** Los campos en orden de uso, el menos usado primero */
+	private OyenteBusqueda oyente;/** El objeto al que se informa al terminar cada bsqueda, o null */
+	private MetricasBusqueda metricas;/** Las medidas que se pasan al oyente, reutilizadas en cada bsqueda */
+	private boolean creado;/** Es cierto si la ltima llamada a getCampo calcul un campo nuevo */
+
+	/**
+	 * Crear un gestor de campos de flujo
+	 *
+	 * @param mapa El mapa de los campos. Si es un MapaObservable el gestor se registra para
+	 * conocer sus cambios; si no, hay que avisarle con baldosaCambiada
+	 * @param permiteMoviDiagonal Es cierto si permitimos el movimiento diagonal
+	 * @param maxCampos El nmero mximo de campos guardados antes de desalojar el menos usado
+	 */
+	public GestorCamposFlujo(MapaConBaldosas mapa, boolean permiteMoviDiagonal, int maxCampos) {
+		this.mapa = mapa;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.maxCampos = maxCampos;
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).agregarOyente(this);
+		}
+	}
+
+	/**
+	 * Obtener el campo de flujo hacia un destino, calculndolo si no estaba guardado
+	 *
+	 * @param entidad La entidad que se mover
+	 * @param tx La coordenada x del destino
+	 * @param ty La coordenada y del destino
+	 * @return El campo de flujo hacia el destino
+	 */
+	public CampoFlujo getCampo(Entidad entidad, int tx, int ty) {
+		Clave clave = new Clave(entidad, ty * mapa.getAnchoEnBaldosas() + tx);
+		CampoFlujo campo = campos.get(clave);
+		creado = (campo == null);
+		if (campo == null) {
+			campo = new CampoFlujo(mapa, entidad, tx, ty, permiteMoviDiagonal);
+			campos.put(clave, campo);
+			if (campos.size() > maxCampos) {
+				Iterator<CampoFlujo> i = campos.values().iterator();
+				i.next();
+				i.remove();
+			}
+		}
+		return campo;
+	}
+
+	/**
+	 * @see BuscadorInstrumentable#setOyenteBusqueda(OyenteBusqueda)
+	 */
+	public void setOyenteBusqueda(OyenteBusqueda oyente) {
+		this.oyente = oyente;
+		if ((oyente != null) && (metricas == null)) {
+			metricas = new MetricasBusqueda();
+		}
+	}
+
+	/**
+	 * @see BuscadorRuta#encontrarCamino(Entidad, int, int, int, int)
+	 */
+	public Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty) {
+		if (oyente == null) {
+			return getCampo(entidad, tx, ty).getCamino(sx, sy);
+		}
+		long inicioNanos = System.nanoTime();
+		CampoFlujo campo = getCampo(entidad, tx, ty);
+		if (!creado) {// Un campo que ya exista: slo cuenta lo que se repare ahora
+			campo.reiniciarMedidas();
+		}
+		Camino camino = campo.getCamino(sx, sy);
+		metricas.establecer(System.nanoTime() - inicioNanos, campo.getExpandidas(), campo.getGeneradas(), 0,
+				campo.getMaxPendientes(), (camino == null) ? 0 : camino.getLength() - 1, false, camino != null);
+		oyente.busquedaTerminada(this, metricas);
+		return camino;
+	}
+
+	/**
+	 * Anotar el cambio en todos los campos guardados, que se repararn al leerlos
+	 *
+	 * @see OyenteMapa#baldosaCambiada(int, int)
+	 */
+	public void baldosaCambiada(int x, int y) {
+		for (CampoFlujo campo : campos.values()) {
+			campo.baldosaCambiada(x, y);
+		}
+	}
+
+	/**
+	 * Dejar de escuchar los cambios del mapa. Hay que llamarlo al dejar de usarlo, porque
+	 * si no el mapa conserva los campos guardados
+	 */
+	public void cerrar() {
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).eliminarOyente(this);
+		}
+	}
+
+	/**
+	 * Olvidar todos los campos guardados
+	 */
+	public void limpiar() {
+		campos.clear();
+	}
+
+	/**
+	 * Obtener el nmero de campos guardados
+	 *
+	 * @return El nmero de campos guardados
+	 */
+	public int size() {
+		return campos.size();
+	}
+
+	/**
+	 * La clave de un campo: el tipo de entidad y la baldosa de destino
+	 */
+	private static class Clave {
+
+		private Entidad entidad;/** La entidad que se mueve */
+		private int destino;/** La baldosa de destino, y*ancho+x */
+
+		public Clave(Entidad entidad, int destino) {
+			this.entidad = entidad;
+			this.destino = destino;
+		}
+
+		/**
+		 * @see Object#hashCode()
+		 */
+		public int hashCode() {
+			return (entidad == null ? 0 : entidad.hashCode()) * 31 + destino;
+		}
+
+		/**
+		 * @see Object#equals(Object)
+		 */
+		public boolean equals(Object other) {
+			if (other instanceof Clave) {
+				Clave o = (Clave) other;
+
+				return (o.destino == destino)
+						&& ((entidad == null) ? (o.entidad == null) : entidad.equals(o.entidad));
+			}
+
+			return false;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package util.buscadorcamino.heuristicas;
+
+import util.buscadorcamino.AEstrellaHeuristica;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * La distancia Chebyshev: la mayor de las distancias en x y en y, que es el nmero de pasos
+ * del camino ms corto en una rejilla vaca con movimiento diagonal.
+ *
+ * Es la heurstica ajustada cuando se permite el movimiento diagonal y los pasos diagonales
+ * cuestan lo mismo que los rectos, como en el mapa de ejemplo, donde la distancia eucldea
+ * de HeuristicaCercana no es admisible. Es admisible si ningn paso cuesta menos que costoPaso.
+ */
+public class HeuristicaChebyshev implements AEstrellaHeuristica {
+
+	private float costoPaso;/** El menor coste de un paso, recto o diagonal */
+
+	/**
+	 * Crear la heurstica con pasos de coste 1
+	 */
+	public HeuristicaChebyshev() {
+		this(1);
+	}
+
+	/**
+	 * Crear la heurstica
+	 *
+	 * @param costoPaso El menor coste de un paso, recto o diagonal
+	 */
+	public HeuristicaChebyshev(float costoPaso) {
+		this.costoPaso = costoPaso;
+	}
+
+	/**
+	 * @see AEstrellaHeuristica#getCosto(MapaConBaldosas, Entidad, int, int, int, int)
+	 */
+	public float getCosto(MapaConBaldosas map, Entidad entidad, int x, int y, int tx, int ty) {
+		return costoPaso * Math.max(Math.abs(tx - x), Math.abs(ty - y));
+	}
+}
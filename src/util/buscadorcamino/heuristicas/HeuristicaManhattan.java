@@ -0,0 +1,40 @@
+package util.buscadorcamino.heuristicas;
+
+import util.buscadorcamino.AEstrellaHeuristica;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * La distancia Manhattan: la suma de las distancias en x y en y, que es el nmero de pasos
+ * del camino ms corto en una rejilla vaca sin movimiento diagonal.
+ *
+ * Es admisible sin movimiento diagonal si ningn paso cuesta menos que costoPaso. Con
+ * movimiento diagonal sobreestima, as que hay que usar HeuristicaOctil o HeuristicaChebyshev.
+ */
+public class HeuristicaManhattan implements AEstrellaHeuristica {
+
+	private float costoPaso;/** El menor coste de un paso */
+
+	/**
+	 * Crear la heurstica con pasos de coste 1
+	 */
+	public HeuristicaManhattan() {
+		this(1);
+	}
+
+	/**
+	 * Crear la heurstica
+	 *
+	 * @param costoPaso El menor coste de un paso
+	 */
+	public HeuristicaManhattan(float costoPaso) {
+		this.costoPaso = costoPaso;
+	}
+
+	/**
+	 * @see AEstrellaHeuristica#getCosto(MapaConBaldosas, Entidad, int, int, int, int)
+	 */
+	public float getCosto(MapaConBaldosas map, Entidad entidad, int x, int y, int tx, int ty) {
+		return costoPaso * (Math.abs(tx - x) + Math.abs(ty - y));
+	}
+}
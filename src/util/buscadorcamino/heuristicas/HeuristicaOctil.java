@@ -0,0 +1,49 @@
+package util.buscadorcamino.heuristicas;
+
+import util.buscadorcamino.AEstrellaHeuristica;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * La distancia octil: el coste del camino ms corto en una rejilla vaca cuando se permite el
+ * movimiento diagonal, es decir, tantos pasos diagonales como la menor de las dos distancias y
+ * el resto rectos. No necesita raz cuadrada y, con movimiento diagonal, se acerca ms al
+ * coste real que la distancia eucldea de HeuristicaCercana.
+ *
+ * Es admisible si ningn paso recto cuesta menos que costoRecto ni ningn paso diagonal menos
+ * que costoDiagonal. Sin movimiento diagonal hay que usar HeuristicaManhattan.
+ */
+public class HeuristicaOctil implements AEstrellaHeuristica {
+
+	private float costoRecto;/** El menor coste de un paso recto */
+	private float costoDiagonal;/** El menor coste de un paso diagonal */
+
+	/**
+	 * Crear la heurstica con pasos rectos de coste 1 y diagonales de coste raz de 2
+	 */
+	public HeuristicaOctil() {
+		this(1, (float) Math.sqrt(2));
+	}
+
+	/**
+	 * Crear la heurstica
+	 *
+	 * @param costoRecto El menor coste de un paso recto
+	 * @param costoDiagonal El menor coste de un paso diagonal
+	 */
+	public HeuristicaOctil(float costoRecto, float costoDiagonal) {
+		this.costoRecto = costoRecto;
+		this.costoDiagonal = Math.min(costoDiagonal, 2 * costoRecto);
+	}
+
+	/**
+	 * @see AEstrellaHeuristica#getCosto(MapaConBaldosas, Entidad, int, int, int, int)
+	 */
+	public float getCosto(MapaConBaldosas map, Entidad entidad, int x, int y, int tx, int ty) {
+		int dx = Math.abs(tx - x);
+		int dy = Math.abs(ty - y);
+		int diagonales = Math.min(dx, dy);
+
+		return costoDiagonal * diagonales + costoRecto * (dx + dy - 2 * diagonales);
+	}
+}
@@ -0,0 +1,558 @@
+package util.buscadorcamino.heuristicas;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+import util.buscadorcamino.AEstrellaHeuristica;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * Una heurstica basada en puntos de referencia (ALT: A*, landmarks y desigualdad triangular).
+ * Para cada tipo de entidad se eligen unas pocas baldosas de referencia y se calcula con
+ * Dijkstra el coste real entre cada referencia y todas las baldosas del mapa. Como ningn
+ * camino puede ser ms corto que lo que dice la desigualdad triangular,
+ * d(v,t) >= d(L,t) - d(L,v) y d(v,t) >= d(v,L) - d(t,L) para cualquier referencia L, y
+ * el mayor de esos valores es una cota inferior que tiene en cuenta los lagos y bosques que
+ * hay que rodear, al contrario que las distancias geomtricas.
+ *
+ * Las referencias se eligen lo ms alejadas posible entre s: la primera es la baldosa ms
+ * lejana al centro, y cada una de las siguientes la ms lejana a todas las anteriores,
+ * contando pasos. Las tablas de distancias se calculan en paralelo, una por referencia y
+ * sentido; si los costes del mapa son simtricos basta con un sentido. Se guardan como un
+ * nico vector por entidad con las distancias de todas las referencias de cada baldosa
+ * juntas, y se pueden guardar en disco y volver a cargar para no calcularlas al arrancar.
+ *
+ * Las tablas se calculan la primera vez que se pide la heurstica de una entidad, o antes
+ * con preparar. Mientras se calculan el mapa se lee desde varios hilos y no debe cambiar.
+ * La heurstica sigue siendo admisible si despus slo aumentan los costes o se bloquean
+ * baldosas; si bajan o se desbloquean hay que llamar a limpiar.
+ *
+ * El modo bidireccional de AEstrellaBuscadorCamino usa la heurstica tambin hacia el inicio, 
+ * como si los costes fueran simtricos; con costes distintos en cada sentido slo es admisible 
+ * la bsqueda en un sentido.
+ */
+public class HeuristicaPuntosReferencia implements AEstrellaHeuristica {
+
+	private static final int MAGICO = 0x414C5452;/** Los primeros bytes de un fichero de tablas, "ALTR" */
+	private static final int VERSION = 1;/** La versin del formato de fichero */
+	private static final float INFINITO = Float.POSITIVE_INFINITY;/** La distancia de una baldosa inalcanzable */
+
+	private MapaConBaldosas mapa;/** El mapa del que se calculan las distancias */
+	private int ancho;/** El ancho del mapa en baldosas */
+	private int altura;/** La altura del mapa en baldosas */
+	private boolean permiteMoviDiagonal;/** Es cierto si las distancias permiten el movimiento diagonal */
+	private int numeroPuntos;/** El nmero de referencias que se eligen para cada entidad */
+	private AEstrellaHeuristica base;/** Una heurstica admisible cuyo valor se usa si es mayor, o null */
+	private HashMap<Entidad, Tablas> tablas = new HashMap<>();/** Las tablas de cada tipo de entidad */
+	private volatile Tablas ultimas;/** Las ltimas tablas usadas, para no buscarlas en cada llamada */
+
+	/**
+	 * Crear una heurstica de puntos de referencia
+	 *
+	 * @param mapa El mapa del que se calculan las distancias
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda permite el movimiento diagonal
+	 * @param numeroPuntos El nmero de referencias por entidad, normalmente entre 4 y 16
+	 */
+	public HeuristicaPuntosReferencia(MapaConBaldosas mapa, boolean permiteMoviDiagonal, int numeroPuntos) {
+		this(mapa, permiteMoviDiagonal, numeroPuntos, null);
+	}
+
+	/**
+	 * Crear una heurstica de puntos de referencia combinada con otra heurstica admisible,
+	 * que mejora la cota cerca de las referencias o en zonas a las que no llegan
+	 *
+	 * @param mapa El mapa del que se calculan las distancias
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda permite el movimiento diagonal
+	 * @param numeroPuntos El nmero de referencias por entidad, normalmente entre 4 y 16
+	 * @param base Una heurstica admisible, como HeuristicaOctil, o null
+	 */
+	public HeuristicaPuntosReferencia(MapaConBaldosas mapa, boolean permiteMoviDiagonal,
+									  int numeroPuntos, AEstrellaHeuristica base) {
+		this.mapa = mapa;
+		this.ancho = mapa.getAnchoEnBaldosas();
+		this.altura = mapa.getAlturaEnBaldosas();
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.numeroPuntos = numeroPuntos;
+		this.base = base;
+	}
+
+	/**
+	 * @see AEstrellaHeuristica#getCosto(MapaConBaldosas, Entidad, int, int, int, int)
+	 */
+	public float getCosto(MapaConBaldosas map, Entidad entidad, int x, int y, int tx, int ty) {
+		Tablas t = ultimas;
+		if ((t == null) || ((t.entidad != entidad) && ((entidad == null) || !entidad.equals(t.entidad)))) {
+			t = preparar(entidad);
+		}
+		float h = t.cota(y * ancho + x, ty * ancho + tx);
+		if (base != null) {
+			h = Math.max(h, base.getCosto(map, entidad, x, y, tx, ty));
+		}
+		return h;
+	}
+
+	/**
+	 * Obtener las tablas de una entidad, calculndolas si es la primera vez
+	 *
+	 * @param entidad La entidad que se va a mover
+	 * @return Las tablas de distancias de la entidad
+	 */
+	public synchronized Tablas preparar(Entidad entidad) {
+		Tablas t = tablas.get(entidad);
+		if (t == null) {
+			t = calcular(entidad);
+			tablas.put(entidad, t);
+		}
+		ultimas = t;
+		return t;
+	}
+
+	/**
+	 * Olvidar las tablas de todas las entidades, por ejemplo porque ha cambiado el mapa.
+	 * Se vuelven a calcular cuando se necesitan.
+	 */
+	public synchronized void limpiar() {
+		tablas.clear();
+		ultimas = null;
+	}
+
+	/**
+	 * Guardar en un fichero las tablas de una entidad, calculndolas si hace falta
+	 *
+	 * @param entidad La entidad cuyas tablas se guardan
+	 * @param ruta La ruta del fichero
+	 * @throws IOException Si no se puede escribir el fichero
+	 */
+	public void guardar(Entidad entidad, String ruta) throws IOException {
+		Tablas t = preparar(entidad);
+		try (FileChannel canal = FileChannel.open(Paths.get(ruta), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer cabecera = ByteBuffer.allocate(4 * (7 + t.puntos.length));
+			cabecera.putInt(MAGICO).putInt(VERSION).putInt(ancho).putInt(altura);
+			cabecera.putInt(permiteMoviDiagonal ? 1 : 0).putInt(t.puntos.length).putInt(t.simetrico ? 1 : 0);
+			for (int p : t.puntos) {
+				cabecera.putInt(p);
+			}
+			cabecera.flip();
+			while (cabecera.hasRemaining()) {
+				canal.write(cabecera);
+			}
+			escribir(canal, t.desde);
+			if (!t.simetrico) {
+				escribir(canal, t.hacia);
+			}
+		}
+	}
+
+	/**
+	 * Cargar de un fichero las tablas de una entidad, sustituyendo las que tuviera
+	 *
+	 * @param entidad La entidad a la que pertenecen las tablas
+	 * @param ruta La ruta del fichero, escrito por guardar
+	 * @throws IOException Si no se puede leer el fichero o no corresponde a este mapa
+	 */
+	public void cargar(Entidad entidad, String ruta) throws IOException {
+		try (FileChannel canal = FileChannel.open(Paths.get(ruta), StandardOpenOption.READ)) {
+			ByteBuffer cabecera = leer(canal, 4 * 7);
+			if ((cabecera.getInt() != MAGICO) || (cabecera.getInt() != VERSION)) {
+				throw new IOException("El fichero " + ruta + " no contiene tablas de puntos de referencia");
+			}
+			if ((cabecera.getInt() != ancho) || (cabecera.getInt() != altura)
+					|| ((cabecera.getInt() != 0) != permiteMoviDiagonal)) {
+				throw new IOException("Las tablas de " + ruta + " son de otro mapa o de otro tipo de movimiento");
+			}
+			int k = cabecera.getInt();
+			boolean simetrico = cabecera.getInt() != 0;
+			if ((k < 0) || ((long) k * ancho * altura > Integer.MAX_VALUE)) {
+				throw new IOException("Nmero de referencias no vlido en " + ruta);
+			}
+			int[] puntos = new int[k];
+			leer(canal, 4 * k).asIntBuffer().get(puntos);
+			float[] desde = leerDistancias(canal, k * ancho * altura);
+			float[] hacia = simetrico ? desde : leerDistancias(canal, k * ancho * altura);
+			Tablas t = new Tablas(entidad, puntos, desde, hacia, simetrico);
+			synchronized (this) {
+				tablas.put(entidad, t);
+				ultimas = t;
+			}
+		}
+	}
+
+	/**
+	 * Calcular las tablas de una entidad
+	 */
+	private Tablas calcular(Entidad entidad) {
+		int[] puntos = elegirPuntos(entidad);
+		int k = puntos.length;
+		boolean simetrico = esSimetrico(entidad);
+
+		// Las primeras k tareas calculan d(L,v) y las siguientes, si hacen falta, d(v,L)
+		float[][] distancias = new float[simetrico ? k : 2 * k][];
+		IntStream.range(0, distancias.length).parallel()
+				.forEach((i) -> distancias[i] = dijkstra(entidad, puntos[i % k], i >= k));
+
+		float[] desde = intercalar(distancias, 0, k);
+		float[] hacia = simetrico ? desde : intercalar(distancias, k, k);
+		return new Tablas(entidad, puntos, desde, hacia, simetrico);
+	}
+
+	/**
+	 * Elegir las referencias por el mtodo del punto ms lejano, contando pasos con una
+	 * bsqueda en anchura. Slo se eligen baldosas alcanzables desde la baldosa libre ms
+	 * cercana al centro del mapa.
+	 */
+	private int[] elegirPuntos(Entidad entidad) {
+		int baldosas = ancho * altura;
+		int inicio = -1;
+		int mejor = Integer.MAX_VALUE;
+		for (int y=0;y<altura;y++) {
+			for (int x=0;x<ancho;x++) {
+				int d = Math.abs(2 * x - ancho) + Math.abs(2 * y - altura);
+				if ((d < mejor) && !mapa.bloquea(entidad, x, y)) {
+					mejor = d;
+					inicio = y * ancho + x;
+				}
+			}
+		}
+		if (inicio < 0) {
+			return new int[0];
+		}
+
+		int[] pasos = new int[baldosas];
+		int[] cola = new int[baldosas];
+		int[] minimos = new int[baldosas];
+		Arrays.fill(minimos, Integer.MAX_VALUE);
+		int[] puntos = new int[numeroPuntos];
+		int k = 0;
+		anchura(entidad, inicio, pasos, cola);
+		int siguiente = masLejana(pasos);
+		while ((k < numeroPuntos) && (siguiente >= 0)) {
+			puntos[k++] = siguiente;
+			anchura(entidad, siguiente, pasos, cola);
+			for (int i=0;i<baldosas;i++) {
+				minimos[i] = Math.min(minimos[i], pasos[i]);
+			}
+			siguiente = masLejana(minimos);
+		}
+		return Arrays.copyOf(puntos, k);
+	}
+
+	/**
+	 * Contar los pasos desde una baldosa a todas las dems, Integer.MAX_VALUE si no se llega
+	 */
+	private void anchura(Entidad entidad, int origen, int[] pasos, int[] cola) {
+		Arrays.fill(pasos, Integer.MAX_VALUE);
+		pasos[origen] = 0;
+		cola[0] = origen;
+		int cabeza = 0;
+		int fin = 1;
+		while (cabeza < fin) {
+			int actual = cola[cabeza++];
+			int ax = actual % ancho;
+			int ay = actual / ancho;
+			for (int dx=-1;dx<2;dx++) {
+				for (int dy=-1;dy<2;dy++) {
+					if (((dx == 0) && (dy == 0)) || (!permiteMoviDiagonal && (dx != 0) && (dy != 0))) {
+						continue;
+					}
+					int nx = ax + dx;
+					int ny = ay + dy;
+					if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura)) {
+						continue;
+					}
+					int vecina = ny * ancho + nx;
+					if ((pasos[vecina] == Integer.MAX_VALUE) && !mapa.bloquea(entidad, nx, ny)) {
+						pasos[vecina] = pasos[actual] + 1;
+						cola[fin++] = vecina;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Obtener la baldosa alcanzable con ms pasos, o -1 si todas tienen 0
+	 */
+	private static int masLejana(int[] pasos) {
+		int mejor = -1;
+		int maximo = 0;
+		for (int i=0;i<pasos.length;i++) {
+			if ((pasos[i] > maximo) && (pasos[i] != Integer.MAX_VALUE)) {
+				maximo = pasos[i];
+				mejor = i;
+			}
+		}
+		return mejor;
+	}
+
+	/**
+	 * Comprobar si cada movimiento entre baldosas libres cuesta lo mismo en los dos sentidos
+	 */
+	private boolean esSimetrico(Entidad entidad) {
+		for (int y=0;y<altura;y++) {
+			for (int x=0;x<ancho;x++) {
+				if (mapa.bloquea(entidad, x, y)) {
+					continue;
+				}
+				// Basta con mirar hacia delante: cada par de vecinas se comprueba una vez
+				for (int d=0;d<4;d++) {
+					int dx = (d == 0) ? 1 : d - 2;
+					int dy = (d == 0) ? 0 : 1;
+					if (!permiteMoviDiagonal && (dx != 0) && (dy != 0)) {
+						continue;
+					}
+					int nx = x + dx;
+					int ny = y + dy;
+					if ((nx < 0) || (ny >= altura) || (nx >= ancho) || mapa.bloquea(entidad, nx, ny)) {
+						continue;
+					}
+					if (Float.compare(mapa.getCosto(entidad, x, y, nx, ny), mapa.getCosto(entidad, nx, ny, x, y)) != 0) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calcular con Dijkstra el coste desde una referencia a todas las baldosas, o desde todas
+	 * las baldosas a la referencia si inversa es cierto
+	 */
+	private float[] dijkstra(Entidad entidad, int origen, boolean inversa) {
+		float[] distancia = new float[ancho * altura];
+		Arrays.fill(distancia, INFINITO);
+		distancia[origen] = 0;
+		MonticuloDistancias abierto = new MonticuloDistancias();
+		abierto.agregar(0, origen);
+		while (abierto.size() > 0) {
+			long primero = abierto.extraer();
+			int actual = (int) primero;
+			float d = Float.intBitsToFloat((int) (primero >>> 32));
+			if (d > distancia[actual]) {// Una entrada antigua de una baldosa ya mejorada
+				continue;
+			}
+			int ax = actual % ancho;
+			int ay = actual / ancho;
+			for (int dx=-1;dx<2;dx++) {
+				for (int dy=-1;dy<2;dy++) {
+					if (((dx == 0) && (dy == 0)) || (!permiteMoviDiagonal && (dx != 0) && (dy != 0))) {
+						continue;
+					}
+					int nx = ax + dx;
+					int ny = ay + dy;
+					if ((nx < 0) || (ny < 0) || (nx >= ancho) || (ny >= altura) || mapa.bloquea(entidad, nx, ny)) {
+						continue;
+					}
+					float costo = inversa ? mapa.getCosto(entidad, nx, ny, ax, ay) : mapa.getCosto(entidad, ax, ay, nx, ny);
+					if (!(costo < INFINITO)) {
+						continue;
+					}
+					int vecina = ny * ancho + nx;
+					float nueva = d + costo;
+					if (nueva < distancia[vecina]) {
+						distancia[vecina] = nueva;
+						abierto.agregar(nueva, vecina);
+					}
+				}
+			}
+		}
+		return distancia;
+	}
+
+	/**
+	 * Juntar k tablas de distancias en un vector con las k distancias de cada baldosa seguidas
+	 */
+	private float[] intercalar(float[][] distancias, int primera, int k) {
+		int baldosas = ancho * altura;
+		float[] resultado = new float[baldosas * k];
+		for (int l=0;l<k;l++) {
+			float[] tabla = distancias[primera + l];
+			for (int i=0;i<baldosas;i++) {
+				resultado[i * k + l] = tabla[i];
+			}
+		}
+		return resultado;
+	}
+
+	/**
+	 * Escribir un vector de distancias por bloques
+	 */
+	private static void escribir(FileChannel canal, float[] datos) throws IOException {
+		ByteBuffer bloque = ByteBuffer.allocate(1 << 16);
+		int porBloque = bloque.capacity() / 4;
+		for (int desde=0;desde<datos.length;desde+=porBloque) {
+			int cantidad = Math.min(porBloque, datos.length - desde);
+			bloque.clear();
+			bloque.asFloatBuffer().put(datos, desde, cantidad);
+			bloque.limit(cantidad * 4);
+			while (bloque.hasRemaining()) {
+				canal.write(bloque);
+			}
+		}
+	}
+
+	/**
+	 * Leer un vector de distancias por bloques
+	 */
+	private static float[] leerDistancias(FileChannel canal, int cantidad) throws IOException {
+		float[] datos = new float[cantidad];
+		int porBloque = 1 << 14;
+		for (int desde=0;desde<cantidad;desde+=porBloque) {
+			int n = Math.min(porBloque, cantidad - desde);
+			leer(canal, n * 4).asFloatBuffer().get(datos, desde, n);
+		}
+		return datos;
+	}
+
+	/**
+	 * Leer exactamente un nmero de bytes
+	 */
+	private static ByteBuffer leer(FileChannel canal, int bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(bytes);
+		while (buffer.hasRemaining()) {
+			if (canal.read(buffer) < 0) {
+				throw new EOFException("Fichero de tablas incompleto");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Las distancias de un tipo de entidad a sus referencias. Las k distancias de la baldosa
+	 * i estn en las posiciones i*k a i*k+k-1.
+	 */
+	public static class Tablas {
+
+		private Entidad entidad;/** La entidad de las tablas */
+		private int[] puntos;/** Las baldosas de referencia, como y*ancho+x */
+		private float[] desde;/** El coste desde cada referencia hasta cada baldosa */
+		private float[] hacia;/** El coste desde cada baldosa hasta cada referencia, el mismo vector que desde si son simtricos */
+		private boolean simetrico;/** Es cierto si los costes son iguales en los dos sentidos */
+
+		/**
+		 * Crear las tablas
+		 */
+		private Tablas(Entidad entidad, int[] puntos, float[] desde, float[] hacia, boolean simetrico) {
+			this.entidad = entidad;
+			this.puntos = puntos;
+			this.desde = desde;
+			this.hacia = hacia;
+			this.simetrico = simetrico;
+		}
+
+		/**
+		 * Obtener la mayor cota inferior del coste entre dos baldosas. Se saltan las
+		 * referencias desde las que alguna de las dos es inalcanzable.
+		 *
+		 * @param v La baldosa de origen, como y*ancho+x
+		 * @param t La baldosa de destino, como y*ancho+x
+		 * @return Una cota inferior del coste de ir de v a t
+		 */
+		public float cota(int v, int t) {
+			int k = puntos.length;
+			int iv = v * k;
+			int it = t * k;
+			float mejor = 0;
+			for (int l=0;l<k;l++) {
+				float lv = desde[iv + l];
+				float lt = desde[it + l];
+				if ((lv != INFINITO) && (lt != INFINITO) && (lt - lv > mejor)) {
+					mejor = lt - lv;
+				}
+				float vl = hacia[iv + l];
+				float tl = hacia[it + l];
+				if ((vl != INFINITO) && (tl != INFINITO) && (vl - tl > mejor)) {
+					mejor = vl - tl;
+				}
+			}
+			return mejor;
+		}
+
+		/**
+		 * Obtener las baldosas de referencia
+		 *
+		 * @return Las referencias, como y*ancho+x
+		 */
+		public int[] getPuntos() {
+			return puntos;
+		}
+
+		/**
+		 * Comprobar si los costes del mapa son simtricos para la entidad
+		 *
+		 * @return True Si slo se guarda una tabla por referencia
+		 */
+		public boolean isSimetrico() {
+			return simetrico;
+		}
+	}
+
+	/**
+	 * Montculo binario mnimo de pares distancia y baldosa guardados en un long: la distancia,
+	 * que no es negativa, en los 32 bits altos, de modo que ordenar los long ordena las distancias
+	 */
+	private static class MonticuloDistancias {
+		private long[] elementos = new long[256];/** Los elementos, la raz est en la posicin 0 */
+		private int tamano;/** El nmero de elementos */
+
+		/**
+		 * Aadir una baldosa con su distancia
+		 */
+		public void agregar(float distancia, int baldosa) {
+			if (tamano == elementos.length) {
+				elementos = Arrays.copyOf(elementos, tamano * 2);
+			}
+			long e = ((long) Float.floatToIntBits(distancia) << 32) | baldosa;
+			int i = tamano++;
+			while (i > 0) {
+				int padre = (i - 1) >> 1;
+				if (elementos[padre] <= e) {
+					break;
+				}
+				elementos[i] = elementos[padre];
+				i = padre;
+			}
+			elementos[i] = e;
+		}
+
+		/**
+		 * Sacar el elemento de menor distancia
+		 */
+		public long extraer() {
+			long primero = elementos[0];
+			long e = elementos[--tamano];
+			int i = 0;
+			int mitad = tamano >> 1;
+			while (i < mitad) {
+				int hijo = (i << 1) + 1;
+				if ((hijo + 1 < tamano) && (elementos[hijo + 1] < elementos[hijo])) {
+					hijo++;
+				}
+				if (e <= elementos[hijo]) {
+					break;
+				}
+				elementos[i] = elementos[hijo];
+				i = hijo;
+			}
+			elementos[i] = e;
+			return primero;
+		}
+
+		/**
+		 * Obtener el nmero de elementos
+		 */
+		public int size() {
+			return tamano;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+package util.buscadorcamino.jerarquico;
+
+import java.util.Arrays;
+
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+
+/**
+ * Una bsqueda de Dijkstra limitada a un rectngulo del mapa (un cluster). Se usa para
+ * calcular las distancias entre las entradas de un cluster y para refinar un tramo de un
+ * camino abstracto en baldosas concretas. Reutiliza sus vectores entre bsquedas.
+ */
+class BusquedaLocal {
+
+	private MapaConBaldosas mapa;/** El mapa que se busca */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private float[] distancia;/** La distancia desde el origen a cada baldosa del rectngulo */
+	private int[] padre;/** La baldosa anterior en el camino ms corto a cada baldosa, o -1 */
+	private float[] claves = new float[64];/** Las distancias del montculo de baldosas abiertas */
+	private int[] baldosas = new int[64];/** Las baldosas del montculo, que puede tener copias antiguas */
+	private int tamano;/** El nmero de elementos en el montculo */
+
+	private int rx;/** La coordenada x de la esquina del rectngulo buscado */
+	private int ry;/** La coordenada y de la esquina del rectngulo buscado */
+	private int rAncho;/** El ancho del rectngulo buscado */
+	private int rAltura;/** La altura del rectngulo buscado */
+
+	/**
+	 * Crear una bsqueda local
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 * @param maxBaldosas El nmero mximo de baldosas de un rectngulo
+	 */
+	public BusquedaLocal(MapaConBaldosas mapa, boolean permiteMoviDiagonal, int maxBaldosas) {
+		this.mapa = mapa;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.distancia = new float[maxBaldosas];
+		this.padre = new int[maxBaldosas];
+	}
+
+	/**
+	 * Calcular las distancias desde una baldosa a las dems baldosas del rectngulo. En
+	 * sentido inverso se calculan las distancias desde cada baldosa hasta la dada.
+	 *
+	 * @param entidad La entidad que se mueve
+	 * @param x La coordenada x del rectngulo
+	 * @param y La coordenada y del rectngulo
+	 * @param ancho El ancho del rectngulo
+	 * @param altura La altura del rectngulo
+	 * @param ox La coordenada x de la baldosa de origen
+	 * @param oy La coordenada y de la baldosa de origen
+	 * @param ex La coordenada x de una baldosa que nunca se considera bloqueada, o -1
+	 * @param ey La coordenada y de una baldosa que nunca se considera bloqueada, o -1
+	 * @param inverso Es cierto si se buscan los caminos que llegan al origen en lugar de los que salen
+	 * @param dx La coordenada x de una baldosa en la que parar al llegar, o -1 para calcularlas todas
+	 * @param dy La coordenada y de una baldosa en la que parar al llegar, o -1 para calcularlas todas
+	 */
+	public void buscar(Entidad entidad, int x, int y, int ancho, int altura, int ox, int oy,
+					   int ex, int ey, boolean inverso, int dx, int dy) {
+		rx = x;
+		ry = y;
+		rAncho = ancho;
+		rAltura = altura;
+		Arrays.fill(distancia, 0, ancho * altura, Float.MAX_VALUE);
+		Arrays.fill(padre, 0, ancho * altura, -1);
+		tamano = 0;
+
+		int origen = (oy - ry) * rAncho + (ox - rx);
+		distancia[origen] = 0;
+		agregar(origen, 0);
+		while (tamano > 0) {
+			float d = claves[0];
+			int actual = quitarPrimero();
+			if (d > distancia[actual]) {// Una copia antigua de una baldosa que ya mejor
+				continue;
+			}
+			int cx = rx + actual % rAncho;
+			int cy = ry + actual / rAncho;
+			if ((cx == dx) && (cy == dy)) {
+				return;
+			}
+			for (int vx=-1;vx<2;vx++) {
+				for (int vy=-1;vy<2;vy++) {
+					if ((vx == 0) && (vy == 0)) {
+						continue;
+					}
+					if (!permiteMoviDiagonal && (vx != 0) && (vy != 0)) {
+						continue;
+					}
+					int nx = cx + vx;
+					int ny = cy + vy;
+					if ((nx < rx) || (ny < ry) || (nx >= rx + rAncho) || (ny >= ry + rAltura)) {
+						continue;
+					}
+					if (!((nx == ex) && (ny == ey)) && mapa.bloquea(entidad, nx, ny)) {
+						continue;
+					}
+					// En sentido inverso la vecina es la baldosa de la que se sale
+					float paso = inverso ? mapa.getCosto(entidad, nx, ny, cx, cy) : mapa.getCosto(entidad, cx, cy, nx, ny);
+					int vecina = (ny - ry) * rAncho + (nx - rx);
+					float nueva = d + paso;
+					if (nueva < distancia[vecina]) {
+						distancia[vecina] = nueva;
+						padre[vecina] = actual;
+						agregar(vecina, nueva);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Obtener la distancia calculada por la ltima bsqueda
+	 *
+	 * @param x La coordenada x de la baldosa, dentro del rectngulo
+	 * @param y La coordenada y de la baldosa, dentro del rectngulo
+	 * @return La distancia desde el origen, o Float.MAX_VALUE si no se puede llegar
+	 */
+	public float getDistancia(int x, int y) {
+		return distancia[(y - ry) * rAncho + (x - rx)];
+	}
+
+	/**
+	 * Aadir al camino las baldosas del camino ms corto de la ltima bsqueda hacia
+	 * delante hasta la baldosa dada, sin incluir el origen
+	 *
+	 * @param camino El camino al que se aaden los pasos
+	 * @param x La coordenada x de la baldosa final
+	 * @param y La coordenada y de la baldosa final
+	 * @return True Si se aadi el tramo, false si no se puede llegar a la baldosa
+	 */
+	public boolean agregarCamino(Camino camino, int x, int y) {
+		int baldosa = (y - ry) * rAncho + (x - rx);
+		if (distancia[baldosa] == Float.MAX_VALUE) {
+			return false;
+		}
+		int pasos = 0;
+		for (int b=baldosa;padre[b] != -1;b=padre[b]) {
+			pasos++;
+		}
+		int[] tramo = new int[pasos];
+		for (int b=baldosa, i=pasos-1;padre[b] != -1;b=padre[b], i--) {
+			tramo[i] = b;
+		}
+		for (int i=0;i<pasos;i++) {
+			camino.agregarPaso(rx + tramo[i] % rAncho, ry + tramo[i] / rAncho);
+		}
+		return true;
+	}
+
+	/**
+	 * Aadir una baldosa al montculo
+	 */
+	private void agregar(int baldosa, float clave) {
+		if (tamano == claves.length) {
+			claves = Arrays.copyOf(claves, tamano * 2);
+			baldosas = Arrays.copyOf(baldosas, tamano * 2);
+		}
+		int i = tamano++;
+		while (i > 0) {
+			int p = (i - 1) >> 1;
+			if (claves[p] <= clave) {
+				break;
+			}
+			claves[i] = claves[p];
+			baldosas[i] = baldosas[p];
+			i = p;
+		}
+		claves[i] = clave;
+		baldosas[i] = baldosa;
+	}
+
+	/**
+	 * Quitar la baldosa de menor distancia del montculo
+	 */
+	private int quitarPrimero() {
+		int primera = baldosas[0];
+		tamano--;
+		float clave = claves[tamano];
+		int baldosa = baldosas[tamano];
+		int i = 0;
+		int mitad = tamano >> 1;
+		while (i < mitad) {
+			int h = (i << 1) + 1;
+			if ((h + 1 < tamano) && (claves[h + 1] < claves[h])) {
+				h++;
+			}
+			if (clave <= claves[h]) {
+				break;
+			}
+			claves[i] = claves[h];
+			baldosas[i] = baldosas[h];
+			i = h;
+		}
+		claves[i] = clave;
+		baldosas[i] = baldosa;
+		return primera;
+	}
+}
@@ -0,0 +1,92 @@
+package util.buscadorcamino.jerarquico;
+
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.Entidad;
+
+/**
+ * Un camino sobre el grafo abstracto de clusters: el inicio, las entradas entre clusters
+ * por las que pasa y el destino. Slo se convierte en un Camino completo, baldosa a
+ * baldosa, cuando se pide con refinar().
+ */
+public class CaminoAbstracto {
+
+	private JerarquicoBuscadorCamino buscador;/** El buscador que encontr el camino y sabe refinarlo */
+	private Entidad entidad;/** La entidad que se mueve a lo largo del camino */
+	private int[] xs;/** Las coordenadas x de los puntos del camino, del inicio al destino */
+	private int[] ys;/** Las coordenadas y de los puntos del camino, del inicio al destino */
+	private float costo;/** El coste total del camino segn el grafo abstracto */
+
+	/**
+	 * Crear un camino abstracto
+	 *
+	 * @param buscador El buscador que encontr el camino
+	 * @param entidad La entidad que se mueve a lo largo del camino
+	 * @param xs Las coordenadas x de los puntos del camino
+	 * @param ys Las coordenadas y de los puntos del camino
+	 * @param costo El coste total del camino
+	 */
+	CaminoAbstracto(JerarquicoBuscadorCamino buscador, Entidad entidad, int[] xs, int[] ys, float costo) {
+		this.buscador = buscador;
+		this.entidad = entidad;
+		this.xs = xs;
+		this.ys = ys;
+		this.costo = costo;
+	}
+
+	/**
+	 * Obtener el nmero de puntos del camino, incluidos el inicio y el destino
+	 *
+	 * @return El nmero de puntos del camino
+	 */
+	public int getLength() {
+		return xs.length;
+	}
+
+	/**
+	 * Obtener la coordenada x de un punto del camino
+	 *
+	 * @param indice El ndice del punto
+	 * @return La coordenada x del punto
+	 */
+	public int getX(int indice) {
+		return xs[indice];
+	}
+
+	/**
+	 * Obtener la coordenada y de un punto del camino
+	 *
+	 * @param indice El ndice del punto
+	 * @return La coordenada y del punto
+	 */
+	public int getY(int indice) {
+		return ys[indice];
+	}
+
+	/**
+	 * Obtener el coste total del camino segn el grafo abstracto
+	 *
+	 * @return El coste del camino
+	 */
+	public float getCosto() {
+		return costo;
+	}
+
+	/**
+	 * Obtener la entidad que se mueve a lo largo del camino
+	 *
+	 * @return La entidad del camino
+	 */
+	public Entidad getEntidad() {
+		return entidad;
+	}
+
+	/**
+	 * Convertir el camino en un Camino completo, buscando dentro de cada cluster
+	 * las baldosas entre un punto y el siguiente
+	 *
+	 * @return El camino completo, o null si el mapa cambi y algn tramo ya no se puede recorrer
+	 */
+	public Camino refinar() {
+		return buscador.refinar(this);
+	}
+}
@@ -0,0 +1,703 @@
+package util.buscadorcamino.jerarquico;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+import util.buscadorcamino.AEstrellaHeuristica;
+import util.buscadorcamino.BuscadorInstrumentable;
+import util.buscadorcamino.BuscadorRuta;
+import util.buscadorcamino.Camino;
+import util.buscadorcamino.Entidad;
+import util.buscadorcamino.MapaConBaldosas;
+import util.buscadorcamino.MapaObservable;
+import util.buscadorcamino.MetricasBusqueda;
+import util.buscadorcamino.OyenteBusqueda;
+import util.buscadorcamino.OyenteMapa;
+import util.buscadorcamino.heuristicas.HeuristicaCercana;
+
+/**
+ * Un buscador de rutas jerrquico (HPA*) para mapas grandes. El mapa se divide en clusters
+ * cuadrados y en los bordes entre clusters vecinos se eligen entradas. Para cada tipo de
+ * entidad se precalcula, una sola vez, la distancia entre las entradas de cada cluster, lo
+ * que forma un grafo abstracto mucho ms pequeo que el mapa. Una bsqueda une el inicio y el
+ * destino a las entradas de sus clusters, busca con A* en el grafo abstracto y slo despus,
+ * si se pide, refina cada tramo en baldosas buscando dentro de un nico cluster.
+ *
+ * Los caminos son casi ptimos: pueden ser algo ms largos que los de AEstrellaBuscadorCamino
+ * porque tienen que pasar por las entradas elegidas. Cuando cambia una baldosa slo se
+ * reconstruye su cluster (y los bordes con sus vecinos) en la siguiente bsqueda. Si el mapa
+ * es un MapaObservable el buscador se registra para recibir esos cambios, y cerrar lo da de
+ * baja; si no, hay que avisarle con baldosaCambiada.
+ *
+ * Un OyenteBusqueda recibe las medidas de cada llamada a encontrarCamino, con el tiempo del
+ * refinado incluido. Los nodos contados son los del grafo abstracto, la profundidad es el
+ * nmero de tramos del camino abstracto y nunca hay nodos reabiertos ni bsquedas cortadas.
+ */
+public class JerarquicoBuscadorCamino implements BuscadorInstrumentable, OyenteMapa {
+
+	private static final int ENTRADA_LARGA = 6;/** Longitud a partir de la cual un tramo de borde libre tiene dos entradas en lugar de una */
+
+	private MapaConBaldosas mapa;/** El mapa que se busca */
+	private int tamanoCluster;/** El lado de cada cluster en baldosas */
+	private boolean permiteMoviDiagonal;/** Es cierto si permitimos el movimiento diagonal */
+	private AEstrellaHeuristica heuristica;/** La heurstica de la bsqueda en el grafo abstracto */
+	private int clustersAncho;/** El nmero de clusters a lo ancho del mapa */
+	private int clustersAltura;/** El nmero de clusters a lo alto del mapa */
+	private HashMap<Entidad, Abstraccion> abstracciones = new HashMap<>();/** El grafo abstracto de cada tipo de entidad */
+	private BusquedaLocal local;/** La bsqueda limitada a un cluster */
+	private int busquedaActual;/** El nmero de la bsqueda abstracta en curso */
+	private OyenteBusqueda oyente;/** El objeto al que se informa al terminar cada bsqueda, o null */
+	private MetricasBusqueda metricas;/** Las medidas que se pasan al oyente, reutilizadas en cada bsqueda */
+	private int expandidos;/** Los nodos abstractos expandidos por la ltima bsqueda abstracta */
+	private int generados;/** Los nodos abstractos abiertos por la ltima bsqueda abstracta */
+	private int maxAbiertos;/** El mayor tamao de la cola de abiertos en la ltima bsqueda abstracta */
+
+	/**
+	 * Crear un buscador jerrquico con la heurstica predeterminada - ms cercana al destino.
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param tamanoCluster El lado de cada cluster en baldosas
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 */
+	public JerarquicoBuscadorCamino(MapaConBaldosas mapa, int tamanoCluster, boolean permiteMoviDiagonal) {
+		this(mapa, tamanoCluster, permiteMoviDiagonal, new HeuristicaCercana());
+	}
+
+	/**
+	 * Crear un buscador jerrquico
+	 *
+	 * @param mapa El mapa que se busca
+	 * @param tamanoCluster El lado de cada cluster en baldosas
+	 * @param permiteMoviDiagonal Es cierto si la bsqueda debe intentar el movimiento diagonal
+	 * @param heuristica La heurstica utilizada en la bsqueda sobre el grafo abstracto
+	 */
+	public JerarquicoBuscadorCamino(MapaConBaldosas mapa, int tamanoCluster, boolean permiteMoviDiagonal,
+									AEstrellaHeuristica heuristica) {
+		this.mapa = mapa;
+		this.tamanoCluster = tamanoCluster;
+		this.permiteMoviDiagonal = permiteMoviDiagonal;
+		this.heuristica = heuristica;
+		this.clustersAncho = (mapa.getAnchoEnBaldosas() + tamanoCluster - 1) / tamanoCluster;
+		this.clustersAltura = (mapa.getAlturaEnBaldosas() + tamanoCluster - 1) / tamanoCluster;
+		this.local = new BusquedaLocal(mapa, permiteMoviDiagonal, tamanoCluster * tamanoCluster);
+
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).agregarOyente(this);
+		}
+	}
+
+	/**
+	 * @see BuscadorInstrumentable#setOyenteBusqueda(OyenteBusqueda)
+	 */
+	public void setOyenteBusqueda(OyenteBusqueda oyente) {
+		this.oyente = oyente;
+		if ((oyente != null) && (metricas == null)) {
+			metricas = new MetricasBusqueda();
+		}
+	}
+
+	/**
+	 * Buscar el camino abstracto y refinarlo en baldosas
+	 *
+	 * @see BuscadorRuta#encontrarCamino(Entidad, int, int, int, int)
+	 */
+	public Camino encontrarCamino(Entidad entidad, int sx, int sy, int tx, int ty) {
+		long inicioNanos = (oyente != null) ? System.nanoTime() : 0;
+		CaminoAbstracto abstracto = encontrarCaminoAbstracto(entidad, sx, sy, tx, ty);
+		Camino camino = (abstracto == null) ? null : abstracto.refinar();
+		if (oyente != null) {
+			metricas.establecer(System.nanoTime() - inicioNanos, expandidos, generados, 0, maxAbiertos,
+					(abstracto == null) ? 0 : abstracto.getLength() - 1, false, camino != null);
+			oyente.busquedaTerminada(this, metricas);
+		}
+		return camino;
+	}
+
+	/**
+	 * Buscar un camino en el grafo abstracto, sin refinarlo todava en baldosas
+	 *
+	 * @param entidad La entidad que se mover a lo largo del camino
+	 * @param sx La coordenada x de la ubicacin de inicio
+	 * @param sy La coordenada y de la ubicacin de inicio
+	 * @param tx La coordenada x de la ubicacin de destino
+	 * @param ty La coordenada y de la ubicacin de destino
+	 * @return El camino por las entradas de los clusters, o null si no se puede encontrar ningn camino
+	 */
+	public CaminoAbstracto encontrarCaminoAbstracto(Entidad entidad, int sx, int sy, int tx, int ty) {
+		expandidos = 0;
+		generados = 0;
+		maxAbiertos = 0;
+		if (mapa.bloquea(entidad, tx, ty)) {// Si el destino esta bloqueado no podemos llegar
+			return null;
+		}
+		if ((sx == tx) && (sy == ty)) {
+			return null;
+		}
+		Abstraccion abstraccion = getAbstraccion(entidad);
+		abstraccion.reconstruirSucios();
+
+		Cluster clusterInicio = abstraccion.getCluster(sx, sy);
+		Cluster clusterDestino = abstraccion.getCluster(tx, ty);
+		Entrada inicio = new Entrada(sx, sy, clusterInicio);
+		Entrada destino = new Entrada(tx, ty, clusterDestino);
+
+		// Unir el inicio y el destino con las entradas de sus clusters. La baldosa de inicio
+		// suele estar ocupada por la propia entidad, as que no tiene entradas aunque est en
+		// un borde: sus vecinas de otros clusters se aaden como nodos temporales
+		unirTemporal(entidad, inicio, clusterDestino, tx, ty, sx, sy);
+		ArrayList<Entrada> salidas = new ArrayList<>();
+		for (int vx=-1;vx<2;vx++) {
+			for (int vy=-1;vy<2;vy++) {
+				if ((vx == 0) && (vy == 0)) {
+					continue;
+				}
+				if (!permiteMoviDiagonal && (vx != 0) && (vy != 0)) {
+					continue;
+				}
+				int nx = sx + vx;
+				int ny = sy + vy;
+				if ((nx < 0) || (ny < 0) || (nx >= mapa.getAnchoEnBaldosas()) || (ny >= mapa.getAlturaEnBaldosas())) {
+					continue;
+				}
+				Cluster cluster = abstraccion.getCluster(nx, ny);
+				if ((cluster == clusterInicio) || mapa.bloquea(entidad, nx, ny)) {
+					continue;
+				}
+				Entrada salida = new Entrada(nx, ny, cluster);
+				salida.costoVecina = mapa.getCosto(entidad, sx, sy, nx, ny);
+				unirTemporal(entidad, salida, clusterDestino, tx, ty, sx, sy);
+				salidas.add(salida);
+			}
+		}
+		float[] costosDestino = new float[clusterDestino.entradas.size()];
+		local.buscar(entidad, clusterDestino.x, clusterDestino.y, clusterDestino.ancho, clusterDestino.altura,
+					 tx, ty, sx, sy, true, -1, -1);
+		for (int i=0;i<costosDestino.length;i++) {
+			Entrada e = clusterDestino.entradas.get(i);
+			costosDestino[i] = local.getDistancia(e.x, e.y);
+		}
+
+		// A* sobre el grafo abstracto
+		busquedaActual++;
+		PriorityQueue<Abierto> abierto = new PriorityQueue<>();
+		inicio.abrir(busquedaActual, 0, null);
+		abierto.add(new Abierto(inicio, getCostoHeuristica(entidad, inicio, destino)));
+		while (!abierto.isEmpty()) {
+			Abierto primero = abierto.poll();
+			Entrada actual = primero.entrada;
+			if (actual.cerrada || (primero.costo != actual.costo)) {// Una copia antigua en la cola
+				continue;
+			}
+			if (actual == destino) {
+				break;
+			}
+			actual.cerrada = true;
+			expandidos++;
+
+			if (actual.costosCluster != null) {// Un nodo temporal
+				for (int i=0;i<actual.costosCluster.length;i++) {
+					relajar(abierto, entidad, actual, actual.cluster.entradas.get(i), actual.costosCluster[i], destino);
+				}
+				relajar(abierto, entidad, actual, destino, actual.costoDestino, destino);
+				if (actual == inicio) {
+					for (int i=0;i<salidas.size();i++) {
+						relajar(abierto, entidad, actual, salidas.get(i), salidas.get(i).costoVecina, destino);
+					}
+				}
+				continue;
+			}
+			relajar(abierto, entidad, actual, actual.vecina, actual.costoVecina, destino);
+			float[] distancias = actual.cluster.distancias[actual.indice];
+			for (int i=0;i<distancias.length;i++) {
+				relajar(abierto, entidad, actual, actual.cluster.entradas.get(i), distancias[i], destino);
+			}
+			if (actual.cluster == clusterDestino) {
+				relajar(abierto, entidad, actual, destino, costosDestino[actual.indice], destino);
+			}
+		}
+
+		if ((destino.busqueda != busquedaActual) || (destino.padre == null)) {
+			return null;
+		}
+		int puntos = 0;
+		for (Entrada e=destino;e != null;e=e.padre) {
+			puntos++;
+		}
+		int[] xs = new int[puntos];
+		int[] ys = new int[puntos];
+		for (Entrada e=destino;e != null;e=e.padre) {
+			puntos--;
+			xs[puntos] = e.x;
+			ys[puntos] = e.y;
+		}
+		return new CaminoAbstracto(this, entidad, xs, ys, destino.costo);
+	}
+
+	/**
+	 * Calcular los costes desde un nodo temporal hasta las entradas de su cluster y, si est
+	 * en el cluster del destino, hasta el destino
+	 *
+	 * @param entidad La entidad que se mueve
+	 * @param temporal El nodo temporal
+	 * @param clusterDestino El cluster que contiene el destino
+	 * @param tx La coordenada x del destino
+	 * @param ty La coordenada y del destino
+	 * @param sx La coordenada x del inicio, que nunca se considera bloqueado
+	 * @param sy La coordenada y del inicio, que nunca se considera bloqueado
+	 */
+	private void unirTemporal(Entidad entidad, Entrada temporal, Cluster clusterDestino, int tx, int ty, int sx, int sy) {
+		Cluster c = temporal.cluster;
+		local.buscar(entidad, c.x, c.y, c.ancho, c.altura, temporal.x, temporal.y, sx, sy, false, -1, -1);
+		temporal.costosCluster = new float[c.entradas.size()];
+		for (int i=0;i<temporal.costosCluster.length;i++) {
+			Entrada e = c.entradas.get(i);
+			temporal.costosCluster[i] = local.getDistancia(e.x, e.y);
+		}
+		temporal.costoDestino = (c == clusterDestino) ? local.getDistancia(tx, ty) : Float.MAX_VALUE;
+	}
+
+	/**
+	 * Intentar mejorar el coste de un nodo abstracto llegando desde otro
+	 *
+	 * @param abierto La cola de nodos abiertos
+	 * @param entidad La entidad que se mueve
+	 * @param actual El nodo desde el que se llega
+	 * @param siguiente El nodo al que se llega
+	 * @param costo El coste de la arista, o Float.MAX_VALUE si no existe
+	 * @param destino El nodo de destino de la bsqueda
+	 */
+	private void relajar(PriorityQueue<Abierto> abierto, Entidad entidad, Entrada actual, Entrada siguiente,
+						 float costo, Entrada destino) {
+		if ((costo == Float.MAX_VALUE) || (siguiente == actual)) {
+			return;
+		}
+		float nuevo = actual.costo + costo;
+		if (siguiente.busqueda != busquedaActual) {
+			siguiente.abrir(busquedaActual, nuevo, actual);
+			generados++;
+		} else if (!siguiente.cerrada && (nuevo < siguiente.costo)) {
+			siguiente.costo = nuevo;
+			siguiente.padre = actual;
+		} else {
+			return;
+		}
+		abierto.add(new Abierto(siguiente, getCostoHeuristica(entidad, siguiente, destino)));
+		if (abierto.size() > maxAbiertos) {
+			maxAbiertos = abierto.size();
+		}
+	}
+
+	/**
+	 * Obtener el coste heurstico de un nodo abstracto hasta el destino
+	 */
+	private float getCostoHeuristica(Entidad entidad, Entrada nodo, Entrada destino) {
+		return heuristica.getCosto(mapa, entidad, nodo.x, nodo.y, destino.x, destino.y);
+	}
+
+	/**
+	 * Refinar un camino abstracto en baldosas. Los tramos dentro de un cluster se buscan
+	 * dentro de ese cluster y los tramos entre clusters son un nico paso.
+	 *
+	 * @param abstracto El camino abstracto a refinar
+	 * @return El camino completo, o null si algn tramo ya no se puede recorrer
+	 */
+	Camino refinar(CaminoAbstracto abstracto) {
+		Entidad entidad = abstracto.getEntidad();
+		int sx = abstracto.getX(0);
+		int sy = abstracto.getY(0);
+		Camino camino = new Camino();
+		camino.agregarPaso(sx, sy);
+		for (int i=1;i<abstracto.getLength();i++) {
+			int ax = abstracto.getX(i - 1);
+			int ay = abstracto.getY(i - 1);
+			int bx = abstracto.getX(i);
+			int by = abstracto.getY(i);
+			if ((ax == bx) && (ay == by)) {// Dos entradas en la misma baldosa
+				continue;
+			}
+			int cx = ax / tamanoCluster;
+			int cy = ay / tamanoCluster;
+			if ((cx != bx / tamanoCluster) || (cy != by / tamanoCluster)) {// Cruce entre clusters vecinos
+				camino.agregarPaso(bx, by);
+				continue;
+			}
+			int x = cx * tamanoCluster;
+			int y = cy * tamanoCluster;
+			int ancho = Math.min(tamanoCluster, mapa.getAnchoEnBaldosas() - x);
+			int altura = Math.min(tamanoCluster, mapa.getAlturaEnBaldosas() - y);
+			local.buscar(entidad, x, y, ancho, altura, ax, ay, sx, sy, false, bx, by);
+			if (!local.agregarCamino(camino, bx, by)) {
+				return null;
+			}
+		}
+		return camino;
+	}
+
+	/**
+	 * Marcar como pendiente de reconstruir el cluster de la baldosa en todos los grafos
+	 * abstractos. La reconstruccin se hace en la siguiente bsqueda de cada tipo de entidad.
+	 *
+	 * @see OyenteMapa#baldosaCambiada(int, int)
+	 */
+	public void baldosaCambiada(int x, int y) {
+		for (Iterator<Abstraccion> i=abstracciones.values().iterator();i.hasNext();) {
+			i.next().marcarSucio(x / tamanoCluster, y / tamanoCluster);
+		}
+	}
+
+	/**
+	 * Dejar de escuchar los cambios del mapa. Hay que llamarlo al dejar de usarlo, porque
+	 * si no el mapa conserva los grafos abstractos
+	 */
+	public void cerrar() {
+		if (mapa instanceof MapaObservable) {
+			((MapaObservable) mapa).eliminarOyente(this);
+		}
+	}
+
+	/**
+	 * Obtener el grafo abstracto de un tipo de entidad, construyndolo la primera vez
+	 *
+	 * @param entidad La entidad que se mueve
+	 * @return El grafo abstracto de las entidades iguales a la dada
+	 */
+	private Abstraccion getAbstraccion(Entidad entidad) {
+		Abstraccion abstraccion = abstracciones.get(entidad);
+		if (abstraccion == null) {
+			abstraccion = new Abstraccion(entidad);
+			abstracciones.put(entidad, abstraccion);
+		}
+		return abstraccion;
+	}
+
+	/**
+	 * El grafo abstracto de un tipo de entidad: los clusters con sus entradas y las
+	 * distancias entre las entradas de cada cluster
+	 */
+	private class Abstraccion {
+
+		private Entidad entidad;/** La entidad para la que se construy */
+		private Cluster[] clusters;/** Los clusters, indexados por cy*clustersAncho+cx */
+		private boolean[] sucio;/** Los clusters pendientes de reconstruir */
+		private ArrayList<Cluster> sucios = new ArrayList<>();/** La lista de clusters pendientes de reconstruir */
+
+		/**
+		 * Construir el grafo abstracto completo de un tipo de entidad
+		 *
+		 * @param entidad La entidad para la que se construye
+		 */
+		public Abstraccion(Entidad entidad) {
+			this.entidad = entidad;
+			clusters = new Cluster[clustersAncho * clustersAltura];
+			sucio = new boolean[clusters.length];
+			for (int cy=0;cy<clustersAltura;cy++) {
+				for (int cx=0;cx<clustersAncho;cx++) {
+					clusters[cy * clustersAncho + cx] = new Cluster(cx, cy);
+				}
+			}
+			for (int cy=0;cy<clustersAltura;cy++) {
+				for (int cx=0;cx<clustersAncho;cx++) {
+					Cluster c = clusters[cy * clustersAncho + cx];
+					crearTransiciones(c, getClusterPorIndice(cx + 1, cy));
+					crearTransiciones(c, getClusterPorIndice(cx, cy + 1));
+					crearTransiciones(c, getClusterPorIndice(cx + 1, cy + 1));
+					crearTransiciones(c, getClusterPorIndice(cx - 1, cy + 1));
+				}
+			}
+			for (int i=0;i<clusters.length;i++) {
+				calcularDistancias(clusters[i]);
+			}
+		}
+
+		/**
+		 * Obtener el cluster que contiene una baldosa
+		 */
+		public Cluster getCluster(int x, int y) {
+			return clusters[(y / tamanoCluster) * clustersAncho + (x / tamanoCluster)];
+		}
+
+		/**
+		 * Obtener un cluster por su posicin en la rejilla de clusters
+		 *
+		 * @return El cluster, o null si la posicin est fuera del mapa
+		 */
+		private Cluster getClusterPorIndice(int cx, int cy) {
+			if ((cx < 0) || (cy < 0) || (cx >= clustersAncho) || (cy >= clustersAltura)) {
+				return null;
+			}
+			return clusters[cy * clustersAncho + cx];
+		}
+
+		/**
+		 * Marcar un cluster como pendiente de reconstruir
+		 */
+		public void marcarSucio(int cx, int cy) {
+			int i = cy * clustersAncho + cx;
+			if (!sucio[i]) {
+				sucio[i] = true;
+				sucios.add(clusters[i]);
+			}
+		}
+
+		/**
+		 * Reconstruir los clusters que han cambiado: sus entradas con los ocho vecinos y las
+		 * distancias dentro de ellos y de los vecinos cuyas entradas han cambiado
+		 */
+		public void reconstruirSucios() {
+			if (sucios.isEmpty()) {
+				return;
+			}
+			ArrayList<Cluster> recalcular = new ArrayList<>();
+			for (int s=0;s<sucios.size();s++) {
+				Cluster c = sucios.get(s);
+				c.entradas.clear();
+				for (int dy=-1;dy<2;dy++) {
+					for (int dx=-1;dx<2;dx++) {
+						Cluster vecino = getClusterPorIndice(c.cx + dx, c.cy + dy);
+						if ((vecino == null) || (vecino == c)) {
+							continue;
+						}
+						for (Iterator<Entrada> i=vecino.entradas.iterator();i.hasNext();) {
+							if (i.next().vecina.cluster == c) {
+								i.remove();
+							}
+						}
+						crearTransiciones(c, vecino);
+						if (!recalcular.contains(vecino)) {
+							recalcular.add(vecino);
+						}
+					}
+				}
+				if (!recalcular.contains(c)) {
+					recalcular.add(c);
+				}
+				sucio[c.cy * clustersAncho + c.cx] = false;
+			}
+			sucios.clear();
+			for (int i=0;i<recalcular.size();i++) {
+				calcularDistancias(recalcular.get(i));
+			}
+		}
+
+		/**
+		 * Crear las entradas en el borde entre dos clusters vecinos, en cualquier direccin
+		 *
+		 * @param a Un cluster
+		 * @param b Un cluster vecino de a, o null
+		 */
+		private void crearTransiciones(Cluster a, Cluster b) {
+			if (b == null) {
+				return;
+			}
+			int dx = b.cx - a.cx;
+			int dy = b.cy - a.cy;
+			if ((dx < 0) || ((dx == 0) && (dy < 0))) {// Siempre de izquierda a derecha o de arriba a abajo
+				crearTransiciones(b, a);
+				return;
+			}
+			if (dy == 0) {
+				crearTransicionesBorde(a, b, a.x + a.ancho - 1, a.y, b.x, b.y, 0, 1, a.altura);
+			} else if (dx == 0) {
+				crearTransicionesBorde(a, b, a.x, a.y + a.altura - 1, b.x, b.y, 1, 0, a.ancho);
+			} else if (permiteMoviDiagonal && (dy > 0)) {// Esquina de arriba a la izquierda con abajo a la derecha
+				int ax = a.x + a.ancho - 1;
+				int ay = a.y + a.altura - 1;
+				if (libre(ax, ay) && libre(b.x, b.y) && !libre(b.x, ay) && !libre(ax, b.y)) {
+					agregarTransicion(a, ax, ay, b, b.x, b.y);
+				}
+			} else if (permiteMoviDiagonal) {// Esquina de abajo a la izquierda con arriba a la derecha
+				int ax = a.x + a.ancho - 1;
+				int ay = a.y;
+				int by = b.y + b.altura - 1;
+				if (libre(ax, ay) && libre(b.x, by) && !libre(b.x, ay) && !libre(ax, by)) {
+					agregarTransicion(a, ax, ay, b, b.x, by);
+				}
+			}
+		}
+
+		/**
+		 * Crear las entradas a lo largo de un borde recto. Cada tramo de pares de baldosas
+		 * libres a ambos lados tiene una entrada en el centro, o dos en los extremos si es
+		 * largo. Con movimiento diagonal tambin se crea una entrada en los huecos en
+		 * diagonal que no tienen ningn par recto libre al lado.
+		 *
+		 * @param a El cluster de un lado del borde
+		 * @param b El cluster del otro lado
+		 * @param ax La coordenada x de la primera baldosa del borde en a
+		 * @param ay La coordenada y de la primera baldosa del borde en a
+		 * @param bx La coordenada x de la primera baldosa del borde en b
+		 * @param by La coordenada y de la primera baldosa del borde en b
+		 * @param px El avance en x a lo largo del borde
+		 * @param py El avance en y a lo largo del borde
+		 * @param longitud El nmero de baldosas del borde
+		 */
+		private void crearTransicionesBorde(Cluster a, Cluster b, int ax, int ay, int bx, int by,
+											int px, int py, int longitud) {
+			int inicioTramo = -1;
+			for (int i=0;i<=longitud;i++) {
+				boolean par = (i < longitud) && libre(ax + i * px, ay + i * py) && libre(bx + i * px, by + i * py);
+				if (par && (inicioTramo == -1)) {
+					inicioTramo = i;
+				} else if (!par && (inicioTramo != -1)) {
+					int fin = i - 1;
+					if (i - inicioTramo < ENTRADA_LARGA) {
+						int medio = (inicioTramo + fin) / 2;
+						agregarTransicion(a, ax + medio * px, ay + medio * py, b, bx + medio * px, by + medio * py);
+					} else {
+						agregarTransicion(a, ax + inicioTramo * px, ay + inicioTramo * py, b, bx + inicioTramo * px, by + inicioTramo * py);
+						agregarTransicion(a, ax + fin * px, ay + fin * py, b, bx + fin * px, by + fin * py);
+					}
+					inicioTramo = -1;
+				}
+			}
+			if (!permiteMoviDiagonal) {
+				return;
+			}
+			for (int i=0;i+1<longitud;i++) {
+				boolean par = libre(ax + i * px, ay + i * py) && libre(bx + i * px, by + i * py);
+				boolean parSiguiente = libre(ax + (i + 1) * px, ay + (i + 1) * py) && libre(bx + (i + 1) * px, by + (i + 1) * py);
+				if (par || parSiguiente) {
+					continue;
+				}
+				if (libre(ax + i * px, ay + i * py) && libre(bx + (i + 1) * px, by + (i + 1) * py)) {
+					agregarTransicion(a, ax + i * px, ay + i * py, b, bx + (i + 1) * px, by + (i + 1) * py);
+				}
+				if (libre(ax + (i + 1) * px, ay + (i + 1) * py) && libre(bx + i * px, by + i * py)) {
+					agregarTransicion(a, ax + (i + 1) * px, ay + (i + 1) * py, b, bx + i * px, by + i * py);
+				}
+			}
+		}
+
+		/**
+		 * Crear un par de entradas unidas, una a cada lado del borde entre dos clusters
+		 */
+		private void agregarTransicion(Cluster a, int ax, int ay, Cluster b, int bx, int by) {
+			Entrada ea = new Entrada(ax, ay, a);
+			Entrada eb = new Entrada(bx, by, b);
+			ea.vecina = eb;
+			ea.costoVecina = mapa.getCosto(entidad, ax, ay, bx, by);
+			eb.vecina = ea;
+			eb.costoVecina = mapa.getCosto(entidad, bx, by, ax, ay);
+			a.entradas.add(ea);
+			b.entradas.add(eb);
+		}
+
+		/**
+		 * Calcular las distancias entre todas las entradas de un cluster, sin salir de l
+		 *
+		 * @param c El cluster a calcular
+		 */
+		private void calcularDistancias(Cluster c) {
+			int n = c.entradas.size();
+			c.distancias = new float[n][n];
+			for (int i=0;i<n;i++) {
+				Entrada e = c.entradas.get(i);
+				e.indice = i;
+				local.buscar(entidad, c.x, c.y, c.ancho, c.altura, e.x, e.y, -1, -1, false, -1, -1);
+				for (int j=0;j<n;j++) {
+					Entrada otra = c.entradas.get(j);
+					c.distancias[i][j] = local.getDistancia(otra.x, otra.y);
+				}
+			}
+		}
+
+		/**
+		 * Compruebe si una baldosa del mapa no bloquea a la entidad
+		 */
+		private boolean libre(int x, int y) {
+			return !mapa.bloquea(entidad, x, y);
+		}
+	}
+
+	/**
+	 * Un cluster: un rectngulo del mapa con sus entradas
+	 */
+	private class Cluster {
+
+		private int cx;/** La columna del cluster en la rejilla de clusters */
+		private int cy;/** La fila del cluster en la rejilla de clusters */
+		private int x;/** La coordenada x de la primera baldosa del cluster */
+		private int y;/** La coordenada y de la primera baldosa del cluster */
+		private int ancho;/** El ancho del cluster, menor en el borde del mapa */
+		private int altura;/** La altura del cluster, menor en el borde del mapa */
+		private ArrayList<Entrada> entradas = new ArrayList<>();/** Las entradas que estn dentro del cluster */
+		private float[][] distancias;/** Las distancias entre entradas, indexadas por su posicin en la lista */
+
+		/**
+		 * Crear un cluster
+		 *
+		 * @param cx La columna del cluster en la rejilla de clusters
+		 * @param cy La fila del cluster en la rejilla de clusters
+		 */
+		public Cluster(int cx, int cy) {
+			this.cx = cx;
+			this.cy = cy;
+			this.x = cx * tamanoCluster;
+			this.y = cy * tamanoCluster;
+			this.ancho = Math.min(tamanoCluster, mapa.getAnchoEnBaldosas() - x);
+			this.altura = Math.min(tamanoCluster, mapa.getAlturaEnBaldosas() - y);
+		}
+	}
+
+	/**
+	 * Un nodo del grafo abstracto: una entrada de un cluster, unida a su pareja en el
+	 * cluster vecino. El inicio y el destino de una bsqueda son nodos temporales.
+	 */
+	private static class Entrada {
+
+		private int x;/** La coordenada x de la baldosa de la entrada */
+		private int y;/** La coordenada y de la baldosa de la entrada */
+		private Cluster cluster;/** El cluster que contiene la entrada */
+		private int indice;/** La posicin de la entrada en la lista de su cluster */
+		private Entrada vecina;/** La entrada del otro lado del borde */
+		private float costoVecina;/** El coste de pasar a la entrada del otro lado, o desde el inicio en un nodo temporal */
+		private float[] costosCluster;/** En un nodo temporal, los costes hasta las entradas de su cluster */
+		private float costoDestino;/** En un nodo temporal, el coste hasta el destino si est en su cluster */
+
+		private int busqueda;/** El nmero de la bsqueda que toc este nodo por ltima vez */
+		private float costo;/** El coste desde el inicio en la bsqueda marcada */
+		private Entrada padre;/** El nodo anterior en la bsqueda marcada */
+		private boolean cerrada;/** Es cierto si ya se expandi en la bsqueda marcada */
+
+		/**
+		 * Crear un nodo
+		 */
+		public Entrada(int x, int y, Cluster cluster) {
+			this.x = x;
+			this.y = y;
+			this.cluster = cluster;
+		}
+
+		/**
+		 * Abrir el nodo por primera vez en una bsqueda
+		 */
+		public void abrir(int busqueda, float costo, Entrada padre) {
+			this.busqueda = busqueda;
+			this.costo = costo;
+			this.padre = padre;
+			this.cerrada = false;
+		}
+	}
+
+	/**
+	 * Una copia de un nodo en la cola de abiertos con la prioridad que tena al entrar
+	 */
+	private static class Abierto implements Comparable<Abierto> {
+
+		private Entrada entrada;/** El nodo abierto */
+		private float costo;/** El coste del nodo al entrar en la cola */
+		private float f;/** El coste ms la heurstica al entrar en la cola */
+
+		public Abierto(Entrada entrada, float heuristica) {
+			this.entrada = entrada;
+			this.costo = entrada.costo;
+			this.f = entrada.costo + heuristica;
+		}
+
+		public int compareTo(Abierto o) {
+			return Float.compare(f, o.f);
+		}
+	}
+}
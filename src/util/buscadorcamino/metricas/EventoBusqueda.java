@@ -0,0 +1,49 @@
+package util.buscadorcamino.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * El evento de Flight Recorder de una bsqueda terminada, con las mismas medidas que
+ * MetricasBusqueda. Lo crea OyenteJfr.
+ */
+@Name("util.buscadorcamino.Busqueda")
+@Label("Bsqueda de camino")
+@Category("Buscador de caminos")
+@Description("Una bsqueda de camino terminada y sus medidas")
+@StackTrace(false)
+class EventoBusqueda extends Event {
+
+	@Label("Buscador")
+	String buscador;/** El nombre de la clase del buscador */
+
+	@Label("Tiempo")
+	@Timespan(Timespan.NANOSECONDS)
+	long nanos;/** El tiempo de reloj que tard la bsqueda */
+
+	@Label("Expandidos")
+	int expandidos;/** El nmero de nodos expandidos */
+
+	@Label("Generados")
+	int generados;/** El nmero de nodos aadidos a la lista abierta por primera vez */
+
+	@Label("Reabiertos")
+	int reabiertos;/** El nmero de nodos cerrados que se volvieron a abrir */
+
+	@Label("Mximo abiertos")
+	int maxAbiertos;/** El tamao mximo de la lista abierta */
+
+	@Label("Profundidad")
+	int profundidad;/** La profundidad mxima alcanzada */
+
+	@Label("Cortada")
+	boolean cortada;/** Es cierto si la bsqueda se detuvo por la profundidad mxima */
+
+	@Label("Encontrado")
+	boolean encontrado;/** Es cierto si la bsqueda devolvi un camino */
+}
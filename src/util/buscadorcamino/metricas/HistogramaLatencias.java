@@ -0,0 +1,235 @@
+package util.buscadorcamino.metricas;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import util.buscadorcamino.BuscadorRuta;
+import util.buscadorcamino.MetricasBusqueda;
+import util.buscadorcamino.OyenteBusqueda;
+
+/**
+ * Un oyente que acumula histogramas de latencias con nombre. Los intervalos son logartmicos,
+ * con 8 subdivisiones por cada potencia de dos, as que los percentiles tienen un error
+ * relativo menor del 13% y el histograma ocupa lo mismo sea cual sea el nmero de bsquedas.
+ *
+ * Usado directamente como oyente, acumula un histograma por clase de buscador. Con
+ * getOyente se obtiene un oyente que acumula en un histograma con el nombre que se elija,
+ * sea cual sea el buscador que le informe: es lo que hay que dar a todos los buscadores de un
+ * ServicioBuscadorRuta, uno por hilo, para tener un solo histograma de todo el servicio.
+ *
+ * Es seguro para varios hilos.
+ */
+public class HistogramaLatencias implements OyenteBusqueda {
+
+	private ConcurrentHashMap<String, Histograma> histogramas = new ConcurrentHashMap<>();/** Los histogramas por nombre */
+
+	/**
+	 * Aadir la bsqueda al histograma de la clase de su buscador
+	 *
+	 * @see OyenteBusqueda#busquedaTerminada(BuscadorRuta, MetricasBusqueda)
+	 */
+	public void busquedaTerminada(BuscadorRuta buscador, MetricasBusqueda metricas) {
+		String nombre = buscador.getClass().getSimpleName();
+		Histograma h = histogramas.get(nombre);
+		if (h == null) {
+			h = histogramas.computeIfAbsent(nombre, (n) -> new Histograma());
+		}
+		h.registrar(metricas);
+	}
+
+	/**
+	 * Obtener un oyente que aade todas las bsquedas de las que se le informa a un mismo
+	 * histograma, que se crea si no existe. Se puede dar a varios buscadores y usar desde
+	 * varios hilos a la vez.
+	 *
+	 * @param nombre El nombre del histograma
+	 * @return El oyente
+	 */
+	public OyenteBusqueda getOyente(String nombre) {
+		Histograma h = histogramas.computeIfAbsent(nombre, (n) -> new Histograma());
+		return (buscador, metricas) -> h.registrar(metricas);
+	}
+
+	/**
+	 * Obtener los nombres de los histogramas
+	 *
+	 * @return Los nombres de los histogramas que se han creado
+	 */
+	public Set<String> getNombres() {
+		return histogramas.keySet();
+	}
+
+	/**
+	 * Obtener un histograma
+	 *
+	 * @param nombre El nombre del histograma, o el nombre simple de la clase de un buscador
+	 * que haya informado directamente a este oyente
+	 * @return El histograma, o null si no existe
+	 */
+	public Histograma getHistograma(String nombre) {
+		return histogramas.get(nombre);
+	}
+
+	/**
+	 * Olvidar todas las bsquedas registradas. Los oyentes obtenidos con getOyente siguen
+	 * acumulando en sus histogramas, que ya no se pueden consultar aqu.
+	 */
+	public void limpiar() {
+		histogramas.clear();
+	}
+
+	/**
+	 * Las latencias de un conjunto de bsquedas
+	 */
+	public static class Histograma {
+
+		private static final int SUBDIVISIONES = 3;/** El nmero de bits de cada potencia de dos que distinguen intervalos */
+		private static final int INTERVALOS = 64 << SUBDIVISIONES;/** El nmero de intervalos del histograma */
+
+		private AtomicLongArray cuentas = new AtomicLongArray(INTERVALOS);/** El nmero de bsquedas de cada intervalo */
+		private LongAdder total = new LongAdder();/** El nmero de bsquedas */
+		private LongAdder suma = new LongAdder();/** La suma de las latencias, en nanosegundos */
+		private LongAccumulator maximo = new LongAccumulator(Math::max, 0);/** La mayor latencia, en nanosegundos */
+		private LongAdder expandidos = new LongAdder();/** La suma de los nodos expandidos */
+		private LongAdder cortadas = new LongAdder();/** El nmero de bsquedas cortadas por la profundidad mxima */
+		private LongAdder sinCamino = new LongAdder();/** El nmero de bsquedas que no encontraron camino */
+
+		/**
+		 * Aadir una bsqueda
+		 *
+		 * @param metricas Las medidas de la bsqueda
+		 */
+		void registrar(MetricasBusqueda metricas) {
+			long nanos = Math.max(0, metricas.getNanos());
+			cuentas.incrementAndGet(intervalo(nanos));
+			total.increment();
+			suma.add(nanos);
+			maximo.accumulate(nanos);
+			expandidos.add(metricas.getExpandidos());
+			if (metricas.isCortada()) {
+				cortadas.increment();
+			}
+			if (!metricas.isEncontrado()) {
+				sinCamino.increment();
+			}
+		}
+
+		/**
+		 * Obtener el nmero de bsquedas registradas
+		 *
+		 * @return El nmero de bsquedas
+		 */
+		public long getCuenta() {
+			return total.sum();
+		}
+
+		/**
+		 * Obtener la latencia media
+		 *
+		 * @return La media de las latencias en nanosegundos, o 0 si no hay bsquedas
+		 */
+		public double getMedia() {
+			long n = total.sum();
+			return n == 0 ? 0 : (double) suma.sum() / n;
+		}
+
+		/**
+		 * Obtener la mayor latencia
+		 *
+		 * @return La mayor latencia en nanosegundos
+		 */
+		public long getMaximo() {
+			return maximo.get();
+		}
+
+		/**
+		 * Obtener la media de nodos expandidos por bsqueda
+		 *
+		 * @return La media de nodos expandidos, o 0 si no hay bsquedas
+		 */
+		public double getMediaExpandidos() {
+			long n = total.sum();
+			return n == 0 ? 0 : (double) expandidos.sum() / n;
+		}
+
+		/**
+		 * Obtener el nmero de bsquedas cortadas por la profundidad mxima
+		 *
+		 * @return El nmero de bsquedas cortadas
+		 */
+		public long getCortadas() {
+			return cortadas.sum();
+		}
+
+		/**
+		 * Obtener el nmero de bsquedas que no encontraron camino
+		 *
+		 * @return El nmero de bsquedas sin camino
+		 */
+		public long getSinCamino() {
+			return sinCamino.sum();
+		}
+
+		/**
+		 * Obtener un percentil de la latencia
+		 *
+		 * @param percentil El percentil, entre 0 y 100
+		 * @return El lmite superior del intervalo que contiene el percentil, en nanosegundos,
+		 * sin pasar de la mayor latencia registrada, o 0 si no hay bsquedas
+		 */
+		public long getPercentil(double percentil) {
+			long n = 0;
+			for (int i=0;i<INTERVALOS;i++) {
+				n += cuentas.get(i);
+			}
+			if (n == 0) {
+				return 0;
+			}
+			long objetivo = (long) Math.ceil(n * Math.min(100, Math.max(0, percentil)) / 100);
+			long acumulado = 0;
+			for (int i=0;i<INTERVALOS;i++) {
+				acumulado += cuentas.get(i);
+				if ((acumulado >= objetivo) && (acumulado > 0)) {
+					return Math.min(limiteSuperior(i), getMaximo());
+				}
+			}
+			return getMaximo();
+		}
+
+		public String toString() {
+			return String.format("n=%d media=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus expandidos=%.1f cortadas=%d sinCamino=%d",
+					getCuenta(), getMedia() / 1e3, getPercentil(50) / 1e3, getPercentil(99) / 1e3,
+					getPercentil(99.9) / 1e3, getMaximo() / 1e3, getMediaExpandidos(), getCortadas(), getSinCamino());
+		}
+
+		/**
+		 * Obtener el intervalo de una latencia. Los valores menores que 2^SUBDIVISIONES tienen
+		 * un intervalo cada uno; el resto se reparten entre 2^SUBDIVISIONES intervalos por
+		 * cada potencia de dos.
+		 */
+		private static int intervalo(long nanos) {
+			if (nanos < (1 << SUBDIVISIONES)) {
+				return (int) nanos;
+			}
+			int exponente = 63 - Long.numberOfLeadingZeros(nanos);
+			int mantisa = (int) (nanos >>> (exponente - SUBDIVISIONES)) & ((1 << SUBDIVISIONES) - 1);
+			return ((exponente - SUBDIVISIONES + 1) << SUBDIVISIONES) + mantisa;
+		}
+
+		/**
+		 * Obtener la mayor latencia que cae en un intervalo
+		 */
+		private static long limiteSuperior(int intervalo) {
+			if (intervalo < (1 << SUBDIVISIONES)) {
+				return intervalo;
+			}
+			int exponente = (intervalo >>> SUBDIVISIONES) + SUBDIVISIONES - 1;
+			long mantisa = intervalo & ((1 << SUBDIVISIONES) - 1);
+			long base = (1L << exponente) + (mantisa << (exponente - SUBDIVISIONES));
+			return base + (1L << (exponente - SUBDIVISIONES)) - 1;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package util.buscadorcamino.metricas;
+
+import util.buscadorcamino.BuscadorRuta;
+import util.buscadorcamino.MetricasBusqueda;
+import util.buscadorcamino.OyenteBusqueda;
+
+/**
+ * Un oyente que emite un evento de JDK Flight Recorder, util.buscadorcamino.Busqueda, por
+ * cada bsqueda terminada. Si no hay ninguna grabacin con el evento activado slo cuesta
+ * comprobarlo. Necesita el paquete jdk.jfr, que est en OpenJDK desde 8u262 y en Java 11;
+ * el resto de la biblioteca no lo usa.
+ *
+ * Es seguro para varios hilos: se puede dar el mismo oyente a todos los buscadores de un
+ * ServicioBuscadorRuta.
+ */
+public class OyenteJfr implements OyenteBusqueda {
+
+	/**
+	 * Emitir el evento de la bsqueda si el evento est activado
+	 *
+	 * @see OyenteBusqueda#busquedaTerminada(BuscadorRuta, MetricasBusqueda)
+	 */
+	public void busquedaTerminada(BuscadorRuta buscador, MetricasBusqueda metricas) {
+		EventoBusqueda evento = new EventoBusqueda();
+		if (!evento.isEnabled()) {
+			return;
+		}
+		evento.buscador = buscador.getClass().getSimpleName();
+		evento.nanos = metricas.getNanos();
+		evento.expandidos = metricas.getExpandidos();
+		evento.generados = metricas.getGenerados();
+		evento.reabiertos = metricas.getReabiertos();
+		evento.maxAbiertos = metricas.getMaxAbiertos();
+		evento.profundidad = metricas.getProfundidad();
+		evento.cortada = metricas.isCortada();
+		evento.encontrado = metricas.isEncontrado();
+		evento.commit();
+	}
+}